@@ -0,0 +1,178 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression of a recording into the blocks of {@link CompressedRecordWriter} and reading it back,
+ * in full and by a one minute range. The recording is a real one given by
+ * <code>-p recording=path</code>, any format of {@link SessionExporter#open(File)}, or a generated
+ * session of two hours. The <code>rawBytes</code> and <code>compressedBytes</code> counters are
+ * the totals of the iterations: their ratio is the compression ratio, the raw total over the measured
+ * time is the sustained rate.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+
+    private static final int CHECKS = 14400;
+
+    private static final int NEIGHBORS = 6;
+
+    @Param({""})
+    public String recording;
+
+    @Param({"text", "trace"})
+    public String format;
+
+    @Param({"1", "6"})
+    public int level;
+
+    /**
+     * The records of the recording, the samples are copies and the messages are kept with their levels.
+     */
+    private final List<Sample> samples = new ArrayList<Sample>();
+    private final List<String> levels = new ArrayList<String>();
+    private final List<String> messages = new ArrayList<String>();
+    private final List<Long> times = new ArrayList<Long>();
+
+    private File directory;
+
+    private File file;
+
+    private long firstTime;
+    private long lastTime;
+
+    /**
+     * Counters of compressed data.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long rawBytes;
+        public long compressedBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        if (recording.length() > 0) {
+            RecordSource source = SessionExporter.open(new File(recording));
+            try {
+                while (source.next()) {
+                    Sample sample = source.getSample();
+                    add(source.getTime(), source.getLevel(), sample == null ? source.getMessage() : null,
+                            sample == null ? null : sample.copy());
+                }
+            } finally {
+                source.close();
+            }
+        } else {
+            long time = System.currentTimeMillis();
+            for (int check = 0; check < CHECKS; check++) {
+                time += 500;
+                add(time, FileLogger.INFO, null, new LocationSample(time, "gps", Sample.MONITOR,
+                        55.7512 + check * 1e-5, 37.6184 - check * 1e-5, 150, 10));
+                add(time, FileLogger.INFO, null, CellSample.neighborCount(time, NEIGHBORS));
+                for (int i = 0; i < NEIGHBORS; i++) {
+                    add(time, FileLogger.INFO, null,
+                            CellSample.neighbor(time, 10437 + i, 7724, 3, 262 + i, 10 + (check + i) % 8));
+                }
+                add(time, FileLogger.INFO, null, CellSample.gsm(time, Sample.MONITOR, 10436, 7724));
+                if (check % 10 == 0) {
+                    add(time, FileLogger.INFO, "CellMonitor::Listener::Data activity - Direction: 3", null);
+                }
+            }
+        }
+        directory = LoggerFixture.createTempDirectory("compression");
+        file = new File(directory, "recording" + FileLogger.COMPRESSED_SUFFIX);
+        write(new Bytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        LoggerFixture.delete(directory, true);
+    }
+
+    @Benchmark
+    public void write(Bytes bytes) throws IOException {
+        file.delete();
+        CompressedRecordWriter writer = new CompressedRecordWriter(file,
+                "text".equals(format) ? CompressedRecordWriter.TEXT : CompressedRecordWriter.TRACE,
+                FileLogger.COMPRESSED_BLOCK_SIZE, FileLogger.COMPRESSED_BLOCK_INTERVAL, level);
+        try {
+            for (int i = 0; i < samples.size(); i++) {
+                Sample sample = samples.get(i);
+                if (sample != null) {
+                    writer.writeSample(sample);
+                } else {
+                    writer.writeMessage(times.get(i), levels.get(i), messages.get(i));
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        bytes.rawBytes += writer.getRawLength();
+        bytes.compressedBytes += writer.getCompressedLength();
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        return count(firstTime, lastTime);
+    }
+
+    @Benchmark
+    public long seekMinute() throws IOException {
+        long middle = (firstTime + lastTime) / 2;
+        return count(middle, middle + TimeUnit.MINUTES.toMillis(1));
+    }
+
+    private long count(long from, long to) throws IOException {
+        CompressedLogReader reader = new CompressedLogReader(file);
+        long count = 0;
+        try {
+            reader.seek(from, to);
+            while (reader.next()) {
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    private void add(long time, String level, String message, Sample sample) {
+        if (samples.isEmpty()) {
+            firstTime = time;
+        }
+        lastTime = time;
+        times.add(time);
+        levels.add(level);
+        messages.add(message);
+        samples.add(sample);
+    }
+}
@@ -0,0 +1,81 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing by contending threads to the bus with the subscribers of the service, a coverage index and
+ * a tower estimator on queues of their own, and a direct counting subscriber in place of the logger.
+ * With the blocking policy the throughput is that of the slowest subscriber, with the dropping ones it is
+ * that of publishing. The monitors publish some tens of events per second.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+
+    @Param({"BLOCK", "DROP_OLDEST"})
+    public OverflowPolicy policy;
+
+    private EventBus eventBus;
+
+    private EventBus.Subscription[] subscriptions;
+
+    private volatile long counted;
+
+    @Setup(Level.Iteration)
+    public void open() {
+        eventBus = new EventBus();
+        CoverageIndex coverageIndex = new CoverageIndex();
+        // the index joins cells to this fix
+        coverageIndex.log(new LocationSample(System.currentTimeMillis(), "gps", Sample.LISTENER, 55.75, 37.62, 150, 10));
+        subscriptions = new EventBus.Subscription[] {
+                eventBus.subscribe("CoverageIndex", coverageIndex, 4096, policy),
+                eventBus.subscribe("TowerEstimator", new TowerEstimator(), 4096, policy),
+                eventBus.subscribe("Counter", new SampleSink() {
+                    @Override
+                    public void log(Sample sample) {
+                        counted++;
+                    }
+                })
+        };
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        for (EventBus.Subscription subscription: subscriptions) {
+            eventBus.unsubscribe(subscription);
+        }
+    }
+
+    @Benchmark
+    public void publish() {
+        eventBus.log(CellSample.neighbor(System.currentTimeMillis(), 10437, 7724, 3, 262, 17));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void publishContended() {
+        eventBus.log(CellSample.neighbor(System.currentTimeMillis(), 10437, 7724, 3, 262, 17));
+    }
+}
@@ -0,0 +1,73 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending of text messages and samples to the logger, by one thread and by contending threads.
+ * The logger is recreated on every iteration, so its files do not grow over the run.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileLoggerBenchmark {
+
+    private static final String MESSAGE = "CellMonitor::Listener::Data activity - Direction: 3";
+
+    @Param({LoggerFixture.TEXT, LoggerFixture.BINARY, LoggerFixture.SEGMENTS, LoggerFixture.ASYNC})
+    public String mode;
+
+    private FileLogger logger;
+
+    @Setup(Level.Iteration)
+    public void open() {
+        logger = LoggerFixture.open(mode);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        LoggerFixture.close(logger);
+    }
+
+    @Benchmark
+    public void message() {
+        logger.info(MESSAGE);
+    }
+
+    @Benchmark
+    public void sample() {
+        logger.log(CellSample.neighbor(System.currentTimeMillis(), 10437, 7724, 3, 262, 17));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void messageContended() {
+        logger.info(MESSAGE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void sampleContended() {
+        logger.log(CellSample.neighbor(System.currentTimeMillis(), 10437, 7724, 3, 262, 17));
+    }
+}
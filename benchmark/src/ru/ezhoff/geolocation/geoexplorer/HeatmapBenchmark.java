@@ -0,0 +1,207 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heatmap of four recorded drives of 60 000 fixes on a 4 km grid of roads under nine towers, every fix
+ * with the serving cell, its signal strength and six neighboring cells, 2.16 million samples in all.
+ * The full run counts all drives and renders every tile of zoom levels 10 to 16, the incremental run adds
+ * a drive of ten minutes to the state of the four and renders only the tiles which it crosses.
+ * With more threads than cores the threads only take turns, the counters are the totals of the iterations.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HeatmapBenchmark {
+
+    private static final int SIZE = 40;
+
+    private static final double SPACING = 100;
+
+    private static final int DRIVES = 4;
+
+    private static final int FIXES = 60000;
+
+    private static final int UPDATE_FIXES = 600;
+
+    private static final int NEIGHBORS = 6;
+
+    @Param({HeatmapRenderer.BY_CELL, HeatmapRenderer.BY_OPERATOR})
+    public String layering;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File recordings;
+
+    private File tiles;
+
+    private final List<String> drives = new ArrayList<String>();
+
+    private File update;
+
+    private File state;
+
+    /**
+     * Counts of the renderer.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counts {
+        public long observations;
+        public long tiles;
+    }
+
+    @Setup(Level.Trial)
+    public void record() throws IOException {
+        recordings = LoggerFixture.createTempDirectory("recordings");
+        for (int drive = 0; drive < DRIVES; drive++) {
+            File file = new File(recordings, "drive" + drive + ".trace");
+            writeDrive(file, FIXES, drive);
+            drives.add(file.getPath());
+        }
+        update = new File(recordings, "update.trace");
+        writeDrive(update, UPDATE_FIXES, DRIVES);
+        // the state of the drives for the incremental runs
+        tiles = LoggerFixture.createTempDirectory("tiles");
+        renderer().update(tiles, drives);
+        state = new File(recordings, HeatmapRenderer.STATE_FILE);
+        copy(new File(tiles, HeatmapRenderer.STATE_FILE), state);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        LoggerFixture.delete(recordings, true);
+        LoggerFixture.delete(tiles, true);
+    }
+
+    @Setup(Level.Invocation)
+    public void restore() throws IOException {
+        copy(state, new File(tiles, HeatmapRenderer.STATE_FILE));
+    }
+
+    @Benchmark
+    public int full(Counts counts) throws IOException {
+        new File(tiles, HeatmapRenderer.STATE_FILE).delete();
+        return render(counts, drives);
+    }
+
+    @Benchmark
+    public int incremental(Counts counts) throws IOException {
+        return render(counts, Collections.singletonList(update.getPath()));
+    }
+
+    private int render(Counts counts, List<String> paths) throws IOException {
+        HeatmapRenderer renderer = renderer();
+        int rendered = renderer.update(tiles, paths);
+        counts.observations += renderer.getObservationCount();
+        counts.tiles += rendered;
+        return rendered;
+    }
+
+    private HeatmapRenderer renderer() {
+        return new HeatmapRenderer().setLayering(layering).setThreads(threads);
+    }
+
+    /**
+     * Writes drive on the grid of {@link RoadFixture} under a square of nine towers, the strengths fall
+     * with the distance from the towers.
+     * @param file              binary trace
+     * @param count             count of fixes
+     * @param seed              seed of the drive
+     * @throws IOException      if writing is failed
+     */
+    static void writeDrive(File file, int count, long seed) throws IOException {
+        long[] ways = new long[count];
+        LocationSample[] fixes = RoadFixture.drive(SIZE, SPACING, count, 12, 5, seed, ways);
+        Random random = new Random(seed);
+        double[] towerLatitudes = new double[9];
+        double[] towerLongitudes = new double[9];
+        for (int tower = 0; tower < 9; tower++) {
+            LocationSample corner = fixes[0];
+            towerLatitudes[tower] = corner.latitude + (tower / 3 - 1) * 0.012;
+            towerLongitudes[tower] = corner.longitude + (tower % 3 - 1) * 0.02;
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        BinaryTraceWriter writer = new BinaryTraceWriter(out);
+        try {
+            writer.writeMessage(fixes[0].time, FileLogger.INFO, "CellMonitor::Listener::Service state changed - "
+                    + "Operator Long: Benchmark, Operator Short: BM, Operator Numeric: 2500" + seed % 2
+                    + ", State value: 0, Describe contents: 0, is roaming: false");
+            int[] asu = new int[9];
+            for (LocationSample fix: fixes) {
+                writer.writeSample(fix);
+                int serving = 0;
+                for (int tower = 0; tower < 9; tower++) {
+                    double distance = Math.hypot(fix.latitude - towerLatitudes[tower],
+                            (fix.longitude - towerLongitudes[tower]) * 0.56) * 111320;
+                    asu[tower] = (int) Math.max(0, Math.min(31, 31 - distance / 150 + random.nextGaussian() * 2));
+                    if (asu[tower] > asu[serving]) {
+                        serving = tower;
+                    }
+                }
+                writer.writeSample(CellSample.gsm(fix.time, Sample.MONITOR, 10436 + serving, 7724));
+                writer.writeSample(SignalSample.asu(fix.time, asu[serving]));
+                writer.writeSample(CellSample.neighborCount(fix.time, NEIGHBORS));
+                for (int i = 0, tower = 0; i < NEIGHBORS; tower++) {
+                    if (tower != serving) {
+                        writer.writeSample(CellSample.neighbor(fix.time, 10436 + tower, 7724, 3, 262 + tower, asu[tower]));
+                        i++;
+                    }
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[64 * 1024];
+                int count;
+                while ((count = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logging by contending threads with a live view attached. The screen is absent, frozen, which never takes
+ * the records, or slow, which takes them at the frame rate and then renders for half of the frame period.
+ * The throughput should not depend on the screen since producers never wait for the view.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LiveViewBenchmark {
+
+    private static final String MESSAGE = "CellMonitor::Listener::Data activity - Direction: 3";
+
+    private static final long FRAME_PERIOD = 100;
+
+    @Param({"none", "frozen", "slow"})
+    public String screen;
+
+    private FileLogger logger;
+
+    private Thread screenThread;
+
+    private volatile boolean isShown;
+
+    @Setup(Level.Iteration)
+    public void open() {
+        final LiveView liveView = "none".equals(screen) ? null : new LiveView(100);
+        FileLogger.setLiveView(liveView);
+        logger = LoggerFixture.open(LoggerFixture.ASYNC);
+        if ("slow".equals(screen)) {
+            isShown = true;
+            screenThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (isShown) {
+                        if (liveView.update()) {
+                            liveView.getText().toString();
+                        }
+                        // rendering, then waiting for the next frame
+                        sleep(FRAME_PERIOD / 2);
+                        sleep(FRAME_PERIOD / 2);
+                    }
+                }
+            }, "Screen");
+            screenThread.start();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() throws InterruptedException {
+        if (screenThread != null) {
+            isShown = false;
+            screenThread.join();
+            screenThread = null;
+        }
+        LoggerFixture.close(logger);
+        FileLogger.setLiveView(null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void message() {
+        logger.info(MESSAGE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void sample() {
+        logger.log(CellSample.neighbor(System.currentTimeMillis(), 10437, 7724, 3, 262, 17));
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Logger of benchmarks in a temporary storage directory.
+ * The paths of the logger are fixed when its class is loaded, so the storage is created once per JVM
+ * and emptied when a logger is closed.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class LoggerFixture {
+
+    /**
+     * The text log file.
+     */
+    static final String TEXT = "text";
+
+    /**
+     * The binary trace file.
+     */
+    static final String BINARY = "binary";
+
+    /**
+     * The memory-mapped segments.
+     */
+    static final String SEGMENTS = "segments";
+
+    /**
+     * The text log file behind the asynchronous writer.
+     */
+    static final String ASYNC = "async";
+
+    /**
+     * The storage directory of the logger.
+     */
+    private static final File STORAGE = createStorage();
+
+    private LoggerFixture() {}
+
+    /**
+     * Configures and creates logger.
+     * @param mode              {@link #TEXT}, {@link #BINARY}, {@link #SEGMENTS} or {@link #ASYNC}
+     * @return                  logger
+     */
+    static FileLogger open(String mode) {
+        FileLogger.setBinaryFormat(BINARY.equals(mode));
+        FileLogger.setSegmentedStore(SEGMENTS.equals(mode) ? new SegmentedLogStore().setMaxSegments(16) : null);
+        FileLogger.setAsyncWriter(ASYNC.equals(mode) ? new AsyncLogWriter().setOverflowPolicy(OverflowPolicy.BLOCK) : null);
+        return FileLogger.getInstance();
+    }
+
+    /**
+     * Returns storage directory of the logger, it is created on the first call.
+     * @return                  directory
+     */
+    static File getStorage() {
+        return STORAGE;
+    }
+
+    /**
+     * Closes logger and deletes its files.
+     * @param logger            logger
+     */
+    static void close(FileLogger logger) {
+        logger.close();
+        delete(STORAGE, false);
+    }
+
+    /**
+     * Creates temporary directory which is deleted on exit.
+     * @param prefix            name prefix
+     * @return                  directory
+     */
+    static File createTempDirectory(String prefix) {
+        try {
+            File directory = File.createTempFile(prefix, "");
+            if (!directory.delete() || !directory.mkdir()) {
+                throw new IllegalStateException("Can not create directory " + directory);
+            }
+            directory.deleteOnExit();
+            return directory;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes files of directory.
+     * @param directory         directory
+     * @param self              <code>true</code> to delete the directory too
+     */
+    static void delete(File directory, boolean self) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file: files) {
+                if (file.isDirectory()) {
+                    delete(file, true);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        if (self) {
+            directory.delete();
+        }
+    }
+
+    private static File createStorage() {
+        String path = System.getProperty("geoexplorer.storage");
+        if (path != null) {
+            return new File(path);
+        }
+        File storage = createTempDirectory("geoexplorer");
+        System.setProperty("geoexplorer.storage", storage.getPath());
+        return storage;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Map matching of a drive of ten thousand fixes on a grid of 40 by 40 crossings a hundred meters apart,
+ * at 12 m/s with a fix every second, for fix errors of 3 and 15 meters and lookbacks of 2 and 8 fixes.
+ * The score is the throughput in fixes per second of one thread. The ways back converge a fix or two after
+ * the newest one, so the lookback bounds only the latency of the rare ambiguous stretches and barely
+ * changes the cost.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapMatcherBenchmark {
+
+    private static final int SIZE = 40;
+
+    private static final double SPACING = 100;
+
+    private static final int FIXES = 10000;
+
+    @Param({"3", "15"})
+    public double noise;
+
+    @Param({"2", "8"})
+    public int lookback;
+
+    private LocationSample[] fixes;
+
+    private MapMatcher matcher;
+
+    private volatile long matches;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        File file = File.createTempFile("roads", ".osm");
+        try {
+            RoadFixture.writeGrid(file, SIZE, SPACING);
+            matcher = new MapMatcher(RoadGraph.load(file))
+                    .setLookback(lookback)
+                    .setSink(new SampleSink() {
+                        @Override
+                        public void log(Sample sample) {
+                            matches++;
+                        }
+                    });
+        } finally {
+            file.delete();
+        }
+        fixes = RoadFixture.drive(SIZE, SPACING, FIXES, 12, noise, 17, new long[FIXES]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIXES)
+    public void match() {
+        matcher.reset();
+        for (LocationSample fix: fixes) {
+            matcher.log(fix);
+        }
+        matcher.flush();
+    }
+}
@@ -0,0 +1,67 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording of metrics, by one thread and by contending threads. The budget is 50 ns per event.
+ * The timed recording includes the two reads of the clock around the measured call.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final MetricsRegistry.Counter counter = MetricsRegistry.getInstance().counter("MetricsBenchmark.counter");
+
+    private final MetricsRegistry.Histogram histogram =
+            MetricsRegistry.getInstance().histogram("MetricsBenchmark.histogram");
+
+    private long value = 1;
+
+    @Benchmark
+    public void counter() {
+        counter.increment();
+    }
+
+    @Benchmark
+    public void histogram() {
+        // spreads values over the buckets
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        histogram.record(value >>> 40);
+    }
+
+    @Benchmark
+    public void timed() {
+        histogram.recordSince(System.nanoTime());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void counterContended() {
+        counter.increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void histogramContended() {
+        // the worst case, all threads increment the same bucket
+        histogram.record(1000);
+    }
+}
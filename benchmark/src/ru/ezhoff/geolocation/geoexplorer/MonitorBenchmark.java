@@ -0,0 +1,152 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.telephony.NeighboringCellInfo;
+import android.telephony.ServiceState;
+import android.telephony.SignalStrength;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Callbacks and periodical checks of the monitors with stubbed managers, logged to the text log file.
+ * The rare events are formatted by <code>String.format</code>, the frequent ones are logged as samples.
+ * A check with change detection sees the same cells every time, so it shows the cost of a suppressed check.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitorBenchmark {
+
+    private static final int NEIGHBORS = 6;
+
+    private FileLogger logger;
+
+    private CellMonitor cellMonitor;
+
+    private CellMonitor detectingCellMonitor;
+
+    private LocationMonitor locationMonitor;
+
+    private final TelephonyManager telephonyManager = new TelephonyManager();
+
+    private final LocationManager locationManager = new LocationManager();
+
+    private final ServiceState serviceState = new ServiceState();
+
+    private final SignalStrength signalStrength = new SignalStrength();
+
+    private final Location[] locations = {location(55.7512, 37.6184), location(55.7513, 37.6186)};
+
+    private int locationIndex;
+
+    @Setup(Level.Trial)
+    public void initManagers() {
+        List<NeighboringCellInfo> neighbors = new ArrayList<NeighboringCellInfo>();
+        for (int i = 0; i < NEIGHBORS; i++) {
+            neighbors.add(new NeighboringCellInfo(10 + i, 10437 + i, 7724, 262 + i, TelephonyManager.NETWORK_TYPE_UMTS));
+        }
+        telephonyManager.setNeighboringCellInfo(neighbors);
+        GsmCellLocation cellLocation = new GsmCellLocation();
+        cellLocation.setLacAndCid(7724, 10436);
+        telephonyManager.setCellLocation(cellLocation);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        logger = LoggerFixture.open(LoggerFixture.TEXT);
+        // the scheduler is not started, checks are run by the benchmarks
+        MonitorScheduler scheduler = new MonitorScheduler();
+        cellMonitor = new CellMonitor()
+                .setTelephonyManager(telephonyManager)
+                .setScheduler(scheduler)
+                .setPeriod(500);
+        detectingCellMonitor = new CellMonitor()
+                .setTelephonyManager(telephonyManager)
+                .setScheduler(scheduler)
+                .setChangeDetector(new CellChangeDetector())
+                .setPeriod(500);
+        locationMonitor = new LocationMonitor()
+                .setLocationManager(locationManager)
+                .setProvider(LocationManager.GPS_PROVIDER)
+                .setScheduler(scheduler)
+                .setPeriod(500);
+        cellMonitor.start();
+        detectingCellMonitor.start();
+        locationMonitor.start();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        cellMonitor.stop();
+        detectingCellMonitor.stop();
+        locationMonitor.stop();
+        LoggerFixture.close(logger);
+    }
+
+    @Benchmark
+    public void serviceStateChanged() {
+        cellMonitor.onServiceStateChanged(serviceState);
+    }
+
+    @Benchmark
+    public void callStateChanged() {
+        cellMonitor.onCallStateChanged(0, null);
+    }
+
+    @Benchmark
+    public void locationStatusChanged() {
+        locationMonitor.onStatusChanged(LocationManager.GPS_PROVIDER, 2, null);
+    }
+
+    @Benchmark
+    public void signalStrengthsChanged() {
+        cellMonitor.onSignalStrengthsChanged(signalStrength);
+    }
+
+    @Benchmark
+    public void cellCheck() {
+        cellMonitor.run();
+    }
+
+    @Benchmark
+    public void cellCheckWithChangeDetection() {
+        detectingCellMonitor.run();
+    }
+
+    @Benchmark
+    public void locationCheck() {
+        locationManager.setLastKnownLocation(locations[locationIndex++ & 1]);
+        locationMonitor.run();
+    }
+
+    private static Location location(double latitude, double longitude) {
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setAccuracy(10);
+        return location;
+    }
+}
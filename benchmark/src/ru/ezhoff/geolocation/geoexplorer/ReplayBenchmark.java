@@ -0,0 +1,120 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full pipeline: a recorded session is read, parsed and replayed at max speed into the logger.
+ * The score is in records. The asynchronous logger may still hold a queue of records when a replay ends,
+ * the blocking overflow policy keeps it bounded.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+
+    private static final int CHECKS = 10000;
+
+    private static final int NEIGHBORS = 6;
+
+    /**
+     * The count of records of the recording: a location, a neighbors count, the neighbors and a serving cell
+     * for every check, and a text message for every tenth check.
+     */
+    private static final int RECORDS = CHECKS * (NEIGHBORS + 3) + CHECKS / 10;
+
+    @Param({"trace", "text"})
+    public String recording;
+
+    @Param({LoggerFixture.TEXT, LoggerFixture.BINARY, LoggerFixture.ASYNC})
+    public String mode;
+
+    private File directory;
+
+    private File file;
+
+    private FileLogger logger;
+
+    @Setup(Level.Trial)
+    public void record() throws IOException {
+        directory = LoggerFixture.createTempDirectory("recording");
+        file = new File(directory, "recording");
+        RecordWriter writer = "trace".equals(recording)
+                ? new BinaryTraceWriter(new BufferedOutputStream(new FileOutputStream(file)))
+                : new TextRecordWriter(new BufferedWriter(new FileWriter(file)));
+        try {
+            long time = System.currentTimeMillis();
+            for (int check = 0; check < CHECKS; check++) {
+                time += 500;
+                writer.writeSample(new LocationSample(time, "gps", Sample.MONITOR,
+                        55.7512 + check * 1e-5, 37.6184 - check * 1e-5, 150, 10));
+                writer.writeSample(CellSample.neighborCount(time, NEIGHBORS));
+                for (int i = 0; i < NEIGHBORS; i++) {
+                    writer.writeSample(CellSample.neighbor(time, 10437 + i, 7724, 3, 262 + i, 10 + (check + i) % 8));
+                }
+                writer.writeSample(CellSample.gsm(time, Sample.MONITOR, 10436, 7724));
+                if (check % 10 == 0) {
+                    writer.writeMessage(time, FileLogger.INFO, "CellMonitor::Listener::Data activity - Direction: 3");
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRecording() {
+        LoggerFixture.delete(directory, true);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        logger = LoggerFixture.open(mode);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        LoggerFixture.close(logger);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public long replay() throws IOException {
+        RecordSource source = "trace".equals(recording)
+                ? new TraceReader(new BufferedInputStream(new FileInputStream(file)))
+                : new TextLogReader(new BufferedReader(new FileReader(file)));
+        ReplayMonitor monitor = new ReplayMonitor().setSource(source).setSpeed(0);
+        monitor.run();
+        return monitor.getReplayedCount();
+    }
+}
@@ -0,0 +1,129 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Square grid of roads for the map matching benchmarks and a drive on it.
+ * Every row and every column of the grid is a way, the rows have ids from <code>1</code>
+ * and the columns have ids from the grid size plus one.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class RoadFixture {
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private static final double LATITUDE = 55.7512;
+
+    private static final double LONGITUDE = 37.6184;
+
+    private RoadFixture() {}
+
+    /**
+     * Writes grid as an OSM XML extract.
+     * @param file              destination
+     * @param size              count of nodes of a row and of a column
+     * @param spacing           distance between the rows and between the columns, in meters
+     * @throws IOException      if writing is failed
+     */
+    static void writeGrid(File file, int size, double spacing) throws IOException {
+        Writer out = new BufferedWriter(new FileWriter(file));
+        try {
+            out.write("<?xml version='1.0' encoding='UTF-8'?>\n<osm version=\"0.6\">\n");
+            for (int row = 0; row < size; row++) {
+                for (int column = 0; column < size; column++) {
+                    out.write(String.format("  <node id=\"%d\" lat=\"%.7f\" lon=\"%.7f\"/>\n", nodeId(size, row, column),
+                            latitude(row * spacing), longitude(column * spacing)));
+                }
+            }
+            for (int line = 0; line < size; line++) {
+                out.write(String.format("  <way id=\"%d\">\n", line + 1));
+                for (int column = 0; column < size; column++) {
+                    out.write(String.format("    <nd ref=\"%d\"/>\n", nodeId(size, line, column)));
+                }
+                out.write("    <tag k=\"highway\" v=\"residential\"/>\n  </way>\n");
+                out.write(String.format("  <way id=\"%d\">\n", size + line + 1));
+                for (int row = 0; row < size; row++) {
+                    out.write(String.format("    <nd ref=\"%d\"/>\n", nodeId(size, row, line)));
+                }
+                out.write("    <tag k=\"highway\" v=\"residential\"/>\n  </way>\n");
+            }
+            out.write("</osm>\n");
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Drives on the grid at a constant speed with a fix every second, turning at random at the crossings.
+     * @param size              count of nodes of a row and of a column
+     * @param spacing           distance between the rows and between the columns, in meters
+     * @param count             count of fixes
+     * @param speed             speed, in meters per second
+     * @param noise             standard deviation of the error of the fixes, in meters
+     * @param seed              seed of the random turns and errors
+     * @param ways              destination of the ways of the true positions, by fix
+     * @return                  fixes
+     */
+    static LocationSample[] drive(int size, double spacing, int count, double speed, double noise, long seed,
+                                  long[] ways) {
+        Random random = new Random(seed);
+        LocationSample[] fixes = new LocationSample[count];
+        int row = size / 2;
+        int column = size / 2;
+        int direction = 0;
+        double offset = 0;
+        long time = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            offset += speed;
+            while (offset >= spacing) {
+                offset -= spacing;
+                row += ROW_STEPS[direction];
+                column += COLUMN_STEPS[direction];
+                direction = turn(random, size, row, column, direction);
+            }
+            double y = (row + ROW_STEPS[direction] * offset / spacing) * spacing;
+            double x = (column + COLUMN_STEPS[direction] * offset / spacing) * spacing;
+            ways[i] = ROW_STEPS[direction] == 0 ? row + 1 : size + column + 1;
+            fixes[i] = new LocationSample(time + i * 1000L, LocationFusion.FUSED, Sample.MONITOR,
+                    latitude(y + random.nextGaussian() * noise), longitude(x + random.nextGaussian() * noise),
+                    150, (float) noise);
+        }
+        return fixes;
+    }
+
+    /**
+     * The steps of the directions: east, north, west and south.
+     */
+    private static final int[] ROW_STEPS = {0, 1, 0, -1};
+    private static final int[] COLUMN_STEPS = {1, 0, -1, 0};
+
+    private static int turn(Random random, int size, int row, int column, int direction) {
+        while (true) {
+            int turned = (direction + 3 + random.nextInt(3)) % 4;
+            int nextRow = row + ROW_STEPS[turned];
+            int nextColumn = column + COLUMN_STEPS[turned];
+            if (nextRow >= 0 && nextRow < size && nextColumn >= 0 && nextColumn < size) {
+                return turned;
+            }
+        }
+    }
+
+    private static long nodeId(int size, int row, int column) {
+        return (long) row * size + column + 1;
+    }
+
+    private static double latitude(double y) {
+        return LATITUDE + y / METERS_PER_DEGREE;
+    }
+
+    private static double longitude(double x) {
+        return LONGITUDE + x / (METERS_PER_DEGREE * Math.cos(Math.toRadians(LATITUDE)));
+    }
+}
@@ -0,0 +1,83 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counting of signal samples into one minute windows of the serving cell, tumbling and sliding by ten
+ * seconds and by one second. The clock of the samples goes by 500 ms a sample and the serving cell changes
+ * every five minutes, so the cost includes the summaries of closed windows. Neither the cost of a sample
+ * nor the cost of a summary grows with the count of panes of a window, so the sliding windows cost more
+ * only by their more frequent summaries, and with the allocation profiler the allocations are the summaries.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalAggregatorBenchmark {
+
+    private static final long WINDOW = 60 * 1000;
+
+    private static final int CELL_CHANGE = 600;
+
+    @Param({"60000", "10000", "1000"})
+    public long slide;
+
+    private SignalAggregator aggregator;
+
+    private final SignalSample signal = SignalSample.strengths(0, true, -1, -1, -1, -1, -1, 0, 0);
+
+    private final CellSample cell = CellSample.gsm(0, Sample.LISTENER, 10436, 7724);
+
+    private long time;
+
+    private int count;
+
+    private volatile long summaries;
+
+    @Setup(Level.Iteration)
+    public void open() {
+        aggregator = new SignalAggregator()
+                .setWindow(WINDOW, slide)
+                .setRawPassed(false)
+                .setSink(new SampleSink() {
+                    @Override
+                    public void log(Sample sample) {
+                        summaries++;
+                    }
+                });
+        time = System.currentTimeMillis();
+        count = 0;
+    }
+
+    @Benchmark
+    public void update() {
+        time += 500;
+        if (++count % CELL_CHANGE == 0) {
+            cell.time = time;
+            cell.cid = 10436 + count / CELL_CHANGE % 4;
+            aggregator.log(cell);
+        }
+        signal.time = time;
+        signal.gsmSignalStrength = count % 24;
+        signal.gsmBitErrorRate = count % 8;
+        aggregator.log(signal);
+    }
+}
@@ -0,0 +1,665 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.telephony.NeighboringCellInfo;
+import android.telephony.PhoneStateListener;
+import android.telephony.SignalStrength;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test of the collection engine over hours of virtual time, headless on the stubbed Android types.
+ * <p>
+ * Producer threads call the listeners which the monitors register with the stubbed managers, as the binder
+ * threads of a device do: location updates, signal strengths, cell locations and data activity, at the given rate
+ * per virtual second each, in an order given by the seed. The values of every callback carry its producer and
+ * its sequence number, so every record read back from the log is matched to exactly one callback.
+ * The scheduler of the engine runs on a {@link VirtualTimeExecutor}, which the driver advances by a second
+ * at a time while the producers make the callbacks of that second, and the last known location changes
+ * every second, so every second has exactly one fix of the checks and a known count of cell checks.
+ * <p>
+ * The engine is restarted every given count of virtual minutes, as the service is by the system. After every
+ * run the log of the run is read back and deleted: a lost, duplicated or unexpected record, a logged error
+ * or a missed check fails the soak. Between runs the live threads, the listeners left with the managers
+ * and the tasks left with the executor are checked, and the used heap after a collection must not grow
+ * in the second half of the soak by more than the given bound over the first half. The producers never wait
+ * for time, so the throughput of a run is all the engine sustains on this machine, the lowest of the runs
+ * after the first one, which warms the code up, is reported as the ceiling. A failure ends the JVM with
+ * a non-zero status.
+ * <p>
+ * The monitors have no sampler, change detection, aggregation or simplification, so every callback and every
+ * check is logged. Usage:
+ * <pre>
+ * SoakHarness [-producers N] [-rate CALLBACKS] [-hours H] [-restart MINUTES] [-mode text|binary|segments|async]
+ *             [-neighbors N] [-seed S] [-heap MB]
+ * </pre>
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public final class SoakHarness {
+
+    private static final int MEGABYTE = 1024 * 1024;
+
+    /**
+     * The virtual time of one step of the driver, in milliseconds.
+     */
+    private static final long STEP = 1000;
+
+    /**
+     * The period of ticks and of the checks of the monitors, in milliseconds.
+     */
+    private static final int PERIOD = 500;
+
+    private static final long METRICS_PERIOD = 60 * 1000;
+
+    private static final int SUBSCRIBER_CAPACITY = 4096;
+
+    /**
+     * The callbacks of the producers, data activity is only text and is matched by count.
+     */
+    private static final int LOCATION = 0;
+    private static final int SIGNAL = 1;
+    private static final int CELL = 2;
+    private static final int DATA_ACTIVITY = 3;
+    private static final String[] KIND_NAMES = {"location", "signal", "cell", "data activity"};
+
+    private static final String DATA_ACTIVITY_MESSAGE = "Listener::Data activity";
+
+    /**
+     * The threads the JVM may start on its own during the soak, e.g. for the management beans.
+     */
+    private static final int THREAD_SLACK = 2;
+
+    /**
+     * The count of producer threads.
+     */
+    private int producers = 8;
+
+    /**
+     * The callbacks of every producer in a virtual second.
+     */
+    private int rate = 50;
+
+    /**
+     * The virtual duration of the soak, in hours.
+     */
+    private int hours = 4;
+
+    /**
+     * The virtual duration of a run of the engine, in minutes.
+     */
+    private int restart = 30;
+
+    /**
+     * The logger mode, one of the modes of {@link LoggerFixture}.
+     */
+    private String mode = LoggerFixture.SEGMENTS;
+
+    /**
+     * The neighboring cells of every cell check.
+     */
+    private int neighbors = 6;
+
+    private long seed = 17;
+
+    /**
+     * The largest growth of the used heap, in megabytes.
+     */
+    private int heapGrowth = 16;
+
+    private final LocationManager locationManager = new LocationManager();
+    private final TelephonyManager telephonyManager = new TelephonyManager();
+
+    /**
+     * The barrier of the driver and the producers, twice a step: at its start and at its end.
+     */
+    private Phaser phaser;
+
+    /**
+     * The flag of the soak is over, read by the producers at the start of a step.
+     */
+    private volatile boolean isDone;
+
+    /**
+     * The first failure of a producer.
+     */
+    private volatile Throwable producerFailure;
+
+    /**
+     * Producer of the listener callbacks, every kind has its own sequence.
+     * The sequences are read by the driver between steps only.
+     */
+    private final class Producer implements Runnable {
+        final int index;
+        final Random random;
+        final long[] sequences = new long[KIND_NAMES.length];
+        final Location location = new Location(LocationManager.GPS_PROVIDER);
+        final SignalStrength signalStrength = new SignalStrength();
+        final GsmCellLocation cellLocation = new GsmCellLocation();
+
+        Producer(int index) {
+            this.index = index;
+            this.random = new Random(seed * 31 + index);
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                phaser.arriveAndAwaitAdvance();
+                if (isDone) {
+                    phaser.arriveAndDeregister();
+                    return;
+                }
+                try {
+                    for (int i = 0; i < rate; i++) {
+                        call();
+                    }
+                } catch (Throwable e) {
+                    if (producerFailure == null) {
+                        producerFailure = e;
+                    }
+                }
+                phaser.arriveAndAwaitAdvance();
+            }
+        }
+
+        private void call() {
+            int choice = random.nextInt(10);
+            int kind = choice < 4 ? LOCATION : choice < 7 ? SIGNAL : choice < 9 ? CELL : DATA_ACTIVITY;
+            long sequence = sequences[kind]++;
+            switch (kind) {
+                case LOCATION:
+                    location.setTime(sequence);
+                    location.setLatitude(55.75 + random.nextGaussian() * 1e-4);
+                    location.setLongitude(37.62 + random.nextGaussian() * 1e-4);
+                    location.setAltitude(sequence);
+                    location.setAccuracy(index);
+                    for (LocationListener listener: locationManager.getListeners()) {
+                        listener.onLocationChanged(location);
+                    }
+                    break;
+                case SIGNAL:
+                    signalStrength.setGsmSignalStrength((int) sequence);
+                    signalStrength.setGsmBitErrorRate(index);
+                    for (PhoneStateListener listener: telephonyManager.getListeners()) {
+                        listener.onSignalStrengthsChanged(signalStrength);
+                    }
+                    break;
+                case CELL:
+                    cellLocation.setLacAndCid(index, (int) sequence);
+                    for (PhoneStateListener listener: telephonyManager.getListeners()) {
+                        listener.onCellLocationChanged(cellLocation);
+                    }
+                    break;
+                default:
+                    for (PhoneStateListener listener: telephonyManager.getListeners()) {
+                        listener.onDataActivity(index);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Expected and found records of a run of the engine.
+     */
+    private final class Run {
+        final int number;
+        final long firstStep;
+        long lastStep;
+        final long[][] from = new long[producers][];
+        final long[][] to = new long[producers][];
+        final BitSet[][] seen = new BitSet[producers][KIND_NAMES.length];
+        BitSet steps;
+        long checks;
+        long foundChecks;
+        long servingCells;
+        long neighborCells;
+        long dataActivities;
+        long records;
+        long messages;
+        long driveNanos;
+
+        Run(int number, long firstStep, List<Producer> producerList) {
+            this.number = number;
+            this.firstStep = firstStep;
+            for (Producer producer: producerList) {
+                from[producer.index] = producer.sequences.clone();
+            }
+        }
+
+        void end(long lastStep, List<Producer> producerList) {
+            this.lastStep = lastStep;
+            steps = new BitSet((int) (lastStep - firstStep));
+            for (Producer producer: producerList) {
+                to[producer.index] = producer.sequences.clone();
+                for (int kind = 0; kind < DATA_ACTIVITY; kind++) {
+                    seen[producer.index][kind] = new BitSet((int) (to[producer.index][kind] - from[producer.index][kind]));
+                }
+            }
+        }
+
+        void take(int kind, int producer, long sequence) {
+            if (producer < 0 || producer >= producers
+                    || sequence < from[producer][kind] || sequence >= to[producer][kind]) {
+                fail(String.format("unexpected %s record of producer %s, sequence %s",
+                        KIND_NAMES[kind], producer, sequence));
+            }
+            int bit = (int) (sequence - from[producer][kind]);
+            if (seen[producer][kind].get(bit)) {
+                fail(String.format("duplicated %s record of producer %s, sequence %s",
+                        KIND_NAMES[kind], producer, sequence));
+            }
+            seen[producer][kind].set(bit);
+        }
+
+        void takeStep(long step) {
+            if (step < firstStep || step >= lastStep) {
+                fail(String.format("unexpected fix of the checks of step %s", step));
+            }
+            if (steps.get((int) (step - firstStep))) {
+                fail(String.format("duplicated fix of the checks of step %s", step));
+            }
+            steps.set((int) (step - firstStep));
+        }
+
+        void check() {
+            for (int producer = 0; producer < producers; producer++) {
+                for (int kind = 0; kind < DATA_ACTIVITY; kind++) {
+                    long expected = to[producer][kind] - from[producer][kind];
+                    BitSet found = seen[producer][kind];
+                    if (found.cardinality() != expected) {
+                        fail(String.format("lost %s of %s %s records of producer %s, first sequence %s",
+                                expected - found.cardinality(), expected, KIND_NAMES[kind], producer,
+                                from[producer][kind] + found.nextClearBit(0)));
+                    }
+                }
+            }
+            long expectedActivities = 0;
+            for (int producer = 0; producer < producers; producer++) {
+                expectedActivities += to[producer][DATA_ACTIVITY] - from[producer][DATA_ACTIVITY];
+            }
+            if (dataActivities != expectedActivities) {
+                fail(String.format("%s data activity messages of %s", dataActivities, expectedActivities));
+            }
+            if (steps.cardinality() != lastStep - firstStep) {
+                fail(String.format("lost %s fixes of the checks of %s, first step %s",
+                        lastStep - firstStep - steps.cardinality(), lastStep - firstStep,
+                        firstStep + steps.nextClearBit(0)));
+            }
+            if (checks < lastStep - firstStep || foundChecks != checks || servingCells != checks
+                    || neighborCells != checks * neighbors) {
+                fail(String.format("%s cell checks, %s records of them, %s serving cells, %s neighbors",
+                        checks, foundChecks, servingCells, neighborCells));
+            }
+        }
+
+        void fail(String message) {
+            throw new IllegalStateException(String.format("Run %s: %s", number, message));
+        }
+    }
+
+    /**
+     * Runs the soak and prints the report.
+     * @param out               stream of the report
+     * @throws IOException      if reading of a log is failed
+     * @throws InterruptedException if interrupted
+     */
+    public void run(PrintStream out) throws IOException, InterruptedException {
+        long steps = TimeUnit.HOURS.toMillis(hours) / STEP;
+        long stepsPerRun = TimeUnit.MINUTES.toMillis(restart) / STEP;
+        int runCount = (int) ((steps + stepsPerRun - 1) / stepsPerRun);
+        if (runCount < 2) {
+            throw new IllegalArgumentException("Soak must have at least two runs: " + hours + " h, " + restart + " min");
+        }
+        // the paths of the logger are taken from the storage when its class is loaded
+        File storage = LoggerFixture.getStorage();
+        FileLogger.setBinaryFormat(LoggerFixture.BINARY.equals(mode));
+        FileLogger.setSegmentedStore(LoggerFixture.SEGMENTS.equals(mode) ? new SegmentedLogStore() : null);
+        FileLogger.setAsyncWriter(LoggerFixture.ASYNC.equals(mode)
+                ? new AsyncLogWriter().setOverflowPolicy(OverflowPolicy.BLOCK) : null);
+        File log = LoggerFixture.SEGMENTS.equals(mode) ? FileLogger.getSegmentsDirectory()
+                : new File(storage, LoggerFixture.BINARY.equals(mode) ? "explorer.trace" : "explorer.log");
+
+        VirtualTimeExecutor executor = new VirtualTimeExecutor();
+        MonitorScheduler scheduler = new MonitorScheduler().setTickPeriod(PERIOD).setExecutor(executor).setClock(executor);
+        EventBus eventBus = new EventBus();
+        // the monitors publish their messages on the bus too, so the queued subscribers get more than the records
+        final AtomicLong published = new AtomicLong();
+        EventBus.Subscription publishedCounter = eventBus.subscribe("Published", new SampleSink() {
+            @Override
+            public void log(Sample sample) {
+                published.incrementAndGet();
+            }
+        });
+        List<EventBus.Subscription> subscriptions = new ArrayList<EventBus.Subscription>();
+        subscriptions.add(eventBus.subscribe("CoverageIndex", new CoverageIndex(),
+                SUBSCRIBER_CAPACITY, OverflowPolicy.DROP_OLDEST));
+        subscriptions.add(eventBus.subscribe("TowerEstimator", new TowerEstimator(),
+                SUBSCRIBER_CAPACITY, OverflowPolicy.DROP_OLDEST));
+        List<NeighboringCellInfo> neighboringCells = new ArrayList<NeighboringCellInfo>();
+        for (int i = 0; i < neighbors; i++) {
+            neighboringCells.add(new NeighboringCellInfo(10 + i, 1000 + i));
+        }
+        telephonyManager.setNeighboringCellInfo(neighboringCells);
+        GsmCellLocation servingCell = new GsmCellLocation();
+        servingCell.setLacAndCid(-1, -1);
+        telephonyManager.setCellLocation(servingCell);
+        CollectionEngine engine = new CollectionEngine().setScheduler(scheduler).setEventBus(eventBus)
+                .addMonitor(new LocationMonitor().setLocationManager(locationManager)
+                        .setProvider(LocationManager.GPS_PROVIDER).setScheduler(scheduler).setPeriod(PERIOD)
+                        .setEventBus(eventBus))
+                .addMonitor(new CellMonitor().setTelephonyManager(telephonyManager).setScheduler(scheduler)
+                        .setPeriod(PERIOD).setEventBus(eventBus))
+                .addMonitor(new MetricsMonitor().setScheduler(scheduler).setPeriod(METRICS_PERIOD));
+        MetricsRegistry.Histogram checkLatency = MetricsRegistry.getInstance().histogram("CellMonitor.check");
+
+        phaser = new Phaser(producers + 1);
+        List<Producer> producerList = new ArrayList<Producer>();
+        for (int i = 0; i < producers; i++) {
+            Producer producer = new Producer(i);
+            producerList.add(producer);
+            Thread thread = new Thread(producer, "SoakHarness-producer-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        out.println(String.format("Soak: %s producers, %s callbacks/s each, %s h in runs of %s min, %s logger",
+                producers, rate, hours, restart, mode));
+        long[] heap = new long[runCount];
+        int stoppedThreads = 0;
+        int startedThreads = 0;
+        long totalRecords = 0;
+        long totalNanos = 0;
+        double ceiling = Double.MAX_VALUE;
+        long step = 0;
+        for (int number = 0; number < runCount; number++) {
+            Run run = new Run(number + 1, step, producerList);
+            long firstChecks = checkLatency.getCount();
+            engine.start();
+            checkListeners(run, 1);
+            long lastStep = Math.min(steps, step + stepsPerRun);
+            for (; step < lastStep; step++) {
+                run.driveNanos += drive(executor, step);
+            }
+            int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+            engine.stop();
+            run.end(lastStep, producerList);
+            run.checks = checkLatency.getCount() - firstChecks;
+            checkListeners(run, 0);
+            if (executor.getPendingCount() != 0) {
+                run.fail(String.format("%s tasks are left with the executor", executor.getPendingCount()));
+            }
+            read(run, SessionExporter.open(log));
+            LoggerFixture.delete(storage, false);
+            run.check();
+
+            heap[number] = usedHeap();
+            int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+            if (number == 0) {
+                startedThreads = threads;
+                stoppedThreads = threadsAfter;
+            } else if (threads > startedThreads + THREAD_SLACK || threadsAfter > stoppedThreads + THREAD_SLACK) {
+                run.fail(String.format("threads grow: %s started, %s stopped against %s and %s of the first run",
+                        threads, threadsAfter, startedThreads, stoppedThreads));
+            }
+            for (Thread thread: Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().startsWith("MonitorScheduler") || thread.getName().startsWith("FileLogger")) {
+                    run.fail(String.format("thread %s is left after stop", thread.getName()));
+                }
+            }
+            double throughput = run.records * 1e9 / run.driveNanos;
+            if (number > 0) {
+                ceiling = Math.min(ceiling, throughput);
+            }
+            totalRecords += run.records;
+            totalNanos += run.driveNanos;
+            out.println(String.format("Run %s: %s records, %s messages, %s cell checks in %.2f s, %.0f records/s, "
+                            + "heap %.1f MB, threads %s started, %s stopped",
+                    run.number, run.records, run.messages, run.checks, run.driveNanos / 1e9, throughput,
+                    (double) heap[number] / MEGABYTE, threads, threadsAfter));
+        }
+
+        isDone = true;
+        phaser.arriveAndDeregister();
+        long delivered = 0;
+        eventBus.unsubscribe(publishedCounter);
+        if (published.get() < totalRecords) {
+            throw new IllegalStateException(String.format("%s samples published of %s records",
+                    published.get(), totalRecords));
+        }
+        for (EventBus.Subscription subscription: subscriptions) {
+            eventBus.unsubscribe(subscription);
+            if (subscription.getDeliveredCount() + subscription.getDroppedCount() != published.get()) {
+                throw new IllegalStateException(String.format("%s: %s delivered and %s dropped of %s samples",
+                        subscription.getName(), subscription.getDeliveredCount(), subscription.getDroppedCount(),
+                        published.get()));
+            }
+            delivered += subscription.getDeliveredCount();
+        }
+
+        long firstHalf = 0;
+        long secondHalf = 0;
+        for (int number = 0; number < runCount; number++) {
+            if (number < runCount / 2) {
+                firstHalf = Math.max(firstHalf, heap[number]);
+            } else {
+                secondHalf = Math.max(secondHalf, heap[number]);
+            }
+        }
+        if (secondHalf > firstHalf + (long) heapGrowth * MEGABYTE) {
+            throw new IllegalStateException(String.format("Heap grows: %.1f MB in the second half against %.1f MB",
+                    (double) secondHalf / MEGABYTE, (double) firstHalf / MEGABYTE));
+        }
+        out.println(String.format("Records: %s, none lost or duplicated, %s delivered to the queued subscribers",
+                totalRecords, delivered));
+        out.println(String.format("Heap: %.1f MB at most in the first half, %.1f MB in the second",
+                (double) firstHalf / MEGABYTE, (double) secondHalf / MEGABYTE));
+        out.println(String.format("Threads: %s while started, %s while stopped",
+                startedThreads, stoppedThreads));
+        out.println(String.format("Throughput: %.0f records/s sustained by every warm run, %.0f records/s on the whole",
+                ceiling, totalRecords * 1e9 / totalNanos));
+    }
+
+    /**
+     * Makes one step: the fix of the checks changes, the producers make their callbacks and the scheduler
+     * runs the checks of the step meanwhile.
+     * @return                  wall time of the step, in nanoseconds
+     */
+    private long drive(VirtualTimeExecutor executor, long step) {
+        Location fix = new Location(LocationManager.GPS_PROVIDER);
+        fix.setTime(step);
+        fix.setLatitude(55.75);
+        fix.setLongitude(37.62);
+        fix.setAltitude(step);
+        fix.setAccuracy(-1);
+        locationManager.setLastKnownLocation(fix);
+        long start = System.nanoTime();
+        phaser.arriveAndAwaitAdvance();
+        executor.advance(TimeUnit.MILLISECONDS.toNanos(STEP));
+        phaser.arriveAndAwaitAdvance();
+        if (producerFailure != null) {
+            throw new IllegalStateException("Producer failed at step " + step, producerFailure);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private void checkListeners(Run run, int expected) {
+        if (locationManager.getListeners().size() != expected || telephonyManager.getListeners().size() != expected) {
+            run.fail(String.format("%s location and %s phone state listeners instead of %s",
+                    locationManager.getListeners().size(), telephonyManager.getListeners().size(), expected));
+        }
+    }
+
+    private void read(Run run, RecordSource source) throws IOException {
+        try {
+            while (source.next()) {
+                Sample sample = source.getSample();
+                if (sample == null) {
+                    if (FileLogger.ERROR.equals(source.getLevel())) {
+                        run.fail("error is logged - " + source.getMessage());
+                    }
+                    if (source.getMessage().contains(DATA_ACTIVITY_MESSAGE)) {
+                        run.dataActivities++;
+                    }
+                    run.messages++;
+                    continue;
+                }
+                run.records++;
+                if (sample instanceof LocationSample) {
+                    LocationSample fix = (LocationSample) sample;
+                    if (fix.getOrigin() == Sample.LISTENER) {
+                        run.take(LOCATION, (int) fix.getAccuracy(), (long) fix.getAltitude());
+                    } else {
+                        run.takeStep((long) fix.getAltitude());
+                    }
+                } else if (sample instanceof SignalSample) {
+                    SignalSample signal = (SignalSample) sample;
+                    run.take(SIGNAL, signal.getGsmBitErrorRate(), signal.getGsmSignalStrength());
+                } else if (sample instanceof CellSample) {
+                    CellSample cell = (CellSample) sample;
+                    if (cell.getKind() == CellSample.GSM && cell.getOrigin() == Sample.LISTENER) {
+                        run.take(CELL, cell.getLac(), cell.getCid());
+                    } else if (cell.getKind() == CellSample.GSM) {
+                        run.servingCells++;
+                    } else if (cell.getKind() == CellSample.NEIGHBOR_COUNT) {
+                        run.foundChecks++;
+                    } else if (cell.getKind() == CellSample.NEIGHBOR) {
+                        run.neighborCells++;
+                    }
+                }
+            }
+        } finally {
+            source.close();
+        }
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 2; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Sets count of producer threads and returns self object for easy init.
+     * @param producers         count
+     * @return                  self object
+     */
+    public SoakHarness setProducers(int producers) {
+        this.producers = producers;
+        return this;
+    }
+
+    /**
+     * Sets rate of the callbacks of every producer and returns self object for easy init.
+     * @param rate              callbacks in a virtual second
+     * @return                  self object
+     */
+    public SoakHarness setRate(int rate) {
+        this.rate = rate;
+        return this;
+    }
+
+    /**
+     * Sets virtual duration of the soak and of a run of the engine and returns self object for easy init.
+     * @param hours             duration of the soak, in hours
+     * @param restart           duration of a run, in minutes
+     * @return                  self object
+     */
+    public SoakHarness setDuration(int hours, int restart) {
+        this.hours = hours;
+        this.restart = restart;
+        return this;
+    }
+
+    /**
+     * Sets logger mode and returns self object for easy init.
+     * @param mode              text, binary, segments or async
+     * @return                  self object
+     */
+    public SoakHarness setMode(String mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * Sets count of neighboring cells and returns self object for easy init.
+     * @param neighbors         count
+     * @return                  self object
+     */
+    public SoakHarness setNeighbors(int neighbors) {
+        this.neighbors = neighbors;
+        return this;
+    }
+
+    /**
+     * Sets seed of the callbacks and returns self object for easy init.
+     * @param seed              seed
+     * @return                  self object
+     */
+    public SoakHarness setSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Sets largest growth of the used heap and returns self object for easy init.
+     * @param heapGrowth        growth, in megabytes
+     * @return                  self object
+     */
+    public SoakHarness setHeapGrowth(int heapGrowth) {
+        this.heapGrowth = heapGrowth;
+        return this;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        SoakHarness harness = new SoakHarness();
+        int hours = harness.hours;
+        int restart = harness.restart;
+        for (int i = 0; i < args.length; i++) {
+            if ("-producers".equals(args[i]) && i + 1 < args.length) {
+                harness.setProducers(Integer.parseInt(args[++i]));
+            } else if ("-rate".equals(args[i]) && i + 1 < args.length) {
+                harness.setRate(Integer.parseInt(args[++i]));
+            } else if ("-hours".equals(args[i]) && i + 1 < args.length) {
+                hours = Integer.parseInt(args[++i]);
+            } else if ("-restart".equals(args[i]) && i + 1 < args.length) {
+                restart = Integer.parseInt(args[++i]);
+            } else if ("-mode".equals(args[i]) && i + 1 < args.length) {
+                harness.setMode(args[++i]);
+            } else if ("-neighbors".equals(args[i]) && i + 1 < args.length) {
+                harness.setNeighbors(Integer.parseInt(args[++i]));
+            } else if ("-seed".equals(args[i]) && i + 1 < args.length) {
+                harness.setSeed(Long.parseLong(args[++i]));
+            } else if ("-heap".equals(args[i]) && i + 1 < args.length) {
+                harness.setHeapGrowth(Integer.parseInt(args[++i]));
+            } else {
+                System.err.println("Usage: SoakHarness [-producers N] [-rate CALLBACKS] [-hours H] [-restart MINUTES] "
+                        + "[-mode text|binary|segments|async] [-neighbors N] [-seed S] [-heap MB]");
+                System.exit(1);
+            }
+        }
+        try {
+            harness.setDuration(hours, restart).run(System.out);
+        } catch (IllegalStateException e) {
+            // the drain threads of the bus are left on failure, they must not keep the JVM
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.telephony.NeighboringCellInfo;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocations of the periodical checks in the steady state, when the cells and the fix do not change,
+ * alone and in the passes of the scheduler.
+ * Run with the allocation profiler, <code>ant run -Djmh.args="-prof gc SteadyStateBenchmark"</code>:
+ * <code>gc.alloc.rate.norm</code> of every benchmark must be 0 B/op. Escape analysis is off since
+ * the Dalvik VM has none, so every allocation of the checks is counted. The managers are stubs which return
+ * the same objects, the lists and the locations allocated by Android itself are not counted.
+ * {@link SteadyStateAllocationTest} asserts the same by the allocation counter of the thread on every build.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-XX:-DoEscapeAnalysis")
+public class SteadyStateBenchmark {
+
+    private static final int NEIGHBORS = 6;
+
+    private FileLogger logger;
+
+    private CellMonitor cellMonitor;
+
+    private LocationMonitor locationMonitor;
+
+    private MonitorScheduler scheduler;
+
+    private final TelephonyManager telephonyManager = new TelephonyManager();
+
+    private final LocationManager locationManager = new LocationManager();
+
+    @Setup(Level.Trial)
+    public void initManagers() {
+        List<NeighboringCellInfo> neighbors = new ArrayList<NeighboringCellInfo>();
+        for (int i = 0; i < NEIGHBORS; i++) {
+            neighbors.add(new NeighboringCellInfo(10 + i, 10437 + i, 7724, 262 + i, TelephonyManager.NETWORK_TYPE_UMTS));
+        }
+        telephonyManager.setNeighboringCellInfo(neighbors);
+        GsmCellLocation cellLocation = new GsmCellLocation();
+        cellLocation.setLacAndCid(7724, 10436);
+        telephonyManager.setCellLocation(cellLocation);
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setTime(System.currentTimeMillis());
+        location.setLatitude(55.7512);
+        location.setLongitude(37.6184);
+        location.setAccuracy(10);
+        locationManager.setLastKnownLocation(location);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        logger = LoggerFixture.open(LoggerFixture.ASYNC);
+        // the scheduler is not started, checks and passes are run by the benchmarks
+        scheduler = new MonitorScheduler();
+        cellMonitor = new CellMonitor()
+                .setTelephonyManager(telephonyManager)
+                .setScheduler(scheduler)
+                .setSampler(new AdaptiveSampler())
+                .setChangeDetector(new CellChangeDetector().setKeyframeInterval(Long.MAX_VALUE))
+                .setEventBus(new EventBus())
+                .setPeriod(500);
+        locationMonitor = new LocationMonitor()
+                .setLocationManager(locationManager)
+                .setProvider(LocationManager.GPS_PROVIDER)
+                .setScheduler(scheduler)
+                .setSampler(new AdaptiveSampler())
+                .setFusion(new LocationFusion())
+                .setEventBus(new EventBus())
+                .setPeriod(500);
+        cellMonitor.start();
+        locationMonitor.start();
+        // the first checks report the cells and the fix, the next ones see no changes
+        cellMonitor.run();
+        locationMonitor.run();
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        cellMonitor.stop();
+        locationMonitor.stop();
+        LoggerFixture.close(logger);
+    }
+
+    @Benchmark
+    public void cellCheck() {
+        cellMonitor.run();
+    }
+
+    @Benchmark
+    public void locationCheck() {
+        locationMonitor.run();
+    }
+
+    /**
+     * Pass of the runner thread over the due checks, every call takes the next due tick.
+     */
+    @Benchmark
+    public void schedulerPass() {
+        scheduler.pass();
+    }
+}
@@ -0,0 +1,123 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload of a store of eight segments of generated records to the {@link SyncTestServer} from the start,
+ * with a share of failed batches and of lost answers and with the latency of a mobile network.
+ * Every upload is checked against the segments record by record. The counters are the totals of the
+ * iterations: the requests, the injected faults and the bytes which the server received twice,
+ * the last ones stay under a batch per lost answer since the offset is acknowledged after every batch.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SyncBenchmark {
+
+    private static final int SEGMENT_SIZE = 1024 * 1024;
+
+    private static final int SEGMENTS = 8;
+
+    private static final int NEIGHBORS = 6;
+
+    @Param({"0", "0.1"})
+    public double faultRate;
+
+    @Param({"0", "50"})
+    public long latency;
+
+    private File directory;
+
+    private SyncTestServer server;
+
+    /**
+     * Counters of the server.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Requests {
+        public long requests;
+        public long faults;
+        public long duplicateBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void fill() throws IOException {
+        directory = LoggerFixture.createTempDirectory("sync");
+        SegmentedLogStore store = new SegmentedLogStore().setSegmentSize(SEGMENT_SIZE);
+        store.open(directory);
+        SegmentedRecordWriter writer = new SegmentedRecordWriter(store);
+        try {
+            long time = System.currentTimeMillis();
+            for (int check = 0; SegmentedLogStore.listSegments(directory).length < SEGMENTS; check++) {
+                time += 500;
+                writer.writeSample(new LocationSample(time, "gps", Sample.MONITOR,
+                        55.7512 + check * 1e-5, 37.6184 - check * 1e-5, 150, 10));
+                writer.writeSample(CellSample.neighborCount(time, NEIGHBORS));
+                for (int i = 0; i < NEIGHBORS; i++) {
+                    writer.writeSample(CellSample.neighbor(time, 10437 + i, 7724, 3, 262 + i, 10 + (check + i) % 8));
+                }
+                writer.writeSample(CellSample.gsm(time, Sample.MONITOR, 10436, 7724));
+            }
+        } finally {
+            writer.close();
+        }
+        server = new SyncTestServer()
+                .setFailureRate(faultRate)
+                .setLostAnswerRate(faultRate)
+                .setLatency(latency);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        server.stop();
+        LoggerFixture.delete(directory, true);
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        server.reset();
+        new File(directory, SyncEngine.OFFSET_FILE).delete();
+    }
+
+    @Benchmark
+    public long upload(Requests requests) throws IOException {
+        SyncEngine engine = new SyncEngine()
+                .setDirectory(directory)
+                .setUrl(server.getUrl())
+                .setDeviceId("benchmark");
+        // a failed pass is resumed at once, the delay of the retry is up to the thread of the engine
+        for (int failures = 0; !engine.sync(); failures++) {
+            if (failures == 1000) {
+                throw new IllegalStateException(engine.getLastError());
+            }
+        }
+        requests.requests += server.getRequestCount();
+        requests.faults += server.getFaultCount();
+        requests.duplicateBytes += server.getDuplicateBytes();
+        return server.verify(directory);
+    }
+}
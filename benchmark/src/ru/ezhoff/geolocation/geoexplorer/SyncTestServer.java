@@ -0,0 +1,226 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local stand-in of the collection server of {@link SyncEngine}, on the loopback interface.
+ * Keeps copies of the segments in memory by the protocol of the engine and injects faults: a share
+ * of batches is failed before they are stored, a share is stored and then its answer is lost,
+ * so the engine sends it again, and every answer is delayed by the latency.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class SyncTestServer implements HttpHandler {
+
+    private final HttpServer server;
+
+    /**
+     * The copies of the segments by sequence number, from the segment header on.
+     */
+    private final Map<Long, ByteArrayOutputStream> segments = new TreeMap<Long, ByteArrayOutputStream>();
+
+    private final Random random = new Random(17);
+
+    /**
+     * The shares of failed batches and of lost answers, from <code>0</code> to <code>1</code>.
+     */
+    private volatile double failureRate;
+    private volatile double lostAnswerRate;
+
+    /**
+     * The delay of every answer, in milliseconds.
+     */
+    private volatile long latency;
+
+    /**
+     * The counts of requests, injected faults, conflicts and bytes which were received twice.
+     */
+    private int requestCount;
+    private int faultCount;
+    private int conflictCount;
+    private long duplicateBytes;
+
+    /**
+     * Starts server on a free port.
+     * @throws IOException      if the server can not be started
+     */
+    SyncTestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/upload", this);
+        server.start();
+    }
+
+    URL getUrl() throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/upload");
+    }
+
+    SyncTestServer setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    SyncTestServer setLostAnswerRate(double lostAnswerRate) {
+        this.lostAnswerRate = lostAnswerRate;
+        return this;
+    }
+
+    SyncTestServer setLatency(long latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    synchronized int getFaultCount() {
+        return faultCount;
+    }
+
+    synchronized int getConflictCount() {
+        return conflictCount;
+    }
+
+    synchronized long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+
+    /**
+     * Drops copies of the segments and the counts.
+     */
+    synchronized void reset() {
+        segments.clear();
+        requestCount = 0;
+        faultCount = 0;
+        conflictCount = 0;
+        duplicateBytes = 0;
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = read(new GZIPInputStream(exchange.getRequestBody()));
+            long sequence = Long.parseLong(exchange.getRequestHeaders().getFirst(SyncEngine.SEGMENT_HEADER));
+            int offset = Integer.parseInt(exchange.getRequestHeaders().getFirst(SyncEngine.OFFSET_HEADER));
+            int end = Integer.parseInt(exchange.getRequestHeaders().getFirst(SyncEngine.END_HEADER));
+            if (latency > 0) {
+                Thread.sleep(latency);
+            }
+            int code;
+            int acknowledged;
+            boolean isAnswerLost;
+            synchronized (this) {
+                requestCount++;
+                if (random.nextDouble() < failureRate) {
+                    faultCount++;
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                isAnswerLost = random.nextDouble() < lostAnswerRate;
+                ByteArrayOutputStream segment = segments.get(sequence);
+                if (segment == null) {
+                    segment = new ByteArrayOutputStream();
+                    segment.write(new byte[SegmentedLogStore.HEADER_SIZE]);
+                    segments.put(sequence, segment);
+                }
+                int stored = segment.size();
+                if (end - offset != body.length || offset > stored) {
+                    conflictCount++;
+                    code = 409;
+                } else {
+                    // a range received again is acknowledged, only its new part is stored
+                    duplicateBytes += Math.min(end, stored) - offset;
+                    if (end > stored) {
+                        segment.write(body, stored - offset, end - stored);
+                    }
+                    code = 200;
+                }
+                acknowledged = segment.size();
+                if (isAnswerLost) {
+                    faultCount++;
+                }
+            }
+            if (isAnswerLost) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set(SyncEngine.ACKNOWLEDGED_HEADER, sequence + ":" + acknowledged);
+            exchange.sendResponseHeaders(code, -1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Checks copies against the segments of the directory, record by record.
+     * @param directory         directory of segments
+     * @return                  count of checked bytes
+     * @throws IOException      if a copy differs from its segment
+     */
+    synchronized long verify(File directory) throws IOException {
+        long checked = 0;
+        CRC32 crc = new CRC32();
+        for (File file: SegmentedLogStore.listSegments(directory)) {
+            long sequence = SegmentedLogStore.parseSequence(file);
+            RandomAccessFile segmentFile = new RandomAccessFile(file, "r");
+            byte[] expected;
+            try {
+                expected = new byte[(int) segmentFile.length()];
+                segmentFile.readFully(expected);
+            } finally {
+                segmentFile.close();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(expected);
+            buffer.position(SegmentedLogStore.HEADER_SIZE);
+            int length;
+            while ((length = SegmentedLogStore.nextRecord(buffer, crc)) >= 0) {
+                buffer.position(buffer.position() + length);
+            }
+            int end = buffer.position();
+            ByteArrayOutputStream copy = segments.get(sequence);
+            byte[] actual = copy == null ? new byte[SegmentedLogStore.HEADER_SIZE] : copy.toByteArray();
+            if (actual.length != end || !Arrays.equals(
+                    Arrays.copyOfRange(actual, SegmentedLogStore.HEADER_SIZE, end),
+                    Arrays.copyOfRange(expected, SegmentedLogStore.HEADER_SIZE, end))) {
+                throw new IOException("Copy of segment " + sequence + " differs: " + actual.length + " of " + end);
+            }
+            checked += end - SegmentedLogStore.HEADER_SIZE;
+        }
+        return checked;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, count);
+        }
+        return out.toByteArray();
+    }
+}
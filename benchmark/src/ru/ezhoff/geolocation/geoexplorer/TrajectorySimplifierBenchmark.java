@@ -0,0 +1,88 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simplification of ten thousand fixes a second apart, parked, walking and driving in town, with errors of 2 and
+ * 4 meters and the tolerance of 10 meters. The score is the time per fix, the counters are the passed fixes
+ * and dwell records of all invocations against the taken fixes, so their ratio is the share of the trace
+ * which is kept. The errors are independent, which is the worst case for a parked trace: every fix farther
+ * than the tolerance from the place is passed, with errors of 4 meters one in twenty. A drive keeps a fix
+ * off the position dead-reckoned from the passed ones, and every fix while the velocity is not known.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrajectorySimplifierBenchmark {
+
+    private static final int SIZE = 40;
+
+    private static final double SPACING = 100;
+
+    private static final int FIXES = 10000;
+
+    @Param({"0", "1.4", "12"})
+    public double speed;
+
+    @Param({"2", "4"})
+    public double noise;
+
+    private LocationSample[] fixes;
+
+    private TrajectorySimplifier simplifier;
+
+    private Counts counts;
+
+    /**
+     * Counts of the simplifier.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counts {
+        public long fixes;
+        public long records;
+    }
+
+    @Setup(Level.Trial)
+    public void drive() {
+        fixes = RoadFixture.drive(SIZE, SPACING, FIXES, speed, noise, 17, new long[FIXES]);
+        simplifier = new TrajectorySimplifier().setTolerance(10).setSink(new SampleSink() {
+            @Override
+            public void log(Sample sample) {
+                counts.records++;
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIXES)
+    public void simplify(Counts counts) {
+        this.counts = counts;
+        for (LocationSample fix: fixes) {
+            simplifier.log(fix);
+        }
+        simplifier.flush();
+        counts.fixes += FIXES;
+    }
+}
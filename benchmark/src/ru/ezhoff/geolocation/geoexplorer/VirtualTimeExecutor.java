@@ -0,0 +1,200 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor of delayed tasks in virtual time, together with its clock, for a {@link MonitorScheduler}.
+ * Time stands still until {@link #advance(long)}, which runs the tasks due by the new time on the calling thread
+ * in order of their times, moving the clock to the time of every task. So hours of periodical checks take
+ * as long as the checks themselves, and the same run of the scheduler gives the same ticks.
+ * Only one-shot delayed tasks are supported, which is all the scheduler needs, and the executor is never
+ * shut down.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class VirtualTimeExecutor extends AbstractExecutorService implements ScheduledExecutorService, Clock {
+
+    /**
+     * The pending tasks by time and order of scheduling.
+     */
+    private final PriorityQueue<Task> tasks = new PriorityQueue<Task>();
+
+    /**
+     * The current time, in nanoseconds.
+     */
+    private long now;
+
+    /**
+     * The count of scheduled tasks, the order of the tasks of the same time.
+     */
+    private long sequence;
+
+    /**
+     * Task waiting for its time.
+     */
+    private final class Task implements ScheduledFuture<Object> {
+        final Runnable runnable;
+        final long time;
+        final long order;
+        boolean isCancelled;
+        boolean isDone;
+
+        Task(Runnable runnable, long time, long order) {
+            this.runnable = runnable;
+            this.time = time;
+            this.order = order;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed delayed) {
+            Task task = (Task) delayed;
+            if (time != task.time) {
+                return time < task.time ? -1 : 1;
+            }
+            return order < task.order ? -1 : order == task.order ? 0 : 1;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            synchronized (VirtualTimeExecutor.this) {
+                if (isDone) {
+                    return false;
+                }
+                isDone = true;
+                isCancelled = true;
+                tasks.remove(this);
+                return true;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (VirtualTimeExecutor.this) {
+                return isCancelled;
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            synchronized (VirtualTimeExecutor.this) {
+                return isDone;
+            }
+        }
+
+        @Override
+        public Object get() {
+            throw new UnsupportedOperationException("Virtual tasks are not awaited");
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException("Virtual tasks are not awaited");
+        }
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return now;
+    }
+
+    /**
+     * Moves time forward and runs the tasks due by it, including the ones they schedule.
+     * @param nanos             duration, in nanoseconds
+     * @return                  count of run tasks
+     */
+    public int advance(long nanos) {
+        long target;
+        synchronized (this) {
+            target = now + nanos;
+        }
+        int count = 0;
+        while (true) {
+            Task task;
+            synchronized (this) {
+                task = tasks.peek();
+                if (task == null || task.time > target) {
+                    now = target;
+                    return count;
+                }
+                tasks.poll();
+                now = task.time;
+                task.isDone = true;
+            }
+            task.runnable.run();
+            count++;
+        }
+    }
+
+    /**
+     * Returns count of pending tasks.
+     * @return                  count
+     */
+    public synchronized int getPendingCount() {
+        return tasks.size();
+    }
+
+    @Override
+    public synchronized ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        Task task = new Task(command, now + Math.max(0, unit.toNanos(delay)), sequence++);
+        tasks.add(task);
+        return task;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException("Only delayed runnables are supported");
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        throw new UnsupportedOperationException("Only delayed runnables are supported");
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException("Only delayed runnables are supported");
+    }
+
+    @Override
+    public void shutdown() {
+        throw new UnsupportedOperationException("Virtual executor is never shut down");
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        throw new UnsupportedOperationException("Virtual executor is never shut down");
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return false;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return false;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return false;
+    }
+}
@@ -0,0 +1,79 @@
+package android.location;
+
+public class Location {
+
+    private final String provider;
+    private long time;
+    private double latitude;
+    private double longitude;
+    private double altitude;
+    private float accuracy;
+
+    public Location(String provider) {
+        this.provider = provider;
+    }
+
+    public String getProvider() {
+        return provider;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public void setLatitude(double latitude) {
+        this.latitude = latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public void setLongitude(double longitude) {
+        this.longitude = longitude;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public void setAltitude(double altitude) {
+        this.altitude = altitude;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public void setAccuracy(float accuracy) {
+        this.accuracy = accuracy;
+    }
+
+    /**
+     * Returns the equirectangular approximation of the distance, which is close enough for short moves.
+     */
+    public float distanceTo(Location dest) {
+        double x = Math.toRadians(dest.longitude - longitude) * Math.cos(Math.toRadians((latitude + dest.latitude) / 2));
+        double y = Math.toRadians(dest.latitude - latitude);
+        return (float) (Math.sqrt(x * x + y * y) * 6371000);
+    }
+
+    /**
+     * Computes the same approximation as {@link #distanceTo(Location)}.
+     */
+    public static void distanceBetween(double startLatitude, double startLongitude,
+                                       double endLatitude, double endLongitude, float[] results) {
+        double x = Math.toRadians(endLongitude - startLongitude)
+                * Math.cos(Math.toRadians((startLatitude + endLatitude) / 2));
+        double y = Math.toRadians(endLatitude - startLatitude);
+        results[0] = (float) (Math.sqrt(x * x + y * y) * 6371000);
+    }
+}
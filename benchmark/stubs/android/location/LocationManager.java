@@ -0,0 +1,53 @@
+package android.location;
+
+import android.os.Looper;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listeners are kept for the harness to call them, the last known location is the one set by the benchmark.
+ */
+public class LocationManager {
+
+    public static final String GPS_PROVIDER = "gps";
+    public static final String NETWORK_PROVIDER = "network";
+
+    private final List<LocationListener> listeners = new CopyOnWriteArrayList<LocationListener>();
+
+    private volatile Location lastKnownLocation;
+
+    private volatile long minTime;
+
+    public void requestLocationUpdates(String provider, long minTime, float minDistance, LocationListener listener) {
+        this.minTime = minTime;
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public void requestLocationUpdates(String provider, long minTime, float minDistance, LocationListener listener,
+                                       Looper looper) {
+        requestLocationUpdates(provider, minTime, minDistance, listener);
+    }
+
+    public void removeUpdates(LocationListener listener) {
+        listeners.remove(listener);
+    }
+
+    public long getMinTime() {
+        return minTime;
+    }
+
+    public List<LocationListener> getListeners() {
+        return listeners;
+    }
+
+    public Location getLastKnownLocation(String provider) {
+        return lastKnownLocation;
+    }
+
+    public void setLastKnownLocation(Location lastKnownLocation) {
+        this.lastKnownLocation = lastKnownLocation;
+    }
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+import java.io.File;
+
+/**
+ * The external storage is the directory of the <code>geoexplorer.storage</code> system property,
+ * or the temporary directory.
+ */
+public class Environment {
+
+    public static File getExternalStorageDirectory() {
+        return new File(System.getProperty("geoexplorer.storage", System.getProperty("java.io.tmpdir")));
+    }
+}
@@ -0,0 +1,13 @@
+package android.os;
+
+/**
+ * There is no looper thread, the listeners are called by the benchmark.
+ */
+public class Looper {
+
+    private static final Looper MAIN_LOOPER = new Looper();
+
+    public static Looper getMainLooper() {
+        return MAIN_LOOPER;
+    }
+}
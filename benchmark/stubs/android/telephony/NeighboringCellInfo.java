@@ -0,0 +1,52 @@
+package android.telephony;
+
+public class NeighboringCellInfo {
+
+    public static final int UNKNOWN_RSSI = 99;
+    public static final int UNKNOWN_CID = -1;
+
+    private final int rssi;
+    private final int cid;
+    private final int lac;
+    private final int psc;
+    private final int networkType;
+
+    public NeighboringCellInfo(int rssi, int cid) {
+        this(rssi, cid, -1, -1, TelephonyManager.NETWORK_TYPE_GPRS);
+    }
+
+    /**
+     * Stub only constructor, the platform one parses a location string.
+     */
+    public NeighboringCellInfo(int rssi, int cid, int lac, int psc, int networkType) {
+        this.rssi = rssi;
+        this.cid = cid;
+        this.lac = lac;
+        this.psc = psc;
+        this.networkType = networkType;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public int getCid() {
+        return cid;
+    }
+
+    public int getLac() {
+        return lac;
+    }
+
+    public int getPsc() {
+        return psc;
+    }
+
+    public int getNetworkType() {
+        return networkType;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+}
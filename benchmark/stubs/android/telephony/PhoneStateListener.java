@@ -0,0 +1,45 @@
+package android.telephony;
+
+public class PhoneStateListener {
+
+    public static final int LISTEN_NONE = 0;
+    public static final int LISTEN_SERVICE_STATE = 0x00000001;
+    public static final int LISTEN_SIGNAL_STRENGTH = 0x00000002;
+    public static final int LISTEN_MESSAGE_WAITING_INDICATOR = 0x00000004;
+    public static final int LISTEN_CALL_FORWARDING_INDICATOR = 0x00000008;
+    public static final int LISTEN_CELL_LOCATION = 0x00000010;
+    public static final int LISTEN_CALL_STATE = 0x00000020;
+    public static final int LISTEN_DATA_CONNECTION_STATE = 0x00000040;
+    public static final int LISTEN_DATA_ACTIVITY = 0x00000080;
+    public static final int LISTEN_SIGNAL_STRENGTHS = 0x00000100;
+
+    public void onServiceStateChanged(ServiceState serviceState) {
+    }
+
+    public void onSignalStrengthChanged(int asu) {
+    }
+
+    public void onMessageWaitingIndicatorChanged(boolean mwi) {
+    }
+
+    public void onCallForwardingIndicatorChanged(boolean cfi) {
+    }
+
+    public void onCellLocationChanged(CellLocation location) {
+    }
+
+    public void onCallStateChanged(int state, String incomingNumber) {
+    }
+
+    public void onDataConnectionStateChanged(int state) {
+    }
+
+    public void onDataConnectionStateChanged(int state, int networkType) {
+    }
+
+    public void onDataActivity(int direction) {
+    }
+
+    public void onSignalStrengthsChanged(SignalStrength signalStrength) {
+    }
+}
@@ -0,0 +1,30 @@
+package android.telephony;
+
+public class ServiceState {
+
+    public static final int STATE_IN_SERVICE = 0;
+
+    public String getOperatorAlphaLong() {
+        return "GeoExplorer Mobile";
+    }
+
+    public String getOperatorAlphaShort() {
+        return "GeoExplorer";
+    }
+
+    public String getOperatorNumeric() {
+        return "25001";
+    }
+
+    public int getState() {
+        return STATE_IN_SERVICE;
+    }
+
+    public boolean getRoaming() {
+        return false;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+}
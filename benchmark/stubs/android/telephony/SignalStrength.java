@@ -0,0 +1,54 @@
+package android.telephony;
+
+/**
+ * The strengths are constant unless the harness sets them.
+ */
+public class SignalStrength {
+
+    private int gsmSignalStrength = 17;
+    private int gsmBitErrorRate = 99;
+
+    public boolean isGsm() {
+        return true;
+    }
+
+    public int getGsmSignalStrength() {
+        return gsmSignalStrength;
+    }
+
+    public void setGsmSignalStrength(int gsmSignalStrength) {
+        this.gsmSignalStrength = gsmSignalStrength;
+    }
+
+    public int getGsmBitErrorRate() {
+        return gsmBitErrorRate;
+    }
+
+    public void setGsmBitErrorRate(int gsmBitErrorRate) {
+        this.gsmBitErrorRate = gsmBitErrorRate;
+    }
+
+    public int getCdmaDbm() {
+        return -1;
+    }
+
+    public int getCdmaEcio() {
+        return -1;
+    }
+
+    public int getEvdoDbm() {
+        return -1;
+    }
+
+    public int getEvdoEcio() {
+        return -1;
+    }
+
+    public int getEvdoSnr() {
+        return -1;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+}
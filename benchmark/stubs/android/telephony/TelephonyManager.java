@@ -0,0 +1,48 @@
+package android.telephony;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Listeners are kept for the harness to call them, the neighboring cells and the cell location are the ones
+ * set by the benchmark.
+ */
+public class TelephonyManager {
+
+    public static final int NETWORK_TYPE_GPRS = 1;
+    public static final int NETWORK_TYPE_UMTS = 3;
+
+    private final List<PhoneStateListener> listeners = new CopyOnWriteArrayList<PhoneStateListener>();
+
+    private volatile List<NeighboringCellInfo> neighboringCellInfo = Collections.emptyList();
+    private volatile CellLocation cellLocation;
+
+    public void listen(PhoneStateListener listener, int events) {
+        if (events == PhoneStateListener.LISTEN_NONE) {
+            listeners.remove(listener);
+        } else if (!listeners.contains(listener)) {
+            listeners.add(listener);
+        }
+    }
+
+    public List<PhoneStateListener> getListeners() {
+        return listeners;
+    }
+
+    public List<NeighboringCellInfo> getNeighboringCellInfo() {
+        return neighboringCellInfo;
+    }
+
+    public void setNeighboringCellInfo(List<NeighboringCellInfo> neighboringCellInfo) {
+        this.neighboringCellInfo = neighboringCellInfo;
+    }
+
+    public CellLocation getCellLocation() {
+        return cellLocation;
+    }
+
+    public void setCellLocation(CellLocation cellLocation) {
+        this.cellLocation = cellLocation;
+    }
+}
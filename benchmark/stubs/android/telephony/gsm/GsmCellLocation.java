@@ -0,0 +1,26 @@
+package android.telephony.gsm;
+
+import android.telephony.CellLocation;
+
+public class GsmCellLocation extends CellLocation {
+
+    private int lac = -1;
+    private int cid = -1;
+
+    public void setLacAndCid(int lac, int cid) {
+        this.lac = lac;
+        this.cid = cid;
+    }
+
+    public int getLac() {
+        return lac;
+    }
+
+    public int getCid() {
+        return cid;
+    }
+
+    public int getPsc() {
+        return -1;
+    }
+}
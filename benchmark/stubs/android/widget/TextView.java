@@ -0,0 +1,7 @@
+package android.widget;
+
+public class TextView {
+
+    public void append(CharSequence text) {
+    }
+}
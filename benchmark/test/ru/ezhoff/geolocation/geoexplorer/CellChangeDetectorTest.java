@@ -0,0 +1,216 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.telephony.gsm.GsmCellLocation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the keyframes, the hysteresis and the lost cells of {@link CellChangeDetector}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CellChangeDetectorTest {
+
+    private static final long KEYFRAME_INTERVAL = 60 * 1000;
+
+    private CellChangeDetector detector;
+
+    /**
+     * The passed samples of the current check.
+     */
+    private List<CellSample> passed;
+
+    private final CellSnapshot serving = new CellSnapshot();
+
+    @Before
+    public void setUp() {
+        passed = new ArrayList<CellSample>();
+        detector = new CellChangeDetector()
+                .setHysteresis(3)
+                .setKeyframeInterval(KEYFRAME_INTERVAL)
+                .setSink(new SampleSink() {
+                    @Override
+                    public void log(Sample sample) {
+                        passed.add((CellSample) sample);
+                    }
+                });
+        setServing(1001, 10);
+    }
+
+    @Test
+    public void passesFirstCheckAsKeyframe() {
+        check(0, 10, 20);
+        assertEquals("count 2, neighbor 1 10, neighbor 2 20, gsm 1001", passed());
+        assertTrue(detector.isKeyframe());
+        // there is no previous snapshot, every cell is new
+        assertEquals(4, detector.getChangeCount());
+    }
+
+    @Test
+    public void suppressesUnchangedCheck() {
+        check(0, 10, 20);
+        check(1000, 10, 20);
+        assertEquals("", passed());
+        assertEquals(0, detector.getChangeCount());
+        assertEquals(4, detector.getPassedCount());
+        assertEquals(4, detector.getSuppressedCount());
+    }
+
+    @Test
+    public void passesOnlyChangesOfHysteresis() {
+        check(0, 10, 20);
+        check(1000, 12, 17);
+        assertEquals("neighbor 2 17", passed());
+        assertEquals(1, detector.getChangeCount());
+    }
+
+    @Test
+    public void comparesWithReportedValueNotLastSeen() {
+        check(0, 10, 20);
+        // every step is under the hysteresis, their sum is not
+        check(1000, 12, 20);
+        check(2000, 14, 20);
+        assertEquals("neighbor 1 14", passed());
+        check(3000, 16, 20);
+        assertEquals("", passed());
+    }
+
+    @Test
+    public void passesNewAndLostCells() {
+        check(0, 10, 20);
+        check(1000, 10, 20, 30);
+        assertEquals("count 3, neighbor 3 30", passed());
+        check(2000, 10, 20, 30);
+        check(3000, -1, 20, 30);
+        assertEquals("count 2, lost 1", passed());
+        check(4000, -1, 20, 30);
+        assertEquals("", passed());
+    }
+
+    @Test
+    public void passesServingCellChange() {
+        check(0, 10);
+        setServing(1002, 10);
+        check(1000, 10);
+        assertEquals("gsm 1002", passed());
+        check(2000, 10);
+        assertEquals("", passed());
+    }
+
+    @Test
+    public void passesFullSnapshotOnKeyframeInterval() {
+        check(0, 10, 20);
+        check(KEYFRAME_INTERVAL - 1, 10, 20);
+        assertEquals("", passed());
+        check(KEYFRAME_INTERVAL, 10, 20);
+        assertEquals("count 2, neighbor 1 10, neighbor 2 20, gsm 1001", passed());
+        assertTrue(detector.isKeyframe());
+        assertEquals(0, detector.getChangeCount());
+    }
+
+    @Test
+    public void countsChangesOfKeyframeAgainstPreviousSnapshot() {
+        check(0, 10, 20);
+        check(KEYFRAME_INTERVAL, 10, 25);
+        assertEquals("count 2, neighbor 1 10, neighbor 2 25, gsm 1001", passed());
+        assertEquals(1, detector.getChangeCount());
+        // the keyframe is the new reported snapshot
+        check(KEYFRAME_INTERVAL + 1000, 12, 25);
+        assertEquals("", passed());
+    }
+
+    @Test
+    public void reportsLostCellsOnKeyframe() {
+        check(0, 10, 20);
+        check(KEYFRAME_INTERVAL, 10);
+        assertEquals("count 1, neighbor 1 10, gsm 1001, lost 2", passed());
+        assertEquals(2, detector.getChangeCount());
+    }
+
+    @Test
+    public void passesKeyframeAfterReset() {
+        check(0, 10, 20);
+        detector.reset();
+        check(1000, 10, 20);
+        assertEquals("count 2, neighbor 1 10, neighbor 2 20, gsm 1001", passed());
+    }
+
+    @Test
+    public void keepsNeighborsBeyondInitialCapacity() {
+        int[] rssi = new int[100];
+        for (int i = 0; i < rssi.length; i++) {
+            rssi[i] = 10;
+        }
+        check(0, rssi);
+        check(1000, rssi);
+        assertEquals("", passed());
+        rssi[99] = 20;
+        check(2000, rssi);
+        assertEquals("neighbor 100 20", passed());
+    }
+
+    private void setServing(int cid, int lac) {
+        GsmCellLocation location = new GsmCellLocation();
+        location.setLacAndCid(lac, cid);
+        serving.set(location);
+    }
+
+    /**
+     * Runs check with the neighbors of cell ids from <code>1</code> and the given RSSI,
+     * a negative RSSI skips the neighbor.
+     */
+    private void check(long time, int... rssi) {
+        passed.clear();
+        int count = 0;
+        for (int value: rssi) {
+            if (value >= 0) {
+                count++;
+            }
+        }
+        detector.begin(time, count);
+        for (int i = 0; i < rssi.length; i++) {
+            if (rssi[i] >= 0) {
+                detector.neighbor(i + 1, 10, 3, 100 + i, rssi[i]);
+            }
+        }
+        detector.serving(serving);
+        detector.end();
+    }
+
+    /**
+     * Returns the passed samples of the last check as text.
+     */
+    private String passed() {
+        StringBuilder builder = new StringBuilder();
+        for (CellSample sample: passed) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            switch (sample.getKind()) {
+                case CellSample.NEIGHBOR_COUNT:
+                    builder.append("count ").append(sample.getCount());
+                    break;
+                case CellSample.NEIGHBOR:
+                    builder.append("neighbor ").append(sample.getCid()).append(' ').append(sample.getRssi());
+                    break;
+                case CellSample.NEIGHBOR_LOST:
+                    builder.append("lost ").append(sample.getCid());
+                    break;
+                case CellSample.GSM:
+                    builder.append("gsm ").append(sample.getCid());
+                    break;
+                default:
+                    builder.append("kind ").append(sample.getKind());
+            }
+        }
+        return builder.toString();
+    }
+}
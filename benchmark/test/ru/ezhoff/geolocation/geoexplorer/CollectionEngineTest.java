@@ -0,0 +1,181 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.location.LocationManager;
+import android.telephony.TelephonyManager;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of repeated start and stop of {@link CollectionEngine} with the real scheduler thread:
+ * thousands of runs leave no threads, listeners or open files of the previous ones.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CollectionEngineTest {
+
+    private static final int CYCLES = 2000;
+
+    /**
+     * The threads and the files the JVM may open on its own during the cycles, e.g. for the management beans.
+     */
+    private static final int SLACK = 2;
+
+    private File storage;
+
+    private final LocationManager locationManager = new LocationManager();
+
+    private final TelephonyManager telephonyManager = new TelephonyManager();
+
+    private final LocationFusion fusion = new LocationFusion();
+
+    private MonitorScheduler scheduler;
+
+    private CollectionEngine engine;
+
+    @Before
+    public void setUp() {
+        // the paths of the logger are taken from the storage when its class is loaded
+        storage = LoggerFixture.getStorage();
+        scheduler = new MonitorScheduler().setTickPeriod(100);
+        EventBus eventBus = new EventBus();
+        engine = new CollectionEngine().setScheduler(scheduler).setEventBus(eventBus)
+                .addMonitor(new LocationMonitor().setLocationManager(locationManager)
+                        .setProvider(LocationManager.GPS_PROVIDER).setScheduler(scheduler).setPeriod(100)
+                        .setFusion(fusion).setEventBus(eventBus))
+                .addMonitor(new LocationMonitor().setLocationManager(locationManager)
+                        .setProvider(LocationManager.NETWORK_PROVIDER).setScheduler(scheduler).setPeriod(100)
+                        .setFusion(fusion).setEventBus(eventBus))
+                .addMonitor(new CellMonitor().setTelephonyManager(telephonyManager).setScheduler(scheduler)
+                        .setPeriod(100).setEventBus(eventBus));
+    }
+
+    @After
+    public void tearDown() {
+        engine.stop();
+        FileLogger.setAsyncWriter(null);
+        FileLogger.setSegmentedStore(null);
+        LoggerFixture.delete(storage, false);
+    }
+
+    @Test
+    public void restartsWithSynchronousLogger() {
+        cycle();
+    }
+
+    @Test
+    public void restartsWithAsynchronousLogger() {
+        FileLogger.setAsyncWriter(new AsyncLogWriter().setOverflowPolicy(OverflowPolicy.BLOCK));
+        cycle();
+    }
+
+    @Test
+    public void restartsWithSegmentedStore() {
+        FileLogger.setSegmentedStore(new SegmentedLogStore().setMaxSegments(4));
+        cycle();
+    }
+
+    @Test
+    public void forgetsFusedEstimateOfPreviousRun() {
+        engine.start();
+        fusion.update(new LocationSample(1000, LocationManager.GPS_PROVIDER, Sample.LISTENER, 55.75, 37.62, 0, 5), 0);
+        assertTrue(fusion.getEstimate() != null);
+        engine.stop();
+        engine.start();
+        assertEquals(null, fusion.getEstimate());
+        // the estimate of the run is kept until its last monitor stops
+        fusion.update(new LocationSample(2000, LocationManager.GPS_PROVIDER, Sample.LISTENER, 55.75, 37.62, 0, 5), 0);
+        engine.stop();
+        assertTrue(fusion.getEstimate() != null);
+    }
+
+    @Test
+    public void rollsBackStartFailedByMonitor() {
+        final boolean[] isFailing = {true};
+        engine.addMonitor(new Monitor() {
+            @Override
+            public void start() {
+                if (isFailing[0]) {
+                    throw new IllegalStateException("Monitor is not available");
+                }
+            }
+
+            @Override
+            public void stop() {
+            }
+        });
+        try {
+            engine.start();
+            fail("Start is not failed");
+        } catch (IllegalStateException e) {
+            assertEquals("Monitor is not available", e.getMessage());
+        }
+        assertFalse(engine.isStarted());
+        assertFalse(scheduler.isStarted());
+        assertEquals(0, locationManager.getListeners().size());
+        assertEquals(0, telephonyManager.getListeners().size());
+        // the fusion is reset by the next run as after a stop
+        isFailing[0] = false;
+        engine.start();
+        assertTrue(engine.isStarted());
+        assertEquals(null, fusion.getEstimate());
+        engine.stop();
+        assertEquals(1, engine.getRunCount());
+    }
+
+    /**
+     * Starts and stops the engine, the first run warms up the threads and the files of the JVM.
+     */
+    private void cycle() {
+        engine.start();
+        engine.stop();
+        int threads = Thread.activeCount();
+        long files = openFileCount();
+        for (int i = 1; i < CYCLES; i++) {
+            engine.start();
+            assertTrue(engine.isStarted());
+            assertTrue(scheduler.isStarted());
+            engine.stop();
+        }
+        assertFalse(engine.isStarted());
+        assertFalse(scheduler.isStarted());
+        assertEquals(CYCLES, engine.getRunCount());
+        assertEquals(0, locationManager.getListeners().size());
+        assertEquals(0, telephonyManager.getListeners().size());
+        for (Thread thread: Thread.getAllStackTraces().keySet()) {
+            String name = thread.getName();
+            if (name.startsWith("MonitorScheduler") || name.startsWith("FileLogger") || name.startsWith("EventBus")) {
+                fail("Thread " + name + " is left after stop");
+            }
+        }
+        assertTrue("Threads grow: " + Thread.activeCount() + " against " + threads,
+                Thread.activeCount() <= threads + SLACK);
+        if (files >= 0) {
+            assertTrue("Open files grow: " + openFileCount() + " against " + files,
+                    openFileCount() <= files + SLACK);
+        }
+    }
+
+    /**
+     * Returns count of open files of the JVM.
+     * @return                  count, or <code>-1</code> if the platform does not tell it
+     */
+    private static long openFileCount() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        return bean instanceof UnixOperatingSystemMXBean
+                ? ((UnixOperatingSystemMXBean) bean).getOpenFileDescriptorCount() : -1;
+    }
+}
@@ -0,0 +1,142 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link LiveView}: producers never wait for the screen, and a frame shows the last records.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LiveViewTest {
+
+    private static final int PRODUCERS = 4;
+
+    private static final int RECORDS = 100000;
+
+    @Test(timeout = 10000)
+    public void producersNeverBlockWithoutFrames() throws InterruptedException {
+        final LiveView view = new LiveView(8);
+        final CountDownLatch done = new CountDownLatch(PRODUCERS);
+        for (int i = 0; i < PRODUCERS; i++) {
+            final String producer = "Producer" + i;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int record = 0; record < RECORDS; record++) {
+                        view.append(record, FileLogger.INFO, producer + ": " + record, null);
+                    }
+                    done.countDown();
+                }
+            }, "LiveViewTest-" + producer).start();
+        }
+        // the screen never takes the records, the producers finish anyway
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(view.update());
+        assertEquals(8, lineCount(view));
+    }
+
+    @Test(timeout = 10000)
+    public void producersDoNotWaitForSlowFrames() throws InterruptedException {
+        final LiveView view = new LiveView(8);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int record = 0; record < RECORDS; record++) {
+                    view.append(record, FileLogger.INFO, "Producer: " + record, null);
+                }
+            }
+        }, "LiveViewTest-Producer");
+        producer.start();
+        while (producer.isAlive()) {
+            view.update();
+        }
+        view.update();
+        assertTrue(view.getText().toString().endsWith("Producer: " + (RECORDS - 1) + "\n"));
+    }
+
+    @Test
+    public void showsLastRecordsInOrder() {
+        LiveView view = new LiveView(3);
+        for (int record = 0; record < 10; record++) {
+            view.append(record, FileLogger.INFO, "Record " + record, null);
+        }
+        assertTrue(view.update());
+        assertEquals("Record 7\nRecord 8\nRecord 9\n", view.getText().toString());
+        assertFalse(view.update());
+        view.append(10, FileLogger.INFO, "Record 10", null);
+        assertTrue(view.update());
+        assertEquals("Record 8\nRecord 9\nRecord 10\n", view.getText().toString());
+    }
+
+    @Test
+    public void filtersByLevelAndMonitor() {
+        LiveView view = new LiveView(8).setLevels(FileLogger.WARN, FileLogger.ERROR).setMonitors("CellMonitor");
+        view.append(0, FileLogger.INFO, "CellMonitor::Check", null);
+        view.append(1, FileLogger.WARN, "CellMonitor::Lost", null);
+        view.append(2, FileLogger.ERROR, "LocationMonitor::Failed", null);
+        view.append(3, FileLogger.ERROR, "CellMonitorX::Failed", null);
+        assertTrue(view.update());
+        assertEquals("CellMonitor::Lost\n", view.getText().toString());
+    }
+
+    @Test
+    public void filtersSamplesByTheirMonitor() {
+        assertEquals(2, filteredLines("LocationMonitor"));
+        assertEquals(3, filteredLines("CellMonitor"));
+        assertEquals(1, filteredLines("MapMatcher"));
+        assertEquals(3, filteredLines("LocationMonitor", "MapMatcher"));
+    }
+
+    /**
+     * Returns count of shown samples of every type filtered by the given monitors, and checks that every shown
+     * line starts with one of them.
+     */
+    private static int filteredLines(String... monitors) {
+        LiveView view = new LiveView(8).setMonitors(monitors);
+        Sample[] samples = {
+                new LocationSample(0, "gps", Sample.LISTENER, 55.75, 37.62, 0, 5),
+                new DwellSample(DwellSample.STARTED),
+                CellSample.gsm(2, Sample.MONITOR, 1001, 10),
+                SignalSample.asu(3, 20),
+                new SignalSummarySample(),
+                new MatchSample()
+        };
+        for (Sample sample: samples) {
+            view.append(sample.time, FileLogger.INFO, null, sample);
+        }
+        view.update();
+        String text = view.getText().toString();
+        int count = 0;
+        for (String line: text.split("\n")) {
+            if (line.length() == 0) {
+                continue;
+            }
+            boolean isOfMonitors = false;
+            for (String monitor: monitors) {
+                isOfMonitors |= line.startsWith(monitor);
+            }
+            assertTrue(line, isOfMonitors);
+            count++;
+        }
+        return count;
+    }
+
+    private static int lineCount(LiveView view) {
+        String text = view.getText().toString();
+        int count = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+}
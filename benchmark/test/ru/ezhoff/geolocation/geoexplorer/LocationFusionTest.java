@@ -0,0 +1,33 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests of {@link LocationFusion}: the estimate is passed to the sink without the lock of the fusion.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LocationFusionTest {
+
+    @Test
+    public void publishesEstimateOutsideLock() {
+        final LocationFusion fusion = new LocationFusion();
+        final int[] count = new int[1];
+        fusion.setSink(new SampleSink() {
+            @Override
+            public void log(Sample sample) {
+                assertFalse(Thread.holdsLock(fusion));
+                count[0]++;
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            fusion.update(new LocationSample(i * 1000, "gps", Sample.LISTENER, 55.75 + i * 0.001, 37.62, 0, 5), 0);
+        }
+        assertEquals(fusion.getPublishedCount(), count[0]);
+        assertEquals(10, count[0]);
+    }
+}
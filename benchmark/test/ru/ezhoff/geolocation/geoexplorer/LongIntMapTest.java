@@ -0,0 +1,107 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the growth and the clearing of {@link LongIntMap}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LongIntMapTest {
+
+    @Test
+    public void returnsAbsentForUnknownKey() {
+        LongIntMap map = new LongIntMap(4);
+        assertEquals(LongIntMap.ABSENT, map.get(1));
+        map.put(1, 10);
+        assertEquals(LongIntMap.ABSENT, map.get(2));
+    }
+
+    @Test
+    public void replacesValueOfSameKey() {
+        LongIntMap map = new LongIntMap(4);
+        map.put(1, 10);
+        map.put(1, 11);
+        assertEquals(11, map.get(1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void keepsEntriesWhileGrowing() {
+        LongIntMap map = new LongIntMap(4);
+        int initialSlots = map.slots();
+        for (int i = 0; i < 1000; i++) {
+            map.put(key(i), i);
+        }
+        assertTrue(map.slots() > initialSlots);
+        assertTrue(map.size() * 2 <= map.slots());
+        assertEquals(1000, map.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.get(key(i)));
+        }
+    }
+
+    @Test
+    public void iteratesAllEntriesBySlots() {
+        LongIntMap map = new LongIntMap(4);
+        long sum = 0;
+        for (int i = 0; i < 100; i++) {
+            map.put(key(i), i);
+            sum += i;
+        }
+        int count = 0;
+        for (int slot = 0; slot < map.slots(); slot++) {
+            if (map.isUsed(slot)) {
+                assertEquals(map.valueAt(slot), map.get(map.keyAt(slot)));
+                sum -= map.valueAt(slot);
+                count++;
+            }
+        }
+        assertEquals(100, count);
+        assertEquals(0, sum);
+    }
+
+    @Test
+    public void removesAllEntriesOnClear() {
+        LongIntMap map = new LongIntMap(4);
+        for (int i = 0; i < 100; i++) {
+            map.put(key(i), i);
+        }
+        int slots = map.slots();
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(slots, map.slots());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(LongIntMap.ABSENT, map.get(key(i)));
+        }
+        map.put(key(7), 70);
+        assertEquals(70, map.get(key(7)));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void distinguishesKeysOfCellFields() {
+        LongIntMap map = new LongIntMap(4);
+        map.put(CellChangeDetector.key(1, 2, 3), 1);
+        map.put(CellChangeDetector.key(1, 3, 2), 2);
+        map.put(CellChangeDetector.key(1, -1, -1), 3);
+        assertEquals(1, map.get(CellChangeDetector.key(1, 2, 3)));
+        assertEquals(2, map.get(CellChangeDetector.key(1, 3, 2)));
+        assertEquals(3, map.get(CellChangeDetector.key(1, -1, -1)));
+        long key = CellChangeDetector.key(Integer.MAX_VALUE, -1, -1);
+        assertEquals(Integer.MAX_VALUE, CellChangeDetector.keyCid(key));
+        assertEquals(-1, CellChangeDetector.keyLac(key));
+        assertEquals(-1, CellChangeDetector.keyPsc(key));
+    }
+
+    /**
+     * Returns keys which collide in the low bits, as the cell keys of one area do.
+     */
+    private static long key(int i) {
+        return CellChangeDetector.key(i, 7701, 0);
+    }
+}
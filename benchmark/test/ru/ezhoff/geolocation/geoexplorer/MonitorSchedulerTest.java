@@ -0,0 +1,169 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests of due times, order and cancellation of the probes of {@link MonitorScheduler} in virtual time.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MonitorSchedulerTest {
+
+    private static final long TICK = 100;
+
+    /**
+     * The virtual clock and executor of the scheduler.
+     */
+    private VirtualTimeExecutor executor;
+
+    private MonitorScheduler scheduler;
+
+    /**
+     * The runs of all probes in order, as names with the virtual time in milliseconds.
+     */
+    private List<String> runs;
+
+    /**
+     * Probe which records its runs.
+     */
+    private final class Probe implements Runnable {
+        final String name;
+
+        Probe(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            runs.add(name + "@" + TimeUnit.NANOSECONDS.toMillis(executor.nanoTime()));
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = new VirtualTimeExecutor();
+        scheduler = new MonitorScheduler()
+                .setTickPeriod(TICK)
+                .setExecutor(executor)
+                .setClock(executor);
+        runs = new ArrayList<String>();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.stop();
+    }
+
+    @Test
+    public void runsProbesAtTheirPeriods() {
+        scheduler.schedule(new Probe("a"), 200);
+        scheduler.schedule(new Probe("b"), 300);
+        scheduler.start();
+        advance(600);
+        assertEquals(Arrays.asList("a@0", "b@0", "a@200", "b@300", "a@400", "a@600", "b@600"), runs);
+    }
+
+    @Test
+    public void roundsPeriodsToTicks() {
+        scheduler.schedule(new Probe("a"), 160);
+        scheduler.schedule(new Probe("b"), 10);
+        scheduler.start();
+        advance(200);
+        assertEquals(Arrays.asList("a@0", "b@0", "b@100", "a@200", "b@200"), runs);
+    }
+
+    @Test
+    public void skipsTicksWithoutDueProbes() {
+        scheduler.schedule(new Probe("a"), 1000);
+        scheduler.start();
+        // the start pass and one more for the next due tick
+        assertEquals(2, executor.advance(TimeUnit.MILLISECONDS.toNanos(1000)));
+        assertEquals(Arrays.asList("a@0", "a@1000"), runs);
+    }
+
+    @Test
+    public void runsAddedProbeOnTheNextTick() {
+        scheduler.schedule(new Probe("a"), 1000);
+        scheduler.start();
+        advance(250);
+        scheduler.schedule(new Probe("b"), 1000);
+        advance(1000);
+        assertEquals(Arrays.asList("a@0", "b@300", "a@1000"), runs);
+    }
+
+    @Test
+    public void appliesChangedPeriodAfterTheNextRun() {
+        Probe probe = new Probe("a");
+        scheduler.schedule(probe, 200);
+        scheduler.start();
+        advance(100);
+        scheduler.schedule(probe, 500);
+        advance(1000);
+        assertEquals(Arrays.asList("a@0", "a@200", "a@700"), runs);
+    }
+
+    @Test
+    public void doesNotRunCancelledProbe() {
+        Probe a = new Probe("a");
+        scheduler.schedule(a, 100);
+        scheduler.schedule(new Probe("b"), 200);
+        scheduler.start();
+        advance(100);
+        scheduler.cancel(a);
+        advance(300);
+        assertEquals(Arrays.asList("a@0", "b@0", "a@100", "b@200", "b@400"), runs);
+    }
+
+    @Test
+    public void keepsTickingAfterFailedProbe() {
+        final List<Runnable> failed = new ArrayList<Runnable>();
+        scheduler.setErrorHandler(new MonitorScheduler.ErrorHandler() {
+            @Override
+            public void onError(Runnable probe, RuntimeException e) {
+                failed.add(probe);
+            }
+        });
+        Runnable failing = new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("Probe failure");
+            }
+        };
+        scheduler.schedule(failing, 100);
+        scheduler.schedule(new Probe("a"), 100);
+        scheduler.start();
+        advance(200);
+        assertEquals(Arrays.asList("a@0", "a@100", "a@200"), runs);
+        assertEquals(Arrays.asList(failing, failing, failing), failed);
+    }
+
+    @Test
+    public void stopsAndRestartsFromTheFirstTick() {
+        scheduler.schedule(new Probe("a"), 300);
+        scheduler.start();
+        advance(100);
+        scheduler.stop();
+        assertFalse(scheduler.isStarted());
+        assertEquals(0, executor.getPendingCount());
+        advance(1000);
+        assertEquals(Arrays.asList("a@0"), runs);
+        scheduler.start();
+        advance(300);
+        assertEquals(Arrays.asList("a@0", "a@1100", "a@1400"), runs);
+    }
+
+    private void advance(long millis) {
+        executor.advance(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
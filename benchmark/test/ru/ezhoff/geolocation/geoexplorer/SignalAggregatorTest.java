@@ -0,0 +1,226 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the merge and the subtraction of the sketches of {@link SignalAggregator} and of the summaries
+ * of its sliding windows against the values of the samples in every window.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SignalAggregatorTest {
+
+    private static final int FIELD = SignalSummarySample.GSM_SIGNAL_STRENGTH;
+
+    private final Random random = new Random(17);
+
+    @Test
+    public void mergesAsIfValuesWereAddedToOneSketch() {
+        int[] a = values(50, 0, 31);
+        int[] b = values(30, 5, 12);
+        int[] c = values(1, 31, 31);
+        SignalAggregator.Sketch merged = new SignalAggregator.Sketch();
+        merged.merge(FIELD, sketch(a));
+        merged.merge(FIELD, sketch(new int[0]));
+        merged.merge(FIELD, sketch(b));
+        merged.merge(FIELD, sketch(c));
+        assertSketch(concat(a, b, c), merged);
+    }
+
+    @Test
+    public void subtractsMergedSketch() {
+        int[] a = values(40, 0, 3);
+        int[] b = values(40, 10, 20);
+        int[] c = values(40, 28, 31);
+        SignalAggregator.Sketch sketchA = sketch(a);
+        SignalAggregator.Sketch sketchC = sketch(c);
+        SignalAggregator.Sketch window = new SignalAggregator.Sketch();
+        window.merge(FIELD, sketchA);
+        window.merge(FIELD, sketch(b));
+        window.merge(FIELD, sketchC);
+        // both the minimum and the maximum leave the window
+        window.subtract(FIELD, sketchA);
+        assertSketch(concat(b, c), window);
+        window.subtract(FIELD, sketchC);
+        assertSketch(b, window);
+    }
+
+    @Test
+    public void subtractsToEmptySketchAndAddsAgain() {
+        int[] a = values(20, 0, 31);
+        SignalAggregator.Sketch sketchA = sketch(a);
+        SignalAggregator.Sketch window = new SignalAggregator.Sketch();
+        window.merge(FIELD, sketchA);
+        window.subtract(FIELD, sketchA);
+        assertSketch(new int[0], window);
+        window.add(FIELD, 7);
+        assertSketch(new int[] {7}, window);
+    }
+
+    @Test
+    public void skipsValuesOutOfRange() {
+        SignalAggregator.Sketch sketch = sketch(new int[] {99, -1, 12, 32});
+        assertSketch(new int[] {12}, sketch);
+    }
+
+    @Test
+    public void clearsSketch() {
+        SignalAggregator.Sketch sketch = sketch(values(20, 0, 31));
+        sketch.clear(FIELD);
+        assertSketch(new int[0], sketch);
+        sketch.add(FIELD, 3);
+        assertSketch(new int[] {3}, sketch);
+    }
+
+    @Test
+    public void summarizesSlidingWindowsAsTheirSamples() {
+        final List<SignalSummarySample> summaries = new ArrayList<SignalSummarySample>();
+        SignalAggregator aggregator = new SignalAggregator()
+                .setWindow(3000, 1000)
+                .setRawPassed(false)
+                .setSink(new SampleSink() {
+                    @Override
+                    public void log(Sample sample) {
+                        if (sample instanceof SignalSummarySample) {
+                            summaries.add((SignalSummarySample) sample);
+                        }
+                    }
+                });
+        aggregator.log(CellSample.gsm(0, Sample.MONITOR, 1001, 10));
+        List<SignalSample> samples = new ArrayList<SignalSample>();
+        long time = 0;
+        for (int i = 0; i < 2000; i++) {
+            // gaps of a few panes leave windows empty and release the cell
+            time += random.nextInt(i % 200 == 199 ? 5000 : 40);
+            SignalSample sample = SignalSample.asu(time, random.nextInt(32));
+            samples.add(sample);
+            aggregator.log(sample);
+        }
+        aggregator.flush();
+        int checked = 0;
+        for (SignalSummarySample summary: summaries) {
+            assertEquals(3000, summary.getWindowEnd() - summary.getWindowStart());
+            assertEquals(1001, summary.getCid());
+            List<Integer> inWindow = new ArrayList<Integer>();
+            for (SignalSample sample: samples) {
+                if (sample.time >= summary.getWindowStart() && sample.time < summary.getWindowEnd()) {
+                    inWindow.add(sample.gsmSignalStrength);
+                }
+            }
+            int[] values = new int[inWindow.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = inWindow.get(i);
+            }
+            assertSummary(values, summary);
+            checked += values.length;
+        }
+        // every sample is in three windows
+        assertEquals(3 * samples.size(), checked);
+    }
+
+    private int[] values(int count, int lowest, int highest) {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = lowest + random.nextInt(highest - lowest + 1);
+        }
+        return values;
+    }
+
+    private static SignalAggregator.Sketch sketch(int[] values) {
+        SignalAggregator.Sketch sketch = new SignalAggregator.Sketch();
+        for (int value: values) {
+            sketch.add(FIELD, value);
+        }
+        return sketch;
+    }
+
+    private static int[] concat(int[]... arrays) {
+        int length = 0;
+        for (int[] array: arrays) {
+            length += array.length;
+        }
+        int[] values = new int[length];
+        int offset = 0;
+        for (int[] array: arrays) {
+            System.arraycopy(array, 0, values, offset, array.length);
+            offset += array.length;
+        }
+        return values;
+    }
+
+    /**
+     * Compares sketch with the statistics of the given values.
+     */
+    private static void assertSketch(int[] values, SignalAggregator.Sketch sketch) {
+        assertEquals(values.length, sketch.count);
+        if (values.length == 0) {
+            assertEquals(0, sketch.sum, 0);
+            assertEquals(0, sketch.sumOfSquares, 0);
+            if (sketch.values != null) {
+                assertArrayEquals(new int[sketch.values.length], sketch.values);
+            }
+            return;
+        }
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        double sumOfSquares = 0;
+        int[] counts = new int[sketch.values.length];
+        for (int value: values) {
+            sum += value;
+            sumOfSquares += (double) value * value;
+            counts[value]++;
+        }
+        assertEquals(sorted[0], sketch.minimum);
+        assertEquals(sorted[sorted.length - 1], sketch.maximum);
+        assertEquals(sum, sketch.sum, 0);
+        assertEquals(sumOfSquares, sketch.sumOfSquares, 0);
+        assertArrayEquals(counts, sketch.values);
+        assertEquals(percentile(sorted, 0.1), sketch.percentile(FIELD, 0.1));
+        assertEquals(percentile(sorted, 0.5), sketch.percentile(FIELD, 0.5));
+        assertEquals(percentile(sorted, 0.9), sketch.percentile(FIELD, 0.9));
+    }
+
+    /**
+     * Compares summary with the statistics of the given values.
+     */
+    private static void assertSummary(int[] values, SignalSummarySample summary) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (int value: values) {
+            sum += value;
+        }
+        double mean = sum / values.length;
+        double squares = 0;
+        for (int value: values) {
+            squares += (value - mean) * (value - mean);
+        }
+        assertEquals(values.length, summary.getSampleCount());
+        assertEquals(values.length, summary.getCount(FIELD));
+        assertEquals(sorted[0], summary.getMinimum(FIELD));
+        assertEquals(sorted[sorted.length - 1], summary.getMaximum(FIELD));
+        assertEquals(mean, summary.getMean(FIELD), 1e-3);
+        assertEquals(squares / values.length, summary.getVariance(FIELD), 1e-2);
+        assertEquals(percentile(sorted, 0.1), summary.getP10(FIELD));
+        assertEquals(percentile(sorted, 0.5), summary.getP50(FIELD));
+        assertEquals(percentile(sorted, 0.9), summary.getP90(FIELD));
+    }
+
+    /**
+     * Returns the least value which is not exceeded by the given share of the sorted values.
+     */
+    private static int percentile(int[] sorted, double share) {
+        int rank = Math.max(1, (int) Math.ceil(sorted.length * share));
+        return sorted[rank - 1];
+    }
+}
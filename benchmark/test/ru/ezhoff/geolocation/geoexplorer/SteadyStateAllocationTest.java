@@ -0,0 +1,171 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.location.Location;
+import android.location.LocationManager;
+import android.telephony.NeighboringCellInfo;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of the allocations of the periodical checks in the steady state, when the cells and the fix
+ * do not change: after the warm up, the checks and the passes of the scheduler allocate nothing.
+ * The allocations are taken from the counter of the thread, as in {@link SteadyStateBenchmark},
+ * but asserted, so a regression fails the build.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SteadyStateAllocationTest {
+
+    private static final int NEIGHBORS = 6;
+
+    private static final int WARMUP = 20000;
+
+    private static final int CALLS = 10000;
+
+    private static final int ROUNDS = 5;
+
+    private final com.sun.management.ThreadMXBean threads = threadBean();
+
+    private final TelephonyManager telephonyManager = new TelephonyManager();
+
+    private final LocationManager locationManager = new LocationManager();
+
+    private FileLogger logger;
+
+    private CellMonitor cellMonitor;
+
+    private LocationMonitor locationMonitor;
+
+    private MonitorScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        Assume.assumeTrue(threads != null && threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        List<NeighboringCellInfo> neighbors = new ArrayList<NeighboringCellInfo>();
+        for (int i = 0; i < NEIGHBORS; i++) {
+            neighbors.add(new NeighboringCellInfo(10 + i, 10437 + i, 7724, 262 + i, TelephonyManager.NETWORK_TYPE_UMTS));
+        }
+        telephonyManager.setNeighboringCellInfo(neighbors);
+        GsmCellLocation cellLocation = new GsmCellLocation();
+        cellLocation.setLacAndCid(7724, 10436);
+        telephonyManager.setCellLocation(cellLocation);
+        Location location = new Location(LocationManager.GPS_PROVIDER);
+        location.setTime(System.currentTimeMillis());
+        location.setLatitude(55.7512);
+        location.setLongitude(37.6184);
+        location.setAccuracy(10);
+        locationManager.setLastKnownLocation(location);
+
+        logger = LoggerFixture.open(LoggerFixture.ASYNC);
+        // the scheduler is not started, checks and passes are run by the test
+        scheduler = new MonitorScheduler();
+        cellMonitor = new CellMonitor()
+                .setTelephonyManager(telephonyManager)
+                .setScheduler(scheduler)
+                .setSampler(new AdaptiveSampler())
+                .setChangeDetector(new CellChangeDetector().setKeyframeInterval(Long.MAX_VALUE))
+                .setEventBus(new EventBus())
+                .setPeriod(500);
+        locationMonitor = new LocationMonitor()
+                .setLocationManager(locationManager)
+                .setProvider(LocationManager.GPS_PROVIDER)
+                .setScheduler(scheduler)
+                .setSampler(new AdaptiveSampler())
+                .setFusion(new LocationFusion())
+                .setEventBus(new EventBus())
+                .setPeriod(500);
+        cellMonitor.start();
+        locationMonitor.start();
+    }
+
+    @After
+    public void tearDown() {
+        if (logger != null) {
+            cellMonitor.stop();
+            locationMonitor.stop();
+            LoggerFixture.close(logger);
+        }
+    }
+
+    @Test
+    public void cellCheckAllocatesNothing() {
+        assertAllocatesNothing(new Runnable() {
+            @Override
+            public void run() {
+                cellMonitor.run();
+            }
+        });
+    }
+
+    @Test
+    public void locationCheckAllocatesNothing() {
+        assertAllocatesNothing(new Runnable() {
+            @Override
+            public void run() {
+                locationMonitor.run();
+            }
+        });
+    }
+
+    @Test
+    public void schedulerPassAllocatesNothing() {
+        // the first checks report the cells and the fix, the next ones see no changes
+        cellMonitor.run();
+        locationMonitor.run();
+        assertAllocatesNothing(new Runnable() {
+            @Override
+            public void run() {
+                scheduler.pass();
+            }
+        });
+    }
+
+    /**
+     * Warms up the call and asserts that the given count of calls allocates no bytes on this thread.
+     * The compiler may allocate a few bytes of its own once in a while, so the least of a few rounds
+     * is taken: an allocation of the call itself shows in every round.
+     */
+    private void assertAllocatesNothing(Runnable call) {
+        for (int i = 0; i < WARMUP; i++) {
+            call.run();
+        }
+        long allocated = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            allocated = Math.min(allocated, allocatedBytes(call, CALLS));
+        }
+        assertEquals("Bytes allocated by " + CALLS + " calls", 0, allocated);
+    }
+
+    /**
+     * Returns bytes allocated on this thread by the given count of calls.
+     */
+    private long allocatedBytes(Runnable call, int count) {
+        long id = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < count; i++) {
+            call.run();
+        }
+        return threads.getThreadAllocatedBytes(id) - start;
+    }
+
+    /**
+     * Returns the allocation counter of the threads, or <code>null</code> if the platform has none.
+     */
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        return bean instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) bean : null;
+    }
+}
@@ -0,0 +1,166 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the uploads of {@link SyncEngine} to the {@link SyncTestServer}: an upload interrupted
+ * by failed batches, lost answers and restarts resumes from the acknowledged offset, so the copies
+ * of the server have neither gaps nor duplicates, a conflict moves the offset to the copy of the server,
+ * and the segments deleted by the retention before they are sent are reported as lost.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SyncEngineTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private static final int MAX_BATCH_SIZE = 8 * 1024;
+
+    private final Random random = new Random(17);
+
+    private File directory;
+
+    private SyncTestServer server;
+
+    private SegmentedLogStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = LoggerFixture.createTempDirectory("sync");
+        server = new SyncTestServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+        server.stop();
+        LoggerFixture.delete(directory, true);
+    }
+
+    @Test
+    public void resumesInterruptedUploadWithoutGapsOrDuplicates() throws IOException {
+        openStore(0);
+        long written = fill(4);
+        server.setFailureRate(0.2).setLostAnswerRate(0.2);
+        int failures = syncWithRestarts();
+        // more records come to the last segment while the upload goes on
+        written += append(200);
+        failures += syncWithRestarts();
+        assertTrue(failures > 0);
+        assertTrue(server.getDuplicateBytes() > 0);
+        // a batch is sent again only if its answer is lost
+        assertTrue(server.getDuplicateBytes() <= (long) server.getFaultCount() * MAX_BATCH_SIZE);
+        assertEquals(written, server.verify(directory));
+    }
+
+    @Test
+    public void movesOffsetBackOnConflict() throws IOException {
+        openStore(0);
+        long written = append(100);
+        SyncEngine engine = engine();
+        sync(engine);
+        int position = engine.getAcknowledgedPosition();
+        // the server loses its copy, the next batch is ahead of it
+        server.reset();
+        written += append(100);
+        sync(engine);
+        assertTrue(engine.getAcknowledgedPosition() > position);
+        assertEquals(1, server.getConflictCount());
+        assertEquals(written, server.verify(directory));
+    }
+
+    @Test
+    public void reportsSegmentsDeletedByRetentionBeforeUpload() throws IOException {
+        openStore(2);
+        append(100);
+        SyncEngine engine = engine();
+        sync(engine);
+        assertEquals(1, engine.getAcknowledgedSequence());
+        // the segments 1 to 3 are deleted, the first of them is sent in part
+        fill(5);
+        sync(engine);
+        assertEquals(3, engine.getLostSegmentCount());
+        assertEquals(5, engine.getAcknowledgedSequence());
+        server.verify(directory);
+    }
+
+    private void openStore(int maxSegments) throws IOException {
+        store = new SegmentedLogStore().setSegmentSize(SEGMENT_SIZE).setMaxSegments(maxSegments);
+        store.open(directory);
+    }
+
+    private SyncEngine engine() throws IOException {
+        return new SyncEngine()
+                .setDirectory(directory)
+                .setUrl(server.getUrl())
+                .setDeviceId("test")
+                .setBatchSize(1024, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Syncs the store, a pass failed by the connection is resumed as by the thread of the engine.
+     */
+    private static void sync(SyncEngine engine) {
+        for (int failures = 0; !engine.sync(); failures++) {
+            assertTrue(engine.getLastError(), failures < 10);
+        }
+    }
+
+    /**
+     * Syncs the store, every failed pass is resumed by a new engine as after a restart of the service.
+     * @return                  count of failed passes
+     */
+    private int syncWithRestarts() throws IOException {
+        int failures = 0;
+        while (!engine().sync()) {
+            failures++;
+            assertTrue("Upload does not end", failures < 1000);
+        }
+        return failures;
+    }
+
+    /**
+     * Appends records until the store has the segment of the given sequence number.
+     * @return                  bytes of the appended records with their frames
+     */
+    private long fill(long sequence) throws IOException {
+        long written = 0;
+        File[] segments;
+        while ((segments = SegmentedLogStore.listSegments(directory)).length == 0
+                || SegmentedLogStore.parseSequence(segments[segments.length - 1]) < sequence) {
+            written += append(1);
+        }
+        return written;
+    }
+
+    /**
+     * Appends records of random lengths and contents.
+     * @return                  bytes of the appended records with their frames
+     */
+    private long append(int count) throws IOException {
+        long written = 0;
+        for (int i = 0; i < count; i++) {
+            byte[] payload = new byte[20 + random.nextInt(300)];
+            random.nextBytes(payload);
+            if (store.needsRotation(payload.length)) {
+                store.rotate();
+            }
+            store.append(payload, 0, payload.length);
+            written += SegmentedLogStore.FRAME_SIZE + payload.length;
+        }
+        store.force();
+        return written;
+    }
+}
@@ -0,0 +1,231 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the dwells of {@link TrajectorySimplifier}: the consumers which trust a fix for the dwell time
+ * take the dwell before the held fix gets older than that, and of the moves: a dropped fix is within
+ * the tolerance of the position the consumers extrapolate from the passed ones.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TrajectorySimplifierTest {
+
+    private static final long DWELL_TIME = 10 * 1000;
+
+    private static final double LATITUDE = 55.75;
+
+    private static final double LONGITUDE = 37.62;
+
+    private TrajectorySimplifier simplifier;
+
+    private List<Sample> passed;
+
+    @Before
+    public void setUp() {
+        passed = new ArrayList<Sample>();
+        simplifier = new TrajectorySimplifier()
+                .setTolerance(10)
+                .setDwell(DWELL_TIME, DWELL_TIME)
+                .setSink(new SampleSink() {
+                    @Override
+                    public void log(Sample sample) {
+                        passed.add(sample);
+                    }
+                });
+    }
+
+    @Test
+    public void findsDwellByLastFixBeforeDwellTime() {
+        for (long time = 0; time <= 12000; time += 3000) {
+            simplifier.log(fix(time, 0));
+        }
+        assertEquals(2, passed.size());
+        DwellSample dwell = (DwellSample) passed.get(1);
+        assertEquals(DwellSample.STARTED, dwell.getKind());
+        assertEquals(0, dwell.getSince());
+        assertEquals(9000, dwell.time);
+    }
+
+    @Test
+    public void findsDwellByTimeOfCheckBeforeLateFix() {
+        simplifier.log(fix(0, 0));
+        simplifier.log(fix(2000, 1));
+        simplifier.log(fix(4000, 2));
+        simplifier.advance(DWELL_TIME - 1);
+        assertEquals(1, passed.size());
+        simplifier.advance(DWELL_TIME);
+        assertEquals(2, passed.size());
+        assertEquals(DwellSample.STARTED, ((DwellSample) passed.get(1)).getKind());
+    }
+
+    @Test
+    public void doesNotFindDwellByFixOffThePlace() {
+        simplifier.log(fix(0, 0));
+        simplifier.log(fix(4000, 1));
+        simplifier.log(fix(DWELL_TIME, 100));
+        assertEquals(2, passed.size());
+        assertTrue(passed.get(1) instanceof LocationSample);
+        assertEquals(0, simplifier.getDwellCount());
+    }
+
+    @Test
+    public void doesNotFindDwellOfSingleFix() {
+        simplifier.log(fix(0, 0));
+        simplifier.advance(DWELL_TIME);
+        assertEquals(1, passed.size());
+    }
+
+    @Test
+    public void joinsObservationsOfStayAsWithoutSimplification() {
+        for (long interval = 1000; interval <= DWELL_TIME; interval += 1000) {
+            assertEquals("Fixes every " + interval + " ms",
+                    unjoinedCount(interval, false), unjoinedCount(interval, true));
+        }
+    }
+
+    @Test
+    public void dropsFixesOfStraightMove() {
+        int count = 60;
+        for (int i = 0; i < count; i++) {
+            // 12 m/s to the north, every fix is farther than the tolerance from the previous one
+            simplifier.log(fix(i * 1000, 12 * i, 2));
+        }
+        // two fixes of a velocity in every longest interval of the extrapolation
+        assertTrue("Passed " + passed.size() + " of " + count, passed.size() <= 12);
+        assertEquals(0, simplifier.getDwellCount());
+    }
+
+    @Test
+    public void passesFixOffStraightMove() {
+        for (int i = 0; i < 5; i++) {
+            simplifier.log(fix(i * 1000, 12 * i, 2));
+        }
+        assertEquals(2, passed.size());
+        // a turn is off the extrapolated position
+        simplifier.log(fix(5000, 36, 2));
+        assertEquals(3, passed.size());
+    }
+
+    @Test
+    public void keepsDroppedFixesWithinToleranceOfDeadReckoning() {
+        double[] speeds = {0, 1.4, 5, 12, 25};
+        double[] noises = {2, 4};
+        for (double speed: speeds) {
+            for (double noise: noises) {
+                setUp();
+                int checked = checkDroppedFixes(RoadFixture.drive(40, 100, 2000, speed, noise, 17, new long[2000]));
+                if (speed >= 5) {
+                    assertTrue("No dropped fixes of move at " + speed + " m/s", checked > 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void keepsDroppedFixesOfProvidersInTurnWithinToleranceOfDeadReckoning() {
+        LocationSample[] fixes = new LocationSample[120];
+        for (int i = 0; i < fixes.length; i++) {
+            // 20 m/s to the north, the fused fixes lag by a few meters
+            fixes[i] = i % 2 == 0 ? fix(i * 1000, 20 * i, 2) : fix(i * 1000, "fused", 20 * i - 4, 3);
+        }
+        checkDroppedFixes(fixes);
+    }
+
+    @Test
+    public void keepsDroppedFixesOfProvidersAtDistinctPlacesWithinToleranceOfDeadReckoning() {
+        LocationSample[] fixes = new LocationSample[120];
+        for (int i = 0; i < fixes.length; i++) {
+            // the network places the stay farther than the tolerance from the gps
+            fixes[i] = i % 3 == 0 ? fix(i * 1000, "network", 30, 20) : fix(i * 1000, i % 2);
+        }
+        checkDroppedFixes(fixes);
+    }
+
+    /**
+     * Simplifies fixes and checks every dropped one against the position a consumer takes at its time
+     * from the passed fixes and dwells of all providers.
+     * @return                  count of dropped fixes
+     */
+    private int checkDroppedFixes(LocationSample[] fixes) {
+        DeadReckoning reckoning = new DeadReckoning();
+        int dropped = 0;
+        for (LocationSample fix: fixes) {
+            int count = passed.size();
+            simplifier.log(fix);
+            boolean isPassed = false;
+            for (Sample sample: passed.subList(count, passed.size())) {
+                if (sample instanceof LocationSample) {
+                    LocationSample location = (LocationSample) sample;
+                    reckoning.fix(location.time, location.source, location.latitude, location.longitude,
+                            location.accuracy);
+                } else if (sample instanceof DwellSample && ((DwellSample) sample).getKind() == DwellSample.STARTED) {
+                    DwellSample dwell = (DwellSample) sample;
+                    reckoning.hold(dwell.getLatitude(), dwell.getLongitude());
+                }
+                isPassed |= sample == fix;
+            }
+            if (!isPassed) {
+                double y = (fix.latitude - reckoning.latitudeAt(fix.time)) * 111320;
+                double x = (fix.longitude - reckoning.longitudeAt(fix.time)) * 111320
+                        * Math.cos(Math.toRadians(fix.latitude));
+                assertTrue("Dropped fix " + fix.getProvider() + " " + fix.time + " is off by "
+                        + Math.sqrt(x * x + y * y) + " m", x * x + y * y <= 10 * 10 + 1e-6);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Returns count of signal observations of a stay which a coverage index does not join to a fix.
+     * The observations and the periodical checks come every half a second, as in the service,
+     * and reach the index directly, the fixes go through the simplifier if it is used.
+     */
+    private long unjoinedCount(long fixInterval, boolean isSimplified) {
+        CoverageIndex index = new CoverageIndex().setMaxFixAge(DWELL_TIME);
+        simplifier.flush();
+        SampleSink fixSink = isSimplified ? simplifier.setSink(index) : index;
+        index.log(CellSample.gsm(0, Sample.MONITOR, 1001, 10));
+        for (long time = 0; time < 60 * 1000; time += 500) {
+            if (time % fixInterval == 0) {
+                fixSink.log(fix(time, (int) (time / fixInterval % 3)));
+            }
+            if (isSimplified) {
+                simplifier.advance(time);
+            }
+            index.log(SignalSample.asu(time, 20));
+        }
+        return index.getUnjoinedCount();
+    }
+
+    /**
+     * Returns fix of the given offset to the north of the place.
+     */
+    private static LocationSample fix(long time, int meters) {
+        return fix(time, meters, 5);
+    }
+
+    /**
+     * Returns fix of the given offset to the north of the place and of the given accuracy.
+     */
+    private static LocationSample fix(long time, int meters, float accuracy) {
+        return fix(time, "gps", meters, accuracy);
+    }
+
+    /**
+     * Returns fix of the given provider, offset to the north of the place and accuracy.
+     */
+    private static LocationSample fix(long time, String provider, int meters, float accuracy) {
+        return new LocationSample(time, provider, Sample.LISTENER, LATITUDE + meters / 111320.0, LONGITUDE, 0,
+                accuracy);
+    }
+}
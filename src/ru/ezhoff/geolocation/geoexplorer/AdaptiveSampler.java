@@ -0,0 +1,118 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Controller of the sampling interval of a monitor.
+ * The monitor reports the activity shown by every sample, the policy turns it into the next interval
+ * within the bounds. The sampler counts samples which the least interval would have taken in addition.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class AdaptiveSampler {
+
+    /**
+     * The least interval, in milliseconds.
+     */
+    private long minInterval = 500;
+
+    /**
+     * The largest interval, in milliseconds.
+     */
+    private long maxInterval = 16000;
+
+    /**
+     * The policy of the interval.
+     */
+    private SamplingPolicy policy = new BackoffSamplingPolicy();
+
+    /**
+     * The current interval, in milliseconds.
+     */
+    private volatile long interval = minInterval;
+
+    /**
+     * The count of taken samples.
+     */
+    private volatile long sampleCount;
+
+    /**
+     * The count of samples saved against the least interval.
+     */
+    private volatile long savedCount;
+
+    /**
+     * Returns to the least interval.
+     */
+    public void reset() {
+        interval = minInterval;
+    }
+
+    /**
+     * Reports sample and calculates the next interval.
+     * @param activity          activity shown by the sample: <code>0</code> for no change,
+     *                          <code>1</code> and more for a significant one
+     * @return                  next interval, in milliseconds
+     */
+    public long report(double activity) {
+        sampleCount++;
+        savedCount += interval / minInterval - 1;
+        long next = policy.nextInterval(interval, minInterval, activity);
+        interval = Math.max(minInterval, Math.min(maxInterval, next));
+        return interval;
+    }
+
+    /**
+     * Returns current interval.
+     * @return                  interval, in milliseconds
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns count of taken samples.
+     * @return                  samples count
+     */
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Returns count of samples which the least interval would have taken in addition.
+     * @return                  saved samples count
+     */
+    public long getSavedCount() {
+        return savedCount;
+    }
+
+    /**
+     * Sets least interval and returns self object for easy init.
+     * @param minInterval       interval, in milliseconds
+     * @return                  self object
+     */
+    public AdaptiveSampler setMinInterval(long minInterval) {
+        this.minInterval = minInterval;
+        this.interval = minInterval;
+        return this;
+    }
+
+    /**
+     * Sets largest interval and returns self object for easy init.
+     * @param maxInterval       interval, in milliseconds
+     * @return                  self object
+     */
+    public AdaptiveSampler setMaxInterval(long maxInterval) {
+        this.maxInterval = maxInterval;
+        return this;
+    }
+
+    /**
+     * Sets policy of the interval and returns self object for easy init.
+     * @param policy            policy
+     * @return                  self object
+     */
+    public AdaptiveSampler setPolicy(SamplingPolicy policy) {
+        this.policy = policy;
+        return this;
+    }
+}
@@ -0,0 +1,326 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous writer of log records.
+ * Producers put records into a bounded lock-free ring and return at once,
+ * a single drain thread formats the records and writes them in batches.
+ * A record which is not taken, since the writer is stopped or its drain thread has failed,
+ * is written by the producer itself.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class AsyncLogWriter implements Runnable {
+
+    /**
+     * The longest pause of a blocked producer, in nanoseconds.
+     */
+    private static final long MAX_BACKOFF = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The ring capacity, must be a power of two.
+     */
+    private int capacity = 1024;
+
+    /**
+     * The number of written records which forces a flush.
+     */
+    private int flushSize = 64;
+
+    /**
+     * The longest time records may wait for a flush, in milliseconds.
+     */
+    private long flushInterval = 1000;
+
+    /**
+     * The behaviour of producers on the full ring.
+     */
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * The count of records lost on overflow.
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * The count of records accepted from producers.
+     */
+    private final AtomicLong appendedCount = new AtomicLong();
+
+    /**
+     * The count of producers which append a record now.
+     */
+    private final AtomicInteger appendingCount = new AtomicInteger();
+
+    /**
+     * The ring of queued records.
+     */
+    private volatile LogRingBuffer ring;
+
+    /**
+     * The destination of records.
+     */
+    private RecordWriter writer;
+
+    /**
+     * The flag of draining is on.
+     */
+    private volatile boolean isStarted = false;
+
+    /**
+     * The flag of the drain thread is parked and waits for records.
+     */
+    private volatile boolean isWaiting = false;
+
+    /**
+     * The drain thread.
+     */
+    private volatile Thread thread;
+
+    /**
+     * Starts the drain thread writing to the given destination.
+     * @param writer            destination of records
+     */
+    synchronized void start(RecordWriter writer) {
+        if (isStarted) {
+            throw new IllegalStateException("Writer is already started");
+        }
+        this.writer = writer;
+        ring = new LogRingBuffer(capacity);
+        isStarted = true;
+        thread = new Thread(this, "FileLogger-drain");
+        thread.start();
+    }
+
+    /**
+     * Stops the drain thread. Queued records, and the records of the producers which have been appending
+     * meanwhile, are written and flushed before return, the later ones are not taken.
+     */
+    public synchronized void stop() {
+        Thread drainThread = thread;
+        if (drainThread == null) {
+            return;
+        }
+        isStarted = false;
+        LockSupport.unpark(drainThread);
+        boolean interrupted = false;
+        while (drainThread.isAlive()) {
+            try {
+                drainThread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        thread = null;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        while (appendingCount.get() > 0) {
+            Thread.yield();
+        }
+        LogRingBuffer.Record record = new LogRingBuffer.Record();
+        boolean written = false;
+        while (ring.poll(record)) {
+            write(record);
+            written = true;
+        }
+        if (written) {
+            flush();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if records are taken.
+     * @return                  state of the writer
+     */
+    public boolean isStarted() {
+        return isStarted;
+    }
+
+    /**
+     * Queues record for writing.
+     * @param time              record time, in milliseconds
+     * @param level             record level
+     * @param message           record message, or <code>null</code> for a sample
+     * @param sample            record sample, or <code>null</code> for a text message
+     * @return                  <code>false</code> if the record is not taken and the caller writes it,
+     *                          a record dropped on overflow is taken
+     */
+    public boolean append(long time, String level, String message, Sample sample) {
+        appendingCount.incrementAndGet();
+        try {
+            if (!isStarted) {
+                return false;
+            }
+            LogRingBuffer ring = this.ring;
+            long backoff = 1000;
+            while (!ring.offer(time, level, message, sample)) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        droppedCount.incrementAndGet();
+                        return true;
+                    case DROP_OLDEST:
+                        if (ring.poll(null)) {
+                            droppedCount.incrementAndGet();
+                        }
+                        break;
+                    default:
+                        if (!isStarted) {
+                            return false;
+                        }
+                        LockSupport.unpark(thread);
+                        LockSupport.parkNanos(backoff);
+                        backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                }
+            }
+            appendedCount.incrementAndGet();
+            if (isWaiting && ring.size() >= flushSize) {
+                LockSupport.unpark(thread);
+            }
+            return true;
+        } finally {
+            appendingCount.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean isFailed = true;
+        try {
+            drain();
+            isFailed = false;
+        } finally {
+            if (isFailed) {
+                // the producers write their records themselves, the queued ones are written on stop
+                isStarted = false;
+            }
+        }
+    }
+
+    private void drain() {
+        LogRingBuffer.Record record = new LogRingBuffer.Record();
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushInterval);
+        long lastFlush = System.nanoTime();
+        int unflushed = 0;
+        while (true) {
+            boolean stopping = !isStarted;
+            while (ring.poll(record)) {
+                write(record);
+                if (++unflushed >= flushSize) {
+                    unflushed = flush();
+                    lastFlush = System.nanoTime();
+                }
+            }
+            long sinceFlush = System.nanoTime() - lastFlush;
+            if (unflushed > 0 && (stopping || sinceFlush >= flushIntervalNanos)) {
+                unflushed = flush();
+                lastFlush = System.nanoTime();
+                sinceFlush = 0;
+            }
+            if (stopping) {
+                return;
+            }
+            isWaiting = true;
+            if (ring.size() == 0 && isStarted) {
+                LockSupport.parkNanos(this, Math.max(flushIntervalNanos - sinceFlush, MAX_BACKOFF));
+            }
+            isWaiting = false;
+        }
+    }
+
+    /**
+     * Returns count of records lost on overflow.
+     * @return                  dropped records count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Returns count of records accepted for writing.
+     * @return                  appended records count
+     */
+    public long getAppendedCount() {
+        return appendedCount.get();
+    }
+
+    /**
+     * Sets ring capacity and returns self object for easy init.
+     * Applied on the next start.
+     * @param capacity          capacity, a power of two
+     * @return                  self object
+     */
+    public AsyncLogWriter setCapacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Sets number of records which forces a flush and returns self object for easy init.
+     * @param flushSize         records count
+     * @return                  self object
+     */
+    public AsyncLogWriter setFlushSize(int flushSize) {
+        this.flushSize = Math.max(1, flushSize);
+        return this;
+    }
+
+    /**
+     * Sets longest delay of a flush and returns self object for easy init.
+     * Applied on the next start.
+     * @param flushInterval     interval, in milliseconds
+     * @return                  self object
+     */
+    public AsyncLogWriter setFlushInterval(long flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Sets behaviour on the full ring and returns self object for easy init.
+     * @param overflowPolicy    overflow policy
+     * @return                  self object
+     */
+    public AsyncLogWriter setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Writes polled record, a failure of the record does not stop the writer.
+     * @param record            record
+     */
+    private void write(LogRingBuffer.Record record) {
+        try {
+            if (record.sample == null) {
+                writer.writeMessage(record.time, record.level, record.message);
+            } else {
+                writer.writeSample(record.sample);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        record.level = null;
+        record.message = null;
+        record.sample = null;
+    }
+
+    private int flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+}
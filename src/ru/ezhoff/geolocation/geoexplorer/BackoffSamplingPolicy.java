@@ -0,0 +1,49 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Sampling policy which returns to the least interval on activity
+ * and multiplies the interval by a factor while nothing changes.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class BackoffSamplingPolicy implements SamplingPolicy {
+
+    /**
+     * The multiplier of the interval of a quiet sample.
+     */
+    private double factor = 2;
+
+    /**
+     * The least activity which resets the interval.
+     */
+    private double threshold = 1;
+
+    @Override
+    public long nextInterval(long interval, long minInterval, double activity) {
+        if (activity >= threshold) {
+            return minInterval;
+        }
+        return (long) (interval * factor);
+    }
+
+    /**
+     * Sets multiplier of the interval of a quiet sample and returns self object for easy init.
+     * @param factor            multiplier, greater than <code>1</code>
+     * @return                  self object
+     */
+    public BackoffSamplingPolicy setFactor(double factor) {
+        this.factor = factor;
+        return this;
+    }
+
+    /**
+     * Sets least activity which resets the interval and returns self object for easy init.
+     * @param threshold         activity
+     * @return                  self object
+     */
+    public BackoffSamplingPolicy setThreshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writer of records in the binary trace format.
+ * <p>
+ * Every session starts with a header record: type <code>0</code>, magic <code>GEXT</code> and format version.
+ * Samples are fixed-layout records: type byte, time in epoch milliseconds, source id byte and the fields
+ * of the sample type. Source names, e.g. location providers, are written once per session as
+ * definition records. Text messages keep the level index and the message in modified UTF-8.
+ * All numbers are big-endian.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class BinaryTraceWriter implements RecordWriter {
+
+    /**
+     * The magic number of the header, <code>GEXT</code>.
+     */
+    static final int MAGIC = 0x47455854;
+
+    /**
+     * The current format version. Version 2 adds lost neighboring cell records, version 3 adds signal window
+     * summary records, version 4 adds road match records, version 5 adds dwell records.
+     */
+    static final int VERSION = 5;
+
+    /**
+     * The type of a session header record.
+     */
+    static final int HEADER = 0;
+
+    /**
+     * The type of a source definition record.
+     */
+    static final int SOURCE = 1;
+
+    /**
+     * The type of a text message record.
+     */
+    static final int MESSAGE = 2;
+
+    /**
+     * The destination.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * The ids of sources defined in this session.
+     */
+    private final Map<String, Integer> sources = new HashMap<String, Integer>();
+
+    /**
+     * Creates writer and writes session header.
+     * @param out               destination, buffering is up to the caller
+     * @throws IOException      if writing is failed
+     */
+    BinaryTraceWriter(OutputStream out) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.out.writeByte(HEADER);
+        this.out.writeInt(MAGIC);
+        this.out.writeShort(VERSION);
+    }
+
+    @Override
+    public void writeMessage(long time, String level, String message) throws IOException {
+        out.writeByte(MESSAGE);
+        out.writeLong(time);
+        out.writeByte(levelIndex(level));
+        out.writeUTF(message);
+    }
+
+    @Override
+    public void writeSample(Sample sample) throws IOException {
+        int source = sourceId(sample.source);
+        out.writeByte(sample.getType());
+        out.writeLong(sample.time);
+        out.writeByte(source);
+        sample.writeFields(out);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private int sourceId(String source) throws IOException {
+        if (source == null) {
+            return 0;
+        }
+        Integer id = sources.get(source);
+        if (id == null) {
+            if (sources.size() == 255) {
+                throw new IOException("Too many sources in the session");
+            }
+            id = sources.size() + 1;
+            sources.put(source, id);
+            out.writeByte(SOURCE);
+            out.writeByte(id);
+            out.writeUTF(source);
+        }
+        return id;
+    }
+
+    private static int levelIndex(String level) {
+        for (int i = 0; i < FileLogger.LEVELS.length; i++) {
+            if (FileLogger.LEVELS[i].equals(level)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
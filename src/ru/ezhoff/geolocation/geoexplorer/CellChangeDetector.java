@@ -0,0 +1,263 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Change detection stage of the periodical cell checks.
+ * Keeps the last reported snapshot of neighboring cells in a primitive map from the cell key
+ * (CID, LAC and PSC) to the reported RSSI and the last reported serving cell, and passes on
+ * only new cells, lost cells, RSSI changes of at least the hysteresis and serving cell changes.
+ * A keyframe with the full snapshot is passed on periodically and after every reset. It is compared
+ * with the previous snapshot as well, so its changes are counted and its lost cells are reported.
+ * <p>
+ * A check is fed as {@link #begin(long, int)}, {@link #neighbor(int, int, int, int, int)} for every
+ * neighboring cell, {@link #serving(CellSnapshot)} and {@link #end()}. Samples are created only for
+ * the passed changes, so a check without changes allocates nothing.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CellChangeDetector {
+
+    /**
+     * The consumer of passed samples.
+     */
+    private SampleSink sink;
+
+    /**
+     * The least RSSI change which is reported, in ASU.
+     */
+    private int hysteresis = 2;
+
+    /**
+     * The period of keyframes, in milliseconds.
+     */
+    private long keyframeInterval = 60 * 1000;
+
+    /**
+     * The reported RSSI of neighboring cells of the previous check.
+     */
+    private LongIntMap previous = new LongIntMap(16);
+
+    /**
+     * The reported RSSI of neighboring cells of the current check.
+     */
+    private LongIntMap current = new LongIntMap(16);
+
+    /**
+     * The time of the current check.
+     */
+    private long time;
+
+    /**
+     * The time of the last keyframe, or <code>Long.MIN_VALUE</code> if a keyframe is due.
+     */
+    private long keyframeTime = Long.MIN_VALUE;
+
+    /**
+     * The flag of the current check is a keyframe.
+     */
+    private boolean keyframe;
+
+    /**
+     * The neighboring cells count of the previous check.
+     */
+    private int neighborCount = -1;
+
+    /**
+     * The last reported serving cell, empty if there is none.
+     */
+    private final CellSnapshot serving = new CellSnapshot();
+
+    /**
+     * The count of changes passed by the last check, the unchanged samples of a keyframe excluded.
+     */
+    private int changeCount;
+
+    /**
+     * The count of passed samples.
+     */
+    private long passedCount;
+
+    /**
+     * The count of suppressed samples.
+     */
+    private long suppressedCount;
+
+    /**
+     * Forgets the snapshot, so the next check is a keyframe.
+     */
+    public void reset() {
+        previous.clear();
+        current.clear();
+        keyframeTime = Long.MIN_VALUE;
+        neighborCount = -1;
+        serving.clear();
+    }
+
+    /**
+     * Begins check.
+     * @param time              time of the check, in milliseconds
+     * @param neighborCount     count of neighboring cells
+     */
+    public void begin(long time, int neighborCount) {
+        this.time = time;
+        keyframe = keyframeTime == Long.MIN_VALUE || time - keyframeTime >= keyframeInterval;
+        if (keyframe) {
+            keyframeTime = time;
+        }
+        current.clear();
+        changeCount = 0;
+        boolean isChanged = neighborCount != this.neighborCount;
+        if (keyframe || isChanged) {
+            pass(CellSample.neighborCount(time, neighborCount), isChanged);
+        } else {
+            suppressedCount++;
+        }
+        this.neighborCount = neighborCount;
+    }
+
+    /**
+     * Takes neighboring cell of the check.
+     * @param cid               cell id
+     * @param lac               location area code
+     * @param networkType       radio network type
+     * @param psc               primary scrambling code
+     * @param rssi              received signal strength
+     */
+    public void neighbor(int cid, int lac, int networkType, int psc, int rssi) {
+        long key = key(cid, lac, psc);
+        int reported = previous.get(key);
+        boolean isChanged = reported == LongIntMap.ABSENT || Math.abs(rssi - reported) >= hysteresis;
+        if (keyframe || isChanged) {
+            pass(CellSample.neighbor(time, cid, lac, networkType, psc, rssi), isChanged);
+            current.put(key, rssi);
+        } else {
+            suppressedCount++;
+            current.put(key, reported);
+        }
+    }
+
+    /**
+     * Takes serving cell of the check.
+     * @param location          GSM or CDMA cell location, copied
+     */
+    public void serving(CellSnapshot location) {
+        if (location.isEmpty()) {
+            return;
+        }
+        boolean isChanged = !serving.sameCell(location);
+        if (keyframe || isChanged) {
+            serving.copyFrom(location);
+            pass(location.toSample(time, Sample.MONITOR), isChanged);
+        } else {
+            suppressedCount++;
+        }
+    }
+
+    /**
+     * Ends check, reports neighboring cells which are not seen anymore.
+     */
+    public void end() {
+        for (int slot = 0; slot < previous.slots(); slot++) {
+            if (previous.isUsed(slot) && current.get(previous.keyAt(slot)) == LongIntMap.ABSENT) {
+                long key = previous.keyAt(slot);
+                pass(CellSample.neighborLost(time, keyCid(key), keyLac(key), keyPsc(key)), true);
+            }
+        }
+        LongIntMap swap = previous;
+        previous = current;
+        current = swap;
+    }
+
+    /**
+     * Returns count of changes passed by the last check. The changes of a keyframe are counted
+     * against the previous snapshot, every cell of the first keyframe after a reset is a change.
+     * @return                  changes count
+     */
+    public int getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * Returns <code>true</code> if the last check is a keyframe.
+     * @return                  keyframe flag
+     */
+    public boolean isKeyframe() {
+        return keyframe;
+    }
+
+    /**
+     * Returns count of passed samples.
+     * @return                  passed samples count
+     */
+    public long getPassedCount() {
+        return passedCount;
+    }
+
+    /**
+     * Returns count of suppressed samples.
+     * @return                  suppressed samples count
+     */
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /**
+     * Sets consumer of passed samples and returns self object for easy init.
+     * @param sink              consumer
+     * @return                  self object
+     */
+    public CellChangeDetector setSink(SampleSink sink) {
+        this.sink = sink;
+        return this;
+    }
+
+    /**
+     * Sets least reported RSSI change and returns self object for easy init.
+     * @param hysteresis        change, in ASU
+     * @return                  self object
+     */
+    public CellChangeDetector setHysteresis(int hysteresis) {
+        this.hysteresis = hysteresis;
+        return this;
+    }
+
+    /**
+     * Sets period of keyframes and returns self object for easy init.
+     * @param keyframeInterval  period, in milliseconds
+     * @return                  self object
+     */
+    public CellChangeDetector setKeyframeInterval(long keyframeInterval) {
+        this.keyframeInterval = keyframeInterval;
+        return this;
+    }
+
+    private void pass(CellSample sample, boolean isChange) {
+        if (isChange) {
+            changeCount++;
+        }
+        passedCount++;
+        sink.log(sample);
+    }
+
+    static long key(int cid, int lac, int psc) {
+        return ((long) (lac & 0xFFFF) << 48) | ((long) (psc & 0xFFFF) << 32) | (cid & 0xFFFFFFFFL);
+    }
+
+    static int keyCid(long key) {
+        return (int) key;
+    }
+
+    static int keyLac(long key) {
+        return unsigned16((int) (key >>> 48));
+    }
+
+    static int keyPsc(long key) {
+        return unsigned16((int) (key >>> 32));
+    }
+
+    private static int unsigned16(int value) {
+        // 0xFFFF is reserved by both LAC and PSC and stands for the unknown -1
+        value &= 0xFFFF;
+        return value == 0xFFFF ? -1 : value;
+    }
+}
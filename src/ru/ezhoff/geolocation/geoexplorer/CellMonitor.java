@@ -4,6 +4,8 @@ import android.telephony.*;
 import android.telephony.cdma.CdmaCellLocation;
 import android.telephony.gsm.GsmCellLocation;
 
+import java.util.List;
+
 /**
  * @author e.ezhov
  * @version 1.0 05.06.13
@@ -15,9 +17,19 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
     private static final String MONITORING_MESSAGE = "CellMonitor::%s";
 
     /**
-     * The logger.
+     * The logger, taken again on every start since the previous one may be closed.
+     */
+    private volatile FileLogger logger = FileLogger.getInstance();
+
+    /**
+     * The bus of published samples, or <code>null</code> to pass samples to the logger.
      */
-    private FileLogger logger = FileLogger.getInstance();
+    private EventBus eventBus;
+
+    /**
+     * The consumer of samples of the current run, the bus or the logger.
+     */
+    private volatile SampleSink sink = logger;
 
     /**
      * The period of checking location in milliseconds.
@@ -31,19 +43,68 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
     private volatile boolean isStarted = false;
 
     /**
-     * The thread for checking by period.
+     * The scheduler of periodical checks.
      */
-    private Thread thread;
+    private MonitorScheduler scheduler;
+
+    /**
+     * The controller of the period of checks, or <code>null</code> for the fixed period.
+     */
+    private AdaptiveSampler sampler;
+
+    /**
+     * The change detection of periodical checks, or <code>null</code> to log every check in full.
+     */
+    private CellChangeDetector changeDetector;
+
+    /**
+     * The windowing stage of signal strengths, or <code>null</code> to log every raw signal sample.
+     */
+    private SignalAggregator signalAggregator;
+
+    /**
+     * The serving cell of the current check, reused by every check.
+     */
+    private final CellSnapshot servingSnapshot = new CellSnapshot();
 
     /**
      * The telephony manager.
      */
     private TelephonyManager telephonyManager;
 
+    /**
+     * The durations of the calls of the telephony manager and of the whole checks.
+     */
+    private final MetricsRegistry.Histogram neighboringCellInfoLatency =
+            MetricsRegistry.getInstance().histogram("CellMonitor.getNeighboringCellInfo");
+    private final MetricsRegistry.Histogram cellLocationLatency =
+            MetricsRegistry.getInstance().histogram("CellMonitor.getCellLocation");
+    private final MetricsRegistry.Histogram checkLatency =
+            MetricsRegistry.getInstance().histogram("CellMonitor.check");
+
+    /**
+     * The counts of listener callbacks.
+     */
+    private final MetricsRegistry.Counter serviceStateChangedCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onServiceStateChanged");
+    private final MetricsRegistry.Counter cellLocationChangedCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onCellLocationChanged");
+    private final MetricsRegistry.Counter callStateChangedCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onCallStateChanged");
+    private final MetricsRegistry.Counter dataConnectionStateChangedCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onDataConnectionStateChanged");
+    private final MetricsRegistry.Counter signalStrengthChangedCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onSignalStrengthChanged");
+    private final MetricsRegistry.Counter signalStrengthsChangedCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onSignalStrengthsChanged");
+    private final MetricsRegistry.Counter dataActivityCount =
+            MetricsRegistry.getInstance().counter("CellMonitor.onDataActivity");
+
     @Override
     public void onServiceStateChanged(ServiceState serviceState) {
         super.onServiceStateChanged(serviceState);
-        logger.info(formatModuleMessage(String.format(
+        serviceStateChangedCount.increment();
+        publishMessage(String.format(
                 "Listener::Service state changed - Operator Long: %s, Operator Short: %s, Operator Numeric: %s, " +
                         "State value: %s, Describe contents: %s, is roaming: %s",
                 serviceState.getOperatorAlphaLong(),
@@ -52,50 +113,51 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
                 serviceState.getState(),
                 serviceState.describeContents(),
                 serviceState.getRoaming()
-        )));
+        ));
     }
 
     @Override
     public void onCellLocationChanged(CellLocation location) {
         super.onCellLocationChanged(location);
-        logCellLocation("Listener::Cell location changed", location);
+        cellLocationChangedCount.increment();
+        logCellLocation(Sample.LISTENER, location);
     }
 
     @Override
     public void onCallStateChanged(int state, String incomingNumber) {
         super.onCallStateChanged(state, incomingNumber);
-        logger.info(formatModuleMessage(String.format(
+        callStateChangedCount.increment();
+        publishMessage(String.format(
                 "Listener::Cell state changed - State: %s, Incoming number: %s",
                 state,
                 incomingNumber
-        )));
+        ));
     }
 
     @Override
     public void onDataConnectionStateChanged(int state, int networkType) {
         super.onDataConnectionStateChanged(state, networkType);
-        logger.info(formatModuleMessage(String.format(
+        dataConnectionStateChangedCount.increment();
+        publishMessage(String.format(
                 "Listener::Data connection state changed - State: %s, Network type: %s",
                 state,
                 networkType
-        )));
+        ));
     }
 
     @Override
     public void onSignalStrengthChanged(int asu) {
         super.onSignalStrengthChanged(asu);
-        logger.info(formatModuleMessage(String.format(
-                "Listener::Signal strength changed - ASU: %s",
-                asu
-        )));
+        signalStrengthChangedCount.increment();
+        sink.log(SignalSample.asu(System.currentTimeMillis(), asu));
     }
 
     @Override
     public void onSignalStrengthsChanged(SignalStrength signalStrength) {
         super.onSignalStrengthsChanged(signalStrength);
-        logger.info(formatModuleMessage(String.format(
-                "Listener::Signal strengths changed - is GSM: %s, CDMA DBM: %s, CDMA ERIO: %s, EVDO DBM: %s, " +
-                        "EVDO ERIO: %s, EVDO SNR: %s, GSM BER: %s, GSM SS: %s, Describe contents: %s",
+        signalStrengthsChangedCount.increment();
+        sink.log(SignalSample.strengths(
+                System.currentTimeMillis(),
                 signalStrength.isGsm(),
                 signalStrength.getCdmaDbm(),
                 signalStrength.getCdmaEcio(),
@@ -103,34 +165,40 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
                 signalStrength.getEvdoEcio(),
                 signalStrength.getEvdoSnr(),
                 signalStrength.getGsmBitErrorRate(),
-                signalStrength.getGsmSignalStrength(),
-                signalStrength.describeContents()
-        )));
+                signalStrength.getGsmSignalStrength()
+        ));
     }
 
     @Override
     public void onDataConnectionStateChanged(int state) {
         super.onDataConnectionStateChanged(state);
-        logger.info(formatModuleMessage(String.format(
+        dataConnectionStateChangedCount.increment();
+        publishMessage(String.format(
                 "Listener::Data connection state changed - State: %s",
                 state
-        )));
+        ));
     }
 
     @Override
     public void onDataActivity(int direction) {
         super.onDataActivity(direction);
-        logger.info(formatModuleMessage(String.format(
+        dataActivityCount.increment();
+        publishMessage(String.format(
                 "Listener::Data activity - Direction: %s",
                 direction
-        )));
+        ));
     }
 
     @Override
     public void start() {
-        if (telephonyManager == null) {
+        if (telephonyManager == null || period > 0 && scheduler == null) {
             throw new IllegalMonitorStateException("Monitor is not initialized");
         }
+        logger = FileLogger.getInstance();
+        sink = eventBus != null ? eventBus : logger;
+        if (signalAggregator != null) {
+            sink = signalAggregator.setSink(sink).reset();
+        }
         telephonyManager.listen(
                 this,
                 PhoneStateListener.LISTEN_SERVICE_STATE
@@ -145,53 +213,88 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
         );
         logger.info(formatModuleMessage("Cell listener is added."));
         if (period > 0) {
+            if (changeDetector != null) {
+                changeDetector.setSink(sink).reset();
+            }
             isStarted = true;
-            if (thread == null) {
-                thread = new Thread(this);
+            if (sampler != null) {
+                sampler.reset();
+                scheduler.schedule(this, sampler.getInterval());
+            } else {
+                scheduler.schedule(this, period);
             }
-            thread.start();
             logger.info(formatModuleMessage("Cell monitor is started."));
         }
     }
 
     @Override
     public void stop() {
-        isStarted = false;
-        logger.info(formatModuleMessage("Signal to stopping for cell monitor is sent."));
+        if (isStarted) {
+            isStarted = false;
+            scheduler.cancel(this);
+            logger.info(formatModuleMessage("Cell monitor is stopped."));
+            logSamplerStatistics();
+        }
         telephonyManager.listen(this, PhoneStateListener.LISTEN_NONE);
+        if (signalAggregator != null) {
+            signalAggregator.flush();
+        }
         logger.info(formatModuleMessage("Cell listener is removed."));
     }
 
     @Override
     public void run() {
-        while (isStarted) {
-            if (Thread.interrupted()) {
-                return;
-            }
-            logger.info(formatModuleMessage(String.format(
-                    "Monitor::Neighboring cell count: %s",
-                    telephonyManager.getNeighboringCellInfo().size()
-            )));
-            for (NeighboringCellInfo neighboringCellInfo: telephonyManager.getNeighboringCellInfo()) {
-                logger.info(formatModuleMessage(String.format(
-                        "Monitor::Neighboring cell info: CID: %s, LAC: %s, Network type: %s, PSC: %s, RSSI: %s, " +
-                                "Describe contents: %s",
+        if (!isStarted) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        long time = System.currentTimeMillis();
+        List<NeighboringCellInfo> neighboringCells = telephonyManager.getNeighboringCellInfo();
+        neighboringCellInfoLatency.recordSince(startNanos);
+        if (signalAggregator != null) {
+            signalAggregator.advance(time);
+        }
+        if (changeDetector != null) {
+            int neighborCount = neighboringCells.size();
+            changeDetector.begin(time, neighborCount);
+            // no iterator, an unchanged check allocates nothing
+            for (int i = 0; i < neighborCount; i++) {
+                NeighboringCellInfo neighboringCellInfo = neighboringCells.get(i);
+                changeDetector.neighbor(
                         neighboringCellInfo.getCid(),
                         neighboringCellInfo.getLac(),
                         neighboringCellInfo.getNetworkType(),
                         neighboringCellInfo.getPsc(),
-                        neighboringCellInfo.getRssi(),
-                        neighboringCellInfo.describeContents()
-                )));
+                        neighboringCellInfo.getRssi()
+                );
             }
-            logCellLocation("Monitor::Cell location check", telephonyManager.getCellLocation());
-            try {
-                Thread.sleep(period);
-            } catch (InterruptedException e) {
-                logger.error(formatModuleMessage(e.getMessage()));
+            servingSnapshot.set(getCellLocation());
+            changeDetector.serving(servingSnapshot);
+            changeDetector.end();
+            checkLatency.recordSince(startNanos);
+            if (changeDetector.isKeyframe()) {
+                // the full snapshot of a keyframe is not the activity of the cells
+                keepPeriod();
+            } else {
+                adaptPeriod(changeDetector.getChangeCount());
             }
+            return;
+        }
+        sink.log(CellSample.neighborCount(time, neighboringCells.size()));
+        for (NeighboringCellInfo neighboringCellInfo: neighboringCells) {
+            sink.log(CellSample.neighbor(
+                    time,
+                    neighboringCellInfo.getCid(),
+                    neighboringCellInfo.getLac(),
+                    neighboringCellInfo.getNetworkType(),
+                    neighboringCellInfo.getPsc(),
+                    neighboringCellInfo.getRssi()
+            ));
         }
-        logger.info(formatModuleMessage("Cell monitor is stopped."));
+        logCellLocation(Sample.MONITOR, getCellLocation());
+        checkLatency.recordSince(startNanos);
+        // without change detection every check counts as a change
+        adaptPeriod(1);
     }
 
     /**
@@ -204,6 +307,37 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
         return this;
     }
 
+    /**
+     * Sets scheduler of periodical checks and returns self object for easy init.
+     * @param scheduler         scheduler
+     * @return                  self object
+     */
+    public CellMonitor setScheduler(MonitorScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Sets change detection of periodical checks and returns self object for easy init.
+     * The changes of a check are the activity reported to the sampler, a keyframe keeps the interval.
+     * @param changeDetector    change detection, or <code>null</code> to log every check in full
+     * @return                  self object
+     */
+    public CellMonitor setChangeDetector(CellChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+        return this;
+    }
+
+    /**
+     * Sets controller of the period of checks and returns self object for easy init.
+     * @param sampler           controller, or <code>null</code> for the fixed period
+     * @return                  self object
+     */
+    public CellMonitor setSampler(AdaptiveSampler sampler) {
+        this.sampler = sampler;
+        return this;
+    }
+
     /**
      * Sets period of checks and returns self object for easy init.
      * @param period            period, in milliseconds
@@ -214,30 +348,96 @@ public class CellMonitor extends PhoneStateListener implements Monitor, Runnable
         return this;
     }
 
-    private void logCellLocation(String prefix, CellLocation location) {
+    /**
+     * Sets bus of published samples and returns self object for easy init.
+     * Without the bus samples are passed to the logger.
+     * @param eventBus          event bus
+     * @return                  self object
+     */
+    public CellMonitor setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+        return this;
+    }
+
+    /**
+     * Sets windowing stage of signal strengths and returns self object for easy init.
+     * The stage takes all samples of the monitor and passes them on to the bus or the logger.
+     * @param signalAggregator  windowing stage, or <code>null</code> to log every raw signal sample
+     * @return                  self object
+     */
+    public CellMonitor setSignalAggregator(SignalAggregator signalAggregator) {
+        this.signalAggregator = signalAggregator;
+        return this;
+    }
+
+    private CellLocation getCellLocation() {
+        long startNanos = System.nanoTime();
+        CellLocation location = telephonyManager.getCellLocation();
+        cellLocationLatency.recordSince(startNanos);
+        return location;
+    }
+
+    private void logCellLocation(int origin, CellLocation location) {
+        CellSample sample = cellLocationSample(origin, location);
+        if (sample != null) {
+            sink.log(sample);
+        }
+    }
+
+    private CellSample cellLocationSample(int origin, CellLocation location) {
         if (location instanceof GsmCellLocation) {
             GsmCellLocation loc = (GsmCellLocation) location;
-            logger.info(formatModuleMessage(String.format(
-                    "%s{GSM} - CID: %s, LAC: %s",
-                    prefix,
+            return CellSample.gsm(
+                    System.currentTimeMillis(),
+                    origin,
                     loc.getCid(),
                     loc.getLac()
-            )));
+            );
         } else if (location instanceof CdmaCellLocation) {
             CdmaCellLocation loc = (CdmaCellLocation) location;
-            logger.info(formatModuleMessage(String.format(
-                    "%s{CDMA} - Station ID: %s, Latitude: %s, Longitude: %s, " +
-                            "Network ID: %s, System ID: %s",
-                    prefix,
+            return CellSample.cdma(
+                    System.currentTimeMillis(),
+                    origin,
                     loc.getBaseStationId(),
                     loc.getBaseStationLatitude(),
                     loc.getBaseStationLongitude(),
                     loc.getNetworkId(),
                     loc.getSystemId()
-            )));
+            );
+        }
+        return null;
+    }
+
+    private void adaptPeriod(double activity) {
+        if (sampler != null && isStarted) {
+            scheduler.schedule(this, sampler.report(activity));
         }
     }
 
+    private void keepPeriod() {
+        if (sampler != null && isStarted) {
+            scheduler.schedule(this, sampler.getInterval());
+        }
+    }
+
+    private void logSamplerStatistics() {
+        if (sampler != null) {
+            publishMessage(String.format(
+                    "Adaptive sampling - Samples: %s, Saved: %s",
+                    sampler.getSampleCount(),
+                    sampler.getSavedCount()
+            ));
+        }
+    }
+
+    /**
+     * Publishes message of an event to the sink, in order with the samples.
+     * @param message           message
+     */
+    private void publishMessage(String message) {
+        sink.log(MessageSample.info(formatModuleMessage(message)));
+    }
+
     private String formatModuleMessage(String message) {
         return String.format(MONITORING_MESSAGE, message);
     }
@@ -0,0 +1,338 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Cell observation: a neighboring cell, the count of neighboring cells or the serving cell location.
+ * Every kind of observation has its own binary record type and layout.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CellSample extends Sample {
+
+    /**
+     * The kind of a neighboring cell info.
+     */
+    public static final int NEIGHBOR = 4;
+
+    /**
+     * The kind of a neighboring cells count.
+     */
+    public static final int NEIGHBOR_COUNT = 5;
+
+    /**
+     * The kind of a GSM serving cell location.
+     */
+    public static final int GSM = 6;
+
+    /**
+     * The kind of a CDMA serving cell location.
+     */
+    public static final int CDMA = 7;
+
+    /**
+     * The kind of a neighboring cell which is not seen anymore.
+     */
+    public static final int NEIGHBOR_LOST = 10;
+
+    /**
+     * The kind of the observation, equals to the binary record type.
+     */
+    int kind;
+
+    /**
+     * The origin, {@link #LISTENER} or {@link #MONITOR}.
+     */
+    int origin = MONITOR;
+
+    /**
+     * The cell id, or the base station id for CDMA.
+     */
+    int cid;
+
+    /**
+     * The location area code, or the network id for CDMA.
+     */
+    int lac;
+
+    /**
+     * The primary scrambling code, or the system id for CDMA.
+     */
+    int psc;
+
+    /**
+     * The received signal strength, in ASU.
+     */
+    int rssi;
+
+    /**
+     * The radio network type.
+     */
+    int networkType;
+
+    /**
+     * The count of neighboring cells.
+     */
+    int count;
+
+    /**
+     * The base station latitude for CDMA, in units of 0.25 seconds.
+     */
+    int stationLatitude;
+
+    /**
+     * The base station longitude for CDMA, in units of 0.25 seconds.
+     */
+    int stationLongitude;
+
+    CellSample(int kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Creates sample of a neighboring cell info.
+     * @param time              time, in milliseconds
+     * @param cid               cell id
+     * @param lac               location area code
+     * @param networkType       radio network type
+     * @param psc               primary scrambling code
+     * @param rssi              received signal strength
+     * @return                  sample
+     */
+    public static CellSample neighbor(long time, int cid, int lac, int networkType, int psc, int rssi) {
+        CellSample sample = new CellSample(NEIGHBOR);
+        sample.time = time;
+        sample.cid = cid;
+        sample.lac = lac;
+        sample.networkType = networkType;
+        sample.psc = psc;
+        sample.rssi = rssi;
+        return sample;
+    }
+
+    /**
+     * Creates sample of a neighboring cell which is not seen anymore.
+     * @param time              time, in milliseconds
+     * @param cid               cell id
+     * @param lac               location area code
+     * @param psc               primary scrambling code
+     * @return                  sample
+     */
+    public static CellSample neighborLost(long time, int cid, int lac, int psc) {
+        CellSample sample = new CellSample(NEIGHBOR_LOST);
+        sample.time = time;
+        sample.cid = cid;
+        sample.lac = lac;
+        sample.psc = psc;
+        return sample;
+    }
+
+    /**
+     * Creates sample of a neighboring cells count.
+     * @param time              time, in milliseconds
+     * @param count             neighboring cells count
+     * @return                  sample
+     */
+    public static CellSample neighborCount(long time, int count) {
+        CellSample sample = new CellSample(NEIGHBOR_COUNT);
+        sample.time = time;
+        sample.count = count;
+        return sample;
+    }
+
+    /**
+     * Creates sample of a GSM serving cell location.
+     * @param time              time, in milliseconds
+     * @param origin            {@link #LISTENER} or {@link #MONITOR}
+     * @param cid               cell id
+     * @param lac               location area code
+     * @return                  sample
+     */
+    public static CellSample gsm(long time, int origin, int cid, int lac) {
+        CellSample sample = new CellSample(GSM);
+        sample.time = time;
+        sample.origin = origin;
+        sample.cid = cid;
+        sample.lac = lac;
+        return sample;
+    }
+
+    /**
+     * Creates sample of a CDMA serving cell location.
+     * @param time              time, in milliseconds
+     * @param origin            {@link #LISTENER} or {@link #MONITOR}
+     * @param stationId         base station id
+     * @param stationLatitude   base station latitude
+     * @param stationLongitude  base station longitude
+     * @param networkId         network id
+     * @param systemId          system id
+     * @return                  sample
+     */
+    public static CellSample cdma(long time, int origin, int stationId, int stationLatitude, int stationLongitude,
+                                  int networkId, int systemId) {
+        CellSample sample = new CellSample(CDMA);
+        sample.time = time;
+        sample.origin = origin;
+        sample.cid = stationId;
+        sample.stationLatitude = stationLatitude;
+        sample.stationLongitude = stationLongitude;
+        sample.lac = networkId;
+        sample.psc = systemId;
+        return sample;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int getOrigin() {
+        return origin;
+    }
+
+    public int getCid() {
+        return cid;
+    }
+
+    public int getLac() {
+        return lac;
+    }
+
+    public int getPsc() {
+        return psc;
+    }
+
+    public int getRssi() {
+        return rssi;
+    }
+
+    public int getNetworkType() {
+        return networkType;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getStationLatitude() {
+        return stationLatitude;
+    }
+
+    public int getStationLongitude() {
+        return stationLongitude;
+    }
+
+    @Override
+    String getMonitorName() {
+        return "CellMonitor";
+    }
+
+    @Override
+    int getType() {
+        return kind;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        switch (kind) {
+            case NEIGHBOR:
+                out.writeInt(cid);
+                out.writeInt(lac);
+                out.writeInt(psc);
+                out.writeInt(rssi);
+                out.writeByte(networkType);
+                break;
+            case NEIGHBOR_COUNT:
+                out.writeShort(count);
+                break;
+            case NEIGHBOR_LOST:
+                out.writeInt(cid);
+                out.writeInt(lac);
+                out.writeInt(psc);
+                break;
+            case GSM:
+                out.writeByte(origin);
+                out.writeInt(cid);
+                out.writeInt(lac);
+                break;
+            default:
+                out.writeByte(origin);
+                out.writeInt(cid);
+                out.writeInt(stationLatitude);
+                out.writeInt(stationLongitude);
+                out.writeInt(lac);
+                out.writeInt(psc);
+        }
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        switch (kind) {
+            case NEIGHBOR:
+                cid = in.readInt();
+                lac = in.readInt();
+                psc = in.readInt();
+                rssi = in.readInt();
+                networkType = in.readUnsignedByte();
+                break;
+            case NEIGHBOR_COUNT:
+                count = in.readUnsignedShort();
+                break;
+            case NEIGHBOR_LOST:
+                cid = in.readInt();
+                lac = in.readInt();
+                psc = in.readInt();
+                break;
+            case GSM:
+                origin = in.readUnsignedByte();
+                cid = in.readInt();
+                lac = in.readInt();
+                break;
+            default:
+                origin = in.readUnsignedByte();
+                cid = in.readInt();
+                stationLatitude = in.readInt();
+                stationLongitude = in.readInt();
+                lac = in.readInt();
+                psc = in.readInt();
+        }
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        builder.append("CellMonitor::");
+        switch (kind) {
+            case NEIGHBOR:
+                // describeContents() of NeighboringCellInfo is always 0, so it is not stored
+                builder.append("Monitor::Neighboring cell info: CID: ").append(cid)
+                       .append(", LAC: ").append(lac)
+                       .append(", Network type: ").append(networkType)
+                       .append(", PSC: ").append(psc)
+                       .append(", RSSI: ").append(rssi)
+                       .append(", Describe contents: 0");
+                break;
+            case NEIGHBOR_COUNT:
+                builder.append("Monitor::Neighboring cell count: ").append(count);
+                break;
+            case NEIGHBOR_LOST:
+                builder.append("Monitor::Neighboring cell lost: CID: ").append(cid)
+                       .append(", LAC: ").append(lac)
+                       .append(", PSC: ").append(psc);
+                break;
+            case GSM:
+                builder.append(origin == LISTENER ? "Listener::Cell location changed" : "Monitor::Cell location check")
+                       .append("{GSM} - CID: ").append(cid)
+                       .append(", LAC: ").append(lac);
+                break;
+            default:
+                builder.append(origin == LISTENER ? "Listener::Cell location changed" : "Monitor::Cell location check")
+                       .append("{CDMA} - Station ID: ").append(cid)
+                       .append(", Latitude: ").append(stationLatitude)
+                       .append(", Longitude: ").append(stationLongitude)
+                       .append(", Network ID: ").append(lac)
+                       .append(", System ID: ").append(psc);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.telephony.CellLocation;
+import android.telephony.cdma.CdmaCellLocation;
+import android.telephony.gsm.GsmCellLocation;
+
+/**
+ * Mutable primitive copy of a serving cell location, reused by the periodical checks.
+ * A check reads the cell location of the telephony manager into a snapshot and compares it with the last
+ * reported one, a {@link CellSample} is created only when the cell has changed, so an unchanged check
+ * allocates nothing.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public final class CellSnapshot {
+
+    /**
+     * The kind, {@link CellSample#GSM} or {@link CellSample#CDMA}, or <code>0</code> if the snapshot is empty.
+     */
+    int kind;
+
+    /**
+     * The cell id, or the base station id for CDMA.
+     */
+    int cid;
+
+    /**
+     * The location area code, or the network id for CDMA.
+     */
+    int lac;
+
+    /**
+     * The system id for CDMA.
+     */
+    int psc;
+
+    /**
+     * The base station coordinates for CDMA, in units of 0.25 seconds.
+     */
+    int stationLatitude;
+    int stationLongitude;
+
+    /**
+     * Reads cell location.
+     * @param location          cell location of the telephony manager, or <code>null</code>
+     * @return                  <code>false</code> if the location is neither GSM nor CDMA, the snapshot is empty
+     */
+    public boolean set(CellLocation location) {
+        if (location instanceof GsmCellLocation) {
+            GsmCellLocation gsm = (GsmCellLocation) location;
+            kind = CellSample.GSM;
+            cid = gsm.getCid();
+            lac = gsm.getLac();
+            psc = 0;
+            stationLatitude = 0;
+            stationLongitude = 0;
+            return true;
+        }
+        if (location instanceof CdmaCellLocation) {
+            CdmaCellLocation cdma = (CdmaCellLocation) location;
+            kind = CellSample.CDMA;
+            cid = cdma.getBaseStationId();
+            lac = cdma.getNetworkId();
+            psc = cdma.getSystemId();
+            stationLatitude = cdma.getBaseStationLatitude();
+            stationLongitude = cdma.getBaseStationLongitude();
+            return true;
+        }
+        clear();
+        return false;
+    }
+
+    /**
+     * Reads serving cell of a recorded sample.
+     * @param sample            GSM or CDMA sample
+     * @return                  <code>false</code> if the sample is neither GSM nor CDMA, the snapshot is empty
+     */
+    public boolean set(CellSample sample) {
+        if (sample.kind != CellSample.GSM && sample.kind != CellSample.CDMA) {
+            clear();
+            return false;
+        }
+        kind = sample.kind;
+        cid = sample.cid;
+        lac = sample.lac;
+        psc = sample.psc;
+        stationLatitude = sample.stationLatitude;
+        stationLongitude = sample.stationLongitude;
+        return true;
+    }
+
+    /**
+     * Empties snapshot.
+     */
+    public void clear() {
+        kind = 0;
+    }
+
+    /**
+     * Returns <code>true</code> if the snapshot holds a cell location.
+     * @return                  state of the snapshot
+     */
+    public boolean isEmpty() {
+        return kind == 0;
+    }
+
+    /**
+     * Copies the given snapshot.
+     * @param snapshot          source
+     */
+    public void copyFrom(CellSnapshot snapshot) {
+        kind = snapshot.kind;
+        cid = snapshot.cid;
+        lac = snapshot.lac;
+        psc = snapshot.psc;
+        stationLatitude = snapshot.stationLatitude;
+        stationLongitude = snapshot.stationLongitude;
+    }
+
+    /**
+     * Returns <code>true</code> if both snapshots hold the same cell.
+     * @param snapshot          other snapshot
+     * @return                  result of comparison, <code>false</code> if any of them is empty
+     */
+    public boolean sameCell(CellSnapshot snapshot) {
+        return kind != 0
+                && kind == snapshot.kind
+                && cid == snapshot.cid
+                && lac == snapshot.lac
+                && psc == snapshot.psc
+                && stationLatitude == snapshot.stationLatitude
+                && stationLongitude == snapshot.stationLongitude;
+    }
+
+    /**
+     * Creates sample of the snapshot.
+     * @param time              time, in milliseconds
+     * @param origin            {@link Sample#LISTENER} or {@link Sample#MONITOR}
+     * @return                  sample, or <code>null</code> if the snapshot is empty
+     */
+    public CellSample toSample(long time, int origin) {
+        switch (kind) {
+            case CellSample.GSM:
+                return CellSample.gsm(time, origin, cid, lac);
+            case CellSample.CDMA:
+                return CellSample.cdma(time, origin, cid, stationLatitude, stationLongitude, lac, psc);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Source of monotonic time, replaceable by a virtual one.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public interface Clock {
+
+    /**
+     * The clock of {@link System#nanoTime()}.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Returns current time of the clock.
+     * @return                  time, in nanoseconds
+     */
+    long nanoTime();
+}
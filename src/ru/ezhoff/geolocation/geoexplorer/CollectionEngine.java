@@ -0,0 +1,237 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collection engine which owns the monitors, their scheduler and the logger for the whole collection.
+ * It does not depend on Android components, {@link CollectionService} keeps it alive independently
+ * of the activity, which only binds to the service for the status.
+ * <p>
+ * Start opens the logger, subscribes it to the bus of samples, starts the scheduler and the monitors,
+ * stop stops them in the reverse order and closes the logger, so the engine may be started and stopped
+ * any number of times without keeping threads or files of previous runs.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CollectionEngine {
+
+    /**
+     * The monitors in order of start.
+     */
+    private final List<Monitor> monitors = new ArrayList<Monitor>();
+
+    /**
+     * The scheduler of periodical checks of the monitors.
+     */
+    private MonitorScheduler scheduler;
+
+    /**
+     * The logger of the current run, or <code>null</code>.
+     */
+    private FileLogger logger;
+
+    /**
+     * The bus of the samples of the monitors, or <code>null</code> if they are passed to the logger.
+     */
+    private EventBus eventBus;
+
+    /**
+     * The subscription of the logger of the current run to the bus.
+     */
+    private EventBus.Subscription loggerSubscription;
+
+    /**
+     * The consumer of the failures of the probes in the current run, the bus or the logger, or <code>null</code>.
+     */
+    private volatile SampleSink errorSink;
+
+    /**
+     * The handler of the failures of the probes, passes them to the consumer of the current run.
+     */
+    private final MonitorScheduler.ErrorHandler probeErrorHandler = new MonitorScheduler.ErrorHandler() {
+        @Override
+        public void onError(Runnable probe, RuntimeException e) {
+            SampleSink sink = errorSink;
+            if (sink != null) {
+                sink.log(MessageSample.error(String.format("MonitorScheduler::Probe failed - %s", e)));
+            }
+        }
+    };
+
+    /**
+     * The time of the current run start, in milliseconds.
+     */
+    private long startTime;
+
+    /**
+     * The count of runs.
+     */
+    private long runCount;
+
+    /**
+     * Starts collection, does nothing if it is already started.
+     * If a monitor fails to start, the started ones are stopped and the exception is thrown again.
+     */
+    public synchronized void start() {
+        if (scheduler == null) {
+            throw new IllegalStateException("Engine is not initialized");
+        }
+        if (logger != null) {
+            return;
+        }
+        logger = FileLogger.getInstance();
+        logger.info("Monitoring is activated.");
+        if (eventBus != null) {
+            loggerSubscription = eventBus.subscribe("FileLogger", logger);
+        }
+        errorSink = eventBus != null ? eventBus : logger;
+        scheduler.start();
+        int started = 0;
+        try {
+            for (Monitor monitor: monitors) {
+                monitor.start();
+                started++;
+            }
+        } catch (RuntimeException e) {
+            // the engine is left stopped, as it was before the start
+            for (int i = started - 1; i >= 0; i--) {
+                monitors.get(i).stop();
+            }
+            scheduler.stop();
+            errorSink = null;
+            if (loggerSubscription != null) {
+                eventBus.unsubscribe(loggerSubscription);
+                loggerSubscription = null;
+            }
+            logger.error(String.format("Monitoring is not activated - %s", e));
+            logger.close();
+            logger = null;
+            throw e;
+        }
+        startTime = System.currentTimeMillis();
+        runCount++;
+    }
+
+    /**
+     * Stops collection and closes the logger, does nothing if it is not started.
+     */
+    public synchronized void stop() {
+        if (logger == null) {
+            return;
+        }
+        for (int i = monitors.size() - 1; i >= 0; i--) {
+            monitors.get(i).stop();
+        }
+        scheduler.stop();
+        errorSink = null;
+        if (loggerSubscription != null) {
+            eventBus.unsubscribe(loggerSubscription);
+            loggerSubscription = null;
+        }
+        logger.info("Monitoring is deactivated.");
+        logger.close();
+        logger = null;
+    }
+
+    /**
+     * Logs marker message of the user, the log is opened for it if collection is not started.
+     */
+    public synchronized void mark() {
+        log("MARKER", true);
+    }
+
+    /**
+     * Logs message, the log is opened for it if collection is not started.
+     * @param message           message
+     */
+    public synchronized void info(String message) {
+        log(message, false);
+    }
+
+    /**
+     * Logs warning, the log is opened for it if collection is not started.
+     * @param message           message
+     */
+    public synchronized void warn(String message) {
+        log(message, true);
+    }
+
+    private void log(String message, boolean isWarning) {
+        FileLogger logger = this.logger != null ? this.logger : FileLogger.getInstance();
+        if (isWarning) {
+            logger.warn(message);
+        } else {
+            logger.info(message);
+        }
+        if (this.logger == null) {
+            logger.close();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if collection is started.
+     * @return                  state of the engine
+     */
+    public synchronized boolean isStarted() {
+        return logger != null;
+    }
+
+    /**
+     * Returns time of the current run start.
+     * @return                  time, in milliseconds, or <code>0</code> if collection is not started
+     */
+    public synchronized long getStartTime() {
+        return logger != null ? startTime : 0;
+    }
+
+    /**
+     * Returns count of started runs.
+     * @return                  count
+     */
+    public synchronized long getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Adds monitor and returns self object for easy init.
+     * @param monitor           monitor, scheduled by the scheduler of the engine
+     * @return                  self object
+     */
+    public synchronized CollectionEngine addMonitor(Monitor monitor) {
+        if (logger != null) {
+            throw new IllegalStateException("Engine is started");
+        }
+        monitors.add(monitor);
+        return this;
+    }
+
+    /**
+     * Sets scheduler of periodical checks and returns self object for easy init.
+     * The failures of its probes are logged in the runs of the engine.
+     * @param scheduler         scheduler
+     * @return                  self object
+     */
+    public synchronized CollectionEngine setScheduler(MonitorScheduler scheduler) {
+        if (logger != null) {
+            throw new IllegalStateException("Engine is started");
+        }
+        this.scheduler = scheduler.setErrorHandler(probeErrorHandler);
+        return this;
+    }
+
+    /**
+     * Sets bus of the samples of the monitors and returns self object for easy init.
+     * The logger of every run is subscribed to it for the run.
+     * @param eventBus          event bus
+     * @return                  self object
+     */
+    public synchronized CollectionEngine setEventBus(EventBus eventBus) {
+        if (logger != null) {
+            throw new IllegalStateException("Engine is started");
+        }
+        this.eventBus = eventBus;
+        return this;
+    }
+}
@@ -0,0 +1,257 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.location.LocationManager;
+import android.os.Binder;
+import android.os.Environment;
+import android.os.IBinder;
+import android.telephony.TelephonyManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+/**
+ * Foreground service which keeps the {@link CollectionEngine} running while the activity is gone.
+ * Collection is started and stopped by {@link #ACTION_START} and {@link #ACTION_STOP} intents,
+ * the activity binds to the service to show the status. If the sync URL is set, the service uploads
+ * the segments by a {@link SyncEngine} and stays after the stop of the collection until they are sent.
+ * If the road extract {@link #ROADS_FILE} is on the external storage, the fused fixes are matched to the roads
+ * by a {@link MapMatcher} and the matches are logged with the other samples. The fixes are logged
+ * and published through a {@link TrajectorySimplifier}, so a parked device logs a dwell instead of its fixes.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CollectionService extends Service {
+
+    public static final String ACTION_START = "ru.ezhoff.geolocation.geoexplorer.action.START";
+    public static final String ACTION_STOP = "ru.ezhoff.geolocation.geoexplorer.action.STOP";
+
+    public static final int PERIOD = 500;
+    public static final long MAX_PERIOD = 16 * 1000;
+    public static final int SEGMENT_SIZE = 4 * 1024 * 1024;
+    public static final long SEGMENT_ROTATION = 60 * 60 * 1000;
+    public static final int MAX_SEGMENTS = 256;
+    public static final int RSSI_HYSTERESIS = 2;
+    public static final long KEYFRAME_INTERVAL = 60 * 1000;
+    public static final int COVERAGE_CAPACITY = 256 * 1024;
+    public static final int LIVE_VIEW_LINES = 100;
+    public static final long METRICS_PERIOD = 60 * 1000;
+    public static final int SUBSCRIBER_CAPACITY = 4096;
+    public static final long SIGNAL_WINDOW = 60 * 1000;
+    public static final long SIGNAL_SLIDE = 60 * 1000;
+    public static final long SYNC_INTERVAL = 60 * 60 * 1000;
+    public static final String ROADS_FILE = "explorer-roads.osm";
+    public static final int MATCHER_CAPACITY = 1024;
+    public static final float TRACE_TOLERANCE = 10;
+    public static final long DWELL_TIME = 10 * 1000;
+    public static final long DWELL_GAP = 10 * 1000;
+
+    private static final int NOTIFICATION_ID = 1;
+
+    private final IBinder binder = new LocalBinder();
+    private CollectionEngine engine;
+    private CoverageIndex coverageIndex;
+    private TowerEstimator towerEstimator;
+    private EventBus eventBus;
+    private EventBus.Subscription coverageSubscription;
+    private EventBus.Subscription towerSubscription;
+    private LiveView liveView;
+    private SyncEngine syncEngine;
+    private volatile boolean isStopping;
+    private volatile MapMatcher mapMatcher;
+    private EventBus.Subscription matcherSubscription;
+    private boolean isDestroyed;
+
+    /**
+     * Binder of the activity, in the same process.
+     */
+    public class LocalBinder extends Binder {
+
+        public CollectionEngine getEngine() {
+            return engine;
+        }
+
+        public LiveView getLiveView() {
+            return liveView;
+        }
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        FileLogger.setSegmentedStore(new SegmentedLogStore()
+                .setSegmentSize(SEGMENT_SIZE)
+                .setRotationInterval(SEGMENT_ROTATION)
+                .setMaxSegments(MAX_SEGMENTS));
+        FileLogger.setAsyncWriter(new AsyncLogWriter().setOverflowPolicy(OverflowPolicy.BLOCK));
+        coverageIndex = new CoverageIndex().setCapacity(COVERAGE_CAPACITY);
+        towerEstimator = new TowerEstimator();
+        eventBus = new EventBus();
+        // the index and the estimator only lose precision on overflow, the monitors never wait for them
+        coverageSubscription = eventBus.subscribe("CoverageIndex", coverageIndex,
+                SUBSCRIBER_CAPACITY, OverflowPolicy.DROP_OLDEST);
+        towerSubscription = eventBus.subscribe("TowerEstimator", towerEstimator,
+                SUBSCRIBER_CAPACITY, OverflowPolicy.DROP_OLDEST);
+        liveView = new LiveView(LIVE_VIEW_LINES);
+        FileLogger.setLiveView(liveView);
+        engine = createEngine();
+        syncEngine = createSyncEngine();
+        if (syncEngine != null) {
+            syncEngine.start();
+        }
+        loadRoads();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // the intent is null when the system restarts the sticky service, the collection goes on
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            isStopping = true;
+            MapMatcher matcher = mapMatcher;
+            if (matcher != null) {
+                // the pending fixes are logged before the logger is closed
+                matcher.flush();
+            }
+            engine.stop();
+            stopForeground(true);
+            if (syncEngine != null) {
+                // the service is stopped by the sync engine when the last record is sent
+                syncEngine.requestSync();
+            } else {
+                stopSelf();
+            }
+        } else {
+            isStopping = false;
+            engine.start();
+            startForeground(NOTIFICATION_ID, createNotification());
+        }
+        return START_STICKY;
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return binder;
+    }
+
+    @Override
+    public void onDestroy() {
+        engine.stop();
+        if (syncEngine != null) {
+            syncEngine.stop();
+        }
+        eventBus.unsubscribe(coverageSubscription);
+        eventBus.unsubscribe(towerSubscription);
+        synchronized (this) {
+            isDestroyed = true;
+            if (matcherSubscription != null) {
+                eventBus.unsubscribe(matcherSubscription);
+            }
+        }
+        FileLogger.setLiveView(null);
+        super.onDestroy();
+    }
+
+    private CollectionEngine createEngine() {
+        MonitorScheduler scheduler = new MonitorScheduler().setTickPeriod(PERIOD);
+        CollectionEngine engine = new CollectionEngine().setScheduler(scheduler).setEventBus(eventBus);
+        LocationManager locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
+        TelephonyManager telephonyManager = (TelephonyManager) getSystemService(TELEPHONY_SERVICE);
+        LocationFusion fusion = new LocationFusion();
+        // the fusion takes every fix, only the logged and published ones are simplified
+        TrajectorySimplifier simplifier = new TrajectorySimplifier()
+                .setTolerance(TRACE_TOLERANCE)
+                .setDwell(DWELL_TIME, DWELL_GAP);
+        for (String provider: locationManager.getProviders(true)) {
+            engine.addMonitor(
+                    new LocationMonitor().setLocationManager(locationManager).setProvider(provider)
+                            .setScheduler(scheduler).setSampler(createSampler()).setPeriod(PERIOD)
+                            .setFusion(fusion).setSimplifier(simplifier).setEventBus(eventBus)
+            );
+        }
+        engine.addMonitor(
+                new CellMonitor().setTelephonyManager(telephonyManager).setScheduler(scheduler)
+                        .setSampler(createSampler()).setPeriod(PERIOD).setEventBus(eventBus)
+                        .setChangeDetector(new CellChangeDetector()
+                                .setHysteresis(RSSI_HYSTERESIS)
+                                .setKeyframeInterval(KEYFRAME_INTERVAL))
+                        .setSignalAggregator(new SignalAggregator().setWindow(SIGNAL_WINDOW, SIGNAL_SLIDE))
+        );
+        engine.addMonitor(new MetricsMonitor().setScheduler(scheduler).setPeriod(METRICS_PERIOD));
+        return engine;
+    }
+
+    private SyncEngine createSyncEngine() {
+        String syncUrl = getString(R.string.sync_url);
+        if (syncUrl.length() == 0) {
+            return null;
+        }
+        try {
+            TelephonyManager telephonyManager = (TelephonyManager) getSystemService(TELEPHONY_SERVICE);
+            return new SyncEngine()
+                    .setDirectory(FileLogger.getSegmentsDirectory())
+                    .setUrl(new URL(syncUrl))
+                    .setDeviceId(telephonyManager.getDeviceId())
+                    .setCollectionEngine(engine)
+                    .setSyncInterval(SYNC_INTERVAL)
+                    .setIdleListener(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (isStopping && !engine.isStarted()) {
+                                stopSelf();
+                            }
+                        }
+                    });
+        } catch (MalformedURLException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Loads the road extract on a thread of its own, since it takes seconds, and subscribes the matcher.
+     */
+    private void loadRoads() {
+        final File roads = new File(Environment.getExternalStorageDirectory(), ROADS_FILE);
+        if (!roads.isFile()) {
+            return;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // the matches are published to the bus from the drain thread of the matcher, which then
+                    // gets them as well, so it never waits for its own queue
+                    MapMatcher matcher = new MapMatcher(RoadGraph.load(roads)).setSink(eventBus);
+                    synchronized (CollectionService.this) {
+                        if (!isDestroyed) {
+                            matcherSubscription = eventBus.subscribe("MapMatcher", matcher,
+                                    MATCHER_CAPACITY, OverflowPolicy.DROP_OLDEST);
+                            mapMatcher = matcher;
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }, "RoadGraph").start();
+    }
+
+    private AdaptiveSampler createSampler() {
+        return new AdaptiveSampler().setMinInterval(PERIOD).setMaxInterval(MAX_PERIOD);
+    }
+
+    private Notification createNotification() {
+        Notification notification = new Notification(android.R.drawable.ic_menu_mylocation,
+                getText(R.string.collecting), System.currentTimeMillis());
+        notification.flags |= Notification.FLAG_ONGOING_EVENT | Notification.FLAG_NO_CLEAR;
+        notification.setLatestEventInfo(this, getText(R.string.app_name), getText(R.string.collecting_text),
+                PendingIntent.getActivity(this, 0, new Intent(this, ExplorerActivity.class), 0));
+        return notification;
+    }
+}
@@ -0,0 +1,239 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Reader of the columnar session file of {@link ColumnarSessionWriter}.
+ * The footer is read on open, then every column is scanned separately by a {@link Column} cursor,
+ * which reads and decodes only the chunks of its column.
+ * <p>
+ * Every row has all columns. The location columns hold the last fix by the time of the row, the cell
+ * columns hold the cell of a cell row and the last serving cell in other rows, the operator column holds
+ * the last operator.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class ColumnarSessionReader {
+
+    /**
+     * The columns.
+     */
+    public static final int TIME = 0;
+    public static final int KIND = 1;
+    public static final int LATITUDE = 2;
+    public static final int LONGITUDE = 3;
+    public static final int ACCURACY = 4;
+    public static final int PROVIDER = 5;
+    public static final int CID = 6;
+    public static final int LAC = 7;
+    public static final int RSSI = 8;
+    public static final int OPERATOR = 9;
+
+    static final int COLUMN_COUNT = 10;
+
+    /**
+     * The names of the columns, by column.
+     */
+    public static final String[] COLUMN_NAMES = {
+            "time", "kind", "latitude", "longitude", "accuracy", "provider", "cid", "lac", "rssi", "operator"
+    };
+
+    /**
+     * The kinds of rows.
+     */
+    public static final int FIX = 0;
+    public static final int NEIGHBOR = 1;
+    public static final int NEIGHBOR_LOST = 2;
+    public static final int SERVING = 3;
+    public static final int SIGNAL = 4;
+    public static final int MARKER = 5;
+
+    private final RandomAccessFile file;
+
+    private final int[] groupRowCounts;
+    private final long[][] groupOffsets;
+    private final int[][] groupLengths;
+
+    private final String[] providers;
+    private final String[] operators;
+
+    private long rowCount;
+
+    /**
+     * Cursor over the values of one column.
+     */
+    public final class Column {
+
+        private final int column;
+
+        private int group = -1;
+
+        /**
+         * The rows left in the current group.
+         */
+        private int rows;
+
+        private byte[] chunk = new byte[0];
+
+        private int position;
+
+        private long value;
+
+        private Column(int column) {
+            this.column = column;
+        }
+
+        /**
+         * Moves to the value of the next row.
+         * @return                  <code>false</code> if there are no more rows
+         * @throws IOException      if reading is failed
+         */
+        public boolean next() throws IOException {
+            while (rows == 0) {
+                if (++group == groupRowCounts.length) {
+                    return false;
+                }
+                rows = groupRowCounts[group];
+                int length = groupLengths[group][column];
+                if (chunk.length < length) {
+                    chunk = new byte[length];
+                }
+                synchronized (file) {
+                    file.seek(groupOffsets[group][column]);
+                    file.readFully(chunk, 0, length);
+                }
+                position = 0;
+                value = 0;
+            }
+            rows--;
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = chunk[position++];
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += (zigzag >>> 1) ^ -(zigzag & 1);
+            return true;
+        }
+
+        /**
+         * Returns value of the current row as stored: milliseconds, fixed point or dictionary index.
+         * @return                  value
+         */
+        public long getLong() {
+            return value;
+        }
+
+        /**
+         * Returns value of the current row of {@link #LATITUDE}, {@link #LONGITUDE} or {@link #ACCURACY}.
+         * @return                  degrees or meters
+         */
+        public double getDouble() {
+            return column == ACCURACY
+                    ? value / ColumnarSessionWriter.ACCURACY_SCALE
+                    : value / ColumnarSessionWriter.COORDINATE_SCALE;
+        }
+
+        /**
+         * Returns value of the current row of {@link #PROVIDER} or {@link #OPERATOR}.
+         * @return                  dictionary value, or <code>null</code> for none
+         */
+        public String getString() {
+            return value == 0 ? null : (column == PROVIDER ? providers : operators)[(int) value - 1];
+        }
+    }
+
+    /**
+     * Opens file and reads its footer.
+     * @param path              columnar file
+     * @throws IOException      if the file is not a columnar session file
+     */
+    public ColumnarSessionReader(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        try {
+            long length = file.length();
+            file.seek(0);
+            if (length < 13 || file.readInt() != ColumnarSessionWriter.MAGIC
+                    || file.readByte() != ColumnarSessionWriter.VERSION) {
+                throw new IOException("Not a columnar session file: " + path);
+            }
+            file.seek(length - 8);
+            int footerLength = file.readInt();
+            if (file.readInt() != ColumnarSessionWriter.MAGIC || footerLength < 0 || footerLength > length - 13) {
+                throw new IOException("Columnar session file is truncated: " + path);
+            }
+            byte[] footer = new byte[footerLength];
+            file.seek(length - 8 - footerLength);
+            file.readFully(footer);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(footer));
+            if (in.readInt() != COLUMN_COUNT) {
+                throw new IOException("Unknown columns of the columnar session file: " + path);
+            }
+            int groupCount = in.readInt();
+            groupRowCounts = new int[groupCount];
+            groupOffsets = new long[groupCount][COLUMN_COUNT];
+            groupLengths = new int[groupCount][COLUMN_COUNT];
+            for (int group = 0; group < groupCount; group++) {
+                groupRowCounts[group] = in.readInt();
+                rowCount += groupRowCounts[group];
+                for (int column = 0; column < COLUMN_COUNT; column++) {
+                    groupOffsets[group][column] = in.readLong();
+                    groupLengths[group][column] = in.readInt();
+                }
+            }
+            providers = readDictionary(in);
+            operators = readDictionary(in);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts scan of the column.
+     * @param column            column, one of {@link #TIME} and others
+     * @return                  cursor before the first row
+     */
+    public Column scan(int column) {
+        if (column < 0 || column >= COLUMN_COUNT) {
+            throw new IllegalArgumentException("Unknown column: " + column);
+        }
+        return new Column(column);
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns size of the encoded column.
+     * @param column            column
+     * @return                  size of its chunks, in bytes
+     */
+    public long getColumnSize(int column) {
+        long size = 0;
+        for (int[] lengths: groupLengths) {
+            size += lengths[column];
+        }
+        return size;
+    }
+
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static String[] readDictionary(DataInputStream in) throws IOException {
+        String[] values = new String[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readUTF();
+        }
+        return values;
+    }
+}
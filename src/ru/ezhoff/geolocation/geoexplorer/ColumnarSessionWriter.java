@@ -0,0 +1,224 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writer of a session into the columnar file read by {@link ColumnarSessionReader}.
+ * Rows are collected into row groups, every column of a group is a separate chunk of the file,
+ * so a reader scans one column without decoding the others.
+ * <p>
+ * Numeric columns are kept as deltas from the previous row in zigzag varints, coordinates and accuracy
+ * in fixed point, so the slow changing values of consecutive rows take a byte or two. Delta encoding
+ * restarts in every group, which makes groups independent. Providers and operators are indexes
+ * in dictionaries of the file, <code>0</code> is none.
+ * <p>
+ * The file is: the magic, the column chunks of all groups, the footer with the chunk offsets and
+ * the dictionaries, the footer length and the magic again.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class ColumnarSessionWriter {
+
+    /**
+     * The mark of the start and of the end of the file.
+     */
+    static final int MAGIC = 0x47584353;
+
+    static final int VERSION = 1;
+
+    /**
+     * The default count of rows of a group.
+     */
+    static final int GROUP_SIZE = 64 * 1024;
+
+    /**
+     * The fixed point scales of coordinates and of accuracy.
+     */
+    static final double COORDINATE_SCALE = 1e7;
+    static final double ACCURACY_SCALE = 10;
+
+    private final DataOutputStream out;
+
+    /**
+     * The count of rows of a group.
+     */
+    private final int groupSize;
+
+    /**
+     * The encoded chunks of the current group and their lengths, by column.
+     */
+    private final byte[][] chunks = new byte[ColumnarSessionReader.COLUMN_COUNT][];
+    private final int[] lengths = new int[ColumnarSessionReader.COLUMN_COUNT];
+
+    /**
+     * The values of the previous row of the group, by column.
+     */
+    private final long[] previous = new long[ColumnarSessionReader.COLUMN_COUNT];
+
+    /**
+     * The count of rows of the current group.
+     */
+    private int groupRows;
+
+    /**
+     * The position in the file.
+     */
+    private long position;
+
+    /**
+     * The row counts of written groups and the offsets and lengths of their chunks.
+     */
+    private final List<Integer> groupRowCounts = new ArrayList<Integer>();
+    private final List<long[]> groupOffsets = new ArrayList<long[]>();
+    private final List<int[]> groupLengths = new ArrayList<int[]>();
+
+    private final Map<String, Integer> providerIndexes = new HashMap<String, Integer>();
+    private final List<String> providers = new ArrayList<String>();
+    private final Map<String, Integer> operatorIndexes = new HashMap<String, Integer>();
+    private final List<String> operators = new ArrayList<String>();
+
+    /**
+     * Creates writer of the file, it is overwritten.
+     * @param file              columnar file
+     * @param groupSize         count of rows of a group
+     * @throws IOException      if the file can not be created
+     */
+    ColumnarSessionWriter(File file, int groupSize) throws IOException {
+        this.groupSize = groupSize;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        for (int column = 0; column < chunks.length; column++) {
+            chunks[column] = new byte[256];
+        }
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        position = 5;
+    }
+
+    /**
+     * Adds row.
+     * @param kind              row kind, one of {@link ColumnarSessionReader#FIX} and others
+     * @param time              time, in milliseconds
+     * @param latitude          latitude of the last fix, in degrees
+     * @param longitude         longitude of the last fix, in degrees
+     * @param accuracy          accuracy of the last fix, in meters
+     * @param provider          provider of the last fix, or <code>null</code>
+     * @param cid               cell id
+     * @param lac               location area code
+     * @param rssi              RSSI
+     * @param operator          numeric operator, or <code>null</code>
+     * @throws IOException      if writing is failed
+     */
+    void row(int kind, long time, double latitude, double longitude, float accuracy, String provider,
+             int cid, int lac, int rssi, String operator) throws IOException {
+        put(ColumnarSessionReader.TIME, time);
+        put(ColumnarSessionReader.KIND, kind);
+        put(ColumnarSessionReader.LATITUDE, Math.round(latitude * COORDINATE_SCALE));
+        put(ColumnarSessionReader.LONGITUDE, Math.round(longitude * COORDINATE_SCALE));
+        put(ColumnarSessionReader.ACCURACY, Math.round(accuracy * ACCURACY_SCALE));
+        put(ColumnarSessionReader.PROVIDER, index(provider, providerIndexes, providers));
+        put(ColumnarSessionReader.CID, cid);
+        put(ColumnarSessionReader.LAC, lac);
+        put(ColumnarSessionReader.RSSI, rssi);
+        put(ColumnarSessionReader.OPERATOR, index(operator, operatorIndexes, operators));
+        if (++groupRows == groupSize) {
+            writeGroup();
+        }
+    }
+
+    /**
+     * Writes the last group and the footer and closes the file.
+     * @throws IOException      if writing is failed
+     */
+    void close() throws IOException {
+        try {
+            if (groupRows > 0) {
+                writeGroup();
+            }
+            int footerStart = out.size();
+            out.writeInt(ColumnarSessionReader.COLUMN_COUNT);
+            out.writeInt(groupRowCounts.size());
+            for (int group = 0; group < groupRowCounts.size(); group++) {
+                out.writeInt(groupRowCounts.get(group));
+                for (int column = 0; column < ColumnarSessionReader.COLUMN_COUNT; column++) {
+                    out.writeLong(groupOffsets.get(group)[column]);
+                    out.writeInt(groupLengths.get(group)[column]);
+                }
+            }
+            writeDictionary(providers);
+            writeDictionary(operators);
+            out.writeInt(out.size() - footerStart);
+            out.writeInt(MAGIC);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeGroup() throws IOException {
+        long[] offsets = new long[ColumnarSessionReader.COLUMN_COUNT];
+        int[] groupLengths = new int[ColumnarSessionReader.COLUMN_COUNT];
+        for (int column = 0; column < ColumnarSessionReader.COLUMN_COUNT; column++) {
+            offsets[column] = position;
+            groupLengths[column] = lengths[column];
+            out.write(chunks[column], 0, lengths[column]);
+            position += lengths[column];
+            lengths[column] = 0;
+            previous[column] = 0;
+        }
+        groupRowCounts.add(groupRows);
+        groupOffsets.add(offsets);
+        this.groupLengths.add(groupLengths);
+        groupRows = 0;
+    }
+
+    private void writeDictionary(List<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value: values) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Appends delta of the value from the previous row as a zigzag varint.
+     */
+    private void put(int column, long value) {
+        long delta = value - previous[column];
+        previous[column] = value;
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        byte[] chunk = chunks[column];
+        int length = lengths[column];
+        if (length + 10 > chunk.length) {
+            byte[] grown = new byte[chunk.length * 2];
+            System.arraycopy(chunk, 0, grown, 0, length);
+            chunk = grown;
+            chunks[column] = chunk;
+        }
+        while ((zigzag & ~0x7FL) != 0) {
+            chunk[length++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        chunk[length++] = (byte) zigzag;
+        lengths[column] = length;
+    }
+
+    private static int index(String value, Map<String, Integer> indexes, List<String> values) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = indexes.get(value);
+        if (index == null) {
+            values.add(value);
+            index = values.size();
+            indexes.put(value, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,314 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader of the compressed log of {@link CompressedRecordWriter}.
+ * The blocks are found by the index file, the blocks which are missing from the index, e.g. after a crash,
+ * are found by their headers. A time range is selected by {@link #seek(long, long)}, then only the blocks
+ * which overlap it are inflated and only the records within it are returned.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CompressedLogReader implements RecordSource {
+
+    /**
+     * Block of the file.
+     */
+    static final class Block {
+        final long offset;
+        final long firstTime;
+        final long lastTime;
+
+        Block(long offset, long firstTime, long lastTime) {
+            this.offset = offset;
+            this.firstTime = firstTime;
+            this.lastTime = lastTime;
+        }
+    }
+
+    private final RandomAccessFile file;
+
+    private final int format;
+
+    private final List<Block> blocks;
+
+    /**
+     * The selected time range.
+     */
+    private long from = Long.MIN_VALUE;
+    private long to = Long.MAX_VALUE;
+
+    /**
+     * The index of the next block to check.
+     */
+    private int nextBlock;
+
+    /**
+     * The source of the records of the current block, or <code>null</code>.
+     */
+    private RecordSource blockSource;
+
+    private final Inflater inflater = new Inflater(true);
+
+    private byte[] compressed = new byte[0];
+
+    /**
+     * The count of inflated blocks.
+     */
+    private long inflatedCount;
+
+    /**
+     * Opens compressed log.
+     * @param path              compressed file, its index is next to it
+     * @throws IOException      if the file is not a compressed log
+     */
+    public CompressedLogReader(File path) throws IOException {
+        file = new RandomAccessFile(path, "r");
+        try {
+            format = readHeader(file, path);
+            blocks = findBlocks(path, file);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Selects records of the time range, the next record is the first one of the range.
+     * @param from              first time, in milliseconds
+     * @param to                last time, in milliseconds
+     * @throws IOException      if closing of the current block is failed
+     */
+    public void seek(long from, long to) throws IOException {
+        this.from = from;
+        this.to = to;
+        nextBlock = 0;
+        closeBlock();
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            if (blockSource == null && !openBlock()) {
+                return false;
+            }
+            while (blockSource.next()) {
+                long time = blockSource.getTime();
+                if (time >= from && time <= to) {
+                    return true;
+                }
+            }
+            closeBlock();
+        }
+    }
+
+    @Override
+    public Sample getSample() {
+        return blockSource.getSample();
+    }
+
+    @Override
+    public long getTime() {
+        return blockSource.getTime();
+    }
+
+    @Override
+    public String getLevel() {
+        return blockSource.getLevel();
+    }
+
+    @Override
+    public String getMessage() {
+        return blockSource.getMessage();
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        file.close();
+    }
+
+    /**
+     * Returns count of blocks of the file.
+     * @return                  count
+     */
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Returns count of blocks inflated since open.
+     * @return                  count
+     */
+    public long getInflatedCount() {
+        return inflatedCount;
+    }
+
+    private boolean openBlock() throws IOException {
+        while (nextBlock < blocks.size()) {
+            Block block = blocks.get(nextBlock++);
+            if (block.lastTime < from || block.firstTime > to) {
+                continue;
+            }
+            file.seek(block.offset);
+            int rawLength = file.readInt();
+            int compressedLength = file.readInt();
+            file.skipBytes(CompressedRecordWriter.BLOCK_HEADER_LENGTH - 8);
+            if (compressed.length < compressedLength) {
+                compressed = new byte[compressedLength];
+            }
+            file.readFully(compressed, 0, compressedLength);
+            byte[] raw = new byte[rawLength];
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedLength);
+            try {
+                if (inflater.inflate(raw) != rawLength) {
+                    throw new IOException("Compressed block is broken at " + block.offset);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Compressed block is broken at " + block.offset + ": " + e.getMessage());
+            }
+            inflatedCount++;
+            if (format == CompressedRecordWriter.TEXT) {
+                TextLogReader reader = new TextLogReader(
+                        new InputStreamReader(new ByteArrayInputStream(raw), "UTF-8"));
+                // the half of the day of the text time is told by the exact time of the block
+                reader.setPreviousTime(block.firstTime);
+                blockSource = reader;
+            } else {
+                blockSource = new TraceReader(new ByteArrayInputStream(raw));
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void closeBlock() throws IOException {
+        if (blockSource != null) {
+            blockSource.close();
+            blockSource = null;
+        }
+    }
+
+    /**
+     * Repairs compressed file before appending: cuts a partly written block at the end and rewrites
+     * the index if it misses blocks.
+     * @param path              compressed file
+     * @param format            expected format
+     * @return                  length of the file, the position of the next block
+     * @throws IOException      if the file is not a compressed log of the format
+     */
+    static long repair(File path, int format) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            if (readHeader(file, path) != format) {
+                throw new IOException("Compressed log file has another format: " + path);
+            }
+            List<Block> blocks = findBlocks(path, file);
+            long length = CompressedRecordWriter.HEADER_LENGTH;
+            if (!blocks.isEmpty()) {
+                length = blockEnd(file, blocks.get(blocks.size() - 1).offset, file.length());
+            }
+            if (length < file.length()) {
+                file.setLength(length);
+            }
+            File indexPath = new File(path.getPath() + CompressedRecordWriter.INDEX_SUFFIX);
+            if (indexPath.length() != (long) blocks.size() * CompressedRecordWriter.INDEX_ENTRY_LENGTH) {
+                DataOutputStream index = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexPath)));
+                try {
+                    for (Block block: blocks) {
+                        index.writeLong(block.offset);
+                        index.writeLong(block.firstTime);
+                        index.writeLong(block.lastTime);
+                    }
+                } finally {
+                    index.close();
+                }
+            }
+            return length;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static int readHeader(RandomAccessFile file, File path) throws IOException {
+        file.seek(0);
+        if (file.length() < CompressedRecordWriter.HEADER_LENGTH
+                || file.readInt() != CompressedRecordWriter.MAGIC
+                || file.readByte() != CompressedRecordWriter.VERSION) {
+            throw new IOException("Not a compressed log file: " + path);
+        }
+        return file.readByte();
+    }
+
+    /**
+     * Finds complete blocks: the blocks of the index which are within the file, then the blocks after them.
+     */
+    private static List<Block> findBlocks(File path, RandomAccessFile file) throws IOException {
+        List<Block> blocks = new ArrayList<Block>();
+        long length = file.length();
+        long position = CompressedRecordWriter.HEADER_LENGTH;
+        try {
+            DataInputStream index = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(path.getPath() + CompressedRecordWriter.INDEX_SUFFIX)));
+            try {
+                while (true) {
+                    long offset = index.readLong();
+                    long firstTime = index.readLong();
+                    long lastTime = index.readLong();
+                    long end = blockEnd(file, offset, length);
+                    if (offset != position || end < 0) {
+                        break;
+                    }
+                    blocks.add(new Block(offset, firstTime, lastTime));
+                    position = end;
+                }
+            } catch (EOFException e) {
+                // the end of the index
+            } finally {
+                index.close();
+            }
+        } catch (FileNotFoundException e) {
+            // the blocks are found by their headers
+        }
+        long end;
+        while ((end = blockEnd(file, position, length)) >= 0) {
+            file.seek(position + 8);
+            blocks.add(new Block(position, file.readLong(), file.readLong()));
+            position = end;
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns end of the complete block at the offset, or <code>-1</code> if there is no such block.
+     */
+    private static long blockEnd(RandomAccessFile file, long offset, long length) throws IOException {
+        if (offset + CompressedRecordWriter.BLOCK_HEADER_LENGTH > length) {
+            return -1;
+        }
+        file.seek(offset);
+        int rawLength = file.readInt();
+        int compressedLength = file.readInt();
+        long end = offset + CompressedRecordWriter.BLOCK_HEADER_LENGTH + compressedLength;
+        return rawLength < 0 || compressedLength < 0 || end > length ? -1 : end;
+    }
+}
@@ -0,0 +1,291 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of records into independently compressed blocks, read by {@link CompressedLogReader}.
+ * Records are formatted into a block buffer as text lines or as a binary trace, a full block is deflated
+ * and appended to the file with a header of its time range, and the same range with the block offset
+ * is appended to the index file next to it. A reader takes the blocks of a time range by the index
+ * and inflates only them.
+ * <p>
+ * The file is: the magic, the version and the format, then the blocks, every one with the raw and
+ * the compressed length, the first and the last record time and the record count before the deflated data.
+ * A block of the trace format starts with a trace header of its own, so every block is read alone.
+ * Flush writes the block only when it is older than the block interval, so the blocks stay large, and
+ * the records of the last interval may be lost with the process. The writer is called on the drain
+ * thread of {@link AsyncLogWriter}, so compression does not delay the monitors.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class CompressedRecordWriter implements RecordWriter {
+
+    /**
+     * The mark of the start of the file.
+     */
+    static final int MAGIC = 0x47585a42;
+
+    static final int VERSION = 1;
+
+    /**
+     * The formats of the records of the blocks.
+     */
+    static final int TEXT = 0;
+    static final int TRACE = 1;
+
+    /**
+     * The length of the file header and of a block header.
+     */
+    static final int HEADER_LENGTH = 6;
+    static final int BLOCK_HEADER_LENGTH = 28;
+
+    /**
+     * The length of an index entry: the block offset and its time range.
+     */
+    static final int INDEX_ENTRY_LENGTH = 24;
+
+    /**
+     * The suffix of the index file name.
+     */
+    static final String INDEX_SUFFIX = ".idx";
+
+    /**
+     * Block buffer which gives its array without copying.
+     */
+    private static final class BlockBuffer extends ByteArrayOutputStream {
+
+        BlockBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private final int format;
+
+    /**
+     * The raw length of a block, in bytes.
+     */
+    private final int blockSize;
+
+    /**
+     * The longest age of a block which is kept on flush, in milliseconds.
+     */
+    private final long blockInterval;
+
+    private final FileOutputStream file;
+    private final DataOutputStream index;
+
+    /**
+     * The position of the next block in the file.
+     */
+    private long position;
+
+    private final BlockBuffer block;
+
+    /**
+     * The writer of the current block, or <code>null</code> before its first record.
+     */
+    private RecordWriter blockWriter;
+
+    /**
+     * The character writer of the text block.
+     */
+    private Writer blockText;
+
+    private final Deflater deflater;
+
+    private byte[] compressed = new byte[0];
+
+    /**
+     * The time range and the count of the records of the current block.
+     */
+    private long firstTime;
+    private long lastTime;
+    private int recordCount;
+
+    /**
+     * The time of the start of the current block, by the system clock.
+     */
+    private long blockStart;
+
+    /**
+     * The total raw and compressed lengths of written blocks.
+     */
+    private long rawLength;
+    private long compressedLength;
+
+    /**
+     * Opens file for appending blocks, a new file gets the header.
+     * @param path              compressed file, its index is next to it
+     * @param format            {@link #TEXT} or {@link #TRACE}, must be the format of an existing file
+     * @param blockSize         raw length of a block, in bytes
+     * @param blockInterval     longest age of a block kept on flush, in milliseconds
+     * @param level             deflate level, from 1 to 9
+     * @throws IOException      if the file can not be opened or has another format
+     */
+    CompressedRecordWriter(File path, int format, int blockSize, long blockInterval, int level) throws IOException {
+        this.format = format;
+        this.blockSize = blockSize;
+        this.blockInterval = blockInterval;
+        if (path.length() >= HEADER_LENGTH) {
+            // a block of a crashed process may be cut or missing from the index
+            position = CompressedLogReader.repair(path, format);
+        } else {
+            new File(path.getPath() + INDEX_SUFFIX).delete();
+            position = 0;
+        }
+        file = new FileOutputStream(path, position > 0);
+        if (position == 0) {
+            DataOutputStream header = new DataOutputStream(file);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte(format);
+            position = HEADER_LENGTH;
+        }
+        index = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(path.getPath() + INDEX_SUFFIX, true), 4 * INDEX_ENTRY_LENGTH));
+        block = new BlockBuffer(blockSize + blockSize / 4);
+        deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public void writeMessage(long time, String level, String message) throws IOException {
+        begin(time).writeMessage(time, level, message);
+        end();
+    }
+
+    @Override
+    public void writeSample(Sample sample) throws IOException {
+        begin(sample.time).writeSample(sample);
+        end();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (blockWriter != null && System.currentTimeMillis() - blockStart >= blockInterval) {
+            writeBlock();
+        }
+        file.flush();
+        index.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (blockWriter != null) {
+                writeBlock();
+            }
+        } finally {
+            deflater.end();
+            try {
+                index.close();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * Returns raw length of written blocks.
+     * @return                  length, in bytes
+     */
+    long getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * Returns compressed length of written blocks with their headers.
+     * @return                  length, in bytes
+     */
+    long getCompressedLength() {
+        return compressedLength;
+    }
+
+    private RecordWriter begin(long time) throws IOException {
+        if (blockWriter == null) {
+            block.reset();
+            if (format == TEXT) {
+                blockText = new OutputStreamWriter(block, "UTF-8");
+                blockWriter = new TextRecordWriter(blockText);
+            } else {
+                blockWriter = new BinaryTraceWriter(block);
+            }
+            firstTime = time;
+            lastTime = time;
+            recordCount = 0;
+            blockStart = System.currentTimeMillis();
+        }
+        firstTime = Math.min(firstTime, time);
+        lastTime = Math.max(lastTime, time);
+        recordCount++;
+        return blockWriter;
+    }
+
+    private void end() throws IOException {
+        if (blockText != null) {
+            // the encoder keeps characters until flush
+            blockText.flush();
+        }
+        if (block.size() >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        blockWriter.flush();
+        int length = block.size();
+        deflater.reset();
+        deflater.setInput(block.array(), 0, length);
+        deflater.finish();
+        if (compressed.length < BLOCK_HEADER_LENGTH + length + length / 8 + 64) {
+            compressed = new byte[BLOCK_HEADER_LENGTH + length + length / 8 + 64];
+        }
+        int end = BLOCK_HEADER_LENGTH;
+        while (!deflater.finished()) {
+            if (end == compressed.length) {
+                byte[] grown = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, grown, 0, end);
+                compressed = grown;
+            }
+            end += deflater.deflate(compressed, end, compressed.length - end);
+        }
+        putInt(compressed, 0, length);
+        putInt(compressed, 4, end - BLOCK_HEADER_LENGTH);
+        putLong(compressed, 8, firstTime);
+        putLong(compressed, 16, lastTime);
+        putInt(compressed, 24, recordCount);
+        file.write(compressed, 0, end);
+        index.writeLong(position);
+        index.writeLong(firstTime);
+        index.writeLong(lastTime);
+        position += end;
+        rawLength += length;
+        compressedLength += end;
+        blockWriter = null;
+        blockText = null;
+    }
+
+    private static void putInt(byte[] array, int offset, int value) {
+        array[offset] = (byte) (value >>> 24);
+        array[offset + 1] = (byte) (value >>> 16);
+        array[offset + 2] = (byte) (value >>> 8);
+        array[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(byte[] array, int offset, long value) {
+        putInt(array, offset, (int) (value >>> 32));
+        putInt(array, offset + 4, (int) value);
+    }
+}
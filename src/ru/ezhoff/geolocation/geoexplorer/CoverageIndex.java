@@ -0,0 +1,618 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory index of the coverage seen while collecting, for live queries.
+ * Every cell observation is joined to the most recent location fix and folded into the tile
+ * of a fixed grid which contains the fix, or on a move the position which {@link DeadReckoning} extrapolates
+ * from the last fixes to the time of the observation, so the index keeps per tile and cell counters instead
+ * of points, and millions of observations take as much memory as the distinct tiles and cells.
+ * Tiles are <code>tileSize</code> meters high and as many degrees wide.
+ * <p>
+ * Tiles and their cells are kept in primitive arrays chained by indexes, the tile of a point
+ * is found by a primitive map from the packed grid coordinates. The arrays grow up to the capacity,
+ * observations of new tiles and cells beyond it are dropped and counted.
+ * <p>
+ * The serving cell has no RSSI in its location samples, so it takes the last reported signal strength.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class CoverageIndex implements SampleSink {
+
+    /**
+     * Cell seen in an area with its signal statistics.
+     */
+    public static final class CellCoverage {
+        final int cid;
+        final int lac;
+        int count;
+        int rssiCount;
+        long rssiSum;
+        int minRssi = Integer.MAX_VALUE;
+        int maxRssi = Integer.MIN_VALUE;
+
+        CellCoverage(int cid, int lac) {
+            this.cid = cid;
+            this.lac = lac;
+        }
+
+        public int getCid() {
+            return cid;
+        }
+
+        public int getLac() {
+            return lac;
+        }
+
+        /**
+         * Returns count of observations.
+         * @return                  observations count
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns mean RSSI of observations with a known RSSI.
+         * @return                  mean RSSI, in ASU, or <code>NaN</code> if unknown
+         */
+        public double getMeanRssi() {
+            return rssiCount == 0 ? Double.NaN : (double) rssiSum / rssiCount;
+        }
+
+        public int getMinRssi() {
+            return rssiCount == 0 ? UNKNOWN_RSSI : minRssi;
+        }
+
+        public int getMaxRssi() {
+            return rssiCount == 0 ? UNKNOWN_RSSI : maxRssi;
+        }
+    }
+
+    /**
+     * Tile of the grid with its statistics.
+     */
+    public static final class Tile {
+        final double south;
+        final double west;
+        final double north;
+        final double east;
+        final int fixes;
+        final int observations;
+        final int bestRssi;
+
+        Tile(double south, double west, double north, double east, int fixes, int observations, int bestRssi) {
+            this.south = south;
+            this.west = west;
+            this.north = north;
+            this.east = east;
+            this.fixes = fixes;
+            this.observations = observations;
+            this.bestRssi = bestRssi;
+        }
+
+        public double getSouth() {
+            return south;
+        }
+
+        public double getWest() {
+            return west;
+        }
+
+        public double getNorth() {
+            return north;
+        }
+
+        public double getEast() {
+            return east;
+        }
+
+        /**
+         * Returns count of location fixes in the tile.
+         * @return                  fixes count
+         */
+        public int getFixes() {
+            return fixes;
+        }
+
+        /**
+         * Returns count of cell observations in the tile.
+         * @return                  observations count
+         */
+        public int getObservations() {
+            return observations;
+        }
+
+        /**
+         * Returns best RSSI of the tile.
+         * @return                  RSSI, in ASU, or {@link #UNKNOWN_RSSI} if no cell is heard
+         */
+        public int getBestRssi() {
+            return bestRssi;
+        }
+    }
+
+    /**
+     * The RSSI of unknown signal strength, the same as of the neighboring cell info.
+     */
+    public static final int UNKNOWN_RSSI = 99;
+
+    /**
+     * The meters in a degree of latitude.
+     */
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The initial length of arrays.
+     */
+    private static final int INITIAL_LENGTH = 1024;
+
+    /**
+     * The height of tiles, in meters.
+     */
+    private double tileSize = 50;
+
+    /**
+     * The size of tiles, in degrees.
+     */
+    private double tileDegrees = tileSize / METERS_PER_DEGREE;
+
+    /**
+     * The longest time from a location fix to an observation which is joined to it, in milliseconds.
+     */
+    private long maxFixAge = 10 * 1000;
+
+    /**
+     * The most count of tiles and of cells in tiles.
+     */
+    private int capacity = 256 * 1024;
+
+    /**
+     * The tile indexes by packed grid coordinates.
+     */
+    private LongIntMap tileIndex = new LongIntMap(INITIAL_LENGTH);
+
+    private long[] tileKeys = new long[INITIAL_LENGTH];
+    private int[] tileFixes = new int[INITIAL_LENGTH];
+    private int[] tileObservations = new int[INITIAL_LENGTH];
+    private int[] tileBestRssi = new int[INITIAL_LENGTH];
+    private int[] tileHead = new int[INITIAL_LENGTH];
+
+    /**
+     * The count of tiles.
+     */
+    private int tileCount;
+
+    private int[] entryCid = new int[INITIAL_LENGTH];
+    private int[] entryLac = new int[INITIAL_LENGTH];
+    private int[] entryNext = new int[INITIAL_LENGTH];
+    private int[] entryObservations = new int[INITIAL_LENGTH];
+    private int[] entryRssiCount = new int[INITIAL_LENGTH];
+    private long[] entryRssiSum = new long[INITIAL_LENGTH];
+    private int[] entryMinRssi = new int[INITIAL_LENGTH];
+    private int[] entryMaxRssi = new int[INITIAL_LENGTH];
+
+    /**
+     * The count of cells in tiles.
+     */
+    private int entryCount;
+
+    /**
+     * The tile of the last location fix, or <code>-1</code>.
+     */
+    private int fixTile = -1;
+
+    /**
+     * The time of the last location fix, in milliseconds.
+     */
+    private long fixTime;
+
+    /**
+     * The position between the fixes.
+     */
+    private final DeadReckoning reckoning = new DeadReckoning();
+
+    /**
+     * The last serving cell, or <code>-1</code>.
+     */
+    private int servingCid = -1;
+
+    /**
+     * The location area code of the last serving cell.
+     */
+    private int servingLac = -1;
+
+    /**
+     * The last reported signal strength of the serving cell, in ASU.
+     */
+    private int servingRssi = UNKNOWN_RSSI;
+
+    /**
+     * The count of observations without a recent location fix.
+     */
+    private long unjoinedCount;
+
+    /**
+     * The count of fixes and observations dropped for the capacity.
+     */
+    private long droppedCount;
+
+    /**
+     * The indexes of tiles found by the last query.
+     */
+    private int[] found = new int[INITIAL_LENGTH];
+
+    @Override
+    public synchronized void log(Sample sample) {
+        switch (sample.getType()) {
+            case LocationSample.TYPE:
+                LocationSample location = (LocationSample) sample;
+                fix(location.time, location.latitude, location.longitude);
+                reckoning.fix(location.time, location.source, location.latitude, location.longitude,
+                        location.accuracy);
+                break;
+            case DwellSample.STARTED:
+                DwellSample dwell = (DwellSample) sample;
+                fix(dwell.time, dwell.latitude, dwell.longitude);
+                reckoning.hold(dwell.latitude, dwell.longitude);
+                // the position holds until the dwell ends, however old the fix gets
+                fixTime = Long.MAX_VALUE;
+                break;
+            case DwellSample.ENDED:
+                if (fixTime == Long.MAX_VALUE) {
+                    fixTime = sample.time;
+                }
+                break;
+            case CellSample.NEIGHBOR:
+                CellSample neighbor = (CellSample) sample;
+                observe(neighbor.time, neighbor.cid, neighbor.lac, neighbor.rssi);
+                break;
+            case CellSample.GSM:
+            case CellSample.CDMA:
+                CellSample serving = (CellSample) sample;
+                if (serving.cid != servingCid || serving.lac != servingLac) {
+                    servingRssi = UNKNOWN_RSSI;
+                }
+                servingCid = serving.cid;
+                servingLac = serving.lac;
+                observe(serving.time, servingCid, servingLac, servingRssi);
+                break;
+            case SignalSample.ASU:
+            case SignalSample.STRENGTHS:
+                SignalSample signal = (SignalSample) sample;
+                if (signal.kind == SignalSample.ASU || signal.gsm) {
+                    servingRssi = signal.gsmSignalStrength;
+                    if (servingCid != -1) {
+                        observe(signal.time, servingCid, servingLac, servingRssi);
+                    }
+                }
+                break;
+            default:
+                // counts and lost cells tell nothing about the coverage of a place
+        }
+    }
+
+    /**
+     * Returns cells observed in the box with their signal statistics over the tiles which intersect it.
+     * @param south             south latitude, in degrees
+     * @param west              west longitude, in degrees
+     * @param north             north latitude, in degrees
+     * @param east              east longitude, in degrees
+     * @return                  cells
+     */
+    public synchronized List<CellCoverage> cells(double south, double west, double north, double east) {
+        List<CellCoverage> cells = new ArrayList<CellCoverage>();
+        LongIntMap cellIndex = new LongIntMap(16);
+        int count = findTiles(south, west, north, east);
+        for (int i = 0; i < count; i++) {
+            for (int entry = tileHead[found[i]]; entry != -1; entry = entryNext[entry]) {
+                long key = CellChangeDetector.key(entryCid[entry], entryLac[entry], 0);
+                int index = cellIndex.get(key);
+                if (index == LongIntMap.ABSENT) {
+                    index = cells.size();
+                    cellIndex.put(key, index);
+                    cells.add(new CellCoverage(entryCid[entry], entryLac[entry]));
+                }
+                CellCoverage cell = cells.get(index);
+                cell.count += entryObservations[entry];
+                if (entryRssiCount[entry] > 0) {
+                    cell.rssiCount += entryRssiCount[entry];
+                    cell.rssiSum += entryRssiSum[entry];
+                    cell.minRssi = Math.min(cell.minRssi, entryMinRssi[entry]);
+                    cell.maxRssi = Math.max(cell.maxRssi, entryMaxRssi[entry]);
+                }
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Returns cells observed near the point.
+     * @param latitude          latitude, in degrees
+     * @param longitude         longitude, in degrees
+     * @param radius            radius of the square around the point, in meters
+     * @return                  cells
+     */
+    public List<CellCoverage> cellsNear(double latitude, double longitude, double radius) {
+        double degrees = radius / METERS_PER_DEGREE;
+        return cells(latitude - degrees, longitude - degrees, latitude + degrees, longitude + degrees);
+    }
+
+    /**
+     * Returns coverage holes in the box: visited tiles where no cell is heard at the given RSSI.
+     * @param south             south latitude, in degrees
+     * @param west              west longitude, in degrees
+     * @param north             north latitude, in degrees
+     * @param east              east longitude, in degrees
+     * @param minRssi           least RSSI of a covered tile, in ASU
+     * @return                  tiles of holes
+     */
+    public synchronized List<Tile> holes(double south, double west, double north, double east, int minRssi) {
+        List<Tile> holes = new ArrayList<Tile>();
+        int count = findTiles(south, west, north, east);
+        for (int i = 0; i < count; i++) {
+            int tile = found[i];
+            if (tileFixes[tile] > 0 && (tileBestRssi[tile] == UNKNOWN_RSSI || tileBestRssi[tile] < minRssi)) {
+                long key = tileKeys[tile];
+                double tileSouth = (key >> 32) * tileDegrees - 90;
+                double tileWest = (int) key * tileDegrees - 180;
+                holes.add(new Tile(tileSouth, tileWest, tileSouth + tileDegrees, tileWest + tileDegrees,
+                        tileFixes[tile], tileObservations[tile], tileBestRssi[tile]));
+            }
+        }
+        return holes;
+    }
+
+    /**
+     * Forgets everything collected.
+     */
+    public synchronized void clear() {
+        tileIndex = new LongIntMap(INITIAL_LENGTH);
+        tileCount = 0;
+        entryCount = 0;
+        fixTile = -1;
+        reckoning.clear();
+        servingCid = -1;
+        servingLac = -1;
+        servingRssi = UNKNOWN_RSSI;
+        unjoinedCount = 0;
+        droppedCount = 0;
+    }
+
+    public synchronized int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Returns count of cells in tiles.
+     * @return                  count of cells over all tiles
+     */
+    public synchronized int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Returns count of observations without a recent location fix.
+     * @return                  unjoined observations count
+     */
+    public synchronized long getUnjoinedCount() {
+        return unjoinedCount;
+    }
+
+    /**
+     * Returns count of fixes and observations dropped for the capacity.
+     * @return                  dropped count
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Sets height of tiles and returns self object for easy init. Clears the index.
+     * @param tileSize          height, in meters
+     * @return                  self object
+     */
+    public synchronized CoverageIndex setTileSize(double tileSize) {
+        this.tileSize = tileSize;
+        this.tileDegrees = tileSize / METERS_PER_DEGREE;
+        clear();
+        return this;
+    }
+
+    /**
+     * Sets longest time from a location fix to an observation which is joined to it
+     * and returns self object for easy init.
+     * @param maxFixAge         time, in milliseconds
+     * @return                  self object
+     */
+    public synchronized CoverageIndex setMaxFixAge(long maxFixAge) {
+        this.maxFixAge = maxFixAge;
+        return this;
+    }
+
+    /**
+     * Sets most count of tiles and of cells in tiles and returns self object for easy init.
+     * Every one takes about 40 bytes.
+     * @param capacity          capacity
+     * @return                  self object
+     */
+    public synchronized CoverageIndex setCapacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    private void fix(long time, double latitude, double longitude) {
+        int tile = tile(latitude, longitude);
+        if (tile == -1) {
+            droppedCount++;
+        } else {
+            tileFixes[tile]++;
+        }
+        fixTile = tile;
+        fixTime = time;
+    }
+
+    private void observe(long time, int cid, int lac, int rssi) {
+        if (fixTile == -1 || time - fixTime > maxFixAge) {
+            unjoinedCount++;
+            return;
+        }
+        int fixTile = this.fixTile;
+        if (reckoning.isMoving()) {
+            fixTile = tile(reckoning.latitudeAt(time), reckoning.longitudeAt(time));
+            if (fixTile == -1) {
+                droppedCount++;
+                return;
+            }
+        }
+        int entry = tileHead[fixTile];
+        while (entry != -1 && (entryCid[entry] != cid || entryLac[entry] != lac)) {
+            entry = entryNext[entry];
+        }
+        if (entry == -1) {
+            entry = addEntry(fixTile, cid, lac);
+            if (entry == -1) {
+                droppedCount++;
+                return;
+            }
+        }
+        entryObservations[entry]++;
+        tileObservations[fixTile]++;
+        if (rssi != UNKNOWN_RSSI) {
+            entryRssiCount[entry]++;
+            entryRssiSum[entry] += rssi;
+            entryMinRssi[entry] = Math.min(entryMinRssi[entry], rssi);
+            entryMaxRssi[entry] = Math.max(entryMaxRssi[entry], rssi);
+            if (tileBestRssi[fixTile] == UNKNOWN_RSSI || rssi > tileBestRssi[fixTile]) {
+                tileBestRssi[fixTile] = rssi;
+            }
+        }
+    }
+
+    /**
+     * Returns tile of the point, adds it if it is new.
+     * @return                  tile, or <code>-1</code> if there are too many tiles
+     */
+    private int tile(double latitude, double longitude) {
+        long key = tileKey(latitude, longitude);
+        int tile = tileIndex.get(key);
+        return tile != LongIntMap.ABSENT ? tile : addTile(key);
+    }
+
+    private int addTile(long key) {
+        if (tileCount == capacity) {
+            return -1;
+        }
+        if (tileCount == tileKeys.length) {
+            int length = Math.min(tileKeys.length * 2, capacity);
+            tileKeys = grow(tileKeys, length);
+            tileFixes = grow(tileFixes, length);
+            tileObservations = grow(tileObservations, length);
+            tileBestRssi = grow(tileBestRssi, length);
+            tileHead = grow(tileHead, length);
+        }
+        int tile = tileCount++;
+        tileKeys[tile] = key;
+        tileFixes[tile] = 0;
+        tileObservations[tile] = 0;
+        tileBestRssi[tile] = UNKNOWN_RSSI;
+        tileHead[tile] = -1;
+        tileIndex.put(key, tile);
+        return tile;
+    }
+
+    private int addEntry(int tile, int cid, int lac) {
+        if (entryCount == capacity) {
+            return -1;
+        }
+        if (entryCount == entryCid.length) {
+            int length = Math.min(entryCid.length * 2, capacity);
+            entryCid = grow(entryCid, length);
+            entryLac = grow(entryLac, length);
+            entryNext = grow(entryNext, length);
+            entryObservations = grow(entryObservations, length);
+            entryRssiCount = grow(entryRssiCount, length);
+            entryRssiSum = grow(entryRssiSum, length);
+            entryMinRssi = grow(entryMinRssi, length);
+            entryMaxRssi = grow(entryMaxRssi, length);
+        }
+        int entry = entryCount++;
+        entryCid[entry] = cid;
+        entryLac[entry] = lac;
+        entryObservations[entry] = 0;
+        entryRssiCount[entry] = 0;
+        entryRssiSum[entry] = 0;
+        entryMinRssi[entry] = Integer.MAX_VALUE;
+        entryMaxRssi[entry] = Integer.MIN_VALUE;
+        entryNext[entry] = tileHead[tile];
+        tileHead[tile] = entry;
+        return entry;
+    }
+
+    /**
+     * Finds tiles which intersect the box to {@link #found}. Looks the grid coordinates of the box up
+     * if there are less of them than tiles, scans all tiles otherwise.
+     * @return                  count of found tiles
+     */
+    private int findTiles(double south, double west, double north, double east) {
+        long y0 = gridY(south);
+        long y1 = gridY(north);
+        long x0 = gridX(west);
+        long x1 = gridX(east);
+        int count = 0;
+        if ((y1 - y0 + 1) * (x1 - x0 + 1) <= tileCount) {
+            for (long y = y0; y <= y1; y++) {
+                for (long x = x0; x <= x1; x++) {
+                    int tile = tileIndex.get(y << 32 | x);
+                    if (tile != LongIntMap.ABSENT) {
+                        count = addFound(count, tile);
+                    }
+                }
+            }
+        } else {
+            for (int tile = 0; tile < tileCount; tile++) {
+                long y = tileKeys[tile] >> 32;
+                long x = (int) tileKeys[tile];
+                if (y >= y0 && y <= y1 && x >= x0 && x <= x1) {
+                    count = addFound(count, tile);
+                }
+            }
+        }
+        return count;
+    }
+
+    private int addFound(int count, int tile) {
+        if (count == found.length) {
+            found = grow(found, count * 2);
+        }
+        found[count] = tile;
+        return count + 1;
+    }
+
+    private long tileKey(double latitude, double longitude) {
+        return gridY(latitude) << 32 | gridX(longitude);
+    }
+
+    private long gridY(double latitude) {
+        return (long) Math.floor((Math.max(-90, Math.min(90, latitude)) + 90) / tileDegrees);
+    }
+
+    private long gridX(double longitude) {
+        return (long) Math.floor((Math.max(-180, Math.min(180, longitude)) + 180) / tileDegrees);
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static long[] grow(long[] array, int length) {
+        long[] result = new long[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
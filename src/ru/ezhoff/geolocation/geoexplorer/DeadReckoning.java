@@ -0,0 +1,135 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Position of a provider between its fixes, extrapolated from the last fix at the velocity between the last two.
+ * {@link TrajectorySimplifier} drops a fix only within its tolerance of this position, and the consumers
+ * of the simplified fixes take the position of an observation from it, so the error bound of the dropped fixes
+ * holds on a straight move as well as at a stay.
+ * <p>
+ * The velocity is known from two fixes of the same provider no longer than the longest interval apart
+ * and farther apart than a few accuracies of the later one, so the noise of a standing or walking provider
+ * is not taken for a move and the error of the velocity stays within a third of it. The position
+ * is extrapolated for the longest interval after the last fix at most. A held position, e.g. of a dwell,
+ * has no velocity, nor does the first fix after it.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class DeadReckoning {
+
+    /**
+     * The longest interval between the fixes of a velocity and of the extrapolation, in milliseconds.
+     */
+    static final long MAX_INTERVAL = 10 * 1000;
+
+    /**
+     * The least distance between the fixes of a velocity, in accuracies of the later one.
+     */
+    static final double MIN_DISTANCE = 4;
+
+    /**
+     * The meters in a degree of latitude.
+     */
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The provider of the last fix, or <code>null</code> if the position is held or unknown.
+     */
+    private String provider;
+
+    /**
+     * The time and the position of the last fix.
+     */
+    private long time;
+    private double latitude;
+    private double longitude;
+
+    /**
+     * The flag of a known velocity.
+     */
+    private boolean isMoving;
+
+    /**
+     * The velocity, in degrees per millisecond.
+     */
+    private double latitudeSpeed;
+    private double longitudeSpeed;
+
+    /**
+     * Takes fix.
+     * @param time              time, in milliseconds
+     * @param provider          provider
+     * @param latitude          latitude, in degrees
+     * @param longitude         longitude, in degrees
+     * @param accuracy          accuracy, in meters
+     */
+    void fix(long time, String provider, double latitude, double longitude, float accuracy) {
+        long interval = time - this.time;
+        isMoving = false;
+        if (provider != null && provider.equals(this.provider) && interval > 0 && interval <= MAX_INTERVAL) {
+            double y = (latitude - this.latitude) * METERS_PER_DEGREE;
+            double x = (longitude - this.longitude) * METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+            double distance = MIN_DISTANCE * accuracy;
+            if (x * x + y * y > distance * distance) {
+                isMoving = true;
+                latitudeSpeed = (latitude - this.latitude) / interval;
+                longitudeSpeed = (longitude - this.longitude) / interval;
+            }
+        }
+        this.provider = provider;
+        this.time = time;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Holds position without velocity.
+     * @param latitude          latitude, in degrees
+     * @param longitude         longitude, in degrees
+     */
+    void hold(double latitude, double longitude) {
+        provider = null;
+        isMoving = false;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Forgets position.
+     */
+    void clear() {
+        provider = null;
+        isMoving = false;
+    }
+
+    /**
+     * Returns <code>true</code> if the velocity is known, otherwise the position is the one of the last fix.
+     * @return                  state of the velocity
+     */
+    boolean isMoving() {
+        return isMoving;
+    }
+
+    /**
+     * Returns extrapolated latitude.
+     * @param time              time, in milliseconds
+     * @return                  latitude, in degrees
+     */
+    double latitudeAt(long time) {
+        return isMoving ? latitude + latitudeSpeed * elapsed(time) : latitude;
+    }
+
+    /**
+     * Returns extrapolated longitude.
+     * @param time              time, in milliseconds
+     * @return                  longitude, in degrees
+     */
+    double longitudeAt(long time) {
+        return isMoving ? longitude + longitudeSpeed * elapsed(time) : longitude;
+    }
+
+    private long elapsed(long time) {
+        // a late sample is taken at the last fix
+        return Math.max(0, Math.min(time - this.time, MAX_INTERVAL));
+    }
+}
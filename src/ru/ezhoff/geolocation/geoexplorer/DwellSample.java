@@ -0,0 +1,138 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Stay of a location provider at one place, made by {@link TrajectorySimplifier} of the fixes it collapses.
+ * A dwell is passed twice: when it is found and when it ends. Between the two the position holds
+ * whatever the age of the last fix, every collapsed fix is within the radius of it.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class DwellSample extends Sample {
+
+    /**
+     * The kind of a found dwell.
+     */
+    public static final int STARTED = 13;
+
+    /**
+     * The kind of an ended dwell, its time is the one of the last collapsed fix.
+     */
+    public static final int ENDED = 14;
+
+    /**
+     * The kind, equals to the binary record type.
+     */
+    int kind;
+
+    /**
+     * The time of the first fix at the place, in milliseconds.
+     */
+    long since;
+
+    /**
+     * The latitude, in degrees.
+     */
+    double latitude;
+
+    /**
+     * The longitude, in degrees.
+     */
+    double longitude;
+
+    /**
+     * The accuracy, in meters.
+     */
+    float accuracy;
+
+    /**
+     * The bound of the distance of the collapsed fixes from the position, in meters.
+     */
+    float radius;
+
+    /**
+     * The count of fixes at the place, the first one included.
+     */
+    int count;
+
+    DwellSample(int kind) {
+        this.kind = kind;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public String getProvider() {
+        return source;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    public float getRadius() {
+        return radius;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    String getMonitorName() {
+        return "LocationMonitor";
+    }
+
+    @Override
+    int getType() {
+        return kind;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        out.writeLong(since);
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeFloat(accuracy);
+        out.writeFloat(radius);
+        out.writeInt(count);
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        since = in.readLong();
+        latitude = in.readDouble();
+        longitude = in.readDouble();
+        accuracy = in.readFloat();
+        radius = in.readFloat();
+        count = in.readInt();
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        builder.append("LocationMonitor{Provider - ").append(source).append("}::Dwell ")
+               .append(kind == STARTED ? "started" : "ended").append(" - Since: ").append(since)
+               .append(", Latitude: ").append(latitude)
+               .append(", Longitude: ").append(longitude)
+               .append(", Accuracy: ").append(accuracy)
+               .append(", Radius: ").append(radius)
+               .append(", Fixes: ").append(count);
+    }
+}
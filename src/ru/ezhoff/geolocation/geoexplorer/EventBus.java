@@ -0,0 +1,350 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process bus of typed samples between the monitors and their consumers.
+ * Monitors publish samples to the bus as to any {@link SampleSink}, every subscriber receives all of them.
+ * <p>
+ * A queued subscriber has its own bounded lock-free ring and drain thread, so a slow consumer
+ * neither delays the monitors nor the other subscribers, and its {@link OverflowPolicy} tells whether
+ * the monitors wait for it or its events are dropped. A direct subscriber is called on the thread
+ * of the publisher, it suits a consumer with a queue of its own, such as the logger.
+ * Publishing takes no lock: the subscribers are a copy-on-write list and every ring is taken by CAS.
+ * <p>
+ * Samples are immutable once published, since queued subscribers get them later on other threads.
+ * The lag, the dropped and the delivered events of every subscriber are gauges of the {@link MetricsRegistry}
+ * while it is subscribed. An event published to a subscriber after its unsubscription is counted as dropped.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class EventBus implements SampleSink {
+
+    /**
+     * The longest pause of a blocked publisher, in nanoseconds.
+     */
+    private static final long MAX_BACKOFF = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The longest sleep of an idle drain thread, in nanoseconds.
+     */
+    private static final long MAX_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * The subscribers.
+     */
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<Subscription>();
+
+    /**
+     * Subscriber of the bus.
+     */
+    public static final class Subscription implements Runnable {
+
+        private final String name;
+
+        private final SampleSink sink;
+
+        /**
+         * The queue of undelivered events, or <code>null</code> for a direct subscriber.
+         */
+        private final LogRingBuffer ring;
+
+        private final OverflowPolicy overflowPolicy;
+
+        /**
+         * The count of events lost on overflow.
+         */
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        /**
+         * The count of events passed to the sink.
+         */
+        private final AtomicLong deliveredCount = new AtomicLong();
+
+        /**
+         * The count of publishers which deliver an event to the subscriber now.
+         */
+        private final AtomicInteger publishingCount = new AtomicInteger();
+
+        /**
+         * The gauges of the subscriber by name, registered while it is subscribed.
+         */
+        private final Map<String, MetricsRegistry.Gauge> gauges = new LinkedHashMap<String, MetricsRegistry.Gauge>();
+
+        /**
+         * The greatest count of queued events seen by the drain thread.
+         */
+        private volatile int maxLag;
+
+        /**
+         * The flag of delivery is on.
+         */
+        private volatile boolean isStarted = true;
+
+        /**
+         * The flag of the drain thread is parked and waits for events.
+         */
+        private volatile boolean isWaiting = false;
+
+        /**
+         * The drain thread, or <code>null</code> for a direct subscriber.
+         */
+        private final Thread thread;
+
+        private Subscription(String name, SampleSink sink, int capacity, OverflowPolicy overflowPolicy) {
+            this.name = name;
+            this.sink = sink;
+            this.overflowPolicy = overflowPolicy;
+            if (capacity > 0) {
+                ring = new LogRingBuffer(capacity);
+                thread = new Thread(this, "EventBus-" + name);
+                thread.start();
+            } else {
+                ring = null;
+                thread = null;
+            }
+        }
+
+        private void deliver(Sample sample) {
+            publishingCount.incrementAndGet();
+            try {
+                if (!isStarted) {
+                    // the subscriber is stopped, a publisher which took the list before it may still come
+                    droppedCount.incrementAndGet();
+                } else if (ring == null) {
+                    sink.log(sample);
+                    deliveredCount.incrementAndGet();
+                } else {
+                    offer(sample);
+                }
+            } finally {
+                publishingCount.decrementAndGet();
+            }
+        }
+
+        private void offer(Sample sample) {
+            long backoff = 1000;
+            while (!ring.offer(sample.time, null, null, sample)) {
+                switch (overflowPolicy) {
+                    case DROP_NEWEST:
+                        droppedCount.incrementAndGet();
+                        return;
+                    case DROP_OLDEST:
+                        if (ring.poll(null)) {
+                            droppedCount.incrementAndGet();
+                        }
+                        break;
+                    default:
+                        if (!isStarted) {
+                            droppedCount.incrementAndGet();
+                            return;
+                        }
+                        LockSupport.unpark(thread);
+                        LockSupport.parkNanos(backoff);
+                        backoff = Math.min(backoff * 2, MAX_BACKOFF);
+                }
+            }
+            if (isWaiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            LogRingBuffer.Record record = new LogRingBuffer.Record();
+            while (true) {
+                boolean stopping = !isStarted;
+                int lag = ring.size();
+                if (lag > maxLag) {
+                    maxLag = lag;
+                }
+                drain(record);
+                if (stopping) {
+                    return;
+                }
+                isWaiting = true;
+                if (ring.size() == 0 && isStarted) {
+                    LockSupport.parkNanos(this, MAX_PARK);
+                }
+                isWaiting = false;
+            }
+        }
+
+        /**
+         * Passes queued events to the sink.
+         * @param record            holder of the polled event
+         */
+        private void drain(LogRingBuffer.Record record) {
+            int delivered = 0;
+            while (ring.poll(record)) {
+                try {
+                    sink.log(record.sample);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+                record.sample = null;
+                if (++delivered == 64) {
+                    deliveredCount.addAndGet(delivered);
+                    delivered = 0;
+                }
+            }
+            deliveredCount.addAndGet(delivered);
+        }
+
+        /**
+         * Stops delivery. Queued events, and the events of the publishers which have been delivering
+         * meanwhile, are delivered before return, the later ones are dropped.
+         */
+        private void stop() {
+            isStarted = false;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                boolean interrupted = false;
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            while (publishingCount.get() > 0) {
+                Thread.yield();
+            }
+            if (ring != null) {
+                drain(new LogRingBuffer.Record());
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns count of published events which the subscriber has not received yet.
+         * @return                  queued events count, <code>0</code> for a direct subscriber
+         */
+        public int getLag() {
+            return ring == null ? 0 : ring.size();
+        }
+
+        /**
+         * Returns the greatest lag seen since the subscription.
+         * @return                  queued events count
+         */
+        public int getMaxLag() {
+            return maxLag;
+        }
+
+        /**
+         * Returns count of events lost on overflow.
+         * @return                  dropped events count
+         */
+        public long getDroppedCount() {
+            return droppedCount.get();
+        }
+
+        /**
+         * Returns count of events received by the subscriber.
+         * @return                  delivered events count
+         */
+        public long getDeliveredCount() {
+            return deliveredCount.get();
+        }
+    }
+
+    /**
+     * Subscribes sink called on the thread of the publisher.
+     * @param name              subscriber name, for the metrics
+     * @param sink              consumer of events
+     * @return                  subscription
+     */
+    public Subscription subscribe(String name, SampleSink sink) {
+        return add(new Subscription(name, sink, 0, OverflowPolicy.BLOCK));
+    }
+
+    /**
+     * Subscribes sink called on a drain thread of its own.
+     * @param name              subscriber name, for the metrics and the thread
+     * @param sink              consumer of events
+     * @param capacity          queue capacity, a power of two
+     * @param overflowPolicy    behaviour of publishers on the full queue
+     * @return                  subscription
+     */
+    public Subscription subscribe(String name, SampleSink sink, int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 2 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        return add(new Subscription(name, sink, capacity, overflowPolicy));
+    }
+
+    /**
+     * Unsubscribes subscriber and stops its drain thread. Queued events are delivered before return.
+     * @param subscription      subscription
+     */
+    public void unsubscribe(Subscription subscription) {
+        if (subscriptions.remove(subscription)) {
+            subscription.stop();
+            MetricsRegistry metrics = MetricsRegistry.getInstance();
+            for (Map.Entry<String, MetricsRegistry.Gauge> gauge: subscription.gauges.entrySet()) {
+                metrics.unregister(gauge.getKey(), gauge.getValue());
+            }
+        }
+    }
+
+    /**
+     * Publishes sample to all subscribers.
+     * @param sample            sample, not changed after publishing
+     */
+    @Override
+    public void log(Sample sample) {
+        for (Subscription subscription: subscriptions) {
+            subscription.deliver(sample);
+        }
+    }
+
+    private Subscription add(final Subscription subscription) {
+        String prefix = String.format("EventBus{%s}.", subscription.getName());
+        subscription.gauges.put(prefix + "lag", new MetricsRegistry.Gauge() {
+            @Override
+            public long get() {
+                return subscription.getLag();
+            }
+        });
+        subscription.gauges.put(prefix + "maxLag", new MetricsRegistry.Gauge() {
+            @Override
+            public long get() {
+                return subscription.getMaxLag();
+            }
+        });
+        subscription.gauges.put(prefix + "dropped", new MetricsRegistry.Gauge() {
+            @Override
+            public long get() {
+                return subscription.getDroppedCount();
+            }
+        });
+        subscription.gauges.put(prefix + "delivered", new MetricsRegistry.Gauge() {
+            @Override
+            public long get() {
+                return subscription.getDeliveredCount();
+            }
+        });
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        for (Map.Entry<String, MetricsRegistry.Gauge> gauge: subscription.gauges.entrySet()) {
+            metrics.gauge(gauge.getKey(), gauge.getValue());
+        }
+        subscriptions.add(subscription);
+        return subscription;
+    }
+}
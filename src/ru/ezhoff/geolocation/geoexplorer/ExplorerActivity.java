@@ -1,26 +1,54 @@
 package ru.ezhoff.geolocation.geoexplorer;
 
 import android.app.Activity;
-import android.location.LocationManager;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Bundle;
-import android.telephony.TelephonyManager;
+import android.os.Handler;
+import android.os.IBinder;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 
-import java.util.LinkedList;
-import java.util.List;
-
 public class ExplorerActivity extends Activity {
 
-    public static final int PERIOD = 500;
+    public static final long FRAME_PERIOD = 100;
     private Button startStopButton;
     private Button markerButton;
     private TextView outputView;
-    private FileLogger logger;
-    private List<Monitor> monitors;
+    private CollectionEngine engine;
+    private LiveView liveView;
+    private final Handler handler = new Handler();
 
-    private boolean active = false;
+    /**
+     * The frame of the live view, records logged since the previous frame are shown with one redraw.
+     */
+    private final Runnable frame = new Runnable() {
+        @Override
+        public void run() {
+            if (liveView != null && liveView.update()) {
+                outputView.setText(liveView.getText());
+            }
+            handler.postDelayed(this, FRAME_PERIOD);
+        }
+    };
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            engine = ((CollectionService.LocalBinder) binder).getEngine();
+            liveView = ((CollectionService.LocalBinder) binder).getLiveView();
+            updateState();
+            engine.info("Loaded.");
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            engine = null;
+            liveView = null;
+        }
+    };
 
     /**
      * Called when the activity is first created.
@@ -33,8 +61,6 @@ public class ExplorerActivity extends Activity {
         startStopButton = (Button) findViewById(R.id.startStopButton);
         markerButton    = (Button) findViewById(R.id.markerButton);
         outputView      = (TextView) findViewById(R.id.outputText);
-        //FileLogger.setOutputView(outputView);
-        logger = FileLogger.getInstance();
         startStopButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -44,48 +70,44 @@ public class ExplorerActivity extends Activity {
         markerButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
-                logger.warn("MARKER");
+                if (engine != null) {
+                    engine.mark();
+                }
             }
         });
-        initMonitors();
-        logger.info("Loaded.");
+        bindService(new Intent(this, CollectionService.class), connection, BIND_AUTO_CREATE);
     }
 
-    private void changeMonitoringState() {
-        active = !active;
-        if (active) {
-            activateMonitoring();
-        } else {
-            deactivateMonitoring();
-        }
-        startStopButton.setText(active ? R.string.stop : R.string.start);
+    @Override
+    protected void onStart() {
+        super.onStart();
+        handler.post(frame);
     }
 
-    private void activateMonitoring() {
-        logger = FileLogger.getInstance();
-        logger.info("Monitoring is activated.");
-        for (Monitor monitor: monitors) {
-            monitor.start();
-        }
+    @Override
+    protected void onStop() {
+        handler.removeCallbacks(frame);
+        super.onStop();
     }
 
-    private void deactivateMonitoring() {
-        for (Monitor monitor: monitors) {
-            monitor.stop();
-        }
-        logger.info("Monitoring is deactivated.");
-        logger.close();
+    @Override
+    protected void onDestroy() {
+        // collection goes on in the service, only the binding ends with the activity
+        unbindService(connection);
+        super.onDestroy();
     }
 
-    private void initMonitors() {
-        monitors = new LinkedList<Monitor>();
-        LocationManager locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
-        TelephonyManager telephonyManager = (TelephonyManager) getSystemService(TELEPHONY_SERVICE);
-        for (String provider: locationManager.getProviders(true)) {
-            monitors.add(
-                    new LocationMonitor().setLocationManager(locationManager).setProvider(provider).setPeriod(PERIOD)
-            );
+    private void changeMonitoringState() {
+        if (engine == null) {
+            return;
         }
-        monitors.add(new CellMonitor().setTelephonyManager(telephonyManager).setPeriod(PERIOD));
+        boolean active = !engine.isStarted();
+        startService(new Intent(this, CollectionService.class)
+                .setAction(active ? CollectionService.ACTION_START : CollectionService.ACTION_STOP));
+        startStopButton.setText(active ? R.string.stop : R.string.start);
+    }
+
+    private void updateState() {
+        startStopButton.setText(engine.isStarted() ? R.string.stop : R.string.start);
     }
 }
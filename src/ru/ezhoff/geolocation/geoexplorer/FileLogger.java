@@ -1,49 +1,136 @@
 package ru.ezhoff.geolocation.geoexplorer;
 
 import android.os.Environment;
-import android.widget.TextView;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
 
 /**
  * @author e.ezhov
  * @version 1.0 29.05.13
  */
-public class FileLogger
+public class FileLogger implements SampleSink
 {
-    private static final String INFO    = "INFO";
-    private static final String ERROR   = "ERROR";
-    private static final String DEBUG   = "DEBUG";
-    private static final String WARN    = "WARN";
+    static final String INFO    = "INFO";
+    static final String ERROR   = "ERROR";
+    static final String DEBUG   = "DEBUG";
+    static final String WARN    = "WARN";
 
-    private static SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd hh.mm.ss.SSS");
+    /**
+     * The levels in order of their indexes in the binary trace.
+     */
+    static final String[] LEVELS = {INFO, ERROR, DEBUG, WARN};
+
+    /**
+     * The suffix of the compressed log file name.
+     */
+    static final String COMPRESSED_SUFFIX = ".gxz";
+
+    /**
+     * The raw length of a compressed block, in bytes.
+     */
+    static final int COMPRESSED_BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * The longest time records wait in a compressed block before it is written, in milliseconds.
+     */
+    static final long COMPRESSED_BLOCK_INTERVAL = 60 * 1000;
+
+    /**
+     * The deflate level of compressed blocks.
+     */
+    static final int COMPRESSION_LEVEL = 6;
 
     private static FileLogger instance;
-    private static TextView outputView;
+    private static LiveView liveView;
+    private static AsyncLogWriter asyncWriter;
+    private static boolean binaryFormat;
+    private static boolean compressed;
+    private static SegmentedLogStore segmentedStore;
+    private static final MetricsRegistry.Histogram appendLatency =
+            MetricsRegistry.getInstance().histogram("FileLogger.append");
 
     private static String logFilePath = Environment.getExternalStorageDirectory().toString() + "/explorer.log";
+    private static String traceFilePath = Environment.getExternalStorageDirectory().toString() + "/explorer.trace";
+    private static String segmentsPath = Environment.getExternalStorageDirectory().toString() + "/explorer";
 
     private File logFile;
 
-    private BufferedWriter writer;
+    private RecordWriter writer;
+
+    private volatile AsyncLogWriter async;
 
-    public static void setOutputView(TextView outputView) {
-        FileLogger.outputView = outputView;
+    /**
+     * Passes every record to the given live view of the screen too. The view never makes logging wait.
+     * @param liveView          live view, or <code>null</code>
+     */
+    public static void setLiveView(LiveView liveView) {
+        FileLogger.liveView = liveView;
     }
 
-    public static FileLogger getInstance() {
+    /**
+     * Switches logger to the asynchronous mode, records are written by the drain thread of the given writer.
+     * Takes effect on the next initialization of the logger, <code>null</code> returns the synchronous mode.
+     * @param asyncWriter       asynchronous writer
+     */
+    public static void setAsyncWriter(AsyncLogWriter asyncWriter) {
+        FileLogger.asyncWriter = asyncWriter;
+    }
+
+    /**
+     * Switches logger to the binary trace file instead of the text log file.
+     * Takes effect on the next initialization of the logger.
+     * The trace is rendered to the text format by {@link TraceConverter}.
+     * @param binaryFormat      <code>true</code> for the binary trace
+     */
+    public static void setBinaryFormat(boolean binaryFormat) {
+        FileLogger.binaryFormat = binaryFormat;
+    }
+
+    /**
+     * Switches logger to the compressed blocks of {@link CompressedRecordWriter} in the log file
+     * or in the trace file with the <code>.gxz</code> suffix. Takes effect on the next initialization
+     * of the logger, it is read by {@link CompressedLogReader}.
+     * @param compressed        <code>true</code> for the compressed file
+     */
+    public static void setCompressed(boolean compressed) {
+        FileLogger.compressed = compressed;
+    }
+
+    /**
+     * Switches logger to the memory-mapped segments of the given store, records are written in
+     * the binary trace format. Takes effect on the next initialization of the logger,
+     * <code>null</code> returns the single log file.
+     * @param segmentedStore    segmented store, opened by the logger
+     */
+    public static void setSegmentedStore(SegmentedLogStore segmentedStore) {
+        FileLogger.segmentedStore = segmentedStore;
+    }
+
+    /**
+     * Returns directory of the segments of the segmented store.
+     * @return                  directory
+     */
+    public static File getSegmentsDirectory() {
+        return new File(segmentsPath);
+    }
+
+    public static synchronized FileLogger getInstance() {
         if (logFilePath == null) {
             throw new IllegalStateException("Log file is not initialized.");
         }
         if (instance == null) {
             try {
                 instance = new FileLogger();
-                instance.init(logFilePath);
+                if (segmentedStore != null) {
+                    instance.initSegments(segmentsPath);
+                } else {
+                    instance.init(binaryFormat ? traceFilePath : logFilePath);
+                }
             } catch (IOException e) {
                 instance.error(e.getMessage());
             }
@@ -54,11 +141,45 @@ public class FileLogger
     private FileLogger() {}
 
     private void init(String logFilePath) throws IOException {
+        if (compressed) {
+            logFile = new File(logFilePath + COMPRESSED_SUFFIX);
+            writer = new CompressedRecordWriter(logFile,
+                    binaryFormat ? CompressedRecordWriter.TRACE : CompressedRecordWriter.TEXT,
+                    COMPRESSED_BLOCK_SIZE, COMPRESSED_BLOCK_INTERVAL, COMPRESSION_LEVEL);
+            startAsync();
+            return;
+        }
         logFile = new File(logFilePath);
         if (!logFile.exists()) {
             logFile.createNewFile();
         }
-        writer = new BufferedWriter(new FileWriter(logFile, true));
+        if (binaryFormat) {
+            writer = new BinaryTraceWriter(new BufferedOutputStream(new FileOutputStream(logFile, true)));
+        } else {
+            writer = new TextRecordWriter(new BufferedWriter(new FileWriter(logFile, true)));
+        }
+        startAsync();
+    }
+
+    private void initSegments(String segmentsPath) throws IOException {
+        logFile = new File(segmentsPath);
+        segmentedStore.open(logFile);
+        writer = new SegmentedRecordWriter(segmentedStore);
+        startAsync();
+    }
+
+    private void startAsync() {
+        if (asyncWriter != null) {
+            async = asyncWriter;
+            async.start(writer);
+            final AsyncLogWriter async = this.async;
+            MetricsRegistry.getInstance().gauge("AsyncLogWriter.dropped", new MetricsRegistry.Gauge() {
+                @Override
+                public long get() {
+                    return async.getDroppedCount();
+                }
+            });
+        }
     }
 
     public void info(String message) {
@@ -77,26 +198,77 @@ public class FileLogger
         append(WARN, message);
     }
 
-    private synchronized void append(String level, String message) {
-        if (outputView != null) {
-            outputView.append(message + "\n");
+    /**
+     * Logs typed sample of a monitor. A {@link MessageSample} is logged as a text message.
+     * @param sample            sample
+     */
+    @Override
+    public void log(Sample sample) {
+        if (sample instanceof MessageSample) {
+            MessageSample message = (MessageSample) sample;
+            append(message.time, message.level, message.message, null);
+            return;
         }
-        try {
-            writer.append(dateFormat.format(Calendar.getInstance().getTime())).append("\t")
-                  .append(level).append("\t")
-                  .append(message).append("\n");
-        } catch (IOException e) {
-            e.printStackTrace();
+        append(sample.time, INFO, null, sample);
+    }
+
+    /**
+     * Logs text message with the given time, e.g. a replayed one.
+     * @param time              time, in milliseconds
+     * @param level             level
+     * @param message           message
+     */
+    void log(long time, String level, String message) {
+        append(time, level, message, null);
+    }
+
+    private void append(String level, String message) {
+        append(System.currentTimeMillis(), level, message, null);
+    }
+
+    private void append(long time, String level, String message, Sample sample) {
+        long startNanos = System.nanoTime();
+        LiveView liveView = FileLogger.liveView;
+        if (liveView != null) {
+            liveView.append(time, level, message, sample);
+        }
+        AsyncLogWriter async = this.async;
+        // a record which the stopped writer does not take is written here
+        if (async != null && async.append(time, level, message, sample)) {
+            appendLatency.recordSince(startNanos);
+            return;
         }
+        synchronized (this) {
+            try {
+                if (sample == null) {
+                    writer.writeMessage(time, level, message);
+                } else {
+                    writer.writeSample(sample);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        appendLatency.recordSince(startNanos);
     }
 
     public void close() {
-        if (instance != null) {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+        synchronized (FileLogger.class) {
+            if (instance != this) {
+                return;
+            }
+            synchronized (this) {
+                // the records left by the writer and the records written here do not interleave
+                if (async != null) {
+                    async.stop();
+                    async = null;
+                }
+                if (writer != null) {
+                    try {
+                        writer.close();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
                 }
             }
             instance = null;
@@ -0,0 +1,88 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import android.location.Location;
+
+/**
+ * Mutable primitive copy of a location fix, reused by the periodical checks.
+ * A check reads the last known location into a snapshot and compares it with the last reported one,
+ * a {@link LocationSample} is created only for a new fix, so a check of the same fix allocates nothing.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public final class FixSnapshot {
+
+    /**
+     * The flag of the snapshot holds a fix.
+     */
+    boolean isSet;
+
+    /**
+     * The fix time of the provider, in milliseconds.
+     */
+    long fixTime;
+
+    double latitude;
+    double longitude;
+    double altitude;
+    float accuracy;
+
+    /**
+     * Reads fix.
+     * @param location          fix of the location manager, or <code>null</code>
+     * @return                  <code>false</code> if there is no fix, the snapshot is empty
+     */
+    public boolean set(Location location) {
+        if (location == null) {
+            clear();
+            return false;
+        }
+        isSet = true;
+        fixTime = location.getTime();
+        latitude = location.getLatitude();
+        longitude = location.getLongitude();
+        altitude = location.getAltitude();
+        accuracy = location.getAccuracy();
+        return true;
+    }
+
+    /**
+     * Empties snapshot.
+     */
+    public void clear() {
+        isSet = false;
+    }
+
+    /**
+     * Returns <code>true</code> if the snapshot holds a fix.
+     * @return                  state of the snapshot
+     */
+    public boolean isEmpty() {
+        return !isSet;
+    }
+
+    /**
+     * Returns <code>true</code> if both snapshots hold the same fix.
+     * @param snapshot          other snapshot
+     * @return                  result of comparison, <code>false</code> if any of them is empty
+     */
+    public boolean sameFix(FixSnapshot snapshot) {
+        return isSet && snapshot.isSet
+                && fixTime == snapshot.fixTime
+                && latitude == snapshot.latitude
+                && longitude == snapshot.longitude
+                && altitude == snapshot.altitude
+                && accuracy == snapshot.accuracy;
+    }
+
+    /**
+     * Creates sample of the snapshot.
+     * @param time              time, in milliseconds
+     * @param provider          location provider name
+     * @param origin            {@link Sample#LISTENER} or {@link Sample#MONITOR}
+     * @return                  sample
+     */
+    public LocationSample toSample(long time, String provider, int origin) {
+        return new LocationSample(time, provider, origin, latitude, longitude, altitude, accuracy);
+    }
+}
@@ -0,0 +1,226 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse accumulation grid of signal strengths in the square bins of slippy map pixels, in named layers.
+ * A bin keeps the count and the sum of the strengths observed in it. The key of a bin packs the layer
+ * and the bin coordinates of one zoom level, the bins are primitive arrays found by a primitive map,
+ * as the tiles of {@link CoverageIndex}. A grid of the next lower zoom level is made by merging
+ * every four bins into one.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class HeatmapGrid {
+
+    /**
+     * The bits of a bin coordinate, the bins of a level are at most this power of two to a side.
+     */
+    static final int COORDINATE_BITS = 24;
+
+    /**
+     * The most count of layers.
+     */
+    static final int MAX_LAYERS = 1 << 15;
+
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    private static final int INITIAL_LENGTH = 1024;
+
+    /**
+     * The layer names by index and the indexes by name.
+     */
+    private final List<String> layers = new ArrayList<String>();
+    private final Map<String, Integer> layerIndexes = new HashMap<String, Integer>();
+
+    /**
+     * The bin indexes by key.
+     */
+    private final LongIntMap index;
+
+    /**
+     * The keys, the counts and the sums of the strengths of the bins.
+     */
+    long[] keys;
+    int[] counts;
+    long[] sums;
+
+    /**
+     * The count of bins.
+     */
+    int size;
+
+    HeatmapGrid() {
+        this(INITIAL_LENGTH);
+    }
+
+    private HeatmapGrid(int capacity) {
+        index = new LongIntMap(capacity);
+        keys = new long[capacity];
+        counts = new int[capacity];
+        sums = new long[capacity];
+    }
+
+    static long key(int layer, int x, int y) {
+        return (long) layer << 2 * COORDINATE_BITS | (long) x << COORDINATE_BITS | y;
+    }
+
+    static int layerOf(long key) {
+        return (int) (key >>> 2 * COORDINATE_BITS);
+    }
+
+    static int xOf(long key) {
+        return (int) (key >>> COORDINATE_BITS & COORDINATE_MASK);
+    }
+
+    static int yOf(long key) {
+        return (int) (key & COORDINATE_MASK);
+    }
+
+    /**
+     * Returns index of the layer, the layer is added if it is new.
+     * @param name              layer name
+     * @return                  layer index
+     */
+    int layer(String name) {
+        Integer layer = layerIndexes.get(name);
+        if (layer == null) {
+            if (layers.size() == MAX_LAYERS) {
+                throw new IllegalStateException("Too many layers: " + name);
+            }
+            layer = layers.size();
+            layers.add(name);
+            layerIndexes.put(name, layer);
+        }
+        return layer;
+    }
+
+    String getLayerName(int layer) {
+        return layers.get(layer);
+    }
+
+    int getLayerCount() {
+        return layers.size();
+    }
+
+    /**
+     * Returns count of observations of all bins.
+     * @return                  observations count
+     */
+    long getObservationCount() {
+        long count = 0;
+        for (int bin = 0; bin < size; bin++) {
+            count += counts[bin];
+        }
+        return count;
+    }
+
+    /**
+     * Adds observations to the bin.
+     * @param key               bin key
+     * @param count             count of observations
+     * @param sum               sum of their strengths
+     */
+    void add(long key, int count, long sum) {
+        int bin = index.get(key);
+        if (bin == LongIntMap.ABSENT) {
+            if (size == keys.length) {
+                grow();
+            }
+            bin = size++;
+            keys[bin] = key;
+            index.put(key, bin);
+        }
+        counts[bin] += count;
+        sums[bin] += sum;
+    }
+
+    /**
+     * Adds bins of the grid of the same zoom level, its layers are matched by name.
+     * @param grid              grid
+     */
+    void merge(HeatmapGrid grid) {
+        int[] layerMap = new int[grid.layers.size()];
+        for (int layer = 0; layer < layerMap.length; layer++) {
+            layerMap[layer] = layer(grid.layers.get(layer));
+        }
+        for (int bin = 0; bin < grid.size; bin++) {
+            long key = grid.keys[bin];
+            add(key(layerMap[layerOf(key)], xOf(key), yOf(key)), grid.counts[bin], grid.sums[bin]);
+        }
+    }
+
+    /**
+     * Returns empty grid with the same layers, so the layers of the grids have the same indexes.
+     * @return                  grid
+     */
+    HeatmapGrid copyLayers() {
+        return copyLayers(INITIAL_LENGTH);
+    }
+
+    /**
+     * Returns grid of the next lower zoom level, with the same layers.
+     * @return                  grid with bins of twice the size
+     */
+    HeatmapGrid coarsen() {
+        HeatmapGrid coarse = copyLayers(Math.max(INITIAL_LENGTH, size / 2));
+        for (int bin = 0; bin < size; bin++) {
+            long key = keys[bin];
+            coarse.add(key(layerOf(key), xOf(key) >> 1, yOf(key) >> 1), counts[bin], sums[bin]);
+        }
+        return coarse;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(layers.size());
+        for (String layer: layers) {
+            out.writeUTF(layer);
+        }
+        out.writeInt(size);
+        for (int bin = 0; bin < size; bin++) {
+            out.writeLong(keys[bin]);
+            out.writeInt(counts[bin]);
+            out.writeLong(sums[bin]);
+        }
+    }
+
+    static HeatmapGrid read(DataInputStream in) throws IOException {
+        HeatmapGrid grid = new HeatmapGrid();
+        int layerCount = in.readInt();
+        for (int layer = 0; layer < layerCount; layer++) {
+            grid.layer(in.readUTF());
+        }
+        int size = in.readInt();
+        for (int bin = 0; bin < size; bin++) {
+            grid.add(in.readLong(), in.readInt(), in.readLong());
+        }
+        return grid;
+    }
+
+    private HeatmapGrid copyLayers(int capacity) {
+        HeatmapGrid grid = new HeatmapGrid(capacity);
+        for (String layer: layers) {
+            grid.layer(layer);
+        }
+        return grid;
+    }
+
+    private void grow() {
+        long[] grownKeys = new long[keys.length * 2];
+        int[] grownCounts = new int[keys.length * 2];
+        long[] grownSums = new long[keys.length * 2];
+        System.arraycopy(keys, 0, grownKeys, 0, size);
+        System.arraycopy(counts, 0, grownCounts, 0, size);
+        System.arraycopy(sums, 0, grownSums, 0, size);
+        keys = grownKeys;
+        counts = grownCounts;
+        sums = grownSums;
+    }
+}
@@ -0,0 +1,666 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renderer of coverage heatmaps from recordings into slippy map tiles.
+ * Usage: <code>HeatmapRenderer [-threads N] [-by cell|operator] [-zoom MIN-MAX] [-bin PIXELS] tiles recording ...</code>
+ * <p>
+ * Every signal strength of a cell is joined to the most recent location fix, as by {@link CoverageIndex},
+ * extrapolated on a move to the time of the strength by {@link DeadReckoning},
+ * and counted into the bin of the fix at the highest zoom level in the layer of the cell,
+ * or of the operator of the serving network. The tiles are <code>tiles/layer/z/x/y.png</code>,
+ * a bin is a square of the color of its mean strength from red at 0 ASU to green at 31 ASU.
+ * <p>
+ * The recordings are taken from a queue by the threads of the pool, every thread counts them into
+ * a {@link HeatmapGrid} of its own and the grids are merged at the end, so the threads share nothing
+ * while they read. The tiles are encoded on the pool as well, every thread with its own buffers.
+ * <p>
+ * The bins of all added recordings are kept in the {@link #STATE_FILE} of the tiles directory.
+ * A recording which is added already is skipped, and only the tiles which the bins of the new
+ * recordings fall into are rendered again, at all zoom levels.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class HeatmapRenderer {
+
+    /**
+     * The layer of every cell, named <code>cell-LAC-CID</code>.
+     */
+    public static final String BY_CELL = "cell";
+
+    /**
+     * The layer of every operator of the serving network, named <code>operator-MCCMNC</code>.
+     */
+    public static final String BY_OPERATOR = "operator";
+
+    /**
+     * The file of the bins and the added recordings, in the tiles directory.
+     */
+    public static final String STATE_FILE = "heatmap.state";
+
+    /**
+     * The magic number of the state file, <code>GEHS</code>.
+     */
+    private static final int STATE_MAGIC = 0x47454853;
+
+    private static final int STATE_VERSION = 1;
+
+    private static final int TILE_SIZE = 256;
+
+    private static final int MAX_ASU = 31;
+
+    /**
+     * The colors of the strengths in ASU, half transparent.
+     */
+    private static final int[] COLORS = createColors();
+
+    /**
+     * The count of threads.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The layering, {@link #BY_CELL} or {@link #BY_OPERATOR}.
+     */
+    private String layering = BY_CELL;
+
+    /**
+     * The zoom levels of the tiles.
+     */
+    private int minZoom = 10;
+    private int maxZoom = 16;
+
+    /**
+     * The side of a bin, in pixels, a power of two.
+     */
+    private int binSize = 8;
+
+    /**
+     * The longest time from a location fix to an observation which is joined to it, in milliseconds.
+     */
+    private long maxFixAge = 10 * 1000;
+
+    /**
+     * The largest accuracy of a joined location fix, in meters.
+     */
+    private float maxAccuracy = 50;
+
+    /**
+     * The counts of the last update: the added recordings, the observations and the rendered tiles.
+     */
+    private int recordingCount;
+    private long observationCount;
+    private int tileCount;
+
+    /**
+     * The time of the last update, in nanoseconds.
+     */
+    private long elapsedTime;
+
+    /**
+     * Adds recordings to the heatmap of the directory and renders the tiles which they change.
+     * @param directory         tiles directory
+     * @param paths             paths of the recordings, as of {@link SessionExporter#open(File)}
+     * @return                  count of rendered tiles
+     * @throws IOException      if reading or writing is failed, or the state has other settings
+     */
+    public int update(File directory, List<String> paths) throws IOException {
+        long startTime = System.nanoTime();
+        recordingCount = 0;
+        observationCount = 0;
+        tileCount = 0;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create directory: " + directory);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            File stateFile = new File(directory, STATE_FILE);
+            Set<String> recordings = new LinkedHashSet<String>();
+            HeatmapGrid grid = stateFile.isFile() ? readState(stateFile, recordings) : new HeatmapGrid();
+            List<String> added = new ArrayList<String>();
+            for (String path: paths) {
+                String recording = new File(path).getAbsolutePath();
+                if (recordings.add(recording)) {
+                    added.add(recording);
+                }
+            }
+            if (added.isEmpty()) {
+                return 0;
+            }
+            HeatmapGrid delta = aggregate(executor, added);
+            grid.merge(delta);
+            // the changes by the layer indexes of the grid, which the tiles are found by
+            HeatmapGrid changes = grid.copyLayers();
+            changes.merge(delta);
+            recordingCount = added.size();
+            observationCount = changes.getObservationCount();
+            tileCount = render(executor, grid, changes, directory);
+            writeState(stateFile, recordings, grid);
+            return tileCount;
+        } finally {
+            executor.shutdownNow();
+            elapsedTime = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Prints counts of the last update.
+     * @param out               destination
+     */
+    void print(PrintStream out) {
+        double seconds = elapsedTime / 1e9;
+        out.println(String.format("Recordings: %s, Observations: %s, Tiles: %s, Time: %.3f s, Throughput: %.0f observations/s, Threads: %s",
+                recordingCount, observationCount, tileCount, seconds, observationCount / seconds, threads));
+    }
+
+    public int getRecordingCount() {
+        return recordingCount;
+    }
+
+    public long getObservationCount() {
+        return observationCount;
+    }
+
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Sets count of threads and returns self object for easy init.
+     * @param threads           threads count
+     * @return                  self object
+     */
+    public HeatmapRenderer setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets layering and returns self object for easy init.
+     * @param layering          {@link #BY_CELL} or {@link #BY_OPERATOR}
+     * @return                  self object
+     */
+    public HeatmapRenderer setLayering(String layering) {
+        if (!BY_CELL.equals(layering) && !BY_OPERATOR.equals(layering)) {
+            throw new IllegalArgumentException("Unknown layering: " + layering);
+        }
+        this.layering = layering;
+        return this;
+    }
+
+    /**
+     * Sets zoom levels of the tiles and returns self object for easy init.
+     * @param minZoom           lowest zoom level
+     * @param maxZoom           highest zoom level, of the bins of the state
+     * @return                  self object
+     */
+    public HeatmapRenderer setZoom(int minZoom, int maxZoom) {
+        if (minZoom < 0 || minZoom > maxZoom || maxZoom + binShift(TILE_SIZE / binSize) > HeatmapGrid.COORDINATE_BITS) {
+            throw new IllegalArgumentException(String.format("Wrong zoom levels: %s-%s", minZoom, maxZoom));
+        }
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        return this;
+    }
+
+    /**
+     * Sets side of a bin and returns self object for easy init.
+     * @param binSize           side, in pixels, a power of two up to the tile size
+     * @return                  self object
+     */
+    public HeatmapRenderer setBinSize(int binSize) {
+        if (binSize < 1 || binSize > TILE_SIZE || (binSize & (binSize - 1)) != 0
+                || maxZoom + binShift(TILE_SIZE / binSize) > HeatmapGrid.COORDINATE_BITS) {
+            throw new IllegalArgumentException("Wrong bin size: " + binSize);
+        }
+        this.binSize = binSize;
+        return this;
+    }
+
+    /**
+     * Sets longest time from a location fix to an observation which is joined to it
+     * and returns self object for easy init.
+     * @param maxFixAge         time, in milliseconds
+     * @return                  self object
+     */
+    public HeatmapRenderer setMaxFixAge(long maxFixAge) {
+        this.maxFixAge = maxFixAge;
+        return this;
+    }
+
+    /**
+     * Sets largest accuracy of a joined location fix and returns self object for easy init.
+     * @param maxAccuracy       accuracy, in meters
+     * @return                  self object
+     */
+    public HeatmapRenderer setMaxAccuracy(float maxAccuracy) {
+        this.maxAccuracy = maxAccuracy;
+        return this;
+    }
+
+    /**
+     * Counts recordings into grids of the threads and merges them.
+     */
+    HeatmapGrid aggregate(ExecutorService executor, final List<String> paths) throws IOException {
+        final AtomicInteger next = new AtomicInteger();
+        List<Future<HeatmapGrid>> results = new ArrayList<Future<HeatmapGrid>>();
+        for (int thread = 0; thread < Math.min(threads, paths.size()); thread++) {
+            results.add(executor.submit(new Callable<HeatmapGrid>() {
+                @Override
+                public HeatmapGrid call() throws IOException {
+                    HeatmapGrid grid = new HeatmapGrid();
+                    for (int i = next.getAndIncrement(); i < paths.size(); i = next.getAndIncrement()) {
+                        new Accumulator(grid).add(new File(paths.get(i)));
+                    }
+                    return grid;
+                }
+            }));
+        }
+        HeatmapGrid grid = get(results.get(0));
+        for (int i = 1; i < results.size(); i++) {
+            grid.merge(get(results.get(i)));
+        }
+        return grid;
+    }
+
+    /**
+     * Renders the tiles of the grid which the bins of the changes fall into, from the highest zoom level down.
+     * @return                  count of rendered tiles
+     */
+    private int render(ExecutorService executor, HeatmapGrid grid, HeatmapGrid changes, File directory)
+            throws IOException {
+        int rendered = 0;
+        for (int zoom = maxZoom; zoom >= minZoom; zoom--) {
+            if (zoom < maxZoom) {
+                grid = grid.coarsen();
+                changes = changes.coarsen();
+            }
+            rendered += renderLevel(executor, grid, changes, directory, zoom);
+        }
+        return rendered;
+    }
+
+    private int renderLevel(ExecutorService executor, final HeatmapGrid grid, HeatmapGrid changes,
+                            final File directory, final int zoom) throws IOException {
+        final int shift = binShift(TILE_SIZE / binSize);
+        // the changed tiles and the bins of every one of them, as the cells of the road graph
+        LongIntMap tileIndexes = new LongIntMap(Math.max(16, changes.size >> shift));
+        final List<Long> tiles = new ArrayList<Long>();
+        for (int bin = 0; bin < changes.size; bin++) {
+            long tile = tileKey(changes.keys[bin], shift);
+            if (tileIndexes.get(tile) == LongIntMap.ABSENT) {
+                tileIndexes.put(tile, tiles.size());
+                tiles.add(tile);
+            }
+        }
+        final int[] tileStart = new int[tiles.size() + 1];
+        int[] binTiles = new int[grid.size];
+        for (int bin = 0; bin < grid.size; bin++) {
+            int tile = tileIndexes.get(tileKey(grid.keys[bin], shift));
+            binTiles[bin] = tile;
+            if (tile != LongIntMap.ABSENT) {
+                tileStart[tile + 1]++;
+            }
+        }
+        for (int tile = 0; tile < tiles.size(); tile++) {
+            tileStart[tile + 1] += tileStart[tile];
+        }
+        final int[] tileBins = new int[tileStart[tiles.size()]];
+        int[] next = new int[tiles.size()];
+        System.arraycopy(tileStart, 0, next, 0, tiles.size());
+        for (int bin = 0; bin < grid.size; bin++) {
+            if (binTiles[bin] != LongIntMap.ABSENT) {
+                tileBins[next[binTiles[bin]]++] = bin;
+            }
+        }
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        for (int thread = 0; thread < threads; thread++) {
+            final int first = thread;
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    PngEncoder encoder = new PngEncoder();
+                    int[] pixels = new int[TILE_SIZE * TILE_SIZE];
+                    int count = 0;
+                    for (int tile = first; tile < tiles.size(); tile += threads) {
+                        paint(grid, tileBins, tileStart[tile], tileStart[tile + 1], shift, pixels);
+                        long key = tiles.get(tile);
+                        File file = new File(directory, String.format("%s/%d/%d/%d.png",
+                                grid.getLayerName(HeatmapGrid.layerOf(key)), zoom,
+                                HeatmapGrid.xOf(key), HeatmapGrid.yOf(key)));
+                        File parent = file.getParentFile();
+                        // the directory may be made by another thread at the same time
+                        if (!parent.mkdirs() && !parent.isDirectory()) {
+                            throw new IOException("Can not create directory: " + parent);
+                        }
+                        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+                        try {
+                            encoder.encode(pixels, TILE_SIZE, TILE_SIZE, out);
+                        } finally {
+                            out.close();
+                        }
+                        count++;
+                    }
+                    return count;
+                }
+            }));
+        }
+        int count = 0;
+        for (Future<Integer> result: results) {
+            count += get(result);
+        }
+        return count;
+    }
+
+    /**
+     * Paints bins of a tile.
+     */
+    private void paint(HeatmapGrid grid, int[] tileBins, int start, int end, int shift, int[] pixels) {
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0;
+        }
+        int mask = (1 << shift) - 1;
+        for (int i = start; i < end; i++) {
+            int bin = tileBins[i];
+            long key = grid.keys[bin];
+            int color = COLORS[(int) Math.round((double) grid.sums[bin] / grid.counts[bin])];
+            int left = (HeatmapGrid.xOf(key) & mask) * binSize;
+            int top = (HeatmapGrid.yOf(key) & mask) * binSize;
+            for (int y = top; y < top + binSize; y++) {
+                for (int x = y * TILE_SIZE + left; x < y * TILE_SIZE + left + binSize; x++) {
+                    pixels[x] = color;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counter of the observations of a recording into a grid.
+     */
+    private final class Accumulator {
+        private final HeatmapGrid grid;
+
+        /**
+         * The layers of the cells by cell key.
+         */
+        private final LongIntMap cellLayers = new LongIntMap(64);
+
+        /**
+         * The bins per side of the world at the highest zoom level.
+         */
+        private final double scale = 1 << maxZoom + binShift(TILE_SIZE / binSize);
+
+        /**
+         * The bin of the last location fix and its time.
+         */
+        private int fixX;
+        private int fixY;
+        private long fixTime = Long.MIN_VALUE;
+
+        /**
+         * The position between the fixes.
+         */
+        private final DeadReckoning reckoning = new DeadReckoning();
+
+        /**
+         * The serving cell, or <code>-1</code>, and the layer of the operator, or <code>-1</code>.
+         */
+        private int servingCid = -1;
+        private int servingLac = -1;
+        private String operator;
+        private int operatorLayer = -1;
+
+        Accumulator(HeatmapGrid grid) {
+            this.grid = grid;
+        }
+
+        void add(File path) throws IOException {
+            RecordSource source = SessionExporter.open(path);
+            try {
+                while (source.next()) {
+                    Sample sample = source.getSample();
+                    if (sample != null) {
+                        add(sample);
+                    } else if (BY_OPERATOR.equals(layering)) {
+                        String changed = SessionExporter.parseOperator(source.getMessage(), operator);
+                        if (changed == null ? operator != null : !changed.equals(operator)) {
+                            operator = changed;
+                            operatorLayer = operator == null ? -1 : grid.layer("operator-" + operator);
+                        }
+                    }
+                }
+            } finally {
+                source.close();
+            }
+        }
+
+        private void add(Sample sample) {
+            switch (sample.getType()) {
+                case LocationSample.TYPE:
+                    LocationSample fix = (LocationSample) sample;
+                    fix(fix.time, fix.source, fix.latitude, fix.longitude, fix.accuracy);
+                    break;
+                case DwellSample.STARTED:
+                    DwellSample dwell = (DwellSample) sample;
+                    // the position holds until the dwell ends, however old the fix gets
+                    fix(Long.MAX_VALUE, null, dwell.latitude, dwell.longitude, dwell.accuracy);
+                    break;
+                case DwellSample.ENDED:
+                    if (fixTime == Long.MAX_VALUE) {
+                        fixTime = sample.time;
+                    }
+                    break;
+                case CellSample.NEIGHBOR:
+                    CellSample neighbor = (CellSample) sample;
+                    if (BY_CELL.equals(layering) && neighbor.cid >= 0) {
+                        observe(neighbor.time, cellLayer(neighbor.cid, neighbor.lac), neighbor.rssi);
+                    }
+                    break;
+                case CellSample.GSM:
+                case CellSample.CDMA:
+                    CellSample serving = (CellSample) sample;
+                    servingCid = serving.cid;
+                    servingLac = serving.lac;
+                    break;
+                case SignalSample.ASU:
+                case SignalSample.STRENGTHS:
+                    SignalSample signal = (SignalSample) sample;
+                    // CDMA dBm are taken to ASU as by the platform, 2 dB per unit from -113 dBm
+                    int rssi = signal.kind == SignalSample.ASU || signal.gsm
+                            ? signal.gsmSignalStrength : (signal.cdmaDbm + 113) / 2;
+                    if (BY_OPERATOR.equals(layering)) {
+                        observe(signal.time, operatorLayer, rssi);
+                    } else if (servingCid != -1) {
+                        observe(signal.time, cellLayer(servingCid, servingLac), rssi);
+                    }
+                    break;
+                default:
+                    // counts and lost cells have no strength
+            }
+        }
+
+        /**
+         * Takes fix, or the position of a dwell without a provider.
+         */
+        private void fix(long time, String provider, double latitude, double longitude, float accuracy) {
+            if (accuracy <= maxAccuracy) {
+                fixX = x(longitude);
+                fixY = y(latitude);
+                fixTime = time;
+                if (provider != null) {
+                    reckoning.fix(time, provider, latitude, longitude, accuracy);
+                } else {
+                    reckoning.hold(latitude, longitude);
+                }
+            }
+        }
+
+        private void observe(long time, int layer, int rssi) {
+            if (layer >= 0 && rssi >= 0 && rssi <= MAX_ASU && fixTime != Long.MIN_VALUE && time - fixTime <= maxFixAge) {
+                if (reckoning.isMoving()) {
+                    grid.add(HeatmapGrid.key(layer, x(reckoning.longitudeAt(time)), y(reckoning.latitudeAt(time))),
+                            1, rssi);
+                } else {
+                    grid.add(HeatmapGrid.key(layer, fixX, fixY), 1, rssi);
+                }
+            }
+        }
+
+        private int x(double longitude) {
+            return clamp((longitude + 180) / 360 * scale);
+        }
+
+        private int y(double latitude) {
+            double sinLatitude = Math.sin(Math.toRadians(latitude));
+            return clamp((0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI)) * scale);
+        }
+
+        private int cellLayer(int cid, int lac) {
+            long key = CellChangeDetector.key(cid, lac, 0);
+            int layer = cellLayers.get(key);
+            if (layer == LongIntMap.ABSENT) {
+                layer = grid.layer("cell-" + lac + "-" + cid);
+                cellLayers.put(key, layer);
+            }
+            return layer;
+        }
+
+        private int clamp(double coordinate) {
+            return (int) Math.max(0, Math.min(scale - 1, coordinate));
+        }
+    }
+
+    private HeatmapGrid readState(File file, Set<String> recordings) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != STATE_MAGIC || in.readByte() != STATE_VERSION) {
+                throw new IOException("Not a heatmap state: " + file);
+            }
+            if (!layering.equals(in.readUTF()) || in.readByte() != minZoom || in.readByte() != maxZoom
+                    || in.readShort() != binSize) {
+                throw new IOException("Heatmap settings differ from the ones of " + file);
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                recordings.add(in.readUTF());
+            }
+            return HeatmapGrid.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes state into a temporary file and renames it, so a failed write keeps the previous state.
+     */
+    private void writeState(File file, Set<String> recordings, HeatmapGrid grid) throws IOException {
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            out.writeInt(STATE_MAGIC);
+            out.writeByte(STATE_VERSION);
+            out.writeUTF(layering);
+            out.writeByte(minZoom);
+            out.writeByte(maxZoom);
+            out.writeShort(binSize);
+            out.writeInt(recordings.size());
+            for (String recording: recordings) {
+                out.writeUTF(recording);
+            }
+            grid.write(out);
+        } finally {
+            out.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Can not replace " + file);
+        }
+    }
+
+    private static long tileKey(long binKey, int shift) {
+        return HeatmapGrid.key(HeatmapGrid.layerOf(binKey), HeatmapGrid.xOf(binKey) >> shift, HeatmapGrid.yOf(binKey) >> shift);
+    }
+
+    /**
+     * Returns binary logarithm of the power of two.
+     */
+    private static int binShift(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    private static int[] createColors() {
+        int[] colors = new int[MAX_ASU + 1];
+        for (int asu = 0; asu <= MAX_ASU; asu++) {
+            double share = (double) asu / MAX_ASU;
+            int red = share < 0.5 ? 255 : (int) (255 * 2 * (1 - share));
+            int green = share < 0.5 ? (int) (255 * 2 * share) : 255;
+            colors[asu] = 0xB0000000 | red << 16 | green << 8;
+        }
+        return colors;
+    }
+
+    private static <T> T get(Future<T> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Rendering is interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        HeatmapRenderer renderer = new HeatmapRenderer();
+        File directory = null;
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                renderer.setThreads(Integer.parseInt(args[++i]));
+            } else if ("-by".equals(args[i]) && i + 1 < args.length) {
+                renderer.setLayering(args[++i]);
+            } else if ("-zoom".equals(args[i]) && i + 1 < args.length) {
+                String[] levels = args[++i].split("-");
+                renderer.setZoom(Integer.parseInt(levels[0]), Integer.parseInt(levels[levels.length - 1]));
+            } else if ("-bin".equals(args[i]) && i + 1 < args.length) {
+                renderer.setBinSize(Integer.parseInt(args[++i]));
+            } else if (directory == null) {
+                directory = new File(args[i]);
+            } else if (new File(args[i]).exists()) {
+                paths.add(args[i]);
+            } else {
+                System.err.println(String.format("Not a file: %s", args[i]));
+                System.exit(1);
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: HeatmapRenderer [-threads N] [-by cell|operator] [-zoom MIN-MAX] [-bin PIXELS] <tiles directory> <recording> ...");
+            System.exit(1);
+        }
+        renderer.update(directory, paths);
+        renderer.print(System.out);
+    }
+}
@@ -0,0 +1,185 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Live view of the last logged records for the screen.
+ * Producers only put records into a lock-free {@link LogRingBuffer}, discarding the oldest one when it is full,
+ * so they never wait for the screen. The screen takes all records which came since the previous frame
+ * at a fixed frame rate by {@link #update()} and renders the last lines as one text, so a burst of records
+ * costs a single redraw and records which would scroll off before the frame are not even formatted.
+ * <p>
+ * Records are filtered by level and by monitor on the producer side.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LiveView {
+
+    /**
+     * The records since the previous frame.
+     */
+    private final LogRingBuffer ring;
+
+    /**
+     * The holder of a taken record.
+     */
+    private final LogRingBuffer.Record record = new LogRingBuffer.Record();
+
+    /**
+     * The shown lines, in a circle from the oldest one.
+     */
+    private final String[] lines;
+
+    /**
+     * The position of the oldest shown line.
+     */
+    private int first;
+
+    /**
+     * The count of shown lines.
+     */
+    private int count;
+
+    /**
+     * The text of the shown lines.
+     */
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * The shown levels, or <code>null</code> for all.
+     */
+    private volatile String[] levels;
+
+    /**
+     * The shown monitors, or <code>null</code> for all.
+     */
+    private volatile String[] monitors;
+
+    /**
+     * Creates live view.
+     * @param lineCount         count of shown lines
+     */
+    public LiveView(int lineCount) {
+        lines = new String[lineCount];
+        int capacity = 2;
+        while (capacity < lineCount) {
+            capacity *= 2;
+        }
+        ring = new LogRingBuffer(capacity);
+    }
+
+    /**
+     * Puts record for the next frame if it passes the filters. Never waits.
+     * @param time              record time, in milliseconds
+     * @param level             record level
+     * @param message           record message, or <code>null</code> for a sample
+     * @param sample            record sample, or <code>null</code> for a text message
+     */
+    void append(long time, String level, String message, Sample sample) {
+        String[] levels = this.levels;
+        if (levels != null && !contains(levels, level)) {
+            return;
+        }
+        String[] monitors = this.monitors;
+        if (monitors != null && !isOfMonitors(monitors, message, sample)) {
+            return;
+        }
+        while (!ring.offer(time, level, message, sample)) {
+            ring.poll(null);
+        }
+    }
+
+    /**
+     * Takes records which came since the previous frame. Called by the single thread of the screen.
+     * @return                  <code>true</code> if the text is changed
+     */
+    public boolean update() {
+        boolean changed = false;
+        // records beyond the shown lines would be pushed out in this very frame
+        for (int skipped = ring.size() - lines.length; skipped > 0 && ring.poll(null); skipped--) {
+            changed = true;
+        }
+        while (ring.poll(record)) {
+            String line;
+            if (record.sample != null) {
+                StringBuilder builder = new StringBuilder();
+                record.sample.appendMessage(builder);
+                line = builder.toString();
+            } else {
+                line = record.message;
+            }
+            if (count < lines.length) {
+                lines[(first + count++) % lines.length] = line;
+            } else {
+                lines[first] = line;
+                first = (first + 1) % lines.length;
+            }
+            changed = true;
+        }
+        record.level = null;
+        record.message = null;
+        record.sample = null;
+        if (changed) {
+            text.setLength(0);
+            for (int i = 0; i < count; i++) {
+                text.append(lines[(first + i) % lines.length]).append('\n');
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns text of the shown lines as of the last {@link #update()}.
+     * @return                  text, one line per record
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * Sets levels of shown records and returns self object for easy init.
+     * @param levels            levels, e.g. <code>"WARN"</code>, or <code>null</code> for all
+     * @return                  self object
+     */
+    public LiveView setLevels(String... levels) {
+        this.levels = levels == null ? null : levels.clone();
+        return this;
+    }
+
+    /**
+     * Sets monitors of shown records and returns self object for easy init.
+     * @param monitors          monitor names, e.g. <code>"CellMonitor"</code>, or <code>null</code> for all
+     * @return                  self object
+     */
+    public LiveView setMonitors(String... monitors) {
+        this.monitors = monitors == null ? null : monitors.clone();
+        return this;
+    }
+
+    /**
+     * Returns <code>true</code> if the record is of one of the monitors: its message starts with the monitor name
+     * followed by <code>'{'</code> or <code>':'</code>, or its sample names the monitor as its message would.
+     */
+    private static boolean isOfMonitors(String[] monitors, String message, Sample sample) {
+        if (sample != null) {
+            String name = sample.getMonitorName();
+            return name != null && contains(monitors, name);
+        }
+        for (String monitor: monitors) {
+            int length = monitor.length();
+            if (message.startsWith(monitor) && message.length() > length
+                    && (message.charAt(length) == '{' || message.charAt(length) == ':')) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(String[] values, String value) {
+        for (String candidate: values) {
+            if (candidate.equals(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,307 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Fusion of the fixes of all location providers into the single best position estimate.
+ * The estimate is a Kalman filter of the position with a random walk motion: its variance grows
+ * with the age of the estimate by the process noise and every fix is weighted by the square of its accuracy
+ * against it, so a fresh accurate fix outweighs old ones and a rough fix moves the estimate a little.
+ * A fix older than the estimate is taken with its accuracy worsened by its age. Ages are taken by the fix times
+ * of the providers, not by the times the fixes are logged, so a stale last known fix or a late fix is not
+ * taken for a fresh one.
+ * <p>
+ * Updates are serialized, the current estimate is an immutable sample published by a volatile write,
+ * so it is read without locks. The estimate is passed to the sink, with the provider name {@link #FUSED}
+ * and the time of the sample which made it, only when it moves or its accuracy changes by more than the noise
+ * of the fixes, in proportion to their accuracy. It is passed after the lock is released, so a slow sink does not
+ * hold the fixes of the other providers.
+ * <p>
+ * While GPS gives good fixes the other providers are redundant: their periodical checks are suppressed
+ * and their location updates are removed until they are needed again.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LocationFusion {
+
+    /**
+     * The provider name of fused samples.
+     */
+    public static final String FUSED = "fused";
+
+    /**
+     * The provider name of GPS.
+     */
+    private static final String GPS = "gps";
+
+    /**
+     * The meters in a degree of latitude.
+     */
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The consumer of published estimates, or <code>null</code>.
+     */
+    private SampleSink sink;
+
+    /**
+     * The growth of the variance of the estimate, in square meters per second.
+     */
+    private double processNoise = 9;
+
+    /**
+     * The worst accuracy of a good GPS fix, in meters.
+     */
+    private float goodAccuracy = 20;
+
+    /**
+     * The longest time a good GPS fix suppresses the other providers, in milliseconds.
+     */
+    private long goodFixAge = 5 * 1000;
+
+    /**
+     * The least move of the estimate which is published, in meters.
+     */
+    private double publishDistance = 1;
+
+    /**
+     * The least move of the estimate and change of its accuracy which are published, in the accuracy
+     * of the last published estimate or of the fix, whichever is worse.
+     */
+    private double publishRatio = 1.5;
+
+    /**
+     * The current estimate, or <code>null</code>.
+     */
+    private volatile LocationSample estimate;
+
+    /**
+     * The fix time of the estimate, in milliseconds.
+     */
+    private long estimateTime;
+
+    /**
+     * The fix time of the last good GPS fix, in milliseconds.
+     */
+    private volatile long goodFixTime = Long.MIN_VALUE;
+
+    /**
+     * The last published estimate, or <code>null</code>.
+     */
+    private LocationSample published;
+
+    /**
+     * The variance of the estimate, in square meters.
+     */
+    private double variance;
+
+    /**
+     * The count of taken fixes.
+     */
+    private long updateCount;
+
+    /**
+     * The count of published estimates.
+     */
+    private long publishedCount;
+
+    /**
+     * The count of started monitors which pass fixes to the fusion.
+     */
+    private int monitorCount;
+
+    /**
+     * Takes fix of a provider.
+     * @param fix               location sample
+     * @param fixTime           time of the fix by the provider, in milliseconds,
+     *                          or <code>0</code> if unknown, then the time of the sample is taken
+     */
+    public void update(LocationSample fix, long fixTime) {
+        SampleSink sink;
+        LocationSample change;
+        synchronized (this) {
+            sink = this.sink;
+            change = estimate(fix, fixTime);
+        }
+        if (change != null) {
+            sink.log(change);
+        }
+    }
+
+    /**
+     * Takes fix of a provider into the estimate, under the lock.
+     * @param fix               location sample
+     * @param fixTime           time of the fix by the provider, in milliseconds, or <code>0</code> if unknown
+     * @return                  new estimate to publish, or <code>null</code> if there is no sink or it is not changed
+     */
+    private LocationSample estimate(LocationSample fix, long fixTime) {
+        if (fixTime <= 0) {
+            fixTime = fix.time;
+        }
+        float accuracy = fix.accuracy > 0 ? fix.accuracy : goodAccuracy * 5;
+        if (GPS.equals(fix.source) && accuracy <= goodAccuracy) {
+            goodFixTime = Math.max(goodFixTime, fixTime);
+        }
+        updateCount++;
+        LocationSample current = estimate;
+        double measurementVariance = accuracy * accuracy;
+        double latitude;
+        double longitude;
+        long time;
+        if (current == null) {
+            latitude = fix.latitude;
+            longitude = fix.longitude;
+            variance = measurementVariance;
+            time = fixTime;
+        } else {
+            long age = fixTime - estimateTime;
+            double predicted = variance;
+            if (age >= 0) {
+                predicted += processNoise * age / 1000;
+                time = fixTime;
+            } else {
+                measurementVariance -= processNoise * age / 1000;
+                time = estimateTime;
+            }
+            double gain = predicted / (predicted + measurementVariance);
+            latitude = current.latitude + gain * (fix.latitude - current.latitude);
+            longitude = current.longitude + gain * (fix.longitude - current.longitude);
+            variance = (1 - gain) * predicted;
+        }
+        estimateTime = time;
+        current = new LocationSample(fix.time, FUSED, Sample.MONITOR,
+                latitude, longitude, fix.altitude, (float) Math.sqrt(variance));
+        estimate = current;
+        if (sink == null || !isChanged(published, current, accuracy)) {
+            return null;
+        }
+        published = current;
+        publishedCount++;
+        return current;
+    }
+
+    /**
+     * Returns current best estimate, without locking.
+     * @return                  estimate with the provider name {@link #FUSED}, or <code>null</code>
+     */
+    public LocationSample getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Returns <code>true</code> if the checks of the provider are redundant at the moment, without locking.
+     * @param provider          provider name
+     * @param time              current time, in milliseconds
+     * @return                  <code>true</code> if GPS gives good fixes and the provider is not GPS
+     */
+    public boolean isSuppressed(String provider, long time) {
+        return !GPS.equals(provider) && time - goodFixTime <= goodFixAge;
+    }
+
+    /**
+     * Returns count of taken fixes.
+     * @return                  count
+     */
+    public synchronized long getUpdateCount() {
+        return updateCount;
+    }
+
+    /**
+     * Returns count of published estimates.
+     * @return                  count
+     */
+    public synchronized long getPublishedCount() {
+        return publishedCount;
+    }
+
+    /**
+     * Forgets the estimate.
+     */
+    public synchronized void reset() {
+        estimate = null;
+        estimateTime = 0;
+        published = null;
+        goodFixTime = Long.MIN_VALUE;
+    }
+
+    /**
+     * Takes start of a monitor which passes fixes to the fusion and sets consumer of published estimates.
+     * The first started monitor forgets the estimate of the previous run, the other ones share it.
+     * @param sink              consumer
+     * @return                  self object
+     */
+    public synchronized LocationFusion start(SampleSink sink) {
+        if (monitorCount++ == 0) {
+            reset();
+        }
+        this.sink = sink;
+        return this;
+    }
+
+    /**
+     * Takes stop of a monitor which passes fixes to the fusion.
+     */
+    public synchronized void stop() {
+        if (monitorCount > 0) {
+            monitorCount--;
+        }
+    }
+
+    /**
+     * Sets consumer of published estimates and returns self object for easy init.
+     * @param sink              consumer
+     * @return                  self object
+     */
+    public synchronized LocationFusion setSink(SampleSink sink) {
+        this.sink = sink;
+        return this;
+    }
+
+    /**
+     * Sets growth of the variance of the estimate and returns self object for easy init.
+     * @param processNoise      growth, in square meters per second, about the square of the speed
+     * @return                  self object
+     */
+    public synchronized LocationFusion setProcessNoise(double processNoise) {
+        this.processNoise = processNoise;
+        return this;
+    }
+
+    /**
+     * Sets good GPS fixes which suppress the other providers and returns self object for easy init.
+     * @param goodAccuracy      worst accuracy of a good fix, in meters
+     * @param goodFixAge        longest time a good fix suppresses, in milliseconds
+     * @return                  self object
+     */
+    public synchronized LocationFusion setGoodFix(float goodAccuracy, long goodFixAge) {
+        this.goodAccuracy = goodAccuracy;
+        this.goodFixAge = goodFixAge;
+        return this;
+    }
+
+    /**
+     * Sets least change of the estimate which is published and returns self object for easy init.
+     * A move or a change of the accuracy is published if it is at least both of the bounds.
+     * @param publishDistance   move, in meters
+     * @param publishRatio      move and change of the accuracy, in the accuracy of the last published estimate
+     *                          or of the fix, whichever is worse
+     * @return                  self object
+     */
+    public synchronized LocationFusion setPublishThreshold(double publishDistance, double publishRatio) {
+        this.publishDistance = publishDistance;
+        this.publishRatio = publishRatio;
+        return this;
+    }
+
+    private boolean isChanged(LocationSample previous, LocationSample current, float fixAccuracy) {
+        if (previous == null) {
+            return true;
+        }
+        double y = (current.latitude - previous.latitude) * METERS_PER_DEGREE;
+        double x = (current.longitude - previous.longitude) * METERS_PER_DEGREE
+                * Math.cos(Math.toRadians(current.latitude));
+        // a move within the noise of the fixes is not a move of the device, and the estimate follows
+        // the noise of the fixes though its own accuracy is better, so the worse of the two is taken
+        double threshold = Math.max(publishDistance, Math.max(previous.accuracy, fixAccuracy) * publishRatio);
+        return x * x + y * y >= threshold * threshold || Math.abs(current.accuracy - previous.accuracy) >= threshold;
+    }
+}
@@ -4,6 +4,7 @@ import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
+import android.os.Looper;
 
 /**
  * @author e.ezhov
@@ -27,9 +28,25 @@ public class LocationMonitor implements Monitor, LocationListener, Runnable {
     private static final float MIN_DISTANCE = 1;
 
     /**
-     * The logger.
+     * The ratio of intervals between re-requests of location updates: updates are requested again
+     * when the interval of the sampler grows to this multiple of the requested one or falls below it.
      */
-    private FileLogger logger = FileLogger.getInstance();
+    private static final int REQUEST_STEP = 2;
+
+    /**
+     * The logger, taken again on every start since the previous one may be closed.
+     */
+    private volatile FileLogger logger = FileLogger.getInstance();
+
+    /**
+     * The bus of published samples, or <code>null</code> to pass samples to the logger.
+     */
+    private EventBus eventBus;
+
+    /**
+     * The consumer of samples of the current run, the bus or the logger.
+     */
+    private volatile SampleSink sink = logger;
 
     /**
      * The location manager for defining current location.
@@ -53,100 +70,187 @@ public class LocationMonitor implements Monitor, LocationListener, Runnable {
     private volatile boolean isStarted = false;
 
     /**
-     * The thread for checking by period.
+     * The scheduler of periodical checks.
+     */
+    private MonitorScheduler scheduler;
+
+    /**
+     * The controller of the period of checks, or <code>null</code> for the fixed period.
+     */
+    private AdaptiveSampler sampler;
+
+    /**
+     * The fusion of the fixes of all providers, or <code>null</code>.
+     */
+    private LocationFusion fusion;
+
+    /**
+     * The simplifier of the fixes before the sink, or <code>null</code> to pass every fix.
      */
-    private Thread thread;
+    private TrajectorySimplifier simplifier;
 
     /**
-     * The current location
+     * The least time between the requested location updates, in milliseconds,
+     * or <code>0</code> if updates are not requested. Guarded by the monitor.
      */
-    private Location location;
+    private long requestedInterval;
+
+    /**
+     * The flag of the requested updates are removed while the fusion finds the provider redundant.
+     * Guarded by the monitor.
+     */
+    private boolean isSuspended;
+
+    /**
+     * The count of suspensions of the updates.
+     */
+    private long suspendedCount;
+
+    /**
+     * The count of checks skipped while the provider is redundant.
+     */
+    private long suppressedCount;
+
+    /**
+     * The durations of the calls of the location manager, named by the provider on start.
+     */
+    private MetricsRegistry.Histogram lastKnownLocationLatency;
+
+    /**
+     * The count of listener callbacks, named by the provider on start.
+     */
+    private MetricsRegistry.Counter locationChangedCount;
+
+    /**
+     * The last fix of the checks and the fix of the current check, swapped when the fix changes.
+     */
+    private FixSnapshot fix = new FixSnapshot();
+    private FixSnapshot checkedFix = new FixSnapshot();
+
+    /**
+     * The result holder of the distance calculation, reused by every check.
+     */
+    private final float[] distance = new float[1];
 
 
     @Override
     public void onLocationChanged(Location location) {
-        logger.info(formatModuleMessage(String.format(
-                "Listener::Location changed - Latitude: %s, Longitude: %s, Altitude: %s, Accuracy: %s",
-                location.getLatitude(),
-                location.getLongitude(),
-                location.getAltitude(),
-                location.getAccuracy()
-        )));
+        locationChangedCount.increment();
+        logLocation(Sample.LISTENER, location);
     }
 
     @Override
     public void onStatusChanged(String s, int i, Bundle bundle) {
-        logger.info(formatModuleMessage(
-                String.format("Listener::Status is changed - s: %s, i: %s", s, i)
-        ));
+        publishMessage(String.format("Listener::Status is changed - s: %s, i: %s", s, i));
     }
 
     @Override
     public void onProviderEnabled(String s) {
-        logger.info(formatModuleMessage(
-                String.format("Listener::Provider '%s' is enabled", s)
-        ));
+        publishMessage(String.format("Listener::Provider '%s' is enabled", s));
     }
 
     @Override
     public void onProviderDisabled(String s) {
-        logger.info(formatModuleMessage(
-                String.format("Listener::Provider '%s' is disabled", s)
-        ));
+        publishMessage(String.format("Listener::Provider '%s' is disabled", s));
     }
 
     @Override
     public void start() {
-        if (locationManager == null || provider == null) {
+        if (locationManager == null || provider == null || period > 0 && scheduler == null) {
             throw new IllegalMonitorStateException("Monitor is not initialized");
         }
-        locationManager.requestLocationUpdates(provider, MIN_TIME, MIN_DISTANCE, this);
+        logger = FileLogger.getInstance();
+        sink = eventBus != null ? eventBus : logger;
+        if (simplifier != null) {
+            sink = simplifier.setSink(sink);
+        }
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        lastKnownLocationLatency = metrics.histogram(String.format("LocationMonitor{%s}.getLastKnownLocation", provider));
+        locationChangedCount = metrics.counter(String.format("LocationMonitor{%s}.onLocationChanged", provider));
+        if (fusion != null) {
+            fusion.start(sink);
+        }
+        if (sampler != null) {
+            sampler.reset();
+        }
+        requestUpdates(sampler != null && period > 0 ? sampler.getInterval() : MIN_TIME);
         logger.info(formatModuleMessage(String.format("Location listener for provider '%s' is added.", provider)));
         if (period > 0) {
+            // the first check of a run reports the fix even if it is unchanged
+            fix.clear();
             isStarted = true;
-            if (thread == null) {
-                thread = new Thread(this);
+            if (sampler != null) {
+                scheduler.schedule(this, sampler.getInterval());
+            } else {
+                scheduler.schedule(this, period);
             }
-            thread.start();
             logger.info(formatModuleMessage(String.format("Location monitor for provider '%s' is started.", provider)));
         }
     }
 
     @Override
     public void stop() {
-        isStarted = false;
-        logger.info(formatModuleMessage(String.format(
-                "Signal to stopping for location monitor of provider '%s' is sent.",
-                provider
-        )));
-        locationManager.removeUpdates(this);
+        if (isStarted) {
+            isStarted = false;
+            scheduler.cancel(this);
+            logger.info(formatModuleMessage(String.format("Location monitor for provider '%s' is stopped.", provider)));
+            logSamplerStatistics();
+        }
+        removeUpdates();
+        if (fusion != null) {
+            fusion.stop();
+        }
+        if (simplifier != null) {
+            // the dwells are ended before the logger is closed
+            simplifier.flush();
+        }
         logger.info(formatModuleMessage(String.format("Location listener for provider '%s' is removed.", provider)));
     }
 
     @Override
     public void run() {
-        while (isStarted) {
-            if (Thread.interrupted()) {
+        if (!isStarted) {
+            return;
+        }
+        if (simplifier != null) {
+            simplifier.advance(System.currentTimeMillis());
+        }
+        if (fusion != null) {
+            boolean isSuppressed = fusion.isSuppressed(provider, System.currentTimeMillis());
+            suspendUpdates(isSuppressed);
+            if (isSuppressed) {
+                suppressedCount++;
+                adaptPeriod(0);
                 return;
             }
-            Location lastKnownLocation = locationManager.getLastKnownLocation(provider);
-            if (lastKnownLocation != null && !lastKnownLocation.equals(location)) {
-                location = lastKnownLocation;
-                logger.info(formatModuleMessage(String.format(
-                        "Monitor::Location changed - Latitude: %s, Longitude: %s, Altitude: %s, Accuracy: %s",
-                        location.getLatitude(),
-                        location.getLongitude(),
-                        location.getAltitude(),
-                        location.getAccuracy()
-                )));
-            }
-            try {
-                Thread.sleep(period);
-            } catch (InterruptedException e) {
-                logger.error(formatModuleMessage(e.getMessage()));
-            }
         }
-        logger.info(formatModuleMessage(String.format("Location monitor for provider '%s' is stopped.", provider)));
+        long startNanos = System.nanoTime();
+        Location lastKnownLocation = locationManager.getLastKnownLocation(provider);
+        lastKnownLocationLatency.recordSince(startNanos);
+        double activity = 0;
+        // the same fix is checked without allocations
+        if (checkedFix.set(lastKnownLocation) && !checkedFix.sameFix(fix)) {
+            activity = movement(fix, checkedFix);
+            FixSnapshot swap = fix;
+            fix = checkedFix;
+            checkedFix = swap;
+            publish(fix.toSample(System.currentTimeMillis(), provider, Sample.MONITOR), fix.fixTime);
+        }
+        adaptPeriod(activity);
+    }
+
+    /**
+     * Returns movement between fixes in units of the fix accuracy.
+     * @param previous          previous fix, may be empty
+     * @param current           current fix
+     * @return                  movement, at least <code>1</code> for a significant one
+     */
+    private double movement(FixSnapshot previous, FixSnapshot current) {
+        if (previous.isEmpty()) {
+            return 1;
+        }
+        Location.distanceBetween(previous.latitude, previous.longitude, current.latitude, current.longitude, distance);
+        return distance[0] / Math.max(current.accuracy, MIN_DISTANCE);
     }
 
     /**
@@ -169,6 +273,51 @@ public class LocationMonitor implements Monitor, LocationListener, Runnable {
         return this;
     }
 
+    /**
+     * Sets scheduler of periodical checks and returns self object for easy init.
+     * @param scheduler         scheduler
+     * @return                  self object
+     */
+    public LocationMonitor setScheduler(MonitorScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Sets controller of the period of checks and returns self object for easy init.
+     * The interval of the requested location updates follows the period in steps.
+     * @param sampler           controller, or <code>null</code> for the fixed period
+     * @return                  self object
+     */
+    public LocationMonitor setSampler(AdaptiveSampler sampler) {
+        this.sampler = sampler;
+        return this;
+    }
+
+    /**
+     * Sets fusion of the fixes of all providers and returns self object for easy init.
+     * Fixes are passed to the fusion. While it finds the provider redundant the checks are skipped
+     * and the location updates are removed, they are requested again when the provider is needed.
+     * The fusion may be shared by the monitors of an engine, its estimate is forgotten when the first of them starts.
+     * @param fusion            fusion, or <code>null</code>
+     * @return                  self object
+     */
+    public LocationMonitor setFusion(LocationFusion fusion) {
+        this.fusion = fusion;
+        return this;
+    }
+
+    /**
+     * Sets simplifier of the fixes and returns self object for easy init.
+     * The fixes of the monitor and of the fusion pass the simplifier before the sink.
+     * @param simplifier        simplifier, or <code>null</code> to pass every fix
+     * @return                  self object
+     */
+    public LocationMonitor setSimplifier(TrajectorySimplifier simplifier) {
+        this.simplifier = simplifier;
+        return this;
+    }
+
     /**
      * Sets period of checks and returns self object for easy init.
      * @param period            period, in milliseconds
@@ -179,6 +328,134 @@ public class LocationMonitor implements Monitor, LocationListener, Runnable {
         return this;
     }
 
+    /**
+     * Sets bus of published samples and returns self object for easy init.
+     * Without the bus samples are passed to the logger.
+     * @param eventBus          event bus
+     * @return                  self object
+     */
+    public LocationMonitor setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+        return this;
+    }
+
+    private void logLocation(int origin, Location location) {
+        publish(new LocationSample(
+                System.currentTimeMillis(),
+                provider,
+                origin,
+                location.getLatitude(),
+                location.getLongitude(),
+                location.getAltitude(),
+                location.getAccuracy()
+        ), location.getTime());
+    }
+
+    /**
+     * Passes sample to the sink and the fusion.
+     * @param sample            sample, stamped with the time of logging
+     * @param fixTime           time of the fix by the provider, in milliseconds, for the fusion
+     */
+    private void publish(LocationSample sample, long fixTime) {
+        sink.log(sample);
+        if (fusion != null) {
+            fusion.update(sample, fixTime);
+        }
+    }
+
+    private void adaptPeriod(double activity) {
+        if (sampler != null && isStarted) {
+            long interval = sampler.report(activity);
+            scheduler.schedule(this, interval);
+            adaptUpdates(interval);
+        }
+    }
+
+    /**
+     * Requests location updates, or changes their interval if they are requested.
+     * The callbacks go to the main looper, so the updates may be requested again from the scheduler thread.
+     * @param interval          least time between updates, in milliseconds
+     */
+    private synchronized void requestUpdates(long interval) {
+        requestedInterval = interval;
+        if (!isSuspended) {
+            locationManager.requestLocationUpdates(provider, interval, MIN_DISTANCE, this, Looper.getMainLooper());
+        }
+    }
+
+    /**
+     * Requests location updates again when the interval of the checks crosses a step,
+     * so the provider wakes up no more often than the checks need. Does nothing after the stop.
+     * @param interval          interval of the checks, in milliseconds
+     */
+    private synchronized void adaptUpdates(long interval) {
+        if (requestedInterval > 0
+                && (interval >= requestedInterval * REQUEST_STEP || interval < requestedInterval)) {
+            requestUpdates(interval);
+        }
+    }
+
+    /**
+     * Removes the requested location updates while the provider is redundant, so it is powered down,
+     * and requests them again when it is not. Does nothing after the stop.
+     * @param suspended         <code>true</code> if the provider is redundant
+     */
+    private synchronized void suspendUpdates(boolean suspended) {
+        if (requestedInterval == 0 || isSuspended == suspended) {
+            return;
+        }
+        isSuspended = suspended;
+        if (suspended) {
+            suspendedCount++;
+            locationManager.removeUpdates(this);
+        } else {
+            requestUpdates(requestedInterval);
+        }
+    }
+
+    private synchronized void removeUpdates() {
+        requestedInterval = 0;
+        isSuspended = false;
+        locationManager.removeUpdates(this);
+    }
+
+    private void logSamplerStatistics() {
+        if (sampler != null) {
+            publishMessage(String.format(
+                    "Adaptive sampling - Samples: %s, Saved: %s",
+                    sampler.getSampleCount(),
+                    sampler.getSavedCount()
+            ));
+        }
+        if (fusion != null) {
+            publishMessage(String.format(
+                    "Fusion - Suppressed checks: %s, Suspended updates: %s",
+                    suppressedCount,
+                    getSuspendedCount()
+            ));
+        }
+        if (simplifier != null) {
+            publishMessage(String.format(
+                    "Simplifier - Fixes: %s, Passed: %s, Dwells: %s",
+                    simplifier.getFixCount(),
+                    simplifier.getPassedCount(),
+                    simplifier.getDwellCount()
+            ));
+        }
+    }
+
+    private synchronized long getSuspendedCount() {
+        return suspendedCount;
+    }
+
+    /**
+     * Publishes message of an event to the sink, in order with the samples.
+     * @param message           message
+     */
+    private void publishMessage(String message) {
+        sink.log(MessageSample.info(formatModuleMessage(message)));
+    }
+
     private String formatModuleMessage(String message) {
         return String.format(MONITORING_MESSAGE, provider, message);
     }
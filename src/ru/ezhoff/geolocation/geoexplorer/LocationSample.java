@@ -0,0 +1,128 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Location fix reported by a location provider.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LocationSample extends Sample {
+
+    /**
+     * The binary record type.
+     */
+    static final int TYPE = 3;
+
+    /**
+     * The origin, {@link #LISTENER} or {@link #MONITOR}.
+     */
+    int origin;
+
+    /**
+     * The latitude, in degrees.
+     */
+    double latitude;
+
+    /**
+     * The longitude, in degrees.
+     */
+    double longitude;
+
+    /**
+     * The altitude, in meters.
+     */
+    double altitude;
+
+    /**
+     * The accuracy, in meters.
+     */
+    float accuracy;
+
+    LocationSample() {}
+
+    /**
+     * Creates location sample.
+     * @param time              time, in milliseconds
+     * @param provider          location provider name
+     * @param origin            {@link #LISTENER} or {@link #MONITOR}
+     * @param latitude          latitude, in degrees
+     * @param longitude         longitude, in degrees
+     * @param altitude          altitude, in meters
+     * @param accuracy          accuracy, in meters
+     */
+    public LocationSample(long time, String provider, int origin,
+                          double latitude, double longitude, double altitude, float accuracy) {
+        this.time = time;
+        this.source = provider;
+        this.origin = origin;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.altitude = altitude;
+        this.accuracy = accuracy;
+    }
+
+    public String getProvider() {
+        return source;
+    }
+
+    public int getOrigin() {
+        return origin;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public double getAltitude() {
+        return altitude;
+    }
+
+    public float getAccuracy() {
+        return accuracy;
+    }
+
+    @Override
+    String getMonitorName() {
+        return "LocationMonitor";
+    }
+
+    @Override
+    int getType() {
+        return TYPE;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        out.writeByte(origin);
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeDouble(altitude);
+        out.writeFloat(accuracy);
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        origin = in.readUnsignedByte();
+        latitude = in.readDouble();
+        longitude = in.readDouble();
+        altitude = in.readDouble();
+        accuracy = in.readFloat();
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        builder.append("LocationMonitor{Provider - ").append(source).append("}::")
+               .append(originName(origin)).append("::Location changed - Latitude: ").append(latitude)
+               .append(", Longitude: ").append(longitude)
+               .append(", Altitude: ").append(altitude)
+               .append(", Accuracy: ").append(accuracy);
+    }
+}
@@ -0,0 +1,215 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline analyzer of text log files, prints per cell, per location provider and per minute aggregates.
+ * Usage: <code>LogAnalyzer [-threads N] [-chunk MB] explorer.log ...</code>
+ * <p>
+ * Files are split into chunks on line boundaries, the chunks are memory-mapped and parsed in parallel
+ * by {@link LogChunkParser}. There are many more chunks than threads, so the threads which are done
+ * take the next chunks from the queue of the pool and stay busy until the end. Chunk statistics are merged
+ * in the order of the files, which the half of the day of the minutes depends on.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class LogAnalyzer {
+
+    private static final int MEGABYTE = 1024 * 1024;
+
+    /**
+     * The count of parser threads.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The nominal size of chunks, in bytes.
+     */
+    private int chunkSize = 8 * MEGABYTE;
+
+    /**
+     * The total size of the analyzed files, in bytes.
+     */
+    private long size;
+
+    /**
+     * The time of the last analysis, in nanoseconds.
+     */
+    private long elapsedTime;
+
+    /**
+     * Analyzes log files.
+     * @param paths             paths of the text log files
+     * @return                  aggregates
+     * @throws IOException      if reading is failed
+     */
+    LogStatistics analyze(List<String> paths) throws IOException {
+        long startTime = System.nanoTime();
+        size = 0;
+        List<RandomAccessFile> files = new ArrayList<RandomAccessFile>();
+        List<List<Future<LogStatistics>>> results = new ArrayList<List<Future<LogStatistics>>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (String path: paths) {
+                RandomAccessFile file = new RandomAccessFile(path, "r");
+                files.add(file);
+                FileChannel channel = file.getChannel();
+                size += channel.size();
+                List<Future<LogStatistics>> chunks = new ArrayList<Future<LogStatistics>>();
+                long start = 0;
+                while (start < channel.size()) {
+                    long end = lineEnd(channel, start + chunkSize);
+                    chunks.add(executor.submit(new LogChunkParser(channel, start, end - start)));
+                    start = end;
+                }
+                results.add(chunks);
+            }
+            LogStatistics statistics = new LogStatistics();
+            for (List<Future<LogStatistics>> chunks: results) {
+                statistics.nextFile();
+                for (Future<LogStatistics> chunk: chunks) {
+                    LogStatistics chunkStatistics = get(chunk);
+                    statistics.merge(chunkStatistics);
+                    statistics.addRuns(chunkStatistics);
+                }
+            }
+            return statistics;
+        } finally {
+            executor.shutdownNow();
+            for (RandomAccessFile file: files) {
+                file.close();
+            }
+            elapsedTime = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Prints aggregates as tab-separated tables.
+     * @param statistics        aggregates
+     * @param out               destination
+     */
+    void print(LogStatistics statistics, PrintStream out) {
+        double seconds = elapsedTime / 1e9;
+        out.println(String.format("Size: %.1f MB, Lines: %s, Malformed: %s, Time: %.3f s, Throughput: %.1f MB/s, Threads: %s",
+                (double) size / MEGABYTE, statistics.lines, statistics.malformedLines,
+                seconds, size / (double) MEGABYTE / seconds, threads));
+        out.println();
+        out.println("CID\tLAC\tNeighbor\tServing\tMean RSSI\tMin RSSI\tMax RSSI");
+        for (int cell = 0; cell < statistics.cellCount; cell++) {
+            long rssiCount = statistics.cellRssiCount[cell];
+            out.println(String.format("%s\t%s\t%s\t%s\t%s\t%s\t%s",
+                    statistics.cellCid[cell], statistics.cellLac[cell],
+                    statistics.cellNeighbor[cell], statistics.cellServing[cell],
+                    rssiCount == 0 ? "-" : String.format("%.1f", (double) statistics.cellRssiSum[cell] / rssiCount),
+                    rssiCount == 0 ? "-" : String.valueOf(statistics.cellRssiMin[cell]),
+                    rssiCount == 0 ? "-" : String.valueOf(statistics.cellRssiMax[cell])));
+        }
+        out.println();
+        out.println("Provider\tFixes\tMean accuracy\tSouth\tWest\tNorth\tEast");
+        for (int provider = 0; provider < statistics.providers.size(); provider++) {
+            long fixes = statistics.providerFixes[provider];
+            out.println(String.format("%s\t%s\t%.1f\t%.6f\t%.6f\t%.6f\t%.6f",
+                    statistics.providers.get(provider), fixes,
+                    fixes == 0 ? 0 : statistics.providerAccuracySum[provider] / fixes,
+                    statistics.providerSouth[provider], statistics.providerWest[provider],
+                    statistics.providerNorth[provider], statistics.providerEast[provider]));
+        }
+        out.println();
+        out.println("Minute\tLines\tFixes\tCell observations");
+        for (int minute = 0; minute < statistics.minuteCount; minute++) {
+            out.println(String.format("%s\t%s\t%s\t%s",
+                    LogStatistics.formatMinute(statistics.minuteKey[minute]),
+                    statistics.minuteLines[minute], statistics.minuteFixes[minute], statistics.minuteCells[minute]));
+        }
+    }
+
+    /**
+     * Sets count of parser threads and returns self object for easy init.
+     * @param threads           threads count
+     * @return                  self object
+     */
+    public LogAnalyzer setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets nominal size of chunks and returns self object for easy init.
+     * @param chunkSize         size, in bytes
+     * @return                  self object
+     */
+    public LogAnalyzer setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Returns position after the end of the line which contains the given position.
+     */
+    private static long lineEnd(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < size) {
+            buffer.clear();
+            int count = channel.read(buffer, position);
+            for (int i = 0; i < count; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += count;
+        }
+        return size;
+    }
+
+    private static LogStatistics get(Future<LogStatistics> chunk) throws IOException {
+        try {
+            return chunk.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Analysis is interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        LogAnalyzer analyzer = new LogAnalyzer();
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                analyzer.setThreads(Integer.parseInt(args[++i]));
+            } else if ("-chunk".equals(args[i]) && i + 1 < args.length) {
+                analyzer.setChunkSize(Integer.parseInt(args[++i]) * MEGABYTE);
+            } else if (new File(args[i]).isFile()) {
+                paths.add(args[i]);
+            } else {
+                System.err.println(String.format("Not a file: %s", args[i]));
+                System.exit(1);
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: LogAnalyzer [-threads N] [-chunk MB] <log file> ...");
+            System.exit(1);
+        }
+        analyzer.print(analyzer.analyze(paths), System.out);
+    }
+}
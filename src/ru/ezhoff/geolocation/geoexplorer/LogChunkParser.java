@@ -0,0 +1,344 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Parser of a chunk of the text log which starts and ends on line boundaries.
+ * The chunk is memory-mapped and tokenized byte by byte at the known positions of the line format,
+ * so lines are not decoded to strings and parsing does not allocate, except for new provider names.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class LogChunkParser implements Callable<LogStatistics> {
+
+    private static final byte[] CELL_PREFIX = ascii("CellMonitor::");
+    private static final byte[] NEIGHBOR = ascii("Monitor::Neighboring cell info: ");
+    private static final byte[] CELL_CHANGED = ascii("Listener::Cell location changed{");
+    private static final byte[] CELL_CHECK = ascii("Monitor::Cell location check{");
+    private static final byte[] GSM = ascii("GSM}");
+    private static final byte[] CDMA = ascii("CDMA}");
+    private static final byte[] LOCATION_PREFIX = ascii("LocationMonitor{Provider - ");
+    private static final byte[] LOCATION_LISTENER = ascii("}::Listener::Location changed - ");
+    private static final byte[] LOCATION_MONITOR = ascii("}::Monitor::Location changed - ");
+
+    /**
+     * The position of the tab after the time.
+     */
+    private static final int TIME_LENGTH = 23;
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final FileChannel channel;
+    private final long start;
+    private final long length;
+
+    private final LogStatistics statistics = new LogStatistics();
+
+    /**
+     * The names of providers in the order of provider indexes of the statistics.
+     */
+    private final List<byte[]> providerNames = new ArrayList<byte[]>();
+
+    private ByteBuffer buffer;
+
+    /**
+     * The position of the value scanner.
+     */
+    private int cursor;
+
+    /**
+     * The flag of the last scanned value is malformed.
+     */
+    private boolean failed;
+
+    /**
+     * Creates parser of the chunk.
+     * @param channel           channel of the log file
+     * @param start             start of the chunk, at a line start
+     * @param length            length of the chunk, to a line end
+     */
+    LogChunkParser(FileChannel channel, long start, long length) {
+        this.channel = channel;
+        this.start = start;
+        this.length = length;
+    }
+
+    @Override
+    public LogStatistics call() throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+        int end = buffer.limit();
+        int position = 0;
+        while (position < end) {
+            int lineEnd = indexOf((byte) '\n', position, end);
+            if (lineEnd < 0) {
+                lineEnd = end;
+            }
+            int contentEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            if (contentEnd > position) {
+                parseLine(position, contentEnd);
+            }
+            position = lineEnd + 1;
+        }
+        buffer = null;
+        return statistics;
+    }
+
+    private void parseLine(int start, int end) {
+        if (end - start <= TIME_LENGTH + 2 || buffer.get(start + TIME_LENGTH) != '\t') {
+            statistics.malformedLines++;
+            return;
+        }
+        int year = digits(start, 4);
+        int month = digits(start + 5, 2);
+        int day = digits(start + 8, 2);
+        int hour = digits(start + 11, 2);
+        int minute = digits(start + 14, 2);
+        int levelEnd = indexOf((byte) '\t', start + TIME_LENGTH + 1, end);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || levelEnd < 0) {
+            statistics.malformedLines++;
+            return;
+        }
+        statistics.line(year * 10000 + month * 100 + day, hour % 12 * 60 + minute);
+        int message = levelEnd + 1;
+        if (startsWith(message, end, CELL_PREFIX)) {
+            parseCell(message + CELL_PREFIX.length, end);
+        } else if (startsWith(message, end, LOCATION_PREFIX)) {
+            parseLocation(message + LOCATION_PREFIX.length, end);
+        }
+    }
+
+    private void parseCell(int start, int end) {
+        failed = false;
+        cursor = start;
+        if (startsWith(start, end, NEIGHBOR)) {
+            cursor = start + NEIGHBOR.length;
+            int cid = nextInt(end);
+            int lac = nextInt(end);
+            nextInt(end);
+            nextInt(end);
+            int rssi = nextInt(end);
+            if (!failed) {
+                statistics.cell(cid, lac, rssi, false);
+            }
+            return;
+        }
+        int kind;
+        if (startsWith(start, end, CELL_CHANGED)) {
+            kind = start + CELL_CHANGED.length;
+        } else if (startsWith(start, end, CELL_CHECK)) {
+            kind = start + CELL_CHECK.length;
+        } else {
+            return;
+        }
+        if (startsWith(kind, end, GSM)) {
+            int cid = nextInt(end);
+            int lac = nextInt(end);
+            if (!failed) {
+                statistics.cell(cid, lac, CoverageIndex.UNKNOWN_RSSI, true);
+            }
+        } else if (startsWith(kind, end, CDMA)) {
+            int stationId = nextInt(end);
+            nextInt(end);
+            nextInt(end);
+            int networkId = nextInt(end);
+            if (!failed) {
+                statistics.cell(stationId, networkId, CoverageIndex.UNKNOWN_RSSI, true);
+            }
+        }
+    }
+
+    private void parseLocation(int start, int end) {
+        int nameEnd = indexOf((byte) '}', start, end);
+        if (nameEnd < 0
+                || !startsWith(nameEnd, end, LOCATION_LISTENER) && !startsWith(nameEnd, end, LOCATION_MONITOR)) {
+            return;
+        }
+        failed = false;
+        cursor = nameEnd;
+        double latitude = nextDouble(end);
+        double longitude = nextDouble(end);
+        nextDouble(end);
+        double accuracy = nextDouble(end);
+        if (!failed) {
+            statistics.fix(provider(start, nameEnd), latitude, longitude, accuracy);
+        }
+    }
+
+    private int provider(int start, int end) {
+        for (int i = 0; i < providerNames.size(); i++) {
+            byte[] name = providerNames.get(i);
+            if (name.length == end - start && startsWith(start, end, name)) {
+                return i;
+            }
+        }
+        byte[] name = new byte[end - start];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(start + i);
+        }
+        providerNames.add(name);
+        try {
+            return statistics.provider(new String(name, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Moves cursor after the next <code>": "</code> and parses integer there.
+     */
+    private int nextInt(int end) {
+        int position = nextValue(end);
+        if (position < 0) {
+            return 0;
+        }
+        boolean negative = buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (position < end) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            value = value * 10 + digit;
+            digits++;
+            position++;
+        }
+        cursor = position;
+        if (digits == 0 || digits > 10) {
+            failed = true;
+            return 0;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Moves cursor after the next <code>": "</code> and parses double there, in the forms
+     * of <code>Double.toString</code>. Digits beyond the precision of <code>long</code> are rounded off.
+     */
+    private double nextDouble(int end) {
+        int position = nextValue(end);
+        if (position < 0) {
+            return 0;
+        }
+        boolean negative = buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean fraction = false;
+        while (position < end) {
+            byte c = buffer.get(position);
+            if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c >= '0' && c <= '9') {
+                if (mantissa < Long.MAX_VALUE / 10 - 9) {
+                    mantissa = mantissa * 10 + c - '0';
+                    if (fraction) {
+                        exponent--;
+                    }
+                } else if (!fraction) {
+                    exponent++;
+                }
+                digits++;
+            } else {
+                break;
+            }
+            position++;
+        }
+        if (digits > 0 && position < end && buffer.get(position) == 'E') {
+            position++;
+            boolean negativeExponent = position < end && buffer.get(position) == '-';
+            if (negativeExponent) {
+                position++;
+            }
+            int value = 0;
+            while (position < end && buffer.get(position) >= '0' && buffer.get(position) <= '9') {
+                value = value * 10 + buffer.get(position) - '0';
+                position++;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        cursor = position;
+        if (digits == 0) {
+            // NaN and Infinity are not values of a fix
+            failed = true;
+            return 0;
+        }
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-exponent] : value / Math.pow(10, -exponent);
+        } else if (exponent > 0) {
+            value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns position after the next <code>": "</code> from the cursor, marks failure if there is none.
+     */
+    private int nextValue(int end) {
+        for (int position = cursor; position < end - 2; position++) {
+            if (buffer.get(position) == ':' && buffer.get(position + 1) == ' ') {
+                return position + 2;
+            }
+        }
+        failed = true;
+        return -1;
+    }
+
+    private int digits(int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private int indexOf(byte value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean startsWith(int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String text) {
+        try {
+            return text.getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
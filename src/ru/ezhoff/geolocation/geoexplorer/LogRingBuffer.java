@@ -0,0 +1,151 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring of preallocated log records.
+ * Every slot carries a sequence number which tells producers and consumers whose turn it is,
+ * so neither side takes a lock and the records themselves are reused instead of allocated.
+ * Any thread may consume, which lets a producer discard the oldest record on overflow.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class LogRingBuffer {
+
+    /**
+     * Mutable holder of one log record.
+     */
+    static final class Record {
+        long time;
+        String level;
+        String message;
+        Sample sample;
+    }
+
+    /**
+     * The preallocated slots.
+     */
+    private final Record[] records;
+
+    /**
+     * The sequence number of every slot.
+     */
+    private final AtomicLongArray sequences;
+
+    /**
+     * The mask for index calculation, capacity minus one.
+     */
+    private final int mask;
+
+    /**
+     * The next position to write.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The next position to read.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates ring buffer.
+     * @param capacity          capacity, must be a power of two
+     */
+    LogRingBuffer(int capacity) {
+        if (capacity < 2 || (capacity & (capacity - 1)) != 0) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        records = new Record[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            records[i] = new Record();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Puts record into the buffer.
+     * @param time              record time, in milliseconds
+     * @param level             record level
+     * @param message           record message, or <code>null</code> for a sample
+     * @param sample            record sample, or <code>null</code> for a text message
+     * @return                  <code>false</code> if the buffer is full
+     */
+    boolean offer(long time, String level, String message, Sample sample) {
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Record record = records[index];
+                    record.time = time;
+                    record.level = level;
+                    record.message = message;
+                    record.sample = sample;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest record from the buffer.
+     * @param target            holder to copy the record into, or <code>null</code> to discard it
+     * @return                  <code>false</code> if the buffer is empty
+     */
+    boolean poll(Record target) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Record record = records[index];
+                    if (target != null) {
+                        target.time = record.time;
+                        target.level = record.level;
+                        target.message = record.message;
+                        target.sample = record.sample;
+                    }
+                    record.level = null;
+                    record.message = null;
+                    record.sample = null;
+                    sequences.lazySet(index, position + mask + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Returns approximate count of queued records.
+     * @return                  queued records count
+     */
+    int size() {
+        long size = head.get() - tail.get();
+        return size < 0 ? 0 : (int) Math.min(size, records.length);
+    }
+
+    /**
+     * Returns buffer capacity.
+     * @return                  capacity
+     */
+    int capacity() {
+        return records.length;
+    }
+}
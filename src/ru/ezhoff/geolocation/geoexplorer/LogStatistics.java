@@ -0,0 +1,319 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Aggregates of text log records: per cell, per location provider and per minute.
+ * Statistics of a chunk keep minutes as runs in the order of the chunk, with the 12-hour clock of the log,
+ * the runs of chunks are folded into the minutes of the whole log in the order of the file by
+ * {@link #addRuns(LogStatistics)}, which resolves the half of the day the same way as {@link TextLogReader}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class LogStatistics {
+
+    private static final int INITIAL_LENGTH = 64;
+
+    private static final int MINUTES_PER_HALF_DAY = 12 * 60;
+
+    long lines;
+    long malformedLines;
+    long locationFixes;
+    long cellObservations;
+
+    /**
+     * The cell indexes by cell key.
+     */
+    private final LongIntMap cellIndex = new LongIntMap(INITIAL_LENGTH);
+
+    int cellCount;
+    int[] cellCid = new int[INITIAL_LENGTH];
+    int[] cellLac = new int[INITIAL_LENGTH];
+    long[] cellNeighbor = new long[INITIAL_LENGTH];
+    long[] cellServing = new long[INITIAL_LENGTH];
+    long[] cellRssiCount = new long[INITIAL_LENGTH];
+    long[] cellRssiSum = new long[INITIAL_LENGTH];
+    int[] cellRssiMin = new int[INITIAL_LENGTH];
+    int[] cellRssiMax = new int[INITIAL_LENGTH];
+
+    /**
+     * The names of location providers, by provider index.
+     */
+    final List<String> providers = new ArrayList<String>();
+
+    long[] providerFixes = new long[INITIAL_LENGTH];
+    double[] providerAccuracySum = new double[INITIAL_LENGTH];
+    double[] providerSouth = new double[INITIAL_LENGTH];
+    double[] providerWest = new double[INITIAL_LENGTH];
+    double[] providerNorth = new double[INITIAL_LENGTH];
+    double[] providerEast = new double[INITIAL_LENGTH];
+
+    /**
+     * The count of minute runs, a run is a sequence of lines of the same minute.
+     */
+    int runCount;
+    int[] runDate = new int[INITIAL_LENGTH];
+    int[] runMinute = new int[INITIAL_LENGTH];
+    long[] runLines = new long[INITIAL_LENGTH];
+    long[] runFixes = new long[INITIAL_LENGTH];
+    long[] runCells = new long[INITIAL_LENGTH];
+
+    /**
+     * The minute indexes by date and minute of the day.
+     */
+    private final LongIntMap minuteIndex = new LongIntMap(INITIAL_LENGTH);
+
+    int minuteCount;
+    long[] minuteKey = new long[INITIAL_LENGTH];
+    long[] minuteLines = new long[INITIAL_LENGTH];
+    long[] minuteFixes = new long[INITIAL_LENGTH];
+    long[] minuteCells = new long[INITIAL_LENGTH];
+
+    /**
+     * The state of the half of the day in the order of runs.
+     */
+    private int lastDate = -1;
+    private int lastMinute = -1;
+    private int halfDay;
+
+    /**
+     * Counts line of the minute.
+     * @param date              date as <code>yyyyMMdd</code>
+     * @param minute            minute of the 12-hour clock, from <code>0</code>
+     */
+    void line(int date, int minute) {
+        lines++;
+        int run = runCount - 1;
+        if (run < 0 || runDate[run] != date || runMinute[run] != minute) {
+            if (runCount == runDate.length) {
+                int length = runCount * 2;
+                runDate = grow(runDate, length);
+                runMinute = grow(runMinute, length);
+                runLines = grow(runLines, length);
+                runFixes = grow(runFixes, length);
+                runCells = grow(runCells, length);
+            }
+            run = runCount++;
+            runDate[run] = date;
+            runMinute[run] = minute;
+            runLines[run] = 0;
+            runFixes[run] = 0;
+            runCells[run] = 0;
+        }
+        runLines[run]++;
+    }
+
+    /**
+     * Counts observation of a cell in the current line.
+     * @param cid               cell id
+     * @param lac               location area code
+     * @param rssi              RSSI, or {@link CoverageIndex#UNKNOWN_RSSI}
+     * @param serving           <code>true</code> for the serving cell
+     */
+    void cell(int cid, int lac, int rssi, boolean serving) {
+        int cell = cellIndex(cid, lac);
+        if (serving) {
+            cellServing[cell]++;
+        } else {
+            cellNeighbor[cell]++;
+        }
+        if (rssi != CoverageIndex.UNKNOWN_RSSI) {
+            cellRssiCount[cell]++;
+            cellRssiSum[cell] += rssi;
+            cellRssiMin[cell] = Math.min(cellRssiMin[cell], rssi);
+            cellRssiMax[cell] = Math.max(cellRssiMax[cell], rssi);
+        }
+        cellObservations++;
+        runCells[runCount - 1]++;
+    }
+
+    /**
+     * Counts location fix of the provider in the current line.
+     * @param provider          provider index
+     * @param latitude          latitude, in degrees
+     * @param longitude         longitude, in degrees
+     * @param accuracy          accuracy, in meters
+     */
+    void fix(int provider, double latitude, double longitude, double accuracy) {
+        providerFixes[provider]++;
+        providerAccuracySum[provider] += accuracy;
+        providerSouth[provider] = Math.min(providerSouth[provider], latitude);
+        providerNorth[provider] = Math.max(providerNorth[provider], latitude);
+        providerWest[provider] = Math.min(providerWest[provider], longitude);
+        providerEast[provider] = Math.max(providerEast[provider], longitude);
+        locationFixes++;
+        runFixes[runCount - 1]++;
+    }
+
+    /**
+     * Returns index of the provider, adds the provider if it is new.
+     * @param name              provider name
+     * @return                  provider index
+     */
+    int provider(String name) {
+        int provider = providers.indexOf(name);
+        if (provider >= 0) {
+            return provider;
+        }
+        provider = providers.size();
+        if (provider == providerFixes.length) {
+            int length = provider * 2;
+            providerFixes = grow(providerFixes, length);
+            providerAccuracySum = grow(providerAccuracySum, length);
+            providerSouth = grow(providerSouth, length);
+            providerWest = grow(providerWest, length);
+            providerNorth = grow(providerNorth, length);
+            providerEast = grow(providerEast, length);
+        }
+        providers.add(name);
+        providerFixes[provider] = 0;
+        providerAccuracySum[provider] = 0;
+        providerSouth[provider] = Double.POSITIVE_INFINITY;
+        providerWest[provider] = Double.POSITIVE_INFINITY;
+        providerNorth[provider] = Double.NEGATIVE_INFINITY;
+        providerEast[provider] = Double.NEGATIVE_INFINITY;
+        return provider;
+    }
+
+    /**
+     * Adds cells, providers and totals of the other statistics.
+     * @param other             statistics of a chunk
+     */
+    void merge(LogStatistics other) {
+        lines += other.lines;
+        malformedLines += other.malformedLines;
+        locationFixes += other.locationFixes;
+        cellObservations += other.cellObservations;
+        for (int i = 0; i < other.cellCount; i++) {
+            int cell = cellIndex(other.cellCid[i], other.cellLac[i]);
+            cellNeighbor[cell] += other.cellNeighbor[i];
+            cellServing[cell] += other.cellServing[i];
+            cellRssiCount[cell] += other.cellRssiCount[i];
+            cellRssiSum[cell] += other.cellRssiSum[i];
+            cellRssiMin[cell] = Math.min(cellRssiMin[cell], other.cellRssiMin[i]);
+            cellRssiMax[cell] = Math.max(cellRssiMax[cell], other.cellRssiMax[i]);
+        }
+        for (int i = 0; i < other.providers.size(); i++) {
+            int provider = provider(other.providers.get(i));
+            providerFixes[provider] += other.providerFixes[i];
+            providerAccuracySum[provider] += other.providerAccuracySum[i];
+            providerSouth[provider] = Math.min(providerSouth[provider], other.providerSouth[i]);
+            providerWest[provider] = Math.min(providerWest[provider], other.providerWest[i]);
+            providerNorth[provider] = Math.max(providerNorth[provider], other.providerNorth[i]);
+            providerEast[provider] = Math.max(providerEast[provider], other.providerEast[i]);
+        }
+    }
+
+    /**
+     * Adds minute runs of the next chunk of the file to the minutes.
+     * @param chunk             statistics of the chunk
+     */
+    void addRuns(LogStatistics chunk) {
+        for (int run = 0; run < chunk.runCount; run++) {
+            int date = chunk.runDate[run];
+            if (date != lastDate) {
+                lastDate = date;
+                lastMinute = -1;
+                halfDay = 0;
+            }
+            int minute = chunk.runMinute[run] + halfDay;
+            // the clock has gone back by more than an hour, it is the afternoon
+            if (halfDay == 0 && lastMinute != -1 && minute < lastMinute - 60) {
+                halfDay = MINUTES_PER_HALF_DAY;
+                minute += halfDay;
+            }
+            lastMinute = minute;
+            long key = (long) date * 2 * MINUTES_PER_HALF_DAY + minute;
+            int index = minuteIndex.get(key);
+            if (index == LongIntMap.ABSENT) {
+                if (minuteCount == minuteKey.length) {
+                    int length = minuteCount * 2;
+                    minuteKey = grow(minuteKey, length);
+                    minuteLines = grow(minuteLines, length);
+                    minuteFixes = grow(minuteFixes, length);
+                    minuteCells = grow(minuteCells, length);
+                }
+                index = minuteCount++;
+                minuteIndex.put(key, index);
+                minuteKey[index] = key;
+                minuteLines[index] = 0;
+                minuteFixes[index] = 0;
+                minuteCells[index] = 0;
+            }
+            minuteLines[index] += chunk.runLines[run];
+            minuteFixes[index] += chunk.runFixes[run];
+            minuteCells[index] += chunk.runCells[run];
+        }
+    }
+
+    /**
+     * Starts the half of the day state of the next file.
+     */
+    void nextFile() {
+        lastDate = -1;
+        lastMinute = -1;
+        halfDay = 0;
+    }
+
+    /**
+     * Returns text of the minute key as <code>yyyy.MM.dd HH:mm</code>.
+     * @param key               minute key
+     * @return                  minute text
+     */
+    static String formatMinute(long key) {
+        int date = (int) (key / (2 * MINUTES_PER_HALF_DAY));
+        int minute = (int) (key % (2 * MINUTES_PER_HALF_DAY));
+        return String.format("%04d.%02d.%02d %02d:%02d",
+                date / 10000, date / 100 % 100, date % 100, minute / 60, minute % 60);
+    }
+
+    private int cellIndex(int cid, int lac) {
+        long key = CellChangeDetector.key(cid, lac, 0);
+        int cell = cellIndex.get(key);
+        if (cell != LongIntMap.ABSENT) {
+            return cell;
+        }
+        if (cellCount == cellCid.length) {
+            int length = cellCount * 2;
+            cellCid = grow(cellCid, length);
+            cellLac = grow(cellLac, length);
+            cellNeighbor = grow(cellNeighbor, length);
+            cellServing = grow(cellServing, length);
+            cellRssiCount = grow(cellRssiCount, length);
+            cellRssiSum = grow(cellRssiSum, length);
+            cellRssiMin = grow(cellRssiMin, length);
+            cellRssiMax = grow(cellRssiMax, length);
+        }
+        cell = cellCount++;
+        cellIndex.put(key, cell);
+        cellCid[cell] = cid;
+        cellLac[cell] = lac;
+        cellNeighbor[cell] = 0;
+        cellServing[cell] = 0;
+        cellRssiCount[cell] = 0;
+        cellRssiSum[cell] = 0;
+        cellRssiMin[cell] = Integer.MAX_VALUE;
+        cellRssiMax[cell] = Integer.MIN_VALUE;
+        return cell;
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static long[] grow(long[] array, int length) {
+        long[] result = new long[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private static double[] grow(double[] array, int length) {
+        double[] result = new double[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
@@ -0,0 +1,138 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Open addressing hash map from primitive <code>long</code> keys to <code>int</code> values.
+ * Keeps no objects per entry, so a steady state of puts and clears does not allocate.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class LongIntMap {
+
+    /**
+     * The value returned for absent keys.
+     */
+    static final int ABSENT = Integer.MIN_VALUE;
+
+    /**
+     * The keys by slot.
+     */
+    private long[] keys;
+
+    /**
+     * The values by slot.
+     */
+    private int[] values;
+
+    /**
+     * The flags of occupied slots.
+     */
+    private boolean[] used;
+
+    /**
+     * The count of entries.
+     */
+    private int size;
+
+    LongIntMap(int capacity) {
+        int tableSize = 8;
+        while (tableSize < capacity * 2) {
+            tableSize <<= 1;
+        }
+        keys = new long[tableSize];
+        values = new int[tableSize];
+        used = new boolean[tableSize];
+    }
+
+    /**
+     * Returns value of the key.
+     * @param key               key
+     * @return                  value or {@link #ABSENT}
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int index = hash(key) & mask; used[index]; index = (index + 1) & mask) {
+            if (keys[index] == key) {
+                return values[index];
+            }
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Puts value of the key.
+     * @param key               key
+     * @param value             value
+     */
+    void put(long key, int value) {
+        int mask = keys.length - 1;
+        int index = hash(key) & mask;
+        while (used[index]) {
+            if (keys[index] == key) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    void clear() {
+        for (int i = 0; i < used.length; i++) {
+            used[i] = false;
+        }
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns table length, slots are numbered from <code>0</code> to it for iteration.
+     * @return                  table length
+     */
+    int slots() {
+        return keys.length;
+    }
+
+    boolean isUsed(int slot) {
+        return used[slot];
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
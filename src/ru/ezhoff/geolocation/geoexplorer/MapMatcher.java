@@ -0,0 +1,669 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Streaming matcher of the location fixes of one provider to the roads of a {@link RoadGraph}.
+ * <p>
+ * The matching is the Viterbi search of a hidden Markov model. The states of a fix are the nearest
+ * road segments within a radius of its accuracy. A state is the more likely the closer its segment
+ * is to the fix, by the normal distribution of the error of the fix, and a transition between the states
+ * of consecutive fixes is the more likely the closer the route between them on the roads is
+ * to the straight distance between the fixes. The routes are found by the Dijkstra search from every state
+ * of the previous fix, which stops at the states of the current fix or at the longest sensible route.
+ * <p>
+ * The latency is bounded by the lookback: the back pointers of the pending fixes are followed from all states
+ * of the newest fix, and the fixes from which they all go the same way are decided and passed to the sink,
+ * usually a fix or two after the newest one. A fix which is pending for the lookback is decided
+ * by the most likely state of the newest fix. A fix without roads nearby is left unmatched. A time gap
+ * or a fix unreachable from the previous one break the trace: the pending fixes are decided and the search
+ * starts anew.
+ * <p>
+ * The matcher keeps its search state in arrays allocated once, the only allocations of a fix are
+ * the match samples. The methods are synchronized, the graph is shared by matchers of other threads.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MapMatcher implements SampleSink {
+
+    /**
+     * The graph of the roads.
+     */
+    private final RoadGraph graph;
+
+    /**
+     * The sink of match samples.
+     */
+    private SampleSink sink;
+
+    /**
+     * The provider of matched fixes, or <code>null</code> for all providers.
+     */
+    private String provider = LocationFusion.FUSED;
+
+    /**
+     * The largest count of states of a fix.
+     */
+    private int maxCandidates = 8;
+
+    /**
+     * The bounds of the radius of the states, in meters, it is three accuracies of the fix.
+     */
+    private double minRadius = 25;
+    private double maxRadius = 150;
+
+    /**
+     * The smallest standard deviation of the error of a fix, in meters, it is the accuracy of the fix.
+     */
+    private double minSigma = 4;
+
+    /**
+     * The scale of the difference of the route and the straight distance, in meters.
+     */
+    private double beta = 15;
+
+    /**
+     * The longest route between consecutive fixes, as a multiple of the straight distance between them
+     * plus their radii.
+     */
+    private double maxRouteFactor = 2;
+
+    /**
+     * The longest time between consecutive fixes of a trace, in milliseconds.
+     */
+    private long maxGap = 30 * 1000;
+
+    /**
+     * The largest count of pending fixes.
+     */
+    private int lookback = 8;
+
+    /**
+     * The pending fixes, a ring from the oldest one.
+     */
+    private Step[] steps;
+    private int first;
+    private int count;
+
+    /**
+     * The states of the pending fixes on the decided way, scratch of a decision.
+     */
+    private int[] chosen;
+
+    /**
+     * The scratch of the convergence check: the marks of the states on the ways back from the newest fix.
+     */
+    private int[] marks;
+    private int[] alive;
+    private int markStamp;
+
+    /**
+     * The scratch of the search of states: the stamps of found segments.
+     */
+    private final int[] segmentStamps;
+    private int searchStamp;
+
+    /**
+     * The scratch of the route search: the tentative distances of the nodes, valid with the current stamp,
+     * the stamps of settled nodes and of the nodes of the current states, and the binary heap of nodes.
+     */
+    private final float[] nodeDistances;
+    private final int[] nodeStamps;
+    private final int[] settledStamps;
+    private final int[] targetStamps;
+    private int routeStamp;
+    private int targetStamp;
+    private int targetCount;
+    private int[] heapNodes = new int[256];
+    private float[] heapDistances = new float[256];
+    private int heapSize;
+
+    /**
+     * The counts of fixes, of matches and of breaks of the traces, since the creation.
+     */
+    private long fixCount;
+    private long matchCount;
+    private long breakCount;
+
+    /**
+     * Fix with its states.
+     */
+    private static final class Step {
+        long time;
+        String source;
+        double x;
+        double y;
+        double radius;
+        int count;
+        int[] segments;
+        float[] offsets;
+        float[] distances;
+        double[] scores;
+        int[] back;
+
+        Step(int capacity) {
+            segments = new int[capacity];
+            offsets = new float[capacity];
+            distances = new float[capacity];
+            scores = new double[capacity];
+            back = new int[capacity];
+        }
+    }
+
+    /**
+     * Creates matcher.
+     * @param graph             graph of the roads
+     */
+    public MapMatcher(RoadGraph graph) {
+        this.graph = graph;
+        segmentStamps = new int[graph.segmentCount];
+        nodeDistances = new float[graph.nodeCount];
+        nodeStamps = new int[graph.nodeCount];
+        settledStamps = new int[graph.nodeCount];
+        targetStamps = new int[graph.nodeCount];
+        allocate();
+    }
+
+    @Override
+    public synchronized void log(Sample sample) {
+        if (!(sample instanceof LocationSample) || provider != null && !provider.equals(sample.source)) {
+            return;
+        }
+        LocationSample fix = (LocationSample) sample;
+        fixCount++;
+        Step previous = count == 0 ? null : steps[(first + count - 1) % steps.length];
+        if (previous != null && fix.time <= previous.time) {
+            return;
+        }
+        if (previous != null && fix.time - previous.time > maxGap) {
+            flush();
+            breakCount++;
+            previous = null;
+        }
+        Step step = steps[(first + count) % steps.length];
+        step.time = fix.time;
+        step.source = fix.source;
+        step.x = graph.toX(fix.longitude);
+        step.y = graph.toY(fix.latitude);
+        step.radius = Math.max(minRadius, Math.min(maxRadius, 3 * fix.accuracy));
+        findCandidates(step);
+        if (step.count == 0) {
+            // an outlier is left unmatched, the trace goes on from the previous fix
+            return;
+        }
+        double sigma = Math.max(minSigma, fix.accuracy);
+        boolean isReached = previous != null && transit(previous, step);
+        if (previous != null && !isReached) {
+            flush();
+            breakCount++;
+        }
+        double maxScore = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < step.count; j++) {
+            double distance = step.distances[j] / sigma;
+            double score = (isReached ? step.scores[j] : 0) - 0.5 * distance * distance;
+            if (!isReached) {
+                step.back[j] = -1;
+            }
+            step.scores[j] = score;
+            maxScore = Math.max(maxScore, score);
+        }
+        // the scores are kept relative to the best one, so they do not grow with the length of the trace
+        for (int j = 0; j < step.count; j++) {
+            step.scores[j] -= maxScore;
+        }
+        count++;
+        decideConverged();
+        if (count > lookback) {
+            decide(count - lookback, count - 1, best(step));
+        }
+    }
+
+    /**
+     * Decides all pending fixes by the most likely state of the newest one, e.g. at the end of a trace.
+     */
+    public synchronized void flush() {
+        if (count > 0) {
+            decide(count, count - 1, best(steps[(first + count - 1) % steps.length]));
+        }
+    }
+
+    /**
+     * Drops pending fixes.
+     */
+    public synchronized void reset() {
+        first = 0;
+        count = 0;
+    }
+
+    public synchronized long getFixCount() {
+        return fixCount;
+    }
+
+    public synchronized long getMatchCount() {
+        return matchCount;
+    }
+
+    public synchronized long getBreakCount() {
+        return breakCount;
+    }
+
+    /**
+     * Sets sink of match samples and returns self object for easy init.
+     * @param sink              sink
+     * @return                  self object
+     */
+    public synchronized MapMatcher setSink(SampleSink sink) {
+        this.sink = sink;
+        return this;
+    }
+
+    /**
+     * Sets provider of matched fixes and returns self object for easy init.
+     * @param provider          provider name, or <code>null</code> for all providers
+     * @return                  self object
+     */
+    public synchronized MapMatcher setProvider(String provider) {
+        this.provider = provider;
+        return this;
+    }
+
+    /**
+     * Sets largest count of states of a fix and returns self object for easy init.
+     * @param maxCandidates     count of states
+     * @return                  self object
+     */
+    public synchronized MapMatcher setMaxCandidates(int maxCandidates) {
+        if (maxCandidates < 1) {
+            throw new IllegalArgumentException("Candidates count must be positive: " + maxCandidates);
+        }
+        this.maxCandidates = maxCandidates;
+        allocate();
+        return this;
+    }
+
+    /**
+     * Sets bounds of the radius of the states and returns self object for easy init.
+     * @param minRadius         smallest radius, in meters
+     * @param maxRadius         largest radius, in meters
+     * @return                  self object
+     */
+    public synchronized MapMatcher setRadius(double minRadius, double maxRadius) {
+        this.minRadius = minRadius;
+        this.maxRadius = maxRadius;
+        return this;
+    }
+
+    /**
+     * Sets smallest standard deviation of the error of a fix and returns self object for easy init.
+     * @param minSigma          deviation, in meters
+     * @return                  self object
+     */
+    public synchronized MapMatcher setMinSigma(double minSigma) {
+        this.minSigma = minSigma;
+        return this;
+    }
+
+    /**
+     * Sets scale of the difference of the route and the straight distance and returns self object for easy init.
+     * @param beta              scale, in meters
+     * @return                  self object
+     */
+    public synchronized MapMatcher setBeta(double beta) {
+        this.beta = beta;
+        return this;
+    }
+
+    /**
+     * Sets longest time between consecutive fixes of a trace and returns self object for easy init.
+     * @param maxGap            time, in milliseconds
+     * @return                  self object
+     */
+    public synchronized MapMatcher setMaxGap(long maxGap) {
+        this.maxGap = maxGap;
+        return this;
+    }
+
+    /**
+     * Sets largest count of pending fixes and returns self object for easy init.
+     * @param lookback          count of fixes, the latency of a match is at most this count of fixes
+     * @return                  self object
+     */
+    public synchronized MapMatcher setLookback(int lookback) {
+        if (lookback < 1) {
+            throw new IllegalArgumentException("Lookback must be positive: " + lookback);
+        }
+        this.lookback = lookback;
+        allocate();
+        return this;
+    }
+
+    /**
+     * Allocates pending fixes and scratch, the pending fixes are dropped.
+     */
+    private void allocate() {
+        steps = new Step[lookback + 1];
+        for (int i = 0; i < steps.length; i++) {
+            steps[i] = new Step(maxCandidates);
+        }
+        chosen = new int[lookback + 1];
+        marks = new int[maxCandidates];
+        alive = new int[maxCandidates];
+        first = 0;
+        count = 0;
+    }
+
+    /**
+     * Finds nearest segments within the radius of the fix, sorted by distance.
+     */
+    private void findCandidates(Step step) {
+        if (++searchStamp == 0) {
+            clear(segmentStamps);
+            searchStamp = 1;
+        }
+        step.count = 0;
+        float[] nodeX = graph.nodeX;
+        float[] nodeY = graph.nodeY;
+        int x2 = RoadGraph.cell(step.x + step.radius);
+        int y2 = RoadGraph.cell(step.y + step.radius);
+        for (int cellX = RoadGraph.cell(step.x - step.radius); cellX <= x2; cellX++) {
+            for (int cellY = RoadGraph.cell(step.y - step.radius); cellY <= y2; cellY++) {
+                int cell = graph.cells.get(RoadGraph.cellKey(cellX, cellY));
+                if (cell == LongIntMap.ABSENT) {
+                    continue;
+                }
+                for (int i = graph.cellStart[cell]; i < graph.cellStart[cell + 1]; i++) {
+                    int segment = graph.cellSegments[i];
+                    if (segmentStamps[segment] == searchStamp) {
+                        continue;
+                    }
+                    segmentStamps[segment] = searchStamp;
+                    int from = graph.segmentFrom[segment];
+                    int to = graph.segmentTo[segment];
+                    double dx = nodeX[to] - nodeX[from];
+                    double dy = nodeY[to] - nodeY[from];
+                    double length2 = dx * dx + dy * dy;
+                    double offset = length2 == 0 ? 0
+                            : ((step.x - nodeX[from]) * dx + (step.y - nodeY[from]) * dy) / length2;
+                    offset = Math.max(0, Math.min(1, offset));
+                    double distance = Math.hypot(nodeX[from] + offset * dx - step.x, nodeY[from] + offset * dy - step.y);
+                    if (distance <= step.radius) {
+                        addCandidate(step, segment, (float) offset, (float) distance);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Inserts segment into the states of the fix, the farthest state is dropped when there are too many.
+     */
+    private void addCandidate(Step step, int segment, float offset, float distance) {
+        int position = step.count;
+        if (position == maxCandidates) {
+            if (distance >= step.distances[position - 1]) {
+                return;
+            }
+            position--;
+        } else {
+            step.count++;
+        }
+        while (position > 0 && step.distances[position - 1] > distance) {
+            step.segments[position] = step.segments[position - 1];
+            step.offsets[position] = step.offsets[position - 1];
+            step.distances[position] = step.distances[position - 1];
+            position--;
+        }
+        step.segments[position] = segment;
+        step.offsets[position] = offset;
+        step.distances[position] = distance;
+    }
+
+    /**
+     * Sets the scores of the states of the step by the best transitions from the previous step.
+     * @return                  <code>false</code> if no state of the step is reached
+     */
+    private boolean transit(Step previous, Step step) {
+        double straight = Math.hypot(step.x - previous.x, step.y - previous.y);
+        double limit = maxRouteFactor * straight + previous.radius + step.radius;
+        if (++targetStamp == 0) {
+            clear(targetStamps);
+            targetStamp = 1;
+        }
+        targetCount = 0;
+        for (int j = 0; j < step.count; j++) {
+            step.scores[j] = Double.NEGATIVE_INFINITY;
+            step.back[j] = -1;
+            markTarget(graph.segmentFrom[step.segments[j]]);
+            markTarget(graph.segmentTo[step.segments[j]]);
+        }
+        boolean isReached = false;
+        for (int i = 0; i < previous.count; i++) {
+            if (previous.scores[i] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            int segment = previous.segments[i];
+            route(segment, previous.offsets[i], limit);
+            for (int j = 0; j < step.count; j++) {
+                int target = step.segments[j];
+                float length = graph.segmentLength[target];
+                double route = Math.min(
+                        distance(graph.segmentFrom[target]) + step.offsets[j] * length,
+                        distance(graph.segmentTo[target]) + (1 - step.offsets[j]) * length);
+                if (target == segment) {
+                    route = Math.min(route, Math.abs(step.offsets[j] - previous.offsets[i]) * length);
+                }
+                if (route > limit) {
+                    continue;
+                }
+                double score = previous.scores[i] - Math.abs(route - straight) / beta;
+                if (score > step.scores[j]) {
+                    step.scores[j] = score;
+                    step.back[j] = i;
+                    isReached = true;
+                }
+            }
+        }
+        return isReached;
+    }
+
+    private void markTarget(int node) {
+        if (targetStamps[node] != targetStamp) {
+            targetStamps[node] = targetStamp;
+            targetCount++;
+        }
+    }
+
+    /**
+     * Finds routes from the position on the segment to the nodes up to the limit or to all target nodes.
+     */
+    private void route(int segment, float offset, double limit) {
+        if (++routeStamp == 0) {
+            clear(nodeStamps);
+            clear(settledStamps);
+            routeStamp = 1;
+        }
+        heapSize = 0;
+        float length = graph.segmentLength[segment];
+        reach(graph.segmentFrom[segment], offset * length);
+        reach(graph.segmentTo[segment], (1 - offset) * length);
+        int remaining = targetCount;
+        while (heapSize > 0) {
+            int node = heapNodes[0];
+            float distance = heapDistances[0];
+            pop();
+            if (settledStamps[node] == routeStamp) {
+                continue;
+            }
+            if (distance > limit) {
+                break;
+            }
+            settledStamps[node] = routeStamp;
+            if (targetStamps[node] == targetStamp && --remaining == 0) {
+                break;
+            }
+            for (int edge = graph.firstEdge[node]; edge < graph.firstEdge[node + 1]; edge++) {
+                reach(graph.edgeTarget[edge], distance + graph.segmentLength[graph.edgeSegment[edge]]);
+            }
+        }
+    }
+
+    /**
+     * Returns length of the route found to the node, or infinity.
+     */
+    private double distance(int node) {
+        return nodeStamps[node] == routeStamp ? nodeDistances[node] : Double.POSITIVE_INFINITY;
+    }
+
+    private void reach(int node, float distance) {
+        if (nodeStamps[node] == routeStamp && nodeDistances[node] <= distance) {
+            return;
+        }
+        nodeStamps[node] = routeStamp;
+        nodeDistances[node] = distance;
+        if (heapSize == heapNodes.length) {
+            int[] nodes = new int[heapSize * 2];
+            float[] distances = new float[heapSize * 2];
+            System.arraycopy(heapNodes, 0, nodes, 0, heapSize);
+            System.arraycopy(heapDistances, 0, distances, 0, heapSize);
+            heapNodes = nodes;
+            heapDistances = distances;
+        }
+        int position = heapSize++;
+        while (position > 0) {
+            int parent = (position - 1) >> 1;
+            if (heapDistances[parent] <= distance) {
+                break;
+            }
+            heapNodes[position] = heapNodes[parent];
+            heapDistances[position] = heapDistances[parent];
+            position = parent;
+        }
+        heapNodes[position] = node;
+        heapDistances[position] = distance;
+    }
+
+    private void pop() {
+        int node = heapNodes[--heapSize];
+        float distance = heapDistances[heapSize];
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapDistances[child + 1] < heapDistances[child]) {
+                child++;
+            }
+            if (heapDistances[child] >= distance) {
+                break;
+            }
+            heapNodes[position] = heapNodes[child];
+            heapDistances[position] = heapDistances[child];
+            position = child;
+        }
+        heapNodes[position] = node;
+        heapDistances[position] = distance;
+    }
+
+    /**
+     * Decides the pending fixes up to the newest one from which the ways back from all states
+     * of the newest fix go the same way.
+     */
+    private void decideConverged() {
+        Step newest = steps[(first + count - 1) % steps.length];
+        int aliveCount = 0;
+        for (int j = 0; j < newest.count; j++) {
+            if (newest.back[j] >= 0) {
+                alive[aliveCount++] = newest.back[j];
+            }
+        }
+        for (int back = count - 2; back >= 0 && aliveCount > 0; back--) {
+            if (++markStamp == 0) {
+                clear(marks);
+                markStamp = 1;
+            }
+            // the distinct states of this fix on the ways back
+            int distinct = 0;
+            for (int k = 0; k < aliveCount; k++) {
+                int state = alive[k];
+                if (marks[state] != markStamp) {
+                    marks[state] = markStamp;
+                    alive[distinct++] = state;
+                }
+            }
+            aliveCount = distinct;
+            if (aliveCount == 1) {
+                decide(back + 1, back, alive[0]);
+                return;
+            }
+            Step step = steps[(first + back) % steps.length];
+            int next = 0;
+            for (int k = 0; k < aliveCount; k++) {
+                if (step.back[alive[k]] >= 0) {
+                    alive[next++] = step.back[alive[k]];
+                }
+            }
+            aliveCount = next;
+        }
+    }
+
+    /**
+     * Passes the oldest pending fixes to the sink on the way back from the given state and drops them.
+     * @param decided           count of the oldest fixes to decide
+     * @param last              index of the pending fix of the state, not less than the last decided one
+     * @param state             state of the fix
+     */
+    private void decide(int decided, int last, int state) {
+        for (int back = last; back >= 0; back--) {
+            chosen[back] = state;
+            state = state < 0 ? -1 : steps[(first + back) % steps.length].back[state];
+        }
+        for (int k = 0; k < decided; k++) {
+            Step step = steps[first];
+            if (chosen[k] >= 0) {
+                emit(step, chosen[k]);
+            }
+            first = (first + 1) % steps.length;
+            count--;
+        }
+    }
+
+    private void emit(Step step, int state) {
+        int segment = step.segments[state];
+        int from = graph.segmentFrom[segment];
+        int to = graph.segmentTo[segment];
+        float offset = step.offsets[state];
+        MatchSample match = new MatchSample();
+        match.time = step.time;
+        match.source = step.source;
+        match.wayId = graph.segmentWay[segment];
+        match.fromNode = graph.nodeIds[from];
+        match.toNode = graph.nodeIds[to];
+        match.offset = offset;
+        match.longitude = graph.toLongitude(graph.nodeX[from] + offset * (graph.nodeX[to] - graph.nodeX[from]));
+        match.latitude = graph.toLatitude(graph.nodeY[from] + offset * (graph.nodeY[to] - graph.nodeY[from]));
+        match.distance = step.distances[state];
+        matchCount++;
+        if (sink != null) {
+            sink.log(match);
+        }
+    }
+
+    /**
+     * Returns most likely state of the fix.
+     */
+    private static int best(Step step) {
+        int best = -1;
+        for (int j = 0; j < step.count; j++) {
+            if (best < 0 || step.scores[j] > step.scores[best]) {
+                best = j;
+            }
+        }
+        return best;
+    }
+
+    private static void clear(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = 0;
+        }
+    }
+}
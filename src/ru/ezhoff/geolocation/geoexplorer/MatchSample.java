@@ -0,0 +1,129 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Position of a location fix on a road, made by {@link MapMatcher}.
+ * The time and the source are the ones of the fix. The road segment is given by the OSM ids of its way
+ * and of its end nodes, so the matches of different builds of the road graph are comparable.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MatchSample extends Sample {
+
+    /**
+     * The binary record type.
+     */
+    static final int TYPE = 12;
+
+    /**
+     * The OSM id of the way.
+     */
+    long wayId;
+
+    /**
+     * The OSM ids of the start and the end node of the segment.
+     */
+    long fromNode;
+    long toNode;
+
+    /**
+     * The position on the segment, from <code>0</code> at the start node to <code>1</code> at the end node.
+     */
+    float offset;
+
+    /**
+     * The latitude of the position on the road, in degrees.
+     */
+    double latitude;
+
+    /**
+     * The longitude of the position on the road, in degrees.
+     */
+    double longitude;
+
+    /**
+     * The distance from the fix to the road, in meters.
+     */
+    float distance;
+
+    MatchSample() {}
+
+    public String getProvider() {
+        return source;
+    }
+
+    public long getWayId() {
+        return wayId;
+    }
+
+    public long getFromNode() {
+        return fromNode;
+    }
+
+    public long getToNode() {
+        return toNode;
+    }
+
+    public float getOffset() {
+        return offset;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getDistance() {
+        return distance;
+    }
+
+    @Override
+    String getMonitorName() {
+        return "MapMatcher";
+    }
+
+    @Override
+    int getType() {
+        return TYPE;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        out.writeLong(wayId);
+        out.writeLong(fromNode);
+        out.writeLong(toNode);
+        out.writeFloat(offset);
+        out.writeDouble(latitude);
+        out.writeDouble(longitude);
+        out.writeFloat(distance);
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        wayId = in.readLong();
+        fromNode = in.readLong();
+        toNode = in.readLong();
+        offset = in.readFloat();
+        latitude = in.readDouble();
+        longitude = in.readDouble();
+        distance = in.readFloat();
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        builder.append("MapMatcher{Provider - ").append(source).append("}::Matched - Way: ").append(wayId)
+               .append(", From: ").append(fromNode)
+               .append(", To: ").append(toNode)
+               .append(", Offset: ").append(offset)
+               .append(", Latitude: ").append(latitude)
+               .append(", Longitude: ").append(longitude)
+               .append(", Distance: ").append(distance);
+    }
+}
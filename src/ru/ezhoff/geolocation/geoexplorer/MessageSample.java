@@ -0,0 +1,90 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Text message of a monitor about an event without a typed record, e.g. a changed state of a listener
+ * or the statistics of a run. It is published like the samples, so it keeps its order with them on the bus,
+ * and the logger writes it as a text message record, the same as a message logged directly.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MessageSample extends Sample {
+
+    /**
+     * The level.
+     */
+    String level;
+
+    /**
+     * The message.
+     */
+    String message;
+
+    /**
+     * Creates message.
+     * @param time              time, in milliseconds
+     * @param level             level
+     * @param message           message
+     */
+    MessageSample(long time, String level, String message) {
+        this.time = time;
+        this.level = level;
+        this.message = message;
+    }
+
+    /**
+     * Creates message of the info level with the current time.
+     * @param message           message
+     * @return                  sample
+     */
+    public static MessageSample info(String message) {
+        return new MessageSample(System.currentTimeMillis(), FileLogger.INFO, message);
+    }
+
+    /**
+     * Creates message of the error level with the current time.
+     * @param message           message
+     * @return                  sample
+     */
+    public static MessageSample error(String message) {
+        return new MessageSample(System.currentTimeMillis(), FileLogger.ERROR, message);
+    }
+
+    public String getLevel() {
+        return level;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    String getMonitorName() {
+        // the message starts with the name itself
+        return null;
+    }
+
+    @Override
+    int getType() {
+        return BinaryTraceWriter.MESSAGE;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        throw new IOException("Message is written as a text message record");
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        throw new IOException("Message is read as a text message record");
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        builder.append(message);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.Map;
+
+/**
+ * Monitor which periodically writes the values of all metrics of a {@link MetricsRegistry} into the log,
+ * one message per metric, and once more on stop.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MetricsMonitor implements Monitor, Runnable {
+
+    /**
+     * Main template for module messaging.
+     */
+    private static final String MONITORING_MESSAGE = "MetricsMonitor::%s";
+
+    /**
+     * The logger, taken again on every start since the previous one may be closed.
+     */
+    private volatile FileLogger logger = FileLogger.getInstance();
+
+    /**
+     * The registry of logged metrics.
+     */
+    private MetricsRegistry registry = MetricsRegistry.getInstance();
+
+    /**
+     * The period of snapshots in milliseconds.
+     */
+    private long period;
+
+    /**
+     * The flag of monitoring is on.
+     */
+    private volatile boolean isStarted = false;
+
+    /**
+     * The scheduler of periodical snapshots.
+     */
+    private MonitorScheduler scheduler;
+
+    @Override
+    public void start() {
+        if (registry == null || period <= 0 || scheduler == null) {
+            throw new IllegalMonitorStateException("Monitor is not initialized");
+        }
+        logger = FileLogger.getInstance();
+        isStarted = true;
+        scheduler.schedule(this, period);
+        logger.info(formatModuleMessage("Metrics monitor is started."));
+    }
+
+    @Override
+    public void stop() {
+        if (isStarted) {
+            isStarted = false;
+            scheduler.cancel(this);
+            logSnapshot();
+            logger.info(formatModuleMessage("Metrics monitor is stopped."));
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!isStarted) {
+            return;
+        }
+        logSnapshot();
+    }
+
+    /**
+     * Sets registry of logged metrics and returns self object for easy init.
+     * @param registry          registry
+     * @return                  self object
+     */
+    public MetricsMonitor setRegistry(MetricsRegistry registry) {
+        this.registry = registry;
+        return this;
+    }
+
+    /**
+     * Sets scheduler of periodical snapshots and returns self object for easy init.
+     * @param scheduler         scheduler
+     * @return                  self object
+     */
+    public MetricsMonitor setScheduler(MonitorScheduler scheduler) {
+        this.scheduler = scheduler;
+        return this;
+    }
+
+    /**
+     * Sets period of snapshots and returns self object for easy init.
+     * @param period            period, in milliseconds
+     * @return                  self object
+     */
+    public MetricsMonitor setPeriod(long period) {
+        this.period = period;
+        return this;
+    }
+
+    private void logSnapshot() {
+        for (Map.Entry<String, String> metric: registry.snapshot().entrySet()) {
+            logger.info(formatModuleMessage(String.format("%s - %s", metric.getKey(), metric.getValue())));
+        }
+    }
+
+    private String formatModuleMessage(String message) {
+        return String.format(MONITORING_MESSAGE, message);
+    }
+}
@@ -0,0 +1,306 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry of named counters, latency histograms and gauges of the monitors, the scheduler and the logger.
+ * Metrics are looked up by name once, when their owner is created, and recorded without locks
+ * by one or two atomic increments. Their current values are queried by name or logged
+ * periodically by {@link MetricsMonitor}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    /**
+     * Metric of the registry.
+     */
+    public abstract static class Metric {
+
+        /**
+         * Appends text of the current value.
+         * @param builder           destination
+         */
+        abstract void appendValue(StringBuilder builder);
+    }
+
+    /**
+     * Count of events.
+     */
+    public static final class Counter extends Metric {
+
+        private final AtomicLong count = new AtomicLong();
+
+        /**
+         * Counts event.
+         */
+        public void increment() {
+            count.incrementAndGet();
+        }
+
+        /**
+         * Counts events.
+         * @param value             count of events
+         */
+        public void add(long value) {
+            count.addAndGet(value);
+        }
+
+        /**
+         * Returns count of events.
+         * @return                  count
+         */
+        public long get() {
+            return count.get();
+        }
+
+        @Override
+        void appendValue(StringBuilder builder) {
+            builder.append("Count: ").append(count.get());
+        }
+    }
+
+    /**
+     * Value of something outside of the registry, e.g. the size of a queue, read when it is queried.
+     */
+    public interface Gauge {
+
+        /**
+         * Returns current value.
+         * @return                  value
+         */
+        long get();
+    }
+
+    /**
+     * Distribution of durations with a relative error under 1/32 over the whole <code>long</code> range,
+     * in the manner of HdrHistogram. A value is counted in a bucket of its highest bits: values
+     * under 64 have buckets of their own, every next power of two is divided into 32 buckets.
+     */
+    public static final class Histogram extends Metric {
+
+        /**
+         * The bits of the bucket within a power of two.
+         */
+        private static final int SUB_BUCKET_BITS = 5;
+
+        private static final int BUCKET_COUNT = ((63 - SUB_BUCKET_BITS - 1) << SUB_BUCKET_BITS)
+                + (2 << SUB_BUCKET_BITS);
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+        private final AtomicLong sum = new AtomicLong();
+
+        /**
+         * Counts duration.
+         * @param nanos             duration, in nanoseconds, negative ones are counted as <code>0</code>
+         */
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            counts.incrementAndGet(index(nanos));
+            sum.addAndGet(nanos);
+        }
+
+        /**
+         * Counts duration since the given start.
+         * @param startNanos        start, by {@link System#nanoTime()}
+         */
+        public void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Returns count of durations.
+         * @return                  count
+         */
+        public long getCount() {
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                count += counts.get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Returns mean duration.
+         * @return                  mean, in nanoseconds, or <code>0</code> if nothing is counted
+         */
+        public long getMean() {
+            long count = getCount();
+            return count == 0 ? 0 : sum.get() / count;
+        }
+
+        /**
+         * Returns duration which the given share of the counted ones does not exceed.
+         * @param percentile        share, in percents
+         * @return                  the highest value of the bucket of the percentile, in nanoseconds,
+         *                          or <code>0</code> if nothing is counted
+         */
+        public long getPercentile(double percentile) {
+            long[] snapshot = new long[BUCKET_COUNT];
+            long count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                snapshot[i] = counts.get(i);
+                count += snapshot[i];
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += snapshot[i];
+                if (seen >= rank) {
+                    return highestValue(i);
+                }
+            }
+            return highestValue(BUCKET_COUNT - 1);
+        }
+
+        /**
+         * Returns longest duration.
+         * @return                  the highest value of its bucket, in nanoseconds, or <code>0</code>
+         */
+        public long getMax() {
+            for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+                if (counts.get(i) > 0) {
+                    return highestValue(i);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        void appendValue(StringBuilder builder) {
+            builder.append("Count: ").append(getCount())
+                    .append(", Mean: ").append(getMean())
+                    .append(", P50: ").append(getPercentile(50))
+                    .append(", P99: ").append(getPercentile(99))
+                    .append(", Max: ").append(getMax())
+                    .append(" ns");
+        }
+
+        static int index(long value) {
+            int shift = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1);
+            return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+        }
+
+        static long highestValue(int index) {
+            int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+            long bits = index - (shift << SUB_BUCKET_BITS);
+            return ((bits + 1) << shift) - 1;
+        }
+    }
+
+    /**
+     * Adapter of a gauge to the registry.
+     */
+    private static final class GaugeMetric extends Metric {
+
+        private final Gauge gauge;
+
+        GaugeMetric(Gauge gauge) {
+            this.gauge = gauge;
+        }
+
+        @Override
+        void appendValue(StringBuilder builder) {
+            builder.append("Value: ").append(gauge.get());
+        }
+    }
+
+    /**
+     * The metrics by name.
+     */
+    private final SortedMap<String, Metric> metrics = new TreeMap<String, Metric>();
+
+    public static MetricsRegistry getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns counter of the given name, creates it on the first call.
+     * @param name              metric name
+     * @return                  counter
+     */
+    public synchronized Counter counter(String name) {
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metric = new Counter();
+            metrics.put(name, metric);
+        }
+        return (Counter) metric;
+    }
+
+    /**
+     * Returns histogram of the given name, creates it on the first call.
+     * @param name              metric name
+     * @return                  histogram
+     */
+    public synchronized Histogram histogram(String name) {
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metric = new Histogram();
+            metrics.put(name, metric);
+        }
+        return (Histogram) metric;
+    }
+
+    /**
+     * Registers gauge, a gauge of the same name is replaced.
+     * @param name              metric name
+     * @param gauge             gauge
+     */
+    public synchronized void gauge(String name, Gauge gauge) {
+        metrics.put(name, new GaugeMetric(gauge));
+    }
+
+    /**
+     * Unregisters gauge, a gauge which has replaced it is kept.
+     * @param name              metric name
+     * @param gauge             gauge
+     */
+    public synchronized void unregister(String name, Gauge gauge) {
+        Metric metric = metrics.get(name);
+        if (metric instanceof GaugeMetric && ((GaugeMetric) metric).gauge == gauge) {
+            metrics.remove(name);
+        }
+    }
+
+    /**
+     * Returns metric of the given name.
+     * @param name              metric name
+     * @return                  metric, or <code>null</code> if there is none
+     */
+    public synchronized Metric get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Returns current values of all metrics as text.
+     * @return                  values by metric name, in order of names
+     */
+    public SortedMap<String, String> snapshot() {
+        SortedMap<String, Metric> metrics;
+        synchronized (this) {
+            metrics = new TreeMap<String, Metric>(this.metrics);
+        }
+        SortedMap<String, String> snapshot = new TreeMap<String, String>();
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Metric> entry: metrics.entrySet()) {
+            builder.setLength(0);
+            entry.getValue().appendValue(builder);
+            snapshot.put(entry.getKey(), builder.toString());
+        }
+        return snapshot;
+    }
+}
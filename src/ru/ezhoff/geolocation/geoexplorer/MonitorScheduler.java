@@ -0,0 +1,442 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Scheduler of periodical checks of all monitors on one runner thread.
+ * Time is divided into ticks of a fixed period counted from the start, so ticks do not drift,
+ * and every tick runs one pass over the probes which are due. Probe periods are rounded to whole ticks,
+ * so probes of the same period always share a pass. Ticks without due probes are skipped,
+ * the runner wakes up only for the next due one. A probe may change its period while it runs,
+ * e.g. by an {@link AdaptiveSampler}.
+ * <p>
+ * The runner thread lives for the whole run and parks until the next due tick, so the ticks allocate nothing.
+ * An executor given from outside, e.g. one of a virtual clock, gets a delayed task for every pass instead.
+ * A failed probe is counted in the metrics and passed to the error handler, the other probes keep ticking.
+ * The scheduler may be started and stopped any number of times.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class MonitorScheduler implements Runnable {
+
+    /**
+     * Probe registered with its period.
+     */
+    private static final class Entry {
+        final Runnable probe;
+        volatile long ticks;
+        long nextTick;
+
+        Entry(Runnable probe, long ticks, long nextTick) {
+            this.probe = probe;
+            this.ticks = ticks;
+            this.nextTick = nextTick;
+        }
+    }
+
+    /**
+     * The period of ticks, in milliseconds.
+     */
+    private long tickPeriod = 500;
+
+    /**
+     * Handler of the failures of probes.
+     */
+    public interface ErrorHandler {
+
+        /**
+         * Takes failure of a probe, called on the thread of the pass.
+         * @param probe         failed probe
+         * @param e             failure
+         */
+        void onError(Runnable probe, RuntimeException e);
+    }
+
+    /**
+     * The registered probes, an array replaced on every change, so passes read it without locks
+     * and iterators.
+     */
+    private volatile Entry[] entries = new Entry[0];
+
+    /**
+     * The executor given from outside, e.g. with a virtual clock, or <code>null</code> to own one.
+     */
+    private ScheduledExecutorService externalExecutor;
+
+    /**
+     * The source of time for tick deadlines.
+     */
+    private Clock clock = Clock.SYSTEM;
+
+    /**
+     * The delays of passes after their ticks and the durations of passes.
+     */
+    private final MetricsRegistry.Histogram lateness = MetricsRegistry.getInstance().histogram("MonitorScheduler.lateness");
+    private final MetricsRegistry.Histogram passLatency = MetricsRegistry.getInstance().histogram("MonitorScheduler.pass");
+
+    /**
+     * The count of failed probe runs.
+     */
+    private final MetricsRegistry.Counter failures = MetricsRegistry.getInstance().counter("MonitorScheduler.failures");
+
+    /**
+     * The handler of the failures of probes, or <code>null</code> to only count them.
+     */
+    private volatile ErrorHandler errorHandler;
+
+    /**
+     * The lock of start and stop, they wait for the passes without the lock of the state.
+     */
+    private final Object lifecycleLock = new Object();
+
+    /**
+     * The number of the current run, a pass of a previous run does not schedule the next one.
+     */
+    private long run;
+
+    /**
+     * The flag of the scheduler is ticking.
+     */
+    private boolean isStarted;
+
+    /**
+     * The runner thread of the current run, or <code>null</code> if the scheduler is stopped
+     * or ticks on the external executor.
+     */
+    private Thread runner;
+
+    /**
+     * The external executor of the current run, or <code>null</code>.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * The pending pass of the current run on the external executor, or <code>null</code>.
+     */
+    private ScheduledFuture<?> future;
+
+    /**
+     * The start time of the current run, in nanoseconds of the clock.
+     */
+    private long startTime;
+
+    /**
+     * The number of the tick of the pending or running pass.
+     */
+    private long tick;
+
+    /**
+     * The flag of a pass is running.
+     */
+    private boolean inPass;
+
+    /**
+     * Registers probe, it is due on the next tick. A repeated registration changes the period of the probe
+     * starting from its next run.
+     * @param probe             periodical check
+     * @param period            period, in milliseconds, rounded to whole ticks
+     */
+    public synchronized void schedule(Runnable probe, long period) {
+        long ticks = toTicks(period);
+        Entry entry = find(probe);
+        if (entry != null) {
+            entry.ticks = ticks;
+            return;
+        }
+        if (!isStarted) {
+            add(new Entry(probe, ticks, 0));
+            return;
+        }
+        long due = (clock.nanoTime() - startTime) / tickNanos() + 1;
+        add(new Entry(probe, ticks, due));
+        // wakes the scheduler earlier if it sleeps past the due tick and is not in a pass
+        if (!inPass && due < tick) {
+            if (runner != null) {
+                tick = due;
+                LockSupport.unpark(runner);
+            } else if (future.cancel(false)) {
+                tick = due;
+                future = executor.schedule(this, delay(due), TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Unregisters probe. A pass which is running at the moment may still call it.
+     * @param probe             periodical check
+     */
+    public void cancel(Runnable probe) {
+        synchronized (this) {
+            Entry[] entries = this.entries;
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].probe == probe) {
+                    Entry[] removed = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, removed, 0, i);
+                    System.arraycopy(entries, i + 1, removed, i, removed.length - i);
+                    this.entries = removed;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts ticking. Does nothing if the scheduler is started.
+     */
+    public void start() {
+        synchronized (lifecycleLock) {
+            synchronized (this) {
+                if (isStarted) {
+                    return;
+                }
+                isStarted = true;
+                run++;
+                startTime = clock.nanoTime();
+                tick = 0;
+                for (Entry entry: entries) {
+                    entry.nextTick = 0;
+                }
+                if (externalExecutor != null) {
+                    executor = externalExecutor;
+                    future = executor.schedule(this, 0, TimeUnit.MILLISECONDS);
+                } else {
+                    final long runnerRun = run;
+                    runner = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            tick(runnerRun);
+                        }
+                    }, "MonitorScheduler");
+                    runner.start();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops ticking and waits for the running pass. Does nothing if the scheduler is stopped.
+     */
+    public void stop() {
+        synchronized (lifecycleLock) {
+            Thread stopped;
+            synchronized (this) {
+                if (!isStarted) {
+                    return;
+                }
+                isStarted = false;
+                if (future != null) {
+                    future.cancel(false);
+                    future = null;
+                }
+                executor = null;
+                stopped = runner;
+                runner = null;
+            }
+            if (stopped != null) {
+                // the running pass takes the lock of the state to finish, so it is not held here
+                LockSupport.unpark(stopped);
+                boolean interrupted = false;
+                while (stopped.isAlive()) {
+                    try {
+                        stopped.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the scheduler is ticking.
+     * @return                  state of the scheduler
+     */
+    public synchronized boolean isStarted() {
+        return isStarted;
+    }
+
+    /**
+     * Runs the pass of the external executor and schedules the next one.
+     */
+    @Override
+    public void run() {
+        long passRun;
+        synchronized (this) {
+            if (future == null) {
+                return;
+            }
+            passRun = run;
+        }
+        pass(passRun);
+        synchronized (this) {
+            if (future == null || run != passRun) {
+                return;
+            }
+            future = executor.schedule(this, delay(tick), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Runs the passes of the runner thread until the stop, parks until the due tick between them.
+     * @param runnerRun         number of the run of the runner
+     */
+    private void tick(long runnerRun) {
+        Thread current = Thread.currentThread();
+        while (true) {
+            long delay;
+            synchronized (this) {
+                if (runner != current) {
+                    return;
+                }
+                delay = delay(tick);
+            }
+            if (delay > 0) {
+                // the stop and an earlier due probe unpark the runner
+                LockSupport.parkNanos(this, delay);
+            } else {
+                pass(runnerRun);
+            }
+        }
+    }
+
+    /**
+     * Runs the probes which are due by the current tick and moves the tick to the next due one.
+     * Allocates nothing.
+     */
+    void pass() {
+        long passRun;
+        synchronized (this) {
+            passRun = run;
+        }
+        pass(passRun);
+    }
+
+    /**
+     * Runs pass of the given run, does nothing if another run has started.
+     * @param passRun           number of the run
+     */
+    private void pass(long passRun) {
+        long current;
+        long due;
+        synchronized (this) {
+            if (run != passRun) {
+                return;
+            }
+            current = tick;
+            due = startTime + current * tickNanos();
+            inPass = true;
+        }
+        long passStart = clock.nanoTime();
+        lateness.record(passStart - due);
+        Entry[] entries = this.entries;
+        for (Entry entry: entries) {
+            if (entry.nextTick <= current) {
+                try {
+                    entry.probe.run();
+                } catch (RuntimeException e) {
+                    // a failed probe must not cancel the ticks of the others
+                    failures.increment();
+                    ErrorHandler errorHandler = this.errorHandler;
+                    if (errorHandler != null) {
+                        errorHandler.onError(entry.probe, e);
+                    }
+                }
+                entry.nextTick = current + entry.ticks;
+            }
+        }
+        passLatency.record(clock.nanoTime() - passStart);
+        synchronized (this) {
+            inPass = false;
+            if (run != passRun) {
+                return;
+            }
+            long next = current + 1;
+            entries = this.entries;
+            if (entries.length > 0) {
+                next = Long.MAX_VALUE;
+                for (Entry entry: entries) {
+                    next = Math.min(next, Math.max(entry.nextTick, current + 1));
+                }
+            }
+            tick = next;
+        }
+    }
+
+    /**
+     * Sets period of ticks and returns self object for easy init.
+     * Applied on the next start, periods of registered probes are kept in ticks.
+     * @param tickPeriod        period, in milliseconds
+     * @return                  self object
+     */
+    public MonitorScheduler setTickPeriod(long tickPeriod) {
+        this.tickPeriod = tickPeriod;
+        return this;
+    }
+
+    /**
+     * Sets handler of the failures of probes and returns self object for easy init.
+     * @param errorHandler      handler, or <code>null</code> to only count the failures
+     * @return                  self object
+     */
+    public MonitorScheduler setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    /**
+     * Sets executor to tick on, e.g. one driven by a virtual clock, and returns self object for easy init.
+     * The scheduler does not shut an external executor down.
+     * @param executor          executor, or <code>null</code> to tick on own runner thread
+     * @return                  self object
+     */
+    public MonitorScheduler setExecutor(ScheduledExecutorService executor) {
+        this.externalExecutor = executor;
+        return this;
+    }
+
+    /**
+     * Sets source of time for tick deadlines and returns self object for easy init.
+     * A virtual clock goes together with an executor driven by it.
+     * @param clock             clock
+     * @return                  self object
+     */
+    public MonitorScheduler setClock(Clock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    private long tickNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(tickPeriod);
+    }
+
+    private long delay(long tick) {
+        return Math.max(0, startTime + tick * tickNanos() - clock.nanoTime());
+    }
+
+    private void add(Entry entry) {
+        Entry[] added = new Entry[entries.length + 1];
+        System.arraycopy(entries, 0, added, 0, entries.length);
+        added[entries.length] = entry;
+        entries = added;
+    }
+
+    private Entry find(Runnable probe) {
+        for (Entry entry: entries) {
+            if (entry.probe == probe) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private long toTicks(long period) {
+        return Math.max(1, Math.round((double) period / tickPeriod));
+    }
+}
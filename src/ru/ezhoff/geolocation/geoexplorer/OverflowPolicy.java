@@ -0,0 +1,25 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Behaviour of a bounded buffer when a producer finds it full.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public enum OverflowPolicy {
+
+    /**
+     * The producer waits until the consumer frees a slot. Nothing is lost.
+     */
+    BLOCK,
+
+    /**
+     * The oldest queued record is discarded to make room for the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new record is discarded and only counted.
+     */
+    DROP_NEWEST
+}
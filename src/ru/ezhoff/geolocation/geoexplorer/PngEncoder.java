@@ -0,0 +1,98 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Encoder of RGBA images into PNG files, for the offline tools which run without the imaging libraries
+ * of the platform. The rows are not filtered: the tiles are mostly transparent and runs of one color,
+ * which the deflater packs as well without the filters. The buffers are reused between images.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+final class PngEncoder {
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The raw rows, every one with its filter byte, and the compressed data.
+     */
+    private byte[] raw = new byte[0];
+    private byte[] compressed = new byte[64 * 1024];
+
+    /**
+     * Writes image.
+     * @param pixels            pixels by rows, as <code>0xAARRGGBB</code>
+     * @param width             width
+     * @param height            height
+     * @param out               destination, not closed
+     * @throws IOException      if writing is failed
+     */
+    void encode(int[] pixels, int width, int height, OutputStream out) throws IOException {
+        int rowLength = 1 + 4 * width;
+        if (raw.length < rowLength * height) {
+            raw = new byte[rowLength * height];
+        }
+        int position = 0;
+        for (int y = 0; y < height; y++) {
+            raw[position++] = 0;
+            for (int x = y * width; x < (y + 1) * width; x++) {
+                int pixel = pixels[x];
+                raw[position++] = (byte) (pixel >> 16);
+                raw[position++] = (byte) (pixel >> 8);
+                raw[position++] = (byte) pixel;
+                raw[position++] = (byte) (pixel >>> 24);
+            }
+        }
+        deflater.reset();
+        deflater.setInput(raw, 0, position);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                byte[] grown = new byte[compressed.length * 2];
+                System.arraycopy(compressed, 0, grown, 0, length);
+                compressed = grown;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(SIGNATURE);
+        byte[] header = new byte[13];
+        putInt(header, 0, width);
+        putInt(header, 4, height);
+        header[8] = 8;
+        // the color type of RGBA, the default compression, filtering and no interlace
+        header[9] = 6;
+        chunk(data, "IHDR", header, header.length);
+        chunk(data, "IDAT", compressed, length);
+        chunk(data, "IEND", header, 0);
+        data.flush();
+    }
+
+    private void chunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        crc.reset();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void putInt(byte[] array, int offset, int value) {
+        array[offset] = (byte) (value >>> 24);
+        array[offset + 1] = (byte) (value >>> 16);
+        array[offset + 2] = (byte) (value >>> 8);
+        array[offset + 3] = (byte) value;
+    }
+}
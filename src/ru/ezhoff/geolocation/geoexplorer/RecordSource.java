@@ -0,0 +1,51 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+
+/**
+ * Sequential source of recorded log records: typed samples and text messages.
+ * The current record is valid until the next call of {@link #next()}, samples may be reused,
+ * so a consumer which keeps a sample keeps its {@link Sample#copy()}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public interface RecordSource {
+
+    /**
+     * Reads next record.
+     * @return                  <code>false</code> if the records are over
+     * @throws IOException      if reading is failed
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Returns sample of the current record.
+     * @return                  sample or <code>null</code> for text messages
+     */
+    Sample getSample();
+
+    /**
+     * Returns time of the current record.
+     * @return                  time, in milliseconds
+     */
+    long getTime();
+
+    /**
+     * Returns level of the current record.
+     * @return                  level
+     */
+    String getLevel();
+
+    /**
+     * Returns message of the current text record.
+     * @return                  message or <code>null</code> for samples
+     */
+    String getMessage();
+
+    /**
+     * Closes the source.
+     * @throws IOException      if closing is failed
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,41 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+
+/**
+ * Destination of log records in a certain storage format.
+ * Implementations are not thread safe, callers serialize access.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+interface RecordWriter {
+
+    /**
+     * Writes text message.
+     * @param time              record time, in milliseconds
+     * @param level             record level
+     * @param message           record message
+     * @throws IOException      if writing is failed
+     */
+    void writeMessage(long time, String level, String message) throws IOException;
+
+    /**
+     * Writes typed sample.
+     * @param sample            sample
+     * @throws IOException      if writing is failed
+     */
+    void writeSample(Sample sample) throws IOException;
+
+    /**
+     * Flushes written records to the storage.
+     * @throws IOException      if flushing is failed
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flushes and closes the storage.
+     * @throws IOException      if closing is failed
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,417 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Monitor which replays recorded records of a {@link RecordSource} to the logger instead of reading
+ * the device, e.g. a binary trace by {@link TraceReader} or a text log by {@link TextLogReader}.
+ * Records keep their recorded time and are paced by it: the speed <code>1</code> replays in real time,
+ * greater speeds replay faster and <code>0</code> replays as fast as the logger takes them.
+ * <p>
+ * Records pass the same stages as the samples of the monitors, if the stages are set: fixes go to the fusion
+ * and the simplifier, cell checks go to the change detection and all cell samples to the windowing of signal
+ * strengths, so a recording of raw samples may be replayed with other settings of the stages. A cell check is
+ * taken from its count of neighboring cells, the neighboring cells and the serving cell of the monitor.
+ * The samples which a set stage makes itself, the fused fixes, the dwells, the lost cells and the summaries,
+ * are dropped from the recording.
+ * <p>
+ * The source is closed when the replay is over or stopped, so a monitor is restarted only with a new source.
+ * The monitor replays on its own thread, {@link #run()} replays on the calling one.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class ReplayMonitor implements Monitor, Runnable {
+
+    /**
+     * Main template for module messaging.
+     */
+    private static final String MONITORING_MESSAGE = "ReplayMonitor::%s";
+
+    /**
+     * The logger, taken again on every start since the previous one may be closed.
+     */
+    private volatile FileLogger logger = FileLogger.getInstance();
+
+    /**
+     * The bus of published samples, or <code>null</code> to pass samples to the logger.
+     */
+    private EventBus eventBus;
+
+    /**
+     * The consumer of samples of the current run, the bus or the logger.
+     */
+    private volatile SampleSink sink = logger;
+
+    /**
+     * The consumers of fixes and of cell samples of the current run, the stages or the sink.
+     */
+    private volatile SampleSink locationSink = logger;
+    private volatile SampleSink cellSink = logger;
+
+    /**
+     * The fusion of the replayed fixes, or <code>null</code>.
+     */
+    private LocationFusion fusion;
+
+    /**
+     * The simplifier of the replayed fixes, or <code>null</code> to pass every fix.
+     */
+    private TrajectorySimplifier simplifier;
+
+    /**
+     * The change detection of the replayed cell checks, or <code>null</code> to pass every check in full.
+     */
+    private CellChangeDetector changeDetector;
+
+    /**
+     * The windowing stage of the replayed signal strengths, or <code>null</code> to pass every raw signal sample.
+     */
+    private SignalAggregator signalAggregator;
+
+    /**
+     * The serving cell of the replayed check, reused by every check.
+     */
+    private final CellSnapshot servingSnapshot = new CellSnapshot();
+
+    /**
+     * The flag of a cell check is begun in the change detection and not ended yet.
+     */
+    private boolean isCheckOpen;
+
+    /**
+     * The source of recorded records.
+     */
+    private RecordSource source;
+
+    /**
+     * The replay speed against the recorded time, <code>0</code> for no pacing.
+     */
+    private double speed = 1;
+
+    /**
+     * The thread of the replay, <code>null</code> when the replay is over or stopped.
+     */
+    private volatile Thread thread;
+
+    /**
+     * The flag of the source is replayed and closed.
+     */
+    private volatile boolean isReplayed = false;
+
+    /**
+     * The flag of the replay is stopped.
+     */
+    private volatile boolean isStopped = false;
+
+    /**
+     * The delays of replayed records after their due times.
+     */
+    private final MetricsRegistry.Histogram lateness = MetricsRegistry.getInstance().histogram("ReplayMonitor.lateness");
+
+    /**
+     * The count of replayed records.
+     */
+    private volatile long replayedCount;
+
+    @Override
+    public synchronized void start() {
+        if (source == null || speed < 0) {
+            throw new IllegalMonitorStateException("Monitor is not initialized");
+        }
+        if (thread != null) {
+            return;
+        }
+        if (isReplayed) {
+            throw new IllegalStateException("Source is already replayed");
+        }
+        logger = FileLogger.getInstance();
+        sink = eventBus != null ? eventBus : logger;
+        isStopped = false;
+        replayedCount = 0;
+        thread = new Thread(this, "ReplayMonitor");
+        thread.start();
+        logger.info(formatModuleMessage("Replay monitor is started."));
+    }
+
+    @Override
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = this.thread;
+            if (thread == null) {
+                return;
+            }
+            isStopped = true;
+        }
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        logger.info(formatModuleMessage(String.format("Replay monitor is stopped. Replayed records: %s", replayedCount)));
+    }
+
+    /**
+     * Returns count of replayed records.
+     * @return                  replayed records count
+     */
+    public long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * Returns <code>true</code> if the replay is running.
+     * @return                  state of the replay
+     */
+    public boolean isReplaying() {
+        Thread thread = this.thread;
+        return thread != null && thread.isAlive();
+    }
+
+    @Override
+    public void run() {
+        setUpStages();
+        long firstTime = 0;
+        long startNanos = 0;
+        long count = 0;
+        try {
+            while (!isStopped && source.next()) {
+                Sample sample = source.getSample();
+                long time = source.getTime();
+                if (speed > 0) {
+                    if (count == 0) {
+                        firstTime = time;
+                        startNanos = System.nanoTime();
+                    }
+                    long due = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(time - firstTime) / speed);
+                    long delay = due - System.nanoTime();
+                    if (delay > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                        lateness.record(System.nanoTime() - due);
+                    }
+                }
+                if (sample != null) {
+                    // the source reuses its samples, the logger and the subscribers may keep them in their queues
+                    replay(sample.copy(), time);
+                } else {
+                    // the messages keep their order with the samples on the bus
+                    replay(new MessageSample(time, source.getLevel(), source.getMessage()), time);
+                }
+                replayedCount = ++count;
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (IOException e) {
+            logger.error(formatModuleMessage(String.format("Replay is failed - %s", e)));
+        } finally {
+            flushStages();
+            try {
+                source.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            synchronized (this) {
+                isReplayed = true;
+                if (thread == Thread.currentThread()) {
+                    thread = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes replayed sample through the stages of its kind.
+     * @param sample            sample
+     * @param time              recorded time, in milliseconds
+     */
+    private void replay(Sample sample, long time) {
+        if (simplifier != null) {
+            simplifier.advance(time);
+        }
+        if (signalAggregator != null) {
+            signalAggregator.advance(time);
+        }
+        if (sample instanceof LocationSample) {
+            endCheck();
+            LocationSample fix = (LocationSample) sample;
+            if (fusion != null && LocationFusion.FUSED.equals(fix.getProvider())) {
+                // the fused fixes of the recording are made again by the fusion
+                return;
+            }
+            locationSink.log(fix);
+            if (fusion != null) {
+                fusion.update(fix, time);
+            }
+        } else if (sample instanceof CellSample && changeDetector != null) {
+            replayCheck((CellSample) sample);
+        } else if (sample instanceof CellSample || sample instanceof SignalSample) {
+            endCheck();
+            cellSink.log(sample);
+        } else if (sample instanceof SignalSummarySample && signalAggregator != null
+                || sample instanceof DwellSample && simplifier != null) {
+            // the summaries and the dwells of the recording are made again by the stages
+            endCheck();
+        } else {
+            endCheck();
+            sink.log(sample);
+        }
+    }
+
+    /**
+     * Passes replayed cell sample to the change detection as a part of a check.
+     * @param sample            cell sample
+     */
+    private void replayCheck(CellSample sample) {
+        switch (sample.getKind()) {
+            case CellSample.NEIGHBOR_COUNT:
+                endCheck();
+                changeDetector.begin(sample.getTime(), sample.getCount());
+                isCheckOpen = true;
+                return;
+            case CellSample.NEIGHBOR:
+                if (isCheckOpen) {
+                    changeDetector.neighbor(sample.getCid(), sample.getLac(), sample.getNetworkType(),
+                            sample.getPsc(), sample.getRssi());
+                    return;
+                }
+                break;
+            case CellSample.NEIGHBOR_LOST:
+                // the lost cells of the recording are found again by the change detection
+                return;
+            case CellSample.GSM:
+            case CellSample.CDMA:
+                if (isCheckOpen && sample.getOrigin() == Sample.MONITOR) {
+                    servingSnapshot.set(sample);
+                    changeDetector.serving(servingSnapshot);
+                    endCheck();
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+        endCheck();
+        cellSink.log(sample);
+    }
+
+    private void endCheck() {
+        if (isCheckOpen) {
+            isCheckOpen = false;
+            changeDetector.end();
+        }
+    }
+
+    private void setUpStages() {
+        SampleSink sink = this.sink;
+        cellSink = signalAggregator != null ? signalAggregator.setSink(sink).reset() : sink;
+        if (changeDetector != null) {
+            changeDetector.setSink(cellSink).reset();
+        }
+        isCheckOpen = false;
+        locationSink = simplifier != null ? simplifier.setSink(sink) : sink;
+        if (fusion != null) {
+            fusion.setSink(locationSink).reset();
+        }
+    }
+
+    private void flushStages() {
+        if (changeDetector != null) {
+            endCheck();
+        }
+        if (simplifier != null) {
+            simplifier.flush();
+        }
+        if (signalAggregator != null) {
+            signalAggregator.flush();
+        }
+    }
+
+    /**
+     * Sets fusion of the replayed fixes and returns self object for easy init.
+     * The fused fixes of the recording are dropped, the fusion makes them again.
+     * @param fusion            fusion, or <code>null</code>
+     * @return                  self object
+     */
+    public ReplayMonitor setFusion(LocationFusion fusion) {
+        this.fusion = fusion;
+        return this;
+    }
+
+    /**
+     * Sets simplifier of the replayed fixes and returns self object for easy init.
+     * The fixes of the recording and of the fusion pass the simplifier before the sink.
+     * @param simplifier        simplifier, or <code>null</code> to pass every fix
+     * @return                  self object
+     */
+    public ReplayMonitor setSimplifier(TrajectorySimplifier simplifier) {
+        this.simplifier = simplifier;
+        return this;
+    }
+
+    /**
+     * Sets change detection of the replayed cell checks and returns self object for easy init.
+     * @param changeDetector    change detection, or <code>null</code> to pass every check in full
+     * @return                  self object
+     */
+    public ReplayMonitor setChangeDetector(CellChangeDetector changeDetector) {
+        this.changeDetector = changeDetector;
+        return this;
+    }
+
+    /**
+     * Sets windowing stage of the replayed signal strengths and returns self object for easy init.
+     * The stage takes all cell samples of the replay and passes them on to the bus or the logger.
+     * @param signalAggregator  windowing stage, or <code>null</code> to pass every raw signal sample
+     * @return                  self object
+     */
+    public ReplayMonitor setSignalAggregator(SignalAggregator signalAggregator) {
+        this.signalAggregator = signalAggregator;
+        return this;
+    }
+
+    /**
+     * Sets source of recorded records and returns self object for easy init.
+     * A replayed source is closed, the next start needs a new one.
+     * @param source            source
+     * @return                  self object
+     */
+    public synchronized ReplayMonitor setSource(RecordSource source) {
+        this.source = source;
+        isReplayed = false;
+        return this;
+    }
+
+    /**
+     * Sets replay speed and returns self object for easy init.
+     * @param speed             speed against the recorded time, <code>0</code> for no pacing
+     * @return                  self object
+     */
+    public ReplayMonitor setSpeed(double speed) {
+        this.speed = speed;
+        return this;
+    }
+
+    /**
+     * Sets bus of published samples and returns self object for easy init.
+     * Without the bus samples are passed to the logger.
+     * @param eventBus          event bus
+     * @return                  self object
+     */
+    public ReplayMonitor setEventBus(EventBus eventBus) {
+        this.eventBus = eventBus;
+        return this;
+    }
+
+    private String formatModuleMessage(String message) {
+        return String.format(MONITORING_MESSAGE, message);
+    }
+}
@@ -0,0 +1,430 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Read-only road graph for map matching, loaded from an OSM XML extract.
+ * <p>
+ * The ways with a <code>highway</code> tag of a road for vehicles are split into segments between
+ * consecutive nodes, roads are taken as two-way. Nodes are in local plane coordinates in meters from
+ * the center of the extract, which is exact enough for the extract of a city. The adjacency is in
+ * the compressed sparse row layout: the edges of a node are the range of its first edge and the first
+ * edge of the next node, every edge has its target node and its segment. Segments are indexed by a grid
+ * of square cells: a cell lists the segments whose bounding box crosses it. The graph is a set of
+ * primitive arrays, it is shared by any number of matching threads.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class RoadGraph {
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The side of a grid cell, in meters.
+     */
+    static final double CELL_SIZE = 100;
+
+    /**
+     * The values of the <code>highway</code> tag which are not roads for vehicles.
+     */
+    private static final String[] NOT_ROADS = {
+            "footway", "path", "cycleway", "steps", "pedestrian", "bridleway", "corridor",
+            "proposed", "construction", "platform", "elevator", "bus_stop"
+    };
+
+    /**
+     * The center of the extract and the length of a degree of longitude there.
+     */
+    final double originLatitude;
+    final double originLongitude;
+    final double metersPerLongitude;
+
+    /**
+     * The nodes: the OSM ids and the plane coordinates.
+     */
+    final int nodeCount;
+    final long[] nodeIds;
+    final float[] nodeX;
+    final float[] nodeY;
+
+    /**
+     * The adjacency: the first edge of every node and one more entry, the target node and the segment of every edge.
+     */
+    final int[] firstEdge;
+    final int[] edgeTarget;
+    final int[] edgeSegment;
+
+    /**
+     * The segments: the end nodes, the length in meters and the OSM id of the way.
+     */
+    final int segmentCount;
+    final int[] segmentFrom;
+    final int[] segmentTo;
+    final float[] segmentLength;
+    final long[] segmentWay;
+
+    /**
+     * The grid: the index of a cell by its key, the first entry of every cell and one more,
+     * the segments of the entries.
+     */
+    final LongIntMap cells;
+    int[] cellStart;
+    int[] cellSegments;
+
+    /**
+     * Builder of a graph from nodes and ways, in any order.
+     */
+    static final class Builder {
+        private final LongIntMap nodeIndexes = new LongIntMap(1024);
+        private long[] ids = new long[1024];
+        private double[] latitudes = new double[1024];
+        private double[] longitudes = new double[1024];
+        private int nodeCount;
+
+        /**
+         * The node references of all ways in a row, the first reference and the id of every way.
+         */
+        private long[] refs = new long[4096];
+        private int refCount;
+        private int[] wayStart = new int[256];
+        private long[] wayIds = new long[256];
+        private int wayCount;
+
+        void addNode(long id, double latitude, double longitude) {
+            if (nodeCount == ids.length) {
+                ids = grow(ids);
+                latitudes = grow(latitudes);
+                longitudes = grow(longitudes);
+            }
+            ids[nodeCount] = id;
+            latitudes[nodeCount] = latitude;
+            longitudes[nodeCount] = longitude;
+            nodeIndexes.put(id, nodeCount++);
+        }
+
+        void addWay(long id, long[] nodes, int count) {
+            if (wayCount + 1 >= wayStart.length) {
+                wayStart = grow(wayStart);
+                wayIds = grow(wayIds);
+            }
+            while (refCount + count > refs.length) {
+                refs = grow(refs);
+            }
+            System.arraycopy(nodes, 0, refs, refCount, count);
+            wayStart[wayCount] = refCount;
+            wayIds[wayCount++] = id;
+            refCount += count;
+            wayStart[wayCount] = refCount;
+        }
+
+        RoadGraph build() {
+            // the nodes of the roads only, in the order of their first use
+            int[] index = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                index[i] = -1;
+            }
+            int usedCount = 0;
+            int segmentCount = 0;
+            for (int way = 0; way < wayCount; way++) {
+                int previous = -1;
+                for (int ref = wayStart[way]; ref < wayStart[way + 1]; ref++) {
+                    int node = nodeIndexes.get(refs[ref]);
+                    if (node == LongIntMap.ABSENT) {
+                        // the extract is cut at its border
+                        previous = -1;
+                        continue;
+                    }
+                    if (index[node] < 0) {
+                        index[node] = usedCount++;
+                    }
+                    if (previous >= 0 && previous != node) {
+                        segmentCount++;
+                    }
+                    previous = node;
+                }
+            }
+            double south = Double.MAX_VALUE;
+            double north = -Double.MAX_VALUE;
+            double west = Double.MAX_VALUE;
+            double east = -Double.MAX_VALUE;
+            for (int node = 0; node < nodeCount; node++) {
+                if (index[node] >= 0) {
+                    south = Math.min(south, latitudes[node]);
+                    north = Math.max(north, latitudes[node]);
+                    west = Math.min(west, longitudes[node]);
+                    east = Math.max(east, longitudes[node]);
+                }
+            }
+            RoadGraph graph = new RoadGraph(usedCount, segmentCount,
+                    usedCount == 0 ? 0 : (south + north) / 2, usedCount == 0 ? 0 : (west + east) / 2);
+            for (int node = 0; node < nodeCount; node++) {
+                int used = index[node];
+                if (used >= 0) {
+                    graph.nodeIds[used] = ids[node];
+                    graph.nodeX[used] = (float) graph.toX(longitudes[node]);
+                    graph.nodeY[used] = (float) graph.toY(latitudes[node]);
+                }
+            }
+            int segment = 0;
+            for (int way = 0; way < wayCount; way++) {
+                int previous = -1;
+                for (int ref = wayStart[way]; ref < wayStart[way + 1]; ref++) {
+                    int node = nodeIndexes.get(refs[ref]);
+                    if (node == LongIntMap.ABSENT) {
+                        previous = -1;
+                        continue;
+                    }
+                    int used = index[node];
+                    if (previous >= 0 && previous != used) {
+                        graph.segmentFrom[segment] = previous;
+                        graph.segmentTo[segment] = used;
+                        graph.segmentWay[segment] = wayIds[way];
+                        graph.segmentLength[segment] = (float) Math.hypot(
+                                graph.nodeX[used] - graph.nodeX[previous], graph.nodeY[used] - graph.nodeY[previous]);
+                        segment++;
+                    }
+                    previous = used;
+                }
+            }
+            graph.index();
+            return graph;
+        }
+    }
+
+    private RoadGraph(int nodeCount, int segmentCount, double originLatitude, double originLongitude) {
+        this.originLatitude = originLatitude;
+        this.originLongitude = originLongitude;
+        metersPerLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(originLatitude));
+        this.nodeCount = nodeCount;
+        nodeIds = new long[nodeCount];
+        nodeX = new float[nodeCount];
+        nodeY = new float[nodeCount];
+        firstEdge = new int[nodeCount + 1];
+        edgeTarget = new int[2 * segmentCount];
+        edgeSegment = new int[2 * segmentCount];
+        this.segmentCount = segmentCount;
+        segmentFrom = new int[segmentCount];
+        segmentTo = new int[segmentCount];
+        segmentLength = new float[segmentCount];
+        segmentWay = new long[segmentCount];
+        cells = new LongIntMap(Math.max(16, segmentCount));
+    }
+
+    /**
+     * Loads roads of an OSM XML extract.
+     * @param path              OSM XML file
+     * @return                  graph
+     * @throws IOException      if the file can not be read or parsed
+     */
+    public static RoadGraph load(File path) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(path));
+        try {
+            return load(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Loads roads of an OSM XML extract.
+     * @param in                OSM XML
+     * @return                  graph
+     * @throws IOException      if the stream can not be read or parsed
+     */
+    public static RoadGraph load(InputStream in) throws IOException {
+        final Builder builder = new Builder();
+        try {
+            SAXParserFactory.newInstance().newSAXParser().parse(in, new DefaultHandler() {
+                private long wayId = -1;
+                private long[] wayNodes = new long[64];
+                private int wayNodeCount;
+                private boolean isRoad;
+
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("node".equals(qName)) {
+                        builder.addNode(Long.parseLong(attributes.getValue("id")),
+                                Double.parseDouble(attributes.getValue("lat")),
+                                Double.parseDouble(attributes.getValue("lon")));
+                    } else if ("way".equals(qName)) {
+                        wayId = Long.parseLong(attributes.getValue("id"));
+                        wayNodeCount = 0;
+                        isRoad = false;
+                    } else if (wayId >= 0 && "nd".equals(qName)) {
+                        if (wayNodeCount == wayNodes.length) {
+                            wayNodes = grow(wayNodes);
+                        }
+                        wayNodes[wayNodeCount++] = Long.parseLong(attributes.getValue("ref"));
+                    } else if (wayId >= 0 && "tag".equals(qName) && "highway".equals(attributes.getValue("k"))) {
+                        isRoad = isRoad(attributes.getValue("v"));
+                    }
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) {
+                    if ("way".equals(qName)) {
+                        if (isRoad) {
+                            builder.addWay(wayId, wayNodes, wayNodeCount);
+                        }
+                        wayId = -1;
+                    }
+                }
+            });
+        } catch (SAXException e) {
+            throw new IOException("Wrong OSM file: " + e.getMessage());
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException(e);
+        } catch (NumberFormatException e) {
+            throw new IOException("Wrong OSM file: " + e.getMessage());
+        }
+        return builder.build();
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Returns plane coordinate of the longitude.
+     * @param longitude         longitude, in degrees
+     * @return                  coordinate, in meters to the east of the center
+     */
+    double toX(double longitude) {
+        return (longitude - originLongitude) * metersPerLongitude;
+    }
+
+    /**
+     * Returns plane coordinate of the latitude.
+     * @param latitude          latitude, in degrees
+     * @return                  coordinate, in meters to the north of the center
+     */
+    double toY(double latitude) {
+        return (latitude - originLatitude) * METERS_PER_DEGREE;
+    }
+
+    double toLongitude(double x) {
+        return originLongitude + x / metersPerLongitude;
+    }
+
+    double toLatitude(double y) {
+        return originLatitude + y / METERS_PER_DEGREE;
+    }
+
+    /**
+     * Returns key of the grid cell of the given cell coordinates.
+     */
+    static long cellKey(int cellX, int cellY) {
+        return (long) cellX << 32 | cellY & 0xFFFFFFFFL;
+    }
+
+    static int cell(double coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    /**
+     * Builds the adjacency and the grid, the segments are set.
+     */
+    private void index() {
+        for (int segment = 0; segment < segmentCount; segment++) {
+            firstEdge[segmentFrom[segment] + 1]++;
+            firstEdge[segmentTo[segment] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            firstEdge[node + 1] += firstEdge[node];
+        }
+        int[] next = new int[nodeCount];
+        System.arraycopy(firstEdge, 0, next, 0, nodeCount);
+        for (int segment = 0; segment < segmentCount; segment++) {
+            int from = segmentFrom[segment];
+            int to = segmentTo[segment];
+            edgeTarget[next[from]] = to;
+            edgeSegment[next[from]++] = segment;
+            edgeTarget[next[to]] = from;
+            edgeSegment[next[to]++] = segment;
+        }
+        // the cells are counted first, then filled, as the adjacency
+        int cellCount = 0;
+        int[] counts = new int[16];
+        for (int pass = 0; pass < 2; pass++) {
+            for (int segment = 0; segment < segmentCount; segment++) {
+                int from = segmentFrom[segment];
+                int to = segmentTo[segment];
+                int x1 = cell(Math.min(nodeX[from], nodeX[to]));
+                int x2 = cell(Math.max(nodeX[from], nodeX[to]));
+                int y1 = cell(Math.min(nodeY[from], nodeY[to]));
+                int y2 = cell(Math.max(nodeY[from], nodeY[to]));
+                for (int x = x1; x <= x2; x++) {
+                    for (int y = y1; y <= y2; y++) {
+                        long key = cellKey(x, y);
+                        int cell = cells.get(key);
+                        if (pass == 0) {
+                            if (cell == LongIntMap.ABSENT) {
+                                cell = cellCount++;
+                                cells.put(key, cell);
+                                if (cell == counts.length) {
+                                    counts = grow(counts);
+                                }
+                            }
+                            counts[cell]++;
+                        } else {
+                            cellSegments[cellStart[cell] + counts[cell]++] = segment;
+                        }
+                    }
+                }
+            }
+            if (pass == 0) {
+                cellStart = new int[cellCount + 1];
+                for (int cell = 0; cell < cellCount; cell++) {
+                    cellStart[cell + 1] = cellStart[cell] + counts[cell];
+                    counts[cell] = 0;
+                }
+                cellSegments = new int[cellStart[cellCount]];
+            }
+        }
+    }
+
+    private static long[] grow(long[] array) {
+        long[] grown = new long[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static double[] grow(double[] array) {
+        double[] grown = new double[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+
+    private static boolean isRoad(String highway) {
+        if (highway == null) {
+            return false;
+        }
+        for (String notRoad: NOT_ROADS) {
+            if (notRoad.equals(highway)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Typed record of one observation made by a monitor.
+ * Samples are written to the log as fixed-layout binary records or rendered to the text lines
+ * of the log file, so monitors do not format messages themselves.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public abstract class Sample implements Cloneable {
+
+    /**
+     * The origin of samples received by a listener callback.
+     */
+    public static final int LISTENER = 0;
+
+    /**
+     * The origin of samples obtained by a periodical check.
+     */
+    public static final int MONITOR = 1;
+
+    /**
+     * The time of the sample, in milliseconds.
+     */
+    long time;
+
+    /**
+     * The name of the sample source, e.g. location provider, or <code>null</code>.
+     */
+    String source;
+
+    /**
+     * Returns time of the sample.
+     * @return                  time, in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns name of the sample source.
+     * @return                  source name or <code>null</code>
+     */
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns copy of the sample.
+     * @return                  copy
+     */
+    public Sample copy() {
+        try {
+            return (Sample) clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns name of the monitor which the message of the sample starts with in the text log.
+     * @return                  monitor name, e.g. <code>"CellMonitor"</code>, or <code>null</code> for a text message
+     */
+    abstract String getMonitorName();
+
+    /**
+     * Returns type of the binary record.
+     * @return                  record type
+     */
+    abstract int getType();
+
+    /**
+     * Writes fields of the sample in the fixed layout of its record type.
+     * @param out               destination
+     * @throws IOException      if writing is failed
+     */
+    abstract void writeFields(DataOutput out) throws IOException;
+
+    /**
+     * Reads fields of the sample in the fixed layout of its record type.
+     * @param in                source
+     * @throws IOException      if reading is failed
+     */
+    abstract void readFields(DataInput in) throws IOException;
+
+    /**
+     * Appends message of the sample as it looks in the text log.
+     * @param builder           destination
+     */
+    abstract void appendMessage(StringBuilder builder);
+
+    static String originName(int origin) {
+        return origin == LISTENER ? "Listener" : "Monitor";
+    }
+}
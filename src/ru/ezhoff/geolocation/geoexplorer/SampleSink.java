@@ -0,0 +1,16 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Consumer of typed samples.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public interface SampleSink {
+
+    /**
+     * Takes sample.
+     * @param sample            sample
+     */
+    void log(Sample sample);
+}
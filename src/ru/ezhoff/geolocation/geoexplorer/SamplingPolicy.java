@@ -0,0 +1,20 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+/**
+ * Policy of the sampling interval of an {@link AdaptiveSampler}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public interface SamplingPolicy {
+
+    /**
+     * Returns interval until the next sample. The sampler clamps it to its bounds.
+     * @param interval          current interval, in milliseconds
+     * @param minInterval       least interval, in milliseconds
+     * @param activity          activity shown by the last sample: <code>0</code> for no change,
+     *                          <code>1</code> and more for a significant one
+     * @return                  next interval, in milliseconds
+     */
+    long nextInterval(long interval, long minInterval, double activity);
+}
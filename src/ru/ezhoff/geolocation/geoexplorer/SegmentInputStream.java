@@ -0,0 +1,109 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Stream of the record payloads of a {@link SegmentedLogStore} directory.
+ * Segments are read in order, every segment up to its last record with a valid checksum.
+ * For a store written by {@link SegmentedRecordWriter} the stream is a binary trace for {@link TraceReader}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SegmentInputStream extends InputStream {
+
+    /**
+     * The segment files.
+     */
+    private final File[] segments;
+
+    /**
+     * The index of the next segment.
+     */
+    private int next;
+
+    /**
+     * The mapped current segment.
+     */
+    private ByteBuffer segment;
+
+    /**
+     * The bytes left in the current record.
+     */
+    private int left;
+
+    /**
+     * The checksum calculator.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Creates stream.
+     * @param directory         directory of segments
+     */
+    public SegmentInputStream(File directory) {
+        segments = SegmentedLogStore.listSegments(directory);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!nextRecord()) {
+            return -1;
+        }
+        left--;
+        return segment.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (!nextRecord()) {
+            return -1;
+        }
+        int count = Math.min(length, left);
+        segment.get(bytes, offset, count);
+        left -= count;
+        return count;
+    }
+
+    private boolean nextRecord() throws IOException {
+        while (left == 0) {
+            if (segment != null) {
+                left = SegmentedLogStore.nextRecord(segment, crc);
+                if (left > 0) {
+                    return true;
+                }
+                left = 0;
+                segment = null;
+            }
+            if (next == segments.length) {
+                return false;
+            }
+            segment = map(segments[next++]);
+        }
+        return true;
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile segmentFile = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segmentFile.length());
+            if (segment.remaining() < SegmentedLogStore.HEADER_SIZE
+                    || segment.getInt(0) != SegmentedLogStore.MAGIC) {
+                throw new IOException("Not a segment file: " + file);
+            }
+            segment.position(SegmentedLogStore.HEADER_SIZE);
+            return segment;
+        } finally {
+            segmentFile.close();
+        }
+    }
+}
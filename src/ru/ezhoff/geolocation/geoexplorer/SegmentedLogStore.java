@@ -0,0 +1,343 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store of records in memory-mapped segment files.
+ * <p>
+ * Every segment is a file of a fixed size allocated and mapped at creation, so an append is a memory copy.
+ * A segment starts with a header: magic <code>GESG</code>, version and creation time. Records follow as
+ * length, CRC32 of the payload and the payload; the length is written last, and a zero length marks the end.
+ * Segments are rotated when full or older than the rotation interval, the oldest ones are deleted over the
+ * retention limit. On open the last segment is scanned up to the last record with a valid checksum,
+ * so a crash loses at most the record being written.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SegmentedLogStore {
+
+    /**
+     * The magic number of a segment, <code>GESG</code>.
+     */
+    static final int MAGIC = 0x47455347;
+
+    /**
+     * The current segment version.
+     */
+    static final int VERSION = 1;
+
+    /**
+     * The size of a segment header.
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of a record frame before the payload.
+     */
+    static final int FRAME_SIZE = 8;
+
+    /**
+     * The file name prefix of segments.
+     */
+    static final String PREFIX = "explorer-";
+
+    /**
+     * The file name suffix of segments.
+     */
+    static final String SUFFIX = ".seg";
+
+    /**
+     * The size of a segment file, in bytes.
+     */
+    private int segmentSize = 4 * 1024 * 1024;
+
+    /**
+     * The longest life of a segment, in milliseconds. <code>0</code> switches time rotation off.
+     */
+    private long rotationInterval = 0;
+
+    /**
+     * The most count of kept segments. <code>0</code> keeps all.
+     */
+    private int maxSegments = 0;
+
+    /**
+     * The directory of segments.
+     */
+    private File directory;
+
+    /**
+     * The sequence number of the current segment.
+     */
+    private long sequence;
+
+    /**
+     * The creation time of the current segment.
+     */
+    private long segmentTime;
+
+    /**
+     * The file of the current segment.
+     */
+    private RandomAccessFile file;
+
+    /**
+     * The mapped current segment.
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * The checksum calculator.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens store in the given directory and recovers the tail of the last segment.
+     * @param directory         directory of segments, created if absent
+     * @throws IOException      if the store can not be opened
+     */
+    public void open(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Can not create directory " + directory);
+        }
+        this.directory = directory;
+        File[] segments = listSegments(directory);
+        if (segments.length == 0) {
+            createSegment(1);
+            return;
+        }
+        File last = segments[segments.length - 1];
+        long lastSequence = parseSequence(last);
+        if (last.length() != segmentSize) {
+            createSegment(lastSequence + 1);
+            return;
+        }
+        map(last);
+        sequence = lastSequence;
+        if (buffer.getInt(0) != MAGIC || buffer.getShort(4) > VERSION) {
+            close();
+            createSegment(lastSequence + 1);
+            return;
+        }
+        segmentTime = buffer.getLong(8);
+        recover();
+    }
+
+    /**
+     * Returns <code>true</code> if a record of the given size does not fit into the current segment
+     * or the segment is too old, so the next append starts a new segment.
+     * @param length            payload length
+     * @return                  <code>true</code> if the segment will be rotated
+     */
+    public boolean needsRotation(int length) {
+        return buffer.remaining() < FRAME_SIZE + length
+                || rotationInterval > 0 && System.currentTimeMillis() - segmentTime >= rotationInterval;
+    }
+
+    /**
+     * Closes the current segment and starts a new one.
+     * @throws IOException      if the segment can not be created
+     */
+    public void rotate() throws IOException {
+        long next = sequence + 1;
+        close();
+        createSegment(next);
+        applyRetention();
+    }
+
+    /**
+     * Appends record. The caller rotates the store beforehand if {@link #needsRotation(int)} says so.
+     * @param payload           record bytes
+     * @param offset            offset of the record
+     * @param length            length of the record
+     * @throws IOException      if the record does not fit into the segment
+     */
+    public void append(byte[] payload, int offset, int length) throws IOException {
+        if (buffer.remaining() < FRAME_SIZE + length) {
+            throw new IOException("Record of " + length + " bytes does not fit into the segment");
+        }
+        int position = buffer.position();
+        crc.reset();
+        crc.update(payload, offset, length);
+        buffer.position(position + FRAME_SIZE);
+        buffer.put(payload, offset, length);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, length);
+    }
+
+    /**
+     * Writes mapped pages of the current segment to the storage.
+     */
+    public void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces and closes the current segment.
+     * @throws IOException      if closing is failed
+     */
+    public void close() throws IOException {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        if (file != null) {
+            file.close();
+            file = null;
+        }
+    }
+
+    /**
+     * Returns directory of segments.
+     * @return                  directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns largest payload which fits into an empty segment.
+     * @return                  length, in bytes
+     */
+    public int getMaxRecordLength() {
+        return segmentSize - HEADER_SIZE - FRAME_SIZE;
+    }
+
+    /**
+     * Sets size of segment files and returns self object for easy init.
+     * @param segmentSize       size, in bytes
+     * @return                  self object
+     */
+    public SegmentedLogStore setSegmentSize(int segmentSize) {
+        this.segmentSize = segmentSize;
+        return this;
+    }
+
+    /**
+     * Sets longest life of a segment and returns self object for easy init.
+     * @param rotationInterval  interval, in milliseconds, <code>0</code> switches time rotation off
+     * @return                  self object
+     */
+    public SegmentedLogStore setRotationInterval(long rotationInterval) {
+        this.rotationInterval = rotationInterval;
+        return this;
+    }
+
+    /**
+     * Sets most count of kept segments and returns self object for easy init.
+     * @param maxSegments       segments count, <code>0</code> keeps all
+     * @return                  self object
+     */
+    public SegmentedLogStore setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+        return this;
+    }
+
+    /**
+     * Lists segment files of the directory in order of sequence numbers.
+     * @param directory         directory of segments
+     * @return                  segment files
+     */
+    static File[] listSegments(File directory) {
+        File[] segments = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName();
+                return file.isFile() && name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        });
+        if (segments == null) {
+            return new File[0];
+        }
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Reads next valid record of a mapped segment.
+     * @param segment           segment positioned at a record
+     * @param crc               checksum calculator
+     * @return                  payload length, or <code>-1</code> at the end of valid records;
+     *                          the segment is positioned at the payload
+     */
+    static int nextRecord(ByteBuffer segment, CRC32 crc) {
+        int position = segment.position();
+        if (segment.remaining() < FRAME_SIZE) {
+            return -1;
+        }
+        int length = segment.getInt(position);
+        if (length <= 0 || length > segment.remaining() - FRAME_SIZE) {
+            return -1;
+        }
+        crc.reset();
+        for (int i = position + FRAME_SIZE, end = position + FRAME_SIZE + length; i < end; i++) {
+            crc.update(segment.get(i));
+        }
+        if ((int) crc.getValue() != segment.getInt(position + 4)) {
+            return -1;
+        }
+        segment.position(position + FRAME_SIZE);
+        return length;
+    }
+
+    private void recover() {
+        buffer.position(HEADER_SIZE);
+        int length;
+        while ((length = nextRecord(buffer, crc)) >= 0) {
+            buffer.position(buffer.position() + length);
+        }
+        // a torn record is overwritten by the next append, its frame is wiped so it never passes for valid
+        int position = buffer.position();
+        if (buffer.remaining() >= FRAME_SIZE) {
+            buffer.putLong(position, 0);
+        }
+    }
+
+    private void createSegment(long sequence) throws IOException {
+        File segment = new File(directory, String.format("%s%016d%s", PREFIX, sequence, SUFFIX));
+        map(segment);
+        this.sequence = sequence;
+        segmentTime = System.currentTimeMillis();
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) 0);
+        buffer.putLong(segmentTime);
+    }
+
+    private void map(File segment) throws IOException {
+        file = new RandomAccessFile(segment, "rw");
+        file.setLength(segmentSize);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private void applyRetention() {
+        if (maxSegments <= 0) {
+            return;
+        }
+        File[] segments = listSegments(directory);
+        for (int i = 0; i < segments.length - maxSegments; i++) {
+            segments[i].delete();
+        }
+    }
+
+    /**
+     * Returns sequence number of a segment file.
+     * @param segment           segment file
+     * @return                  sequence number
+     */
+    static long parseSequence(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+}
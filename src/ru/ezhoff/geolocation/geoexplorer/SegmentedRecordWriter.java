@@ -0,0 +1,93 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Writer of records in the binary trace format into a {@link SegmentedLogStore}.
+ * Every record is encoded into a reusable buffer and appended to the store as one checksummed frame.
+ * Every segment starts with its own trace header, so segments are readable on their own.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class SegmentedRecordWriter implements RecordWriter {
+
+    /**
+     * Byte array stream which exposes its buffer.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        RecordBuffer() {
+            super(256);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * The destination store.
+     */
+    private final SegmentedLogStore store;
+
+    /**
+     * The buffer of the encoded record.
+     */
+    private final RecordBuffer buffer = new RecordBuffer();
+
+    /**
+     * The encoder of the current segment.
+     */
+    private BinaryTraceWriter encoder;
+
+    /**
+     * Creates writer.
+     * @param store             opened store
+     * @throws IOException      if writing is failed
+     */
+    SegmentedRecordWriter(SegmentedLogStore store) throws IOException {
+        this.store = store;
+        encoder = new BinaryTraceWriter(buffer);
+    }
+
+    @Override
+    public void writeMessage(long time, String level, String message) throws IOException {
+        encoder.writeMessage(time, level, message);
+        append(time, level, message, null);
+    }
+
+    @Override
+    public void writeSample(Sample sample) throws IOException {
+        encoder.writeSample(sample);
+        append(0, null, null, sample);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        store.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        store.close();
+    }
+
+    private void append(long time, String level, String message, Sample sample) throws IOException {
+        encoder.flush();
+        if (store.needsRotation(buffer.size())) {
+            store.rotate();
+            buffer.reset();
+            encoder = new BinaryTraceWriter(buffer);
+            if (sample == null) {
+                encoder.writeMessage(time, level, message);
+            } else {
+                encoder.writeSample(sample);
+            }
+            encoder.flush();
+        }
+        store.append(buffer.array(), 0, buffer.size());
+        buffer.reset();
+    }
+}
@@ -0,0 +1,244 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Exporter of the collection sessions of a recording into columnar files for analytics.
+ * Usage: <code>SessionExporter explorer.log|explorer.trace|explorer.log.gxz|explorer output-directory</code>
+ * <p>
+ * A session is bracketed by the activation and the deactivation messages of the collection,
+ * a new activation or the end of the recording ends an unfinished one. Every session is written into
+ * <code>session-yyyyMMdd-HHmmss.gxc</code> by {@link ColumnarSessionWriter}, a row per fix, cell
+ * observation, signal strength and user marker.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SessionExporter {
+
+    static final String ACTIVATED = "Monitoring is activated.";
+    static final String DEACTIVATED = "Monitoring is deactivated.";
+    static final String MARKER = "MARKER";
+
+    private static final String OPERATOR_PREFIX = "Operator Numeric: ";
+
+    /**
+     * The count of rows of a group of the columnar files.
+     */
+    private int groupSize = ColumnarSessionWriter.GROUP_SIZE;
+
+    /**
+     * The writer of the current session, or <code>null</code> between sessions.
+     */
+    private ColumnarSessionWriter writer;
+
+    /**
+     * The last fix of the session.
+     */
+    private double latitude;
+    private double longitude;
+    private float accuracy;
+    private String provider;
+
+    /**
+     * The last serving cell of the session, its signal and operator.
+     */
+    private int servingCid;
+    private int servingLac;
+    private int servingRssi;
+    private String operator;
+
+    /**
+     * Exports sessions of the recording.
+     * @param source            recording, closed at the end
+     * @param directory         directory of the columnar files
+     * @return                  written files
+     * @throws IOException      if reading or writing is failed
+     */
+    public List<File> export(RecordSource source, File directory) throws IOException {
+        List<File> files = new ArrayList<File>();
+        try {
+            while (source.next()) {
+                Sample sample = source.getSample();
+                if (sample == null) {
+                    String message = source.getMessage();
+                    if (ACTIVATED.equals(message)) {
+                        endSession();
+                        String name = String.format("session-%1$tY%1$tm%1$td-%1$tH%1$tM%1$tS", source.getTime());
+                        File file = new File(directory, name + ".gxc");
+                        // sessions of the same second
+                        for (int i = 2; files.contains(file); i++) {
+                            file = new File(directory, name + "-" + i + ".gxc");
+                        }
+                        startSession(file);
+                        files.add(file);
+                    } else if (writer != null) {
+                        exportMessage(source.getTime(), source.getLevel(), message);
+                        if (DEACTIVATED.equals(message)) {
+                            endSession();
+                        }
+                    }
+                } else if (writer != null) {
+                    exportSample(sample);
+                }
+            }
+        } finally {
+            try {
+                endSession();
+            } finally {
+                source.close();
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Sets count of rows of a group of the columnar files and returns self object for easy init.
+     * @param groupSize         count of rows
+     * @return                  self object
+     */
+    public SessionExporter setGroupSize(int groupSize) {
+        this.groupSize = groupSize;
+        return this;
+    }
+
+    private void startSession(File file) throws IOException {
+        writer = new ColumnarSessionWriter(file, groupSize);
+        latitude = 0;
+        longitude = 0;
+        accuracy = 0;
+        provider = null;
+        servingCid = 0;
+        servingLac = 0;
+        servingRssi = CoverageIndex.UNKNOWN_RSSI;
+        operator = null;
+    }
+
+    private void endSession() throws IOException {
+        if (writer != null) {
+            ColumnarSessionWriter closed = writer;
+            writer = null;
+            closed.close();
+        }
+    }
+
+    private void exportMessage(long time, String level, String message) throws IOException {
+        if (MARKER.equals(message) && FileLogger.WARN.equals(level)) {
+            row(ColumnarSessionReader.MARKER, time, servingCid, servingLac, servingRssi);
+            return;
+        }
+        operator = parseOperator(message, operator);
+    }
+
+    private void exportSample(Sample sample) throws IOException {
+        if (sample instanceof LocationSample) {
+            LocationSample fix = (LocationSample) sample;
+            latitude = fix.latitude;
+            longitude = fix.longitude;
+            accuracy = fix.accuracy;
+            provider = fix.source;
+            row(ColumnarSessionReader.FIX, fix.time, servingCid, servingLac, servingRssi);
+        } else if (sample instanceof DwellSample) {
+            DwellSample dwell = (DwellSample) sample;
+            latitude = dwell.latitude;
+            longitude = dwell.longitude;
+            accuracy = dwell.accuracy;
+            provider = dwell.source;
+            row(ColumnarSessionReader.FIX, dwell.time, servingCid, servingLac, servingRssi);
+        } else if (sample instanceof CellSample) {
+            CellSample cell = (CellSample) sample;
+            switch (cell.kind) {
+                case CellSample.NEIGHBOR:
+                    row(ColumnarSessionReader.NEIGHBOR, cell.time, cell.cid, cell.lac, cell.rssi);
+                    break;
+                case CellSample.NEIGHBOR_LOST:
+                    row(ColumnarSessionReader.NEIGHBOR_LOST, cell.time, cell.cid, cell.lac, CoverageIndex.UNKNOWN_RSSI);
+                    break;
+                case CellSample.GSM:
+                case CellSample.CDMA:
+                    if (cell.cid != servingCid || cell.lac != servingLac) {
+                        servingRssi = CoverageIndex.UNKNOWN_RSSI;
+                    }
+                    servingCid = cell.cid;
+                    servingLac = cell.lac;
+                    row(ColumnarSessionReader.SERVING, cell.time, servingCid, servingLac, servingRssi);
+                    break;
+                default:
+                    break;
+            }
+        } else if (sample instanceof SignalSample) {
+            SignalSample signal = (SignalSample) sample;
+            servingRssi = signal.kind == SignalSample.ASU || signal.gsm ? signal.gsmSignalStrength : signal.cdmaDbm;
+            row(ColumnarSessionReader.SIGNAL, signal.time, servingCid, servingLac, servingRssi);
+        }
+    }
+
+    private void row(int kind, long time, int cid, int lac, int rssi) throws IOException {
+        writer.row(kind, time, latitude, longitude, accuracy, provider, cid, lac, rssi, operator);
+    }
+
+    /**
+     * Returns operator of the service state message of {@link CellMonitor}.
+     * @param message           text message
+     * @param operator          current operator
+     * @return                  numeric operator of the message or <code>null</code> if it has none,
+     *                          the current operator if the message is not a service state
+     */
+    static String parseOperator(String message, String operator) {
+        int start = message.indexOf(OPERATOR_PREFIX);
+        if (start < 0) {
+            return operator;
+        }
+        start += OPERATOR_PREFIX.length();
+        int end = message.indexOf(',', start);
+        String numeric = end < 0 ? message.substring(start) : message.substring(start, end);
+        return "null".equals(numeric) || numeric.length() == 0 ? null : numeric;
+    }
+
+    /**
+     * Opens recording of the given path: a compressed log with the <code>.gxz</code> extension,
+     * a text log with the <code>.log</code> extension, a directory of trace segments or a binary trace file.
+     * @param path              recording path
+     * @return                  source of the records
+     * @throws IOException      if the recording can not be opened
+     */
+    static RecordSource open(File path) throws IOException {
+        if (path.isDirectory()) {
+            return new TraceReader(new BufferedInputStream(new SegmentInputStream(path)));
+        }
+        if (path.getName().endsWith(FileLogger.COMPRESSED_SUFFIX)) {
+            return new CompressedLogReader(path);
+        }
+        if (path.getName().endsWith(".log")) {
+            return new TextLogReader(new BufferedReader(new FileReader(path)));
+        }
+        return new TraceReader(new BufferedInputStream(new FileInputStream(path)));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: SessionExporter <log file|trace file|compressed file|segments directory> <output directory>");
+            System.exit(1);
+        }
+        File directory = new File(args[1]);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            System.err.println(String.format("Can not create directory: %s", directory));
+            System.exit(1);
+        }
+        for (File file: new SessionExporter().export(open(new File(args[0])), directory)) {
+            ColumnarSessionReader reader = new ColumnarSessionReader(file);
+            try {
+                System.out.println(String.format("%s: %s rows, %s bytes", file, reader.getRowCount(), file.length()));
+            } finally {
+                reader.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,503 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Windowing stage of the signal strengths of the cell monitor.
+ * Stands between the monitor and its sink: signal samples are counted into the windows of the current
+ * serving cell and passed on only if the raw stream is kept, other samples are passed on as they are.
+ * At the end of every window a {@link SignalSummarySample} is passed on for every cell which had signal
+ * samples in it.
+ * <p>
+ * Windows are tumbling, or sliding if the slide is shorter than the window. Both are made of panes of the
+ * slide length: a sample is counted only in the pane of its time, a closed pane is merged into the window
+ * and the oldest pane is subtracted from it, so neither the cost of a sample nor the cost of a summary
+ * depends on the count of panes. Every field of a pane is a mergeable sketch: count, minimum, maximum,
+ * sums for the mean and the variance, and counts of the values. The signal values are small integers
+ * of known ranges, so the counts of every value take a few hundred slots, give exact percentiles and
+ * can be subtracted, values out of the range of a field, e.g. <code>99</code> of an unknown GSM strength,
+ * are not counted. The panes of a cell without samples in the last window are reused by another cell,
+ * and the count of cells is limited, so the memory does not grow with the session.
+ * <p>
+ * Windows are closed by the times of samples and by {@link #advance(long)} of the periodical checks,
+ * so a window is summarized no later than the next check after its end.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SignalAggregator implements SampleSink {
+
+    /**
+     * The lowest and the highest counted values of the fields, by field index.
+     * Android reports <code>-1</code> for the fields of an absent network.
+     */
+    private static final int[] LOWEST = {0, 0, -150, -200, -150, -200, 0};
+    private static final int[] HIGHEST = {31, 7, -20, -2, -20, -2, 8};
+
+    /**
+     * Mergeable statistics of the values of one field.
+     */
+    static final class Sketch {
+        int count;
+        int minimum;
+        int maximum;
+        double sum;
+        double sumOfSquares;
+
+        /**
+         * The counts of the values from the lowest one, allocated with the first value.
+         */
+        int[] values;
+
+        void add(int field, int value) {
+            if (value < LOWEST[field] || value > HIGHEST[field]) {
+                return;
+            }
+            if (values == null) {
+                values = new int[HIGHEST[field] - LOWEST[field] + 1];
+            }
+            if (count == 0 || value < minimum) {
+                minimum = value;
+            }
+            if (count == 0 || value > maximum) {
+                maximum = value;
+            }
+            count++;
+            // the values are small integers, so the sums stay exact
+            sum += value;
+            sumOfSquares += (double) value * value;
+            values[value - LOWEST[field]]++;
+        }
+
+        void merge(int field, Sketch sketch) {
+            if (sketch.count == 0) {
+                return;
+            }
+            if (values == null) {
+                values = new int[HIGHEST[field] - LOWEST[field] + 1];
+            }
+            if (count == 0 || sketch.minimum < minimum) {
+                minimum = sketch.minimum;
+            }
+            if (count == 0 || sketch.maximum > maximum) {
+                maximum = sketch.maximum;
+            }
+            count += sketch.count;
+            sum += sketch.sum;
+            sumOfSquares += sketch.sumOfSquares;
+            for (int i = sketch.minimum - LOWEST[field]; i <= sketch.maximum - LOWEST[field]; i++) {
+                values[i] += sketch.values[i];
+            }
+        }
+
+        /**
+         * Removes values of a sketch which was merged into this one.
+         */
+        void subtract(int field, Sketch sketch) {
+            if (sketch.count == 0) {
+                return;
+            }
+            count -= sketch.count;
+            sum -= sketch.sum;
+            sumOfSquares -= sketch.sumOfSquares;
+            for (int i = sketch.minimum - LOWEST[field]; i <= sketch.maximum - LOWEST[field]; i++) {
+                values[i] -= sketch.values[i];
+            }
+            if (count == 0) {
+                sum = 0;
+                sumOfSquares = 0;
+                return;
+            }
+            while (values[minimum - LOWEST[field]] == 0) {
+                minimum++;
+            }
+            while (values[maximum - LOWEST[field]] == 0) {
+                maximum--;
+            }
+        }
+
+        /**
+         * Returns the least value which is not exceeded by the given share of the values.
+         */
+        int percentile(int field, double share) {
+            int rank = Math.max(1, (int) Math.ceil(count * share));
+            int seen = 0;
+            for (int i = minimum - LOWEST[field]; i < maximum - LOWEST[field]; i++) {
+                seen += values[i];
+                if (seen >= rank) {
+                    return i + LOWEST[field];
+                }
+            }
+            return maximum;
+        }
+
+        void clear(int field) {
+            if (count > 0) {
+                for (int i = minimum - LOWEST[field]; i <= maximum - LOWEST[field]; i++) {
+                    values[i] = 0;
+                }
+            }
+            count = 0;
+            sum = 0;
+            sumOfSquares = 0;
+        }
+    }
+
+    /**
+     * Statistics of one pane of a cell.
+     */
+    static final class Pane {
+        final Sketch[] fields = new Sketch[SignalSummarySample.FIELD_COUNT];
+        int sampleCount;
+
+        Pane() {
+            for (int field = 0; field < fields.length; field++) {
+                fields[field] = new Sketch();
+            }
+        }
+    }
+
+    /**
+     * Panes of one serving cell, in a ring by the pane number, and their merge.
+     */
+    static final class CellWindows {
+        int kind;
+        int cid;
+        int lac;
+        int psc;
+        Pane[] panes;
+
+        /**
+         * The merge of the closed panes of the current window.
+         */
+        final Pane window = new Pane();
+    }
+
+    /**
+     * The consumer of passed samples.
+     */
+    private SampleSink sink;
+
+    /**
+     * The length of a window, in milliseconds.
+     */
+    private long windowLength = 60 * 1000;
+
+    /**
+     * The slide of windows, equals to the window length for tumbling windows, in milliseconds.
+     */
+    private long slide = 60 * 1000;
+
+    /**
+     * The flag of raw signal samples are passed on with the summaries.
+     */
+    private boolean isRawPassed = true;
+
+    /**
+     * The largest count of cells with open windows.
+     */
+    private int maxCells = 8;
+
+    /**
+     * The number of the current pane, the time divided by the slide, or <code>Long.MIN_VALUE</code> before
+     * the first sample.
+     */
+    private long paneNumber = Long.MIN_VALUE;
+
+    /**
+     * The current serving cell, its kind is <code>0</code> until it is known.
+     */
+    private int servingKind;
+    private int servingCid;
+    private int servingLac;
+    private int servingPsc;
+
+    /**
+     * The cells with samples in the open windows.
+     */
+    private final List<CellWindows> cells = new ArrayList<CellWindows>();
+
+    /**
+     * The cells to reuse.
+     */
+    private final List<CellWindows> spareCells = new ArrayList<CellWindows>();
+
+    /**
+     * The counts of passed summaries and of signal samples of the cells over the limit.
+     */
+    private final MetricsRegistry.Counter summaryCount =
+            MetricsRegistry.getInstance().counter("SignalAggregator.summaries");
+    private final MetricsRegistry.Counter droppedCount =
+            MetricsRegistry.getInstance().counter("SignalAggregator.dropped");
+
+    @Override
+    public synchronized void log(Sample sample) {
+        advance(sample.time);
+        if (sample instanceof SignalSample) {
+            count((SignalSample) sample);
+            if (!isRawPassed) {
+                return;
+            }
+        } else if (sample instanceof CellSample) {
+            CellSample cell = (CellSample) sample;
+            if (cell.kind == CellSample.GSM || cell.kind == CellSample.CDMA) {
+                servingKind = cell.kind;
+                servingCid = cell.cid;
+                servingLac = cell.lac;
+                servingPsc = cell.kind == CellSample.CDMA ? cell.psc : 0;
+            }
+        }
+        sink.log(sample);
+    }
+
+    /**
+     * Closes windows which end by the given time.
+     * @param time              time, in milliseconds
+     */
+    public synchronized void advance(long time) {
+        long number = time / slide;
+        if (paneNumber == Long.MIN_VALUE) {
+            paneNumber = number;
+            return;
+        }
+        // a late sample is counted in the current pane
+        while (paneNumber < number) {
+            if (cells.isEmpty()) {
+                paneNumber = number;
+                return;
+            }
+            closePane();
+        }
+    }
+
+    /**
+     * Closes all open windows at the end of the current pane, e.g. on stop of the monitor.
+     */
+    public synchronized void flush() {
+        if (paneNumber == Long.MIN_VALUE) {
+            return;
+        }
+        int paneCount = getPaneCount();
+        for (int i = 0; i < paneCount && !cells.isEmpty(); i++) {
+            closePane();
+        }
+    }
+
+    /**
+     * Drops open windows and the serving cell.
+     * @return                  self object
+     */
+    public synchronized SignalAggregator reset() {
+        while (!cells.isEmpty()) {
+            release(cells.size() - 1);
+        }
+        paneNumber = Long.MIN_VALUE;
+        servingKind = 0;
+        servingCid = 0;
+        servingLac = 0;
+        servingPsc = 0;
+        return this;
+    }
+
+    /**
+     * Sets consumer of passed samples and returns self object for easy init.
+     * @param sink              consumer
+     * @return                  self object
+     */
+    public synchronized SignalAggregator setSink(SampleSink sink) {
+        this.sink = sink;
+        return this;
+    }
+
+    /**
+     * Sets window length and slide and returns self object for easy init.
+     * Open windows are dropped.
+     * @param windowLength      window length, in milliseconds
+     * @param slide             slide of windows, a divisor of the window length,
+     *                          equal to the window length for tumbling windows
+     * @return                  self object
+     */
+    public synchronized SignalAggregator setWindow(long windowLength, long slide) {
+        if (slide <= 0 || windowLength < slide || windowLength % slide != 0) {
+            throw new IllegalArgumentException("Window length must be a multiple of the slide: "
+                    + windowLength + ", " + slide);
+        }
+        reset();
+        cells.clear();
+        spareCells.clear();
+        this.windowLength = windowLength;
+        this.slide = slide;
+        return this;
+    }
+
+    /**
+     * Sets flag of raw signal samples are passed on and returns self object for easy init.
+     * @param isRawPassed       <code>true</code> to pass raw samples with the summaries
+     * @return                  self object
+     */
+    public synchronized SignalAggregator setRawPassed(boolean isRawPassed) {
+        this.isRawPassed = isRawPassed;
+        return this;
+    }
+
+    /**
+     * Sets largest count of cells with open windows and returns self object for easy init.
+     * Signal samples of other cells are dropped until a window of a cell is closed.
+     * @param maxCells          count of cells
+     * @return                  self object
+     */
+    public synchronized SignalAggregator setMaxCells(int maxCells) {
+        this.maxCells = maxCells;
+        return this;
+    }
+
+    private int getPaneCount() {
+        return (int) (windowLength / slide);
+    }
+
+    private void count(SignalSample sample) {
+        CellWindows cell = servingCell();
+        if (cell == null) {
+            droppedCount.increment();
+            return;
+        }
+        Pane pane = cell.panes[paneIndex(paneNumber)];
+        pane.sampleCount++;
+        Sketch[] fields = pane.fields;
+        if (sample.kind == SignalSample.ASU) {
+            fields[SignalSummarySample.GSM_SIGNAL_STRENGTH].add(
+                    SignalSummarySample.GSM_SIGNAL_STRENGTH, sample.gsmSignalStrength);
+            return;
+        }
+        // the fields of the other network are out of range
+        fields[SignalSummarySample.GSM_SIGNAL_STRENGTH].add(
+                SignalSummarySample.GSM_SIGNAL_STRENGTH, sample.gsmSignalStrength);
+        fields[SignalSummarySample.GSM_BIT_ERROR_RATE].add(
+                SignalSummarySample.GSM_BIT_ERROR_RATE, sample.gsmBitErrorRate);
+        fields[SignalSummarySample.CDMA_DBM].add(SignalSummarySample.CDMA_DBM, sample.cdmaDbm);
+        fields[SignalSummarySample.CDMA_ECIO].add(SignalSummarySample.CDMA_ECIO, sample.cdmaEcio);
+        fields[SignalSummarySample.EVDO_DBM].add(SignalSummarySample.EVDO_DBM, sample.evdoDbm);
+        fields[SignalSummarySample.EVDO_ECIO].add(SignalSummarySample.EVDO_ECIO, sample.evdoEcio);
+        fields[SignalSummarySample.EVDO_SNR].add(SignalSummarySample.EVDO_SNR, sample.evdoSnr);
+    }
+
+    /**
+     * Returns windows of the serving cell, or <code>null</code> if there are windows of too many cells.
+     */
+    private CellWindows servingCell() {
+        for (int i = 0; i < cells.size(); i++) {
+            CellWindows cell = cells.get(i);
+            if (cell.kind == servingKind && cell.cid == servingCid && cell.lac == servingLac
+                    && cell.psc == servingPsc) {
+                return cell;
+            }
+        }
+        if (cells.size() >= maxCells) {
+            return null;
+        }
+        CellWindows cell;
+        if (spareCells.isEmpty()) {
+            cell = new CellWindows();
+            cell.panes = new Pane[getPaneCount()];
+            for (int i = 0; i < cell.panes.length; i++) {
+                cell.panes[i] = new Pane();
+            }
+        } else {
+            cell = spareCells.remove(spareCells.size() - 1);
+        }
+        cell.kind = servingKind;
+        cell.cid = servingCid;
+        cell.lac = servingLac;
+        cell.psc = servingPsc;
+        cells.add(cell);
+        return cell;
+    }
+
+    /**
+     * Summarizes windows which end with the current pane and moves to the next pane.
+     */
+    private void closePane() {
+        long windowEnd = (paneNumber + 1) * slide;
+        int current = paneIndex(paneNumber);
+        int oldest = paneIndex(paneNumber + 1);
+        for (int i = cells.size() - 1; i >= 0; i--) {
+            CellWindows cell = cells.get(i);
+            merge(cell.window, cell.panes[current]);
+            summarize(cell, windowEnd);
+            // the oldest pane is the next one, it leaves the window
+            subtract(cell.window, cell.panes[oldest]);
+            clear(cell.panes[oldest]);
+            if (cell.window.sampleCount == 0) {
+                release(i);
+            }
+        }
+        paneNumber++;
+    }
+
+    private void summarize(CellWindows cell, long windowEnd) {
+        Pane window = cell.window;
+        if (window.sampleCount == 0) {
+            return;
+        }
+        SignalSummarySample summary = new SignalSummarySample();
+        summary.time = windowEnd;
+        summary.windowStart = windowEnd - windowLength;
+        summary.cellKind = cell.kind;
+        summary.cid = cell.cid;
+        summary.lac = cell.lac;
+        summary.psc = cell.psc;
+        summary.sampleCount = window.sampleCount;
+        for (int field = 0; field < SignalSummarySample.FIELD_COUNT; field++) {
+            Sketch sketch = window.fields[field];
+            summary.counts[field] = sketch.count;
+            if (sketch.count > 0) {
+                double mean = sketch.sum / sketch.count;
+                summary.minimums[field] = sketch.minimum;
+                summary.maximums[field] = sketch.maximum;
+                summary.means[field] = (float) mean;
+                summary.variances[field] = (float) Math.max(0, sketch.sumOfSquares / sketch.count - mean * mean);
+                summary.p10[field] = sketch.percentile(field, 0.1);
+                summary.p50[field] = sketch.percentile(field, 0.5);
+                summary.p90[field] = sketch.percentile(field, 0.9);
+            }
+        }
+        summaryCount.increment();
+        sink.log(summary);
+    }
+
+    private void release(int index) {
+        CellWindows cell = cells.remove(index);
+        for (Pane pane: cell.panes) {
+            clear(pane);
+        }
+        clear(cell.window);
+        spareCells.add(cell);
+    }
+
+    private int paneIndex(long number) {
+        int paneCount = getPaneCount();
+        return (int) (((number % paneCount) + paneCount) % paneCount);
+    }
+
+    private static void merge(Pane window, Pane pane) {
+        window.sampleCount += pane.sampleCount;
+        for (int field = 0; field < window.fields.length; field++) {
+            window.fields[field].merge(field, pane.fields[field]);
+        }
+    }
+
+    private static void subtract(Pane window, Pane pane) {
+        window.sampleCount -= pane.sampleCount;
+        for (int field = 0; field < window.fields.length; field++) {
+            window.fields[field].subtract(field, pane.fields[field]);
+        }
+    }
+
+    private static void clear(Pane pane) {
+        pane.sampleCount = 0;
+        for (int field = 0; field < pane.fields.length; field++) {
+            pane.fields[field].clear(field);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Signal strength of the serving cell reported by the telephony listener.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SignalSample extends Sample {
+
+    /**
+     * The kind of a single strength value in ASU.
+     */
+    public static final int ASU = 8;
+
+    /**
+     * The kind of a full set of signal strengths.
+     */
+    public static final int STRENGTHS = 9;
+
+    /**
+     * The kind of the observation, equals to the binary record type.
+     */
+    int kind;
+
+    /**
+     * The flag of GSM strengths.
+     */
+    boolean gsm;
+
+    /**
+     * The GSM signal strength, or the strength in ASU.
+     */
+    int gsmSignalStrength;
+
+    /**
+     * The GSM bit error rate.
+     */
+    int gsmBitErrorRate;
+
+    /**
+     * The CDMA RSSI, in dBm.
+     */
+    int cdmaDbm;
+
+    /**
+     * The CDMA Ec/Io, in dB*10.
+     */
+    int cdmaEcio;
+
+    /**
+     * The EVDO RSSI, in dBm.
+     */
+    int evdoDbm;
+
+    /**
+     * The EVDO Ec/Io, in dB*10.
+     */
+    int evdoEcio;
+
+    /**
+     * The EVDO signal to noise ratio.
+     */
+    int evdoSnr;
+
+    SignalSample(int kind) {
+        this.kind = kind;
+    }
+
+    /**
+     * Creates sample of a strength in ASU.
+     * @param time              time, in milliseconds
+     * @param asu               strength, in ASU
+     * @return                  sample
+     */
+    public static SignalSample asu(long time, int asu) {
+        SignalSample sample = new SignalSample(ASU);
+        sample.time = time;
+        sample.gsmSignalStrength = asu;
+        return sample;
+    }
+
+    /**
+     * Creates sample of a full set of signal strengths.
+     * @param time              time, in milliseconds
+     * @param gsm               flag of GSM strengths
+     * @param cdmaDbm           CDMA RSSI
+     * @param cdmaEcio          CDMA Ec/Io
+     * @param evdoDbm           EVDO RSSI
+     * @param evdoEcio          EVDO Ec/Io
+     * @param evdoSnr           EVDO signal to noise ratio
+     * @param gsmBitErrorRate   GSM bit error rate
+     * @param gsmSignalStrength GSM signal strength
+     * @return                  sample
+     */
+    public static SignalSample strengths(long time, boolean gsm, int cdmaDbm, int cdmaEcio,
+                                         int evdoDbm, int evdoEcio, int evdoSnr,
+                                         int gsmBitErrorRate, int gsmSignalStrength) {
+        SignalSample sample = new SignalSample(STRENGTHS);
+        sample.time = time;
+        sample.gsm = gsm;
+        sample.cdmaDbm = cdmaDbm;
+        sample.cdmaEcio = cdmaEcio;
+        sample.evdoDbm = evdoDbm;
+        sample.evdoEcio = evdoEcio;
+        sample.evdoSnr = evdoSnr;
+        sample.gsmBitErrorRate = gsmBitErrorRate;
+        sample.gsmSignalStrength = gsmSignalStrength;
+        return sample;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public boolean isGsm() {
+        return gsm;
+    }
+
+    public int getGsmSignalStrength() {
+        return gsmSignalStrength;
+    }
+
+    public int getGsmBitErrorRate() {
+        return gsmBitErrorRate;
+    }
+
+    public int getCdmaDbm() {
+        return cdmaDbm;
+    }
+
+    public int getCdmaEcio() {
+        return cdmaEcio;
+    }
+
+    public int getEvdoDbm() {
+        return evdoDbm;
+    }
+
+    public int getEvdoEcio() {
+        return evdoEcio;
+    }
+
+    public int getEvdoSnr() {
+        return evdoSnr;
+    }
+
+    @Override
+    String getMonitorName() {
+        return "CellMonitor";
+    }
+
+    @Override
+    int getType() {
+        return kind;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        if (kind == ASU) {
+            out.writeInt(gsmSignalStrength);
+            return;
+        }
+        out.writeBoolean(gsm);
+        out.writeInt(cdmaDbm);
+        out.writeInt(cdmaEcio);
+        out.writeInt(evdoDbm);
+        out.writeInt(evdoEcio);
+        out.writeInt(evdoSnr);
+        out.writeInt(gsmBitErrorRate);
+        out.writeInt(gsmSignalStrength);
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        if (kind == ASU) {
+            gsmSignalStrength = in.readInt();
+            return;
+        }
+        gsm = in.readBoolean();
+        cdmaDbm = in.readInt();
+        cdmaEcio = in.readInt();
+        evdoDbm = in.readInt();
+        evdoEcio = in.readInt();
+        evdoSnr = in.readInt();
+        gsmBitErrorRate = in.readInt();
+        gsmSignalStrength = in.readInt();
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        if (kind == ASU) {
+            builder.append("CellMonitor::Listener::Signal strength changed - ASU: ").append(gsmSignalStrength);
+            return;
+        }
+        // describeContents() of SignalStrength is always 0, so it is not stored
+        builder.append("CellMonitor::Listener::Signal strengths changed - is GSM: ").append(gsm)
+               .append(", CDMA DBM: ").append(cdmaDbm)
+               .append(", CDMA ERIO: ").append(cdmaEcio)
+               .append(", EVDO DBM: ").append(evdoDbm)
+               .append(", EVDO ERIO: ").append(evdoEcio)
+               .append(", EVDO SNR: ").append(evdoSnr)
+               .append(", GSM BER: ").append(gsmBitErrorRate)
+               .append(", GSM SS: ").append(gsmSignalStrength)
+               .append(", Describe contents: 0");
+    }
+}
@@ -0,0 +1,242 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Statistics of the signal strengths of the serving cell over a time window, made by {@link SignalAggregator}.
+ * The time of the sample is the end of the window. Every signal field has the count of its known values,
+ * the minimum, the maximum, the mean, the variance and the 10th, 50th and 90th percentiles,
+ * a field without known values has only the zero count.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SignalSummarySample extends Sample {
+
+    /**
+     * The binary record type.
+     */
+    static final int TYPE = 11;
+
+    /**
+     * The indexes of the signal fields.
+     */
+    public static final int GSM_SIGNAL_STRENGTH = 0;
+    public static final int GSM_BIT_ERROR_RATE = 1;
+    public static final int CDMA_DBM = 2;
+    public static final int CDMA_ECIO = 3;
+    public static final int EVDO_DBM = 4;
+    public static final int EVDO_ECIO = 5;
+    public static final int EVDO_SNR = 6;
+
+    /**
+     * The count of the signal fields.
+     */
+    public static final int FIELD_COUNT = 7;
+
+    /**
+     * The names of the signal fields in the text log, as in the messages of {@link SignalSample}.
+     */
+    static final String[] FIELD_NAMES = {
+            "GSM SS", "GSM BER", "CDMA DBM", "CDMA ERIO", "EVDO DBM", "EVDO ERIO", "EVDO SNR"
+    };
+
+    /**
+     * The start of the window, in milliseconds.
+     */
+    long windowStart;
+
+    /**
+     * The kind of the serving cell, {@link CellSample#GSM}, {@link CellSample#CDMA} or <code>0</code> if it is unknown.
+     */
+    int cellKind;
+
+    /**
+     * The cell id, or the base station id for CDMA.
+     */
+    int cid;
+
+    /**
+     * The location area code, or the network id for CDMA.
+     */
+    int lac;
+
+    /**
+     * The system id for CDMA.
+     */
+    int psc;
+
+    /**
+     * The count of signal samples of the window.
+     */
+    int sampleCount;
+
+    /**
+     * The statistics of the signal fields, by field index.
+     */
+    int[] counts = new int[FIELD_COUNT];
+    int[] minimums = new int[FIELD_COUNT];
+    int[] maximums = new int[FIELD_COUNT];
+    float[] means = new float[FIELD_COUNT];
+    float[] variances = new float[FIELD_COUNT];
+    int[] p10 = new int[FIELD_COUNT];
+    int[] p50 = new int[FIELD_COUNT];
+    int[] p90 = new int[FIELD_COUNT];
+
+    SignalSummarySample() {}
+
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    public long getWindowEnd() {
+        return time;
+    }
+
+    public int getCellKind() {
+        return cellKind;
+    }
+
+    public int getCid() {
+        return cid;
+    }
+
+    public int getLac() {
+        return lac;
+    }
+
+    public int getPsc() {
+        return psc;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * Returns count of known values of the field.
+     * @param field             field index
+     * @return                  count, the other statistics of the field are valid if it is not zero
+     */
+    public int getCount(int field) {
+        return counts[field];
+    }
+
+    public int getMinimum(int field) {
+        return minimums[field];
+    }
+
+    public int getMaximum(int field) {
+        return maximums[field];
+    }
+
+    public float getMean(int field) {
+        return means[field];
+    }
+
+    public float getVariance(int field) {
+        return variances[field];
+    }
+
+    public int getP10(int field) {
+        return p10[field];
+    }
+
+    public int getP50(int field) {
+        return p50[field];
+    }
+
+    public int getP90(int field) {
+        return p90[field];
+    }
+
+    @Override
+    public Sample copy() {
+        SignalSummarySample copy = (SignalSummarySample) super.copy();
+        copy.counts = counts.clone();
+        copy.minimums = minimums.clone();
+        copy.maximums = maximums.clone();
+        copy.means = means.clone();
+        copy.variances = variances.clone();
+        copy.p10 = p10.clone();
+        copy.p50 = p50.clone();
+        copy.p90 = p90.clone();
+        return copy;
+    }
+
+    @Override
+    String getMonitorName() {
+        return "CellMonitor";
+    }
+
+    @Override
+    int getType() {
+        return TYPE;
+    }
+
+    @Override
+    void writeFields(DataOutput out) throws IOException {
+        out.writeLong(windowStart);
+        out.writeByte(cellKind);
+        out.writeInt(cid);
+        out.writeInt(lac);
+        out.writeInt(psc);
+        out.writeInt(sampleCount);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            out.writeInt(counts[field]);
+            out.writeInt(minimums[field]);
+            out.writeInt(maximums[field]);
+            out.writeFloat(means[field]);
+            out.writeFloat(variances[field]);
+            out.writeInt(p10[field]);
+            out.writeInt(p50[field]);
+            out.writeInt(p90[field]);
+        }
+    }
+
+    @Override
+    void readFields(DataInput in) throws IOException {
+        windowStart = in.readLong();
+        cellKind = in.readUnsignedByte();
+        cid = in.readInt();
+        lac = in.readInt();
+        psc = in.readInt();
+        sampleCount = in.readInt();
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            counts[field] = in.readInt();
+            minimums[field] = in.readInt();
+            maximums[field] = in.readInt();
+            means[field] = in.readFloat();
+            variances[field] = in.readFloat();
+            p10[field] = in.readInt();
+            p50[field] = in.readInt();
+            p90[field] = in.readInt();
+        }
+    }
+
+    @Override
+    void appendMessage(StringBuilder builder) {
+        builder.append("CellMonitor::Monitor::Signal window{")
+               .append(cellKind == CellSample.GSM ? "GSM" : cellKind == CellSample.CDMA ? "CDMA" : "Unknown")
+               .append("} - Start: ").append(windowStart)
+               .append(", Cell: ").append(cid)
+               .append(", LAC: ").append(lac)
+               .append(", PSC: ").append(psc)
+               .append(", Samples: ").append(sampleCount);
+        // the statistics of a field are count, min, max, mean, variance, P10, P50 and P90
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            builder.append(", ").append(FIELD_NAMES[field]).append(": ").append(counts[field]);
+            if (counts[field] > 0) {
+                builder.append(' ').append(minimums[field])
+                       .append(' ').append(maximums[field])
+                       .append(' ').append(means[field])
+                       .append(' ').append(variances[field])
+                       .append(' ').append(p10[field])
+                       .append(' ').append(p50[field])
+                       .append(' ').append(p90[field]);
+            }
+        }
+    }
+}
@@ -0,0 +1,719 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploader of the segments of a {@link SegmentedLogStore} to a collection server.
+ * <p>
+ * A batch is a range of whole records of one segment, the frames as they are in the segment file.
+ * It is sent gzipped by <code>POST</code> to the server URL with the headers <code>X-Device</code>,
+ * <code>X-Segment</code> (the segment sequence number), <code>X-Offset</code> and <code>X-End</code>
+ * (the range in the segment file). The server appends the range to its copy of the segment and answers
+ * <code>200</code>, or <code>409</code> if the range does not start at the end of its copy; both answers
+ * carry <code>X-Acknowledged</code> as <code>sequence:end</code>, the end of its copy. The acknowledged
+ * offset is the only state: it is saved in the store directory after every batch by a rename of a new file,
+ * so a retry after a failure or a restart sends the ranges from it and a range received twice is told
+ * by the server by its offset.
+ * <p>
+ * The batch size follows the measured throughput, so a batch takes about the target duration on both
+ * a slow and a fast network, a failure halves it and defers the next attempt with a growing delay.
+ * Passes are run by a thread of the engine when the collection is idle, or not oftener than the sync
+ * interval while it goes on; a pass sends batches until the acknowledged offset reaches the last record.
+ * <p>
+ * The retention of the store is not held back by the uploads, so the storage stays bounded while the server
+ * is out of reach. The segments deleted before they are sent are lost: the pass goes on from the first kept one,
+ * counts them and logs a warning by the collection engine.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class SyncEngine implements Runnable {
+
+    /**
+     * The name of the file of the acknowledged offset in the store directory.
+     */
+    static final String OFFSET_FILE = "sync.offset";
+
+    /**
+     * The headers of the protocol.
+     */
+    static final String DEVICE_HEADER = "X-Device";
+    static final String SEGMENT_HEADER = "X-Segment";
+    static final String OFFSET_HEADER = "X-Offset";
+    static final String END_HEADER = "X-End";
+    static final String ACKNOWLEDGED_HEADER = "X-Acknowledged";
+
+    /**
+     * The directory of segments.
+     */
+    private File directory;
+
+    /**
+     * The URL of the collection server.
+     */
+    private URL url;
+
+    /**
+     * The id of the device sent with every batch.
+     */
+    private String deviceId = "";
+
+    /**
+     * The engine of the collection, or <code>null</code> if the collection is always taken as idle.
+     */
+    private CollectionEngine collectionEngine;
+
+    /**
+     * The least period of passes while the collection goes on, in milliseconds.
+     */
+    private long syncInterval = 60 * 60 * 1000;
+
+    /**
+     * The period of the checks of the sync thread, in milliseconds.
+     */
+    private long checkPeriod = 60 * 1000;
+
+    /**
+     * The limits of the raw batch size, in bytes.
+     */
+    private int minBatchSize = 16 * 1024;
+    private int maxBatchSize = 1024 * 1024;
+
+    /**
+     * The duration of a batch which the batch size is adapted to, in milliseconds.
+     */
+    private long targetDuration = 2000;
+
+    /**
+     * The limits of the delay of the attempt after a failure, in milliseconds.
+     */
+    private long minRetryDelay = 5 * 1000;
+    private long maxRetryDelay = 15 * 60 * 1000;
+
+    /**
+     * The timeouts of connection and of reading the answer, in milliseconds.
+     */
+    private int connectTimeout = 15 * 1000;
+    private int readTimeout = 30 * 1000;
+
+    /**
+     * The acknowledged offset: the segment sequence number and the position in the segment file.
+     */
+    private volatile long ackSequence;
+    private volatile int ackPosition;
+
+    /**
+     * The current raw batch size, in bytes.
+     */
+    private volatile int batchSize = minBatchSize;
+
+    /**
+     * The smoothed throughput, in bytes per millisecond, or <code>0</code> before the first batch.
+     */
+    private double throughput;
+
+    /**
+     * The delay of the next attempt after a failure, <code>0</code> after a success.
+     */
+    private long retryDelay;
+
+    /**
+     * The times of the next allowed attempt and of the last complete pass, in milliseconds.
+     */
+    private long nextAttemptTime;
+    private long lastSyncTime;
+
+    /**
+     * The mapped segment of the acknowledged offset, kept within a pass.
+     */
+    private ByteBuffer segment;
+    private long segmentSequence;
+
+    private final CRC32 crc = new CRC32();
+
+    private byte[] raw = new byte[0];
+
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+    /**
+     * The listener of a pass which reached the last record while the collection is idle, or <code>null</code>.
+     */
+    private volatile Runnable idleListener;
+
+    /**
+     * The thread of passes, or <code>null</code> if the engine is stopped.
+     */
+    private volatile Thread thread;
+
+    /**
+     * The lock of a pass, a thread of a previous start ends its pass before the next one starts.
+     */
+    private final Object passLock = new Object();
+
+    /**
+     * The flag of a pass is requested regardless of the schedule.
+     */
+    private volatile boolean isRequested;
+
+    /**
+     * The message of the last failure, or <code>null</code> after a success.
+     */
+    private volatile String lastError;
+
+    /**
+     * The count of segments deleted by the retention of the store before they were sent.
+     */
+    private volatile long lostSegmentCount;
+
+    private final MetricsRegistry.Counter sentBytes =
+            MetricsRegistry.getInstance().counter("SyncEngine.bytes");
+    private final MetricsRegistry.Counter sentCompressedBytes =
+            MetricsRegistry.getInstance().counter("SyncEngine.compressedBytes");
+    private final MetricsRegistry.Counter batchCount =
+            MetricsRegistry.getInstance().counter("SyncEngine.batches");
+    private final MetricsRegistry.Counter failureCount =
+            MetricsRegistry.getInstance().counter("SyncEngine.failures");
+    private final MetricsRegistry.Counter lostSegments =
+            MetricsRegistry.getInstance().counter("SyncEngine.lostSegments");
+    private final MetricsRegistry.Histogram uploadLatency =
+            MetricsRegistry.getInstance().histogram("SyncEngine.upload");
+
+    /**
+     * Starts thread of passes, does nothing if it is started.
+     */
+    public synchronized void start() {
+        if (directory == null || url == null) {
+            throw new IllegalStateException("Sync engine is not initialized");
+        }
+        if (thread != null) {
+            return;
+        }
+        MetricsRegistry.getInstance().gauge("SyncEngine.batchSize", new MetricsRegistry.Gauge() {
+            @Override
+            public long get() {
+                return batchSize;
+            }
+        });
+        thread = new Thread(this, "SyncEngine");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Stops thread of passes without waiting for it: a batch in progress ends by its timeouts
+     * and is sent again by the next pass if it is not acknowledged.
+     */
+    public synchronized void stop() {
+        if (thread != null) {
+            thread.interrupt();
+            thread = null;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Requests pass regardless of the schedule, e.g. at the stop of the collection.
+     * A deferred attempt after a failure is not hurried.
+     */
+    public synchronized void requestSync() {
+        isRequested = true;
+        notifyAll();
+    }
+
+    @Override
+    public void run() {
+        while (thread == Thread.currentThread()) {
+            long now = System.currentTimeMillis();
+            boolean isIdle = collectionEngine == null || !collectionEngine.isStarted();
+            if (now >= nextAttemptTime && (isIdle || isRequested || now - lastSyncTime >= syncInterval)) {
+                isRequested = false;
+                Runnable listener = idleListener;
+                if (sync() && isIdle && listener != null) {
+                    listener.run();
+                }
+            }
+            synchronized (this) {
+                if (thread == Thread.currentThread() && !isRequested) {
+                    long wait = Math.min(checkPeriod, nextAttemptTime - System.currentTimeMillis());
+                    try {
+                        wait(Math.max(1, wait > 0 ? wait : checkPeriod));
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs pass on the calling thread: sends batches from the acknowledged offset to the last record.
+     * @return                  <code>true</code> if the last record is acknowledged,
+     *                          <code>false</code> if a batch is failed and the next attempt is deferred
+     */
+    public boolean sync() {
+        synchronized (passLock) {
+            return pass();
+        }
+    }
+
+    /**
+     * Returns acknowledged segment sequence number.
+     * @return                  sequence number, <code>0</code> before the first batch
+     */
+    public long getAcknowledgedSequence() {
+        return ackSequence;
+    }
+
+    /**
+     * Returns acknowledged position in the segment file.
+     * @return                  position, in bytes
+     */
+    public int getAcknowledgedPosition() {
+        return ackPosition;
+    }
+
+    /**
+     * Returns count of segments deleted by the retention of the store before they were sent.
+     * @return                  count
+     */
+    public long getLostSegmentCount() {
+        return lostSegmentCount;
+    }
+
+    /**
+     * Returns current raw batch size.
+     * @return                  size, in bytes
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Returns message of the last failure.
+     * @return                  message, or <code>null</code> if the last batch is sent
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Sets directory of segments and returns self object for easy init.
+     * @param directory         directory of segments
+     * @return                  self object
+     */
+    public SyncEngine setDirectory(File directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    /**
+     * Sets URL of the collection server and returns self object for easy init.
+     * @param url               server URL
+     * @return                  self object
+     */
+    public SyncEngine setUrl(URL url) {
+        this.url = url;
+        return this;
+    }
+
+    /**
+     * Sets id of the device and returns self object for easy init.
+     * @param deviceId          device id
+     * @return                  self object
+     */
+    public SyncEngine setDeviceId(String deviceId) {
+        this.deviceId = deviceId == null ? "" : deviceId;
+        return this;
+    }
+
+    /**
+     * Sets engine of the collection and returns self object for easy init.
+     * While it is started passes are run not oftener than the sync interval.
+     * @param collectionEngine  collection engine, or <code>null</code> to take the collection as idle
+     * @return                  self object
+     */
+    public SyncEngine setCollectionEngine(CollectionEngine collectionEngine) {
+        this.collectionEngine = collectionEngine;
+        return this;
+    }
+
+    /**
+     * Sets least period of passes while the collection goes on and returns self object for easy init.
+     * @param syncInterval      interval, in milliseconds
+     * @return                  self object
+     */
+    public SyncEngine setSyncInterval(long syncInterval) {
+        this.syncInterval = syncInterval;
+        return this;
+    }
+
+    /**
+     * Sets period of the checks of the sync thread and returns self object for easy init.
+     * @param checkPeriod       period, in milliseconds
+     * @return                  self object
+     */
+    public SyncEngine setCheckPeriod(long checkPeriod) {
+        this.checkPeriod = checkPeriod;
+        return this;
+    }
+
+    /**
+     * Sets limits of the raw batch size and returns self object for easy init.
+     * @param minBatchSize      least size, in bytes, the size of the first batch
+     * @param maxBatchSize      largest size, in bytes
+     * @return                  self object
+     */
+    public SyncEngine setBatchSize(int minBatchSize, int maxBatchSize) {
+        if (minBatchSize <= 0 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("Wrong batch size limits: " + minBatchSize + ", " + maxBatchSize);
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        batchSize = minBatchSize;
+        return this;
+    }
+
+    /**
+     * Sets duration of a batch which the batch size is adapted to and returns self object for easy init.
+     * @param targetDuration    duration, in milliseconds
+     * @return                  self object
+     */
+    public SyncEngine setTargetDuration(long targetDuration) {
+        this.targetDuration = targetDuration;
+        return this;
+    }
+
+    /**
+     * Sets limits of the delay of the attempt after a failure and returns self object for easy init.
+     * @param minRetryDelay     delay after the first failure, in milliseconds
+     * @param maxRetryDelay     largest delay, in milliseconds
+     * @return                  self object
+     */
+    public SyncEngine setRetryDelay(long minRetryDelay, long maxRetryDelay) {
+        this.minRetryDelay = minRetryDelay;
+        this.maxRetryDelay = maxRetryDelay;
+        return this;
+    }
+
+    /**
+     * Sets timeouts of the connection and returns self object for easy init.
+     * @param connectTimeout    timeout of connection, in milliseconds
+     * @param readTimeout       timeout of reading the answer, in milliseconds
+     * @return                  self object
+     */
+    public SyncEngine setTimeouts(int connectTimeout, int readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        return this;
+    }
+
+    /**
+     * Sets listener of a pass which reached the last record while the collection is idle
+     * and returns self object for easy init. The listener is called on the sync thread.
+     * @param idleListener      listener, or <code>null</code>
+     * @return                  self object
+     */
+    public SyncEngine setIdleListener(Runnable idleListener) {
+        this.idleListener = idleListener;
+        return this;
+    }
+
+    private boolean pass() {
+        try {
+            loadOffset();
+            // the stop of the engine interrupts the pass between batches
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!nextBatch()) {
+                    lastSyncTime = System.currentTimeMillis();
+                    return true;
+                }
+            }
+            return false;
+        } catch (IOException e) {
+            fail(e.getMessage());
+            return false;
+        } finally {
+            segment = null;
+        }
+    }
+
+    /**
+     * Sends the batch at the acknowledged offset.
+     * @return                  <code>false</code> if there are no records after the offset
+     * @throws IOException      if the batch is failed
+     */
+    private boolean nextBatch() throws IOException {
+        int end;
+        while (true) {
+            if (!mapSegment()) {
+                return false;
+            }
+            end = batchEnd();
+            if (end > ackPosition) {
+                break;
+            }
+            // a segment is complete when the next one exists
+            long next = nextSequence(ackSequence);
+            if (next < 0) {
+                return false;
+            }
+            saveOffset(next, SegmentedLogStore.HEADER_SIZE);
+        }
+        int length = end - ackPosition;
+        if (raw.length < length) {
+            raw = new byte[length];
+        }
+        segment.position(ackPosition);
+        segment.get(raw, 0, length);
+        compressed.reset();
+        GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+        gzip.write(raw, 0, length);
+        gzip.close();
+        long startNanos = System.nanoTime();
+        int acknowledged = upload(ackSequence, ackPosition, end);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        uploadLatency.record(elapsedNanos);
+        // a conflict moves the offset to the end of the copy of the server, back or forth
+        if (acknowledged == end) {
+            batchCount.increment();
+            sentBytes.add(length);
+            sentCompressedBytes.add(compressed.size());
+            adapt(length, elapsedNanos);
+        }
+        if (acknowledged == ackPosition) {
+            throw new IOException("Server does not take the batch at " + ackSequence + ":" + ackPosition);
+        }
+        if (acknowledged > segment.limit()) {
+            throw new IOException("Server acknowledged position out of the segment: " + acknowledged);
+        }
+        saveOffset(ackSequence, acknowledged);
+        retryDelay = 0;
+        lastError = null;
+        return true;
+    }
+
+    /**
+     * Maps segment of the acknowledged offset, moves the offset to the first segment if it is deleted.
+     * @return                  <code>false</code> if there are no segments
+     */
+    private boolean mapSegment() throws IOException {
+        if (segment != null && segmentSequence == ackSequence) {
+            return true;
+        }
+        segment = null;
+        File file = segmentFile(ackSequence);
+        if (!file.isFile()) {
+            long next = nextSequence(ackSequence);
+            if (next < 0) {
+                return false;
+            }
+            if (ackSequence > 0) {
+                // the segments are deleted by the retention of the store before they are sent
+                reportLoss(ackSequence, next);
+            }
+            saveOffset(next, SegmentedLogStore.HEADER_SIZE);
+            file = segmentFile(next);
+        }
+        RandomAccessFile segmentFile = new RandomAccessFile(file, "r");
+        try {
+            segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, segmentFile.length());
+        } finally {
+            segmentFile.close();
+        }
+        if (segment.remaining() < SegmentedLogStore.HEADER_SIZE || segment.getInt(0) != SegmentedLogStore.MAGIC) {
+            throw new IOException("Not a segment file: " + file);
+        }
+        segmentSequence = ackSequence;
+        return true;
+    }
+
+    /**
+     * Returns end of the last whole valid record of the batch from the acknowledged offset.
+     */
+    private int batchEnd() {
+        segment.position(ackPosition);
+        int end = ackPosition;
+        int length;
+        while (end - ackPosition < batchSize && (length = SegmentedLogStore.nextRecord(segment, crc)) >= 0) {
+            if (end > ackPosition && end + SegmentedLogStore.FRAME_SIZE + length - ackPosition > batchSize) {
+                break;
+            }
+            segment.position(segment.position() + length);
+            end = segment.position();
+        }
+        return end;
+    }
+
+    /**
+     * Posts range of the segment, the compressed range is in the buffer.
+     * @return                  acknowledged position in the segment
+     */
+    private int upload(long sequence, int offset, int end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        boolean isAnswered = false;
+        try {
+            connection.setConnectTimeout(connectTimeout);
+            connection.setReadTimeout(readTimeout);
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setFixedLengthStreamingMode(compressed.size());
+            connection.setRequestProperty("Content-Type", "application/octet-stream");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setRequestProperty(DEVICE_HEADER, deviceId);
+            connection.setRequestProperty(SEGMENT_HEADER, Long.toString(sequence));
+            connection.setRequestProperty(OFFSET_HEADER, Integer.toString(offset));
+            connection.setRequestProperty(END_HEADER, Integer.toString(end));
+            OutputStream out = connection.getOutputStream();
+            try {
+                compressed.writeTo(out);
+            } finally {
+                out.close();
+            }
+            int code = connection.getResponseCode();
+            // the body is read to the end, so the connection is kept for the next batch
+            drain(code < 400 ? connection.getInputStream() : connection.getErrorStream());
+            isAnswered = true;
+            String acknowledged = connection.getHeaderField(ACKNOWLEDGED_HEADER);
+            if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_CONFLICT || acknowledged == null) {
+                throw new IOException("Server answered " + code + " " + connection.getResponseMessage());
+            }
+            int separator = acknowledged.indexOf(':');
+            long ackedSequence;
+            int ackedPosition;
+            try {
+                ackedSequence = Long.parseLong(acknowledged.substring(0, separator));
+                ackedPosition = Integer.parseInt(acknowledged.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IOException("Wrong acknowledgement: " + acknowledged);
+            }
+            if (ackedSequence != sequence || ackedPosition < SegmentedLogStore.HEADER_SIZE) {
+                throw new IOException("Server acknowledged another segment: " + acknowledged);
+            }
+            return ackedPosition;
+        } finally {
+            if (!isAnswered) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Adapts batch size to the throughput of the batch.
+     */
+    private void adapt(int length, long elapsedNanos) {
+        double rate = length / Math.max(1e-3, elapsedNanos / 1e6);
+        throughput = throughput == 0 ? rate : throughput * 0.7 + rate * 0.3;
+        long size = (long) (throughput * targetDuration);
+        batchSize = (int) Math.max(minBatchSize, Math.min(maxBatchSize, size));
+    }
+
+    /**
+     * Counts and logs segments from the given one to the next kept one as lost.
+     */
+    private void reportLoss(long sequence, long next) {
+        long count = next - sequence;
+        lostSegments.add(count);
+        lostSegmentCount += count;
+        CollectionEngine collectionEngine = this.collectionEngine;
+        if (collectionEngine != null) {
+            collectionEngine.warn(String.format(
+                    "SyncEngine::Segments are lost by retention - From: %d, Count: %d, Offset: %d",
+                    sequence, count, ackPosition));
+        }
+    }
+
+    private void fail(String message) {
+        failureCount.increment();
+        lastError = message;
+        batchSize = Math.max(minBatchSize, batchSize / 2);
+        retryDelay = retryDelay == 0 ? minRetryDelay : Math.min(maxRetryDelay, retryDelay * 2);
+        nextAttemptTime = System.currentTimeMillis() + retryDelay;
+    }
+
+    private void loadOffset() throws IOException {
+        File file = new File(directory, OFFSET_FILE);
+        ackSequence = 0;
+        ackPosition = SegmentedLogStore.HEADER_SIZE;
+        if (!file.isFile()) {
+            return;
+        }
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            ackSequence = in.readLong();
+            ackPosition = in.readInt();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Saves acknowledged offset: writes a new file and renames it over the old one, so a crash
+     * leaves either of them whole.
+     */
+    private void saveOffset(long sequence, int position) throws IOException {
+        File file = new File(directory, OFFSET_FILE);
+        File temporary = new File(directory, OFFSET_FILE + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temporary);
+        try {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeLong(sequence);
+            out.writeInt(position);
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        if (!temporary.renameTo(file)) {
+            throw new IOException("Can not save sync offset to " + file);
+        }
+        ackSequence = sequence;
+        ackPosition = position;
+    }
+
+    /**
+     * Returns sequence number of the first segment after the given one, or <code>-1</code> if there is none.
+     */
+    private long nextSequence(long sequence) {
+        for (File file: SegmentedLogStore.listSegments(directory)) {
+            long next = SegmentedLogStore.parseSequence(file);
+            if (next > sequence) {
+                return next;
+            }
+        }
+        return -1;
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, String.format("%s%016d%s",
+                SegmentedLogStore.PREFIX, sequence, SegmentedLogStore.SUFFIX));
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        if (in == null) {
+            return;
+        }
+        try {
+            byte[] buffer = new byte[256];
+            while (in.read(buffer) >= 0) {
+                // the body is not used
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
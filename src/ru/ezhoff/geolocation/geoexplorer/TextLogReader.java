@@ -0,0 +1,360 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * Reader of the text log file which turns the lines of monitor samples back into typed samples.
+ * Other lines are returned as text messages.
+ * <p>
+ * The time of the log is written with a 12-hour clock and no AM/PM marker, so the reader
+ * counts half days itself: a time which goes back by more than an hour against the previous record
+ * of the same day is moved to the afternoon. The first record of a day is taken as a morning one.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TextLogReader implements RecordSource {
+
+    private static final String LOCATION_PREFIX = "LocationMonitor{Provider - ";
+    private static final String CELL_PREFIX = "CellMonitor::";
+    private static final String MATCH_PREFIX = "MapMatcher{Provider - ";
+
+    private static final long MINUTE = 60 * 1000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long HALF_DAY = 12 * HOUR;
+
+    /**
+     * The source.
+     */
+    private final BufferedReader reader;
+
+    /**
+     * The parser of the date part of the time.
+     */
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy.MM.dd");
+
+    /**
+     * The date part of the last record.
+     */
+    private String date;
+
+    /**
+     * The start of the day of the last record, in milliseconds.
+     */
+    private long dayStart;
+
+    /**
+     * The offset of the half day of the last record, <code>0</code> or 12 hours.
+     */
+    private long halfDay;
+
+    /**
+     * The position of the value parser in the message.
+     */
+    private int position;
+
+    private final LocationSample location = new LocationSample();
+    private final CellSample neighbor = new CellSample(CellSample.NEIGHBOR);
+    private final CellSample neighborCount = new CellSample(CellSample.NEIGHBOR_COUNT);
+    private final CellSample neighborLost = new CellSample(CellSample.NEIGHBOR_LOST);
+    private final CellSample gsm = new CellSample(CellSample.GSM);
+    private final CellSample cdma = new CellSample(CellSample.CDMA);
+    private final SignalSample asu = new SignalSample(SignalSample.ASU);
+    private final SignalSample strengths = new SignalSample(SignalSample.STRENGTHS);
+    private final SignalSummarySample summary = new SignalSummarySample();
+    private final MatchSample match = new MatchSample();
+    private final DwellSample dwellStarted = new DwellSample(DwellSample.STARTED);
+    private final DwellSample dwellEnded = new DwellSample(DwellSample.ENDED);
+
+    private Sample sample;
+    private long time = Long.MIN_VALUE;
+    private String level;
+    private String message;
+
+    /**
+     * Creates reader.
+     * @param reader            source
+     */
+    public TextLogReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int levelStart = line.indexOf('\t');
+            int messageStart = levelStart < 0 ? -1 : line.indexOf('\t', levelStart + 1);
+            if (messageStart < 0) {
+                continue;
+            }
+            try {
+                time = parseTime(line, levelStart);
+            } catch (ParseException e) {
+                continue;
+            }
+            level = line.substring(levelStart + 1, messageStart);
+            message = line.substring(messageStart + 1);
+            try {
+                sample = parseSample(message);
+            } catch (RuntimeException e) {
+                // a line which only looks like a sample stays a text message
+                sample = null;
+            }
+            if (sample != null) {
+                sample.time = time;
+                message = null;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sets time of the record before the first one, which tells the half of the day of the first record,
+     * e.g. when reading starts in the middle of a log.
+     * @param time              time, in milliseconds
+     */
+    void setPreviousTime(long time) {
+        this.time = time;
+    }
+
+    @Override
+    public Sample getSample() {
+        return sample;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String getLevel() {
+        return level;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private long parseTime(String line, int end) throws ParseException {
+        if (end != 23) {
+            throw new ParseException(line, 0);
+        }
+        String lineDate = line.substring(0, 10);
+        if (!lineDate.equals(date)) {
+            dayStart = dateFormat.parse(lineDate).getTime();
+            date = lineDate;
+            halfDay = 0;
+        }
+        long clockTime = (digits(line, 11, 2) % 12) * HOUR
+                + digits(line, 14, 2) * MINUTE
+                + digits(line, 17, 2) * 1000
+                + digits(line, 20, 3);
+        long result = dayStart + halfDay + clockTime;
+        if (halfDay == 0 && time != Long.MIN_VALUE && result < time - HOUR) {
+            halfDay = HALF_DAY;
+            result += HALF_DAY;
+        }
+        return result;
+    }
+
+    private static int digits(String line, int start, int count) throws ParseException {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new ParseException(line, i);
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private Sample parseSample(String message) {
+        position = 0;
+        if (message.startsWith(LOCATION_PREFIX)) {
+            int providerEnd = message.indexOf("}::", LOCATION_PREFIX.length());
+            if (providerEnd < 0) {
+                return null;
+            }
+            String rest = message.substring(providerEnd + 3);
+            int origin;
+            if (rest.startsWith("Listener::Location changed - ")) {
+                origin = Sample.LISTENER;
+            } else if (rest.startsWith("Monitor::Location changed - ")) {
+                origin = Sample.MONITOR;
+            } else if (rest.startsWith("Dwell started - ")) {
+                return parseDwell(message, providerEnd, dwellStarted);
+            } else if (rest.startsWith("Dwell ended - ")) {
+                return parseDwell(message, providerEnd, dwellEnded);
+            } else {
+                return null;
+            }
+            position = providerEnd;
+            location.source = message.substring(LOCATION_PREFIX.length(), providerEnd);
+            location.origin = origin;
+            location.latitude = Double.parseDouble(nextValue(message));
+            location.longitude = Double.parseDouble(nextValue(message));
+            location.altitude = Double.parseDouble(nextValue(message));
+            location.accuracy = Float.parseFloat(nextValue(message));
+            return location;
+        }
+        if (message.startsWith(MATCH_PREFIX)) {
+            return parseMatch(message);
+        }
+        if (!message.startsWith(CELL_PREFIX)) {
+            return null;
+        }
+        position = CELL_PREFIX.length();
+        if (message.startsWith("Monitor::Neighboring cell info:", position)) {
+            position += "Monitor::Neighboring cell info:".length();
+            neighbor.cid = nextInt(message);
+            neighbor.lac = nextInt(message);
+            neighbor.networkType = nextInt(message);
+            neighbor.psc = nextInt(message);
+            neighbor.rssi = nextInt(message);
+            return neighbor;
+        }
+        if (message.startsWith("Monitor::Neighboring cell count:", position)) {
+            position += "Monitor::Neighboring cell count".length();
+            neighborCount.count = nextInt(message);
+            return neighborCount;
+        }
+        if (message.startsWith("Monitor::Neighboring cell lost:", position)) {
+            position += "Monitor::Neighboring cell lost:".length();
+            neighborLost.cid = nextInt(message);
+            neighborLost.lac = nextInt(message);
+            neighborLost.psc = nextInt(message);
+            return neighborLost;
+        }
+        if (message.startsWith("Listener::Signal strength changed", position)) {
+            asu.gsmSignalStrength = nextInt(message);
+            return asu;
+        }
+        if (message.startsWith("Listener::Signal strengths changed", position)) {
+            strengths.gsm = Boolean.parseBoolean(nextValue(message));
+            strengths.cdmaDbm = nextInt(message);
+            strengths.cdmaEcio = nextInt(message);
+            strengths.evdoDbm = nextInt(message);
+            strengths.evdoEcio = nextInt(message);
+            strengths.evdoSnr = nextInt(message);
+            strengths.gsmBitErrorRate = nextInt(message);
+            strengths.gsmSignalStrength = nextInt(message);
+            return strengths;
+        }
+        if (message.startsWith("Monitor::Signal window{", position)) {
+            return parseSummary(message);
+        }
+        int origin;
+        if (message.startsWith("Listener::Cell location changed{", position)) {
+            origin = Sample.LISTENER;
+        } else if (message.startsWith("Monitor::Cell location check{", position)) {
+            origin = Sample.MONITOR;
+        } else {
+            return null;
+        }
+        if (message.indexOf("{GSM}", position) > 0) {
+            gsm.origin = origin;
+            gsm.cid = nextInt(message);
+            gsm.lac = nextInt(message);
+            return gsm;
+        }
+        if (message.indexOf("{CDMA}", position) > 0) {
+            cdma.origin = origin;
+            cdma.cid = nextInt(message);
+            cdma.stationLatitude = nextInt(message);
+            cdma.stationLongitude = nextInt(message);
+            cdma.lac = nextInt(message);
+            cdma.psc = nextInt(message);
+            return cdma;
+        }
+        return null;
+    }
+
+    private Sample parseSummary(String message) {
+        position += "Monitor::Signal window{".length();
+        summary.cellKind = message.startsWith("GSM}", position) ? CellSample.GSM
+                : message.startsWith("CDMA}", position) ? CellSample.CDMA : 0;
+        summary.windowStart = Long.parseLong(nextValue(message));
+        summary.cid = nextInt(message);
+        summary.lac = nextInt(message);
+        summary.psc = nextInt(message);
+        summary.sampleCount = nextInt(message);
+        for (int field = 0; field < SignalSummarySample.FIELD_COUNT; field++) {
+            String[] values = nextValue(message).split(" ");
+            summary.counts[field] = Integer.parseInt(values[0]);
+            if (summary.counts[field] > 0) {
+                summary.minimums[field] = Integer.parseInt(values[1]);
+                summary.maximums[field] = Integer.parseInt(values[2]);
+                summary.means[field] = Float.parseFloat(values[3]);
+                summary.variances[field] = Float.parseFloat(values[4]);
+                summary.p10[field] = Integer.parseInt(values[5]);
+                summary.p50[field] = Integer.parseInt(values[6]);
+                summary.p90[field] = Integer.parseInt(values[7]);
+            }
+        }
+        return summary;
+    }
+
+    private Sample parseMatch(String message) {
+        int providerEnd = message.indexOf("}::Matched - ", MATCH_PREFIX.length());
+        if (providerEnd < 0) {
+            return null;
+        }
+        position = providerEnd;
+        match.source = message.substring(MATCH_PREFIX.length(), providerEnd);
+        match.wayId = Long.parseLong(nextValue(message));
+        match.fromNode = Long.parseLong(nextValue(message));
+        match.toNode = Long.parseLong(nextValue(message));
+        match.offset = Float.parseFloat(nextValue(message));
+        match.latitude = Double.parseDouble(nextValue(message));
+        match.longitude = Double.parseDouble(nextValue(message));
+        match.distance = Float.parseFloat(nextValue(message));
+        return match;
+    }
+
+    private Sample parseDwell(String message, int providerEnd, DwellSample dwell) {
+        position = providerEnd;
+        dwell.source = message.substring(LOCATION_PREFIX.length(), providerEnd);
+        dwell.since = Long.parseLong(nextValue(message));
+        dwell.latitude = Double.parseDouble(nextValue(message));
+        dwell.longitude = Double.parseDouble(nextValue(message));
+        dwell.accuracy = Float.parseFloat(nextValue(message));
+        dwell.radius = Float.parseFloat(nextValue(message));
+        dwell.count = nextInt(message);
+        return dwell;
+    }
+
+    private int nextInt(String message) {
+        return Integer.parseInt(nextValue(message));
+    }
+
+    /**
+     * Returns value after the next <code>": "</code> up to the next comma or the end of the message.
+     */
+    private String nextValue(String message) {
+        int start = message.indexOf(": ", position);
+        if (start < 0) {
+            throw new IllegalArgumentException("No more values in: " + message);
+        }
+        start += 2;
+        int end = message.indexOf(',', start);
+        if (end < 0) {
+            end = message.length();
+        }
+        position = end;
+        return message.substring(start, end);
+    }
+}
@@ -0,0 +1,57 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer of records in the text format of the log file:
+ * tab separated time, level and message, one record per line.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class TextRecordWriter implements RecordWriter {
+
+    /**
+     * The destination.
+     */
+    private final Writer writer;
+
+    /**
+     * The formatter of record times.
+     */
+    private final TimestampFormat timestampFormat = new TimestampFormat();
+
+    /**
+     * The reusable buffer for sample messages.
+     */
+    private final StringBuilder builder = new StringBuilder(256);
+
+    TextRecordWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    @Override
+    public void writeMessage(long time, String level, String message) throws IOException {
+        timestampFormat.format(writer, time);
+        writer.append('\t').append(level).append('\t').append(message).append('\n');
+    }
+
+    @Override
+    public void writeSample(Sample sample) throws IOException {
+        builder.setLength(0);
+        sample.appendMessage(builder);
+        timestampFormat.format(writer, sample.time);
+        writer.append('\t').append(FileLogger.INFO).append('\t').append(builder).append('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Formatter of log timestamps which produces the same text as the
+ * <code>yyyy.MM.dd hh.mm.ss.SSS</code> pattern of the log file.
+ * The part up to seconds is formatted once per second and cached, the milliseconds are
+ * appended by hand, so a steady stream of records does not allocate.
+ * Not thread safe, every writing thread owns its own instance.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+class TimestampFormat {
+
+    /**
+     * The formatter of the part up to seconds.
+     */
+    private final SimpleDateFormat secondsFormat = new SimpleDateFormat("yyyy.MM.dd hh.mm.ss.");
+
+    /**
+     * The reusable date for the formatter.
+     */
+    private final Date date = new Date();
+
+    /**
+     * The second of the cached prefix.
+     */
+    private long cachedSecond = Long.MIN_VALUE;
+
+    /**
+     * The cached prefix.
+     */
+    private char[] prefix;
+
+    /**
+     * Writes formatted time.
+     * @param writer            destination
+     * @param time              time, in milliseconds
+     * @throws IOException      if writing is failed
+     */
+    void format(Writer writer, long time) throws IOException {
+        long second = floorDiv(time, 1000);
+        if (second != cachedSecond) {
+            date.setTime(second * 1000);
+            prefix = secondsFormat.format(date).toCharArray();
+            cachedSecond = second;
+        }
+        writer.write(prefix);
+        int millis = (int) (time - second * 1000);
+        writer.write('0' + millis / 100);
+        writer.write('0' + millis / 10 % 10);
+        writer.write('0' + millis % 10);
+    }
+
+    private static long floorDiv(long value, long divider) {
+        long result = value / divider;
+        return value % divider < 0 ? result - 1 : result;
+    }
+}
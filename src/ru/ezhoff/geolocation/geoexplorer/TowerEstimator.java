@@ -0,0 +1,515 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental estimator of cell tower positions from cell observations joined to the most recent location fix,
+ * on a move extrapolated to the time of the observation by {@link DeadReckoning}. Every cell keeps running sums only, so an observation is taken in constant time and an estimate
+ * is computed from the sums at any moment:
+ * <ul>
+ *     <li>the weighted centroid of the fixes, weighted by the received signal amplitude and by the inverse
+ *     square of the fix accuracy, with the standard error of the centroid as its confidence radius;</li>
+ *     <li>the weighted least squares solution of the linearized circle equations of the fixes with the distances
+ *     given by the log-distance path loss model, weighted by the inverse square of the fix accuracy.</li>
+ * </ul>
+ * Positions are summed in meters from the first fix of the cell, so the sums stay small and the degrees
+ * of longitude are not squeezed. Observations of unknown signal strength are skipped.
+ * <p>
+ * The RSSI of neighboring cells is in ASU for GSM and in dBm (negative) for UMTS, the serving cell
+ * takes the last reported signal strength, the same as in {@link CoverageIndex}.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TowerEstimator implements SampleSink {
+
+    /**
+     * Current position estimate of a cell tower.
+     */
+    public static final class Estimate {
+        final int cid;
+        final int lac;
+        final int count;
+        final double latitude;
+        final double longitude;
+        final double radius;
+        final double fitLatitude;
+        final double fitLongitude;
+
+        Estimate(int cid, int lac, int count, double latitude, double longitude, double radius,
+                 double fitLatitude, double fitLongitude) {
+            this.cid = cid;
+            this.lac = lac;
+            this.count = count;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+            this.fitLatitude = fitLatitude;
+            this.fitLongitude = fitLongitude;
+        }
+
+        public int getCid() {
+            return cid;
+        }
+
+        public int getLac() {
+            return lac;
+        }
+
+        /**
+         * Returns count of observations of the estimate.
+         * @return                  observations count
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Returns latitude of the weighted centroid.
+         * @return                  latitude, in degrees
+         */
+        public double getLatitude() {
+            return latitude;
+        }
+
+        /**
+         * Returns longitude of the weighted centroid.
+         * @return                  longitude, in degrees
+         */
+        public double getLongitude() {
+            return longitude;
+        }
+
+        /**
+         * Returns standard error of the weighted centroid. It is the confidence of the centroid,
+         * a tower away from the track of the survey is further from it.
+         * @return                  radius, in meters
+         */
+        public double getRadius() {
+            return radius;
+        }
+
+        /**
+         * Returns latitude of the least squares fit.
+         * @return                  latitude, in degrees, or <code>NaN</code> if the fixes do not define it
+         */
+        public double getFitLatitude() {
+            return fitLatitude;
+        }
+
+        /**
+         * Returns longitude of the least squares fit.
+         * @return                  longitude, in degrees, or <code>NaN</code> if the fixes do not define it
+         */
+        public double getFitLongitude() {
+            return fitLongitude;
+        }
+    }
+
+    /**
+     * The RSSI of unknown signal strength, in ASU.
+     */
+    private static final int UNKNOWN_RSSI = 99;
+
+    /**
+     * The meters in a degree of latitude.
+     */
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The initial count of cells.
+     */
+    private static final int INITIAL_CELLS = 64;
+
+    // offsets of the running sums of a cell in the stats array
+    private static final int REFERENCE_LATITUDE = 0;
+    private static final int REFERENCE_LONGITUDE = 1;
+    private static final int METERS_PER_LONGITUDE = 2;
+    private static final int SUM_W = 3;
+    private static final int SUM_WX = 4;
+    private static final int SUM_WY = 5;
+    private static final int SUM_WRR = 6;
+    private static final int SUM_WW = 7;
+    private static final int SUM_WAA = 8;
+    private static final int FIT_XX = 9;
+    private static final int FIT_XY = 10;
+    private static final int FIT_X = 11;
+    private static final int FIT_YY = 12;
+    private static final int FIT_Y = 13;
+    private static final int FIT_1 = 14;
+    private static final int FIT_BX = 15;
+    private static final int FIT_BY = 16;
+    private static final int FIT_B = 17;
+    private static final int STRIDE = 18;
+
+    /**
+     * The least relative determinant of the least squares system which is solved.
+     */
+    private static final double MIN_DETERMINANT = 1e-9;
+
+    /**
+     * The longest time from a location fix to an observation which is joined to it, in milliseconds.
+     */
+    private long maxFixAge = 10 * 1000;
+
+    /**
+     * The most count of cells.
+     */
+    private int capacity = 16 * 1024;
+
+    /**
+     * The path loss exponent of the distance model.
+     */
+    private double pathLossExponent = 3;
+
+    /**
+     * The signal strength at the reference distance of the distance model, in dBm.
+     */
+    private double referenceDbm = -60;
+
+    /**
+     * The reference distance of the distance model, in meters.
+     */
+    private double referenceDistance = 100;
+
+    /**
+     * The cell indexes by cell key.
+     */
+    private LongIntMap cellIndex = new LongIntMap(INITIAL_CELLS);
+
+    private int[] cids = new int[INITIAL_CELLS];
+    private int[] lacs = new int[INITIAL_CELLS];
+    private int[] counts = new int[INITIAL_CELLS];
+
+    /**
+     * The running sums of cells, {@link #STRIDE} values per cell.
+     */
+    private double[] stats = new double[INITIAL_CELLS * STRIDE];
+
+    /**
+     * The count of cells.
+     */
+    private int cellCount;
+
+    /**
+     * The flag of a location fix is known.
+     */
+    private boolean hasFix;
+
+    private long fixTime;
+    private double fixLatitude;
+    private double fixLongitude;
+    private double fixAccuracy;
+
+    /**
+     * The position between the fixes.
+     */
+    private final DeadReckoning reckoning = new DeadReckoning();
+
+    /**
+     * The last serving cell, or <code>-1</code>.
+     */
+    private int servingCid = -1;
+
+    /**
+     * The location area code of the last serving cell.
+     */
+    private int servingLac = -1;
+
+    /**
+     * The last reported signal strength of the serving cell, in ASU.
+     */
+    private int servingRssi = UNKNOWN_RSSI;
+
+    /**
+     * The count of observations without a recent location fix.
+     */
+    private long unjoinedCount;
+
+    /**
+     * The count of observations of new cells dropped for the capacity.
+     */
+    private long droppedCount;
+
+    @Override
+    public synchronized void log(Sample sample) {
+        switch (sample.getType()) {
+            case LocationSample.TYPE:
+                LocationSample location = (LocationSample) sample;
+                hasFix = true;
+                fixTime = location.time;
+                fixLatitude = location.latitude;
+                fixLongitude = location.longitude;
+                // a fix without accuracy is trusted as a rough one
+                fixAccuracy = location.accuracy > 0 ? location.accuracy : 50;
+                reckoning.fix(location.time, location.source, location.latitude, location.longitude,
+                        location.accuracy);
+                break;
+            case DwellSample.STARTED:
+                DwellSample dwell = (DwellSample) sample;
+                hasFix = true;
+                // the position holds until the dwell ends, however old the fix gets
+                fixTime = Long.MAX_VALUE;
+                fixLatitude = dwell.latitude;
+                fixLongitude = dwell.longitude;
+                fixAccuracy = dwell.accuracy > 0 ? dwell.accuracy : 50;
+                reckoning.hold(dwell.latitude, dwell.longitude);
+                break;
+            case DwellSample.ENDED:
+                if (fixTime == Long.MAX_VALUE) {
+                    fixTime = sample.time;
+                }
+                break;
+            case CellSample.NEIGHBOR:
+                CellSample neighbor = (CellSample) sample;
+                observe(neighbor.time, neighbor.cid, neighbor.lac, neighbor.rssi);
+                break;
+            case CellSample.GSM:
+            case CellSample.CDMA:
+                CellSample serving = (CellSample) sample;
+                if (serving.cid != servingCid || serving.lac != servingLac) {
+                    servingRssi = UNKNOWN_RSSI;
+                }
+                servingCid = serving.cid;
+                servingLac = serving.lac;
+                observe(serving.time, servingCid, servingLac, servingRssi);
+                break;
+            case SignalSample.ASU:
+            case SignalSample.STRENGTHS:
+                SignalSample signal = (SignalSample) sample;
+                if (signal.kind == SignalSample.ASU || signal.gsm) {
+                    servingRssi = signal.gsmSignalStrength;
+                    if (servingCid != -1) {
+                        observe(signal.time, servingCid, servingLac, servingRssi);
+                    }
+                }
+                break;
+            default:
+                // counts and lost cells tell nothing about the position of a tower
+        }
+    }
+
+    /**
+     * Returns current estimate of the cell tower.
+     * @param cid               cell id
+     * @param lac               location area code
+     * @return                  estimate, or <code>null</code> if the cell is not observed
+     */
+    public synchronized Estimate estimate(int cid, int lac) {
+        int cell = cellIndex.get(CellChangeDetector.key(cid, lac, 0));
+        return cell == LongIntMap.ABSENT ? null : estimate(cell);
+    }
+
+    /**
+     * Returns current estimates of all observed cell towers.
+     * @return                  estimates
+     */
+    public synchronized List<Estimate> estimates() {
+        List<Estimate> estimates = new ArrayList<Estimate>(cellCount);
+        for (int cell = 0; cell < cellCount; cell++) {
+            estimates.add(estimate(cell));
+        }
+        return estimates;
+    }
+
+    public synchronized int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Returns count of observations without a recent location fix.
+     * @return                  unjoined observations count
+     */
+    public synchronized long getUnjoinedCount() {
+        return unjoinedCount;
+    }
+
+    /**
+     * Returns count of observations of new cells dropped for the capacity.
+     * @return                  dropped count
+     */
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Forgets all observations.
+     */
+    public synchronized void clear() {
+        cellIndex = new LongIntMap(INITIAL_CELLS);
+        cellCount = 0;
+        hasFix = false;
+        reckoning.clear();
+        servingCid = -1;
+        servingLac = -1;
+        servingRssi = UNKNOWN_RSSI;
+        unjoinedCount = 0;
+        droppedCount = 0;
+    }
+
+    /**
+     * Sets longest time from a location fix to an observation which is joined to it
+     * and returns self object for easy init.
+     * @param maxFixAge         time, in milliseconds
+     * @return                  self object
+     */
+    public synchronized TowerEstimator setMaxFixAge(long maxFixAge) {
+        this.maxFixAge = maxFixAge;
+        return this;
+    }
+
+    /**
+     * Sets most count of cells and returns self object for easy init.
+     * @param capacity          capacity
+     * @return                  self object
+     */
+    public synchronized TowerEstimator setCapacity(int capacity) {
+        this.capacity = capacity;
+        return this;
+    }
+
+    /**
+     * Sets distance model and returns self object for easy init. Applied to the next observations.
+     * @param pathLossExponent  path loss exponent, 2 in free space, 3 to 4 in a city
+     * @param referenceDbm      signal strength at the reference distance, in dBm
+     * @param referenceDistance reference distance, in meters
+     * @return                  self object
+     */
+    public synchronized TowerEstimator setPathLoss(double pathLossExponent, double referenceDbm,
+                                                   double referenceDistance) {
+        this.pathLossExponent = pathLossExponent;
+        this.referenceDbm = referenceDbm;
+        this.referenceDistance = referenceDistance;
+        return this;
+    }
+
+    private void observe(long time, int cid, int lac, int rssi) {
+        if (rssi == UNKNOWN_RSSI) {
+            return;
+        }
+        if (!hasFix || time - fixTime > maxFixAge) {
+            unjoinedCount++;
+            return;
+        }
+        long key = CellChangeDetector.key(cid, lac, 0);
+        int cell = cellIndex.get(key);
+        if (cell == LongIntMap.ABSENT) {
+            cell = addCell(key, cid, lac);
+            if (cell == -1) {
+                droppedCount++;
+                return;
+            }
+        }
+        int base = cell * STRIDE;
+        double latitude = reckoning.latitudeAt(time);
+        double longitude = reckoning.longitudeAt(time);
+        double x = (longitude - stats[base + REFERENCE_LONGITUDE]) * stats[base + METERS_PER_LONGITUDE];
+        double y = (latitude - stats[base + REFERENCE_LATITUDE]) * METERS_PER_DEGREE;
+        double dbm = rssi < 0 ? rssi : 2 * rssi - 113;
+        double accuracyWeight = 1 / (fixAccuracy * fixAccuracy);
+        // the amplitude of the signal, relative to the reference one
+        double w = Math.pow(10, (dbm - referenceDbm) / 20) * accuracyWeight;
+        stats[base + SUM_W] += w;
+        stats[base + SUM_WX] += w * x;
+        stats[base + SUM_WY] += w * y;
+        stats[base + SUM_WRR] += w * (x * x + y * y);
+        stats[base + SUM_WW] += w * w;
+        stats[base + SUM_WAA] += w * fixAccuracy * fixAccuracy;
+        // the circle (x - X)^2 + (y - Y)^2 = d^2 of the fix is linear in X, Y and K = X^2 + Y^2:
+        // 2x * X + 2y * Y - K = x^2 + y^2 - d^2
+        double distance = referenceDistance * Math.pow(10, (referenceDbm - dbm) / (10 * pathLossExponent));
+        double b = x * x + y * y - distance * distance;
+        double ax = 2 * x;
+        double ay = 2 * y;
+        stats[base + FIT_XX] += accuracyWeight * ax * ax;
+        stats[base + FIT_XY] += accuracyWeight * ax * ay;
+        stats[base + FIT_X] += accuracyWeight * ax;
+        stats[base + FIT_YY] += accuracyWeight * ay * ay;
+        stats[base + FIT_Y] += accuracyWeight * ay;
+        stats[base + FIT_1] += accuracyWeight;
+        stats[base + FIT_BX] += accuracyWeight * ax * b;
+        stats[base + FIT_BY] += accuracyWeight * ay * b;
+        stats[base + FIT_B] += accuracyWeight * b;
+        counts[cell]++;
+    }
+
+    private int addCell(long key, int cid, int lac) {
+        if (cellCount == capacity) {
+            return -1;
+        }
+        if (cellCount == cids.length) {
+            int length = Math.min(cids.length * 2, capacity);
+            cids = grow(cids, length);
+            lacs = grow(lacs, length);
+            counts = grow(counts, length);
+            double[] grown = new double[length * STRIDE];
+            System.arraycopy(stats, 0, grown, 0, stats.length);
+            stats = grown;
+        }
+        int cell = cellCount++;
+        cids[cell] = cid;
+        lacs[cell] = lac;
+        counts[cell] = 0;
+        int base = cell * STRIDE;
+        for (int i = base; i < base + STRIDE; i++) {
+            stats[i] = 0;
+        }
+        stats[base + REFERENCE_LATITUDE] = fixLatitude;
+        stats[base + REFERENCE_LONGITUDE] = fixLongitude;
+        stats[base + METERS_PER_LONGITUDE] = METERS_PER_DEGREE * Math.cos(Math.toRadians(fixLatitude));
+        cellIndex.put(key, cell);
+        return cell;
+    }
+
+    private Estimate estimate(int cell) {
+        int base = cell * STRIDE;
+        double sw = stats[base + SUM_W];
+        double mx = stats[base + SUM_WX] / sw;
+        double my = stats[base + SUM_WY] / sw;
+        // the spread of the fixes around the centroid and their own error over the effective count of fixes
+        double spread = Math.max(0, stats[base + SUM_WRR] / sw - mx * mx - my * my);
+        double variance = spread + stats[base + SUM_WAA] / sw;
+        double effectiveCount = sw * sw / stats[base + SUM_WW];
+        double radius = Math.sqrt(variance / effectiveCount);
+
+        double fitX = Double.NaN;
+        double fitY = Double.NaN;
+        double a00 = stats[base + FIT_XX];
+        double a01 = stats[base + FIT_XY];
+        double a02 = -stats[base + FIT_X];
+        double a11 = stats[base + FIT_YY];
+        double a12 = -stats[base + FIT_Y];
+        double a22 = stats[base + FIT_1];
+        double b0 = stats[base + FIT_BX];
+        double b1 = stats[base + FIT_BY];
+        double b2 = -stats[base + FIT_B];
+        double c00 = a11 * a22 - a12 * a12;
+        double c01 = a02 * a12 - a01 * a22;
+        double c02 = a01 * a12 - a02 * a11;
+        double determinant = a00 * c00 + a01 * c01 + a02 * c02;
+        double scale = a00 * a11 * a22;
+        if (counts[cell] >= 3 && scale > 0 && Math.abs(determinant) > MIN_DETERMINANT * scale) {
+            // Cramer's rule for the symmetric system
+            double c11 = a00 * a22 - a02 * a02;
+            double c12 = a01 * a02 - a00 * a12;
+            fitX = (c00 * b0 + c01 * b1 + c02 * b2) / determinant;
+            fitY = (c01 * b0 + c11 * b1 + c12 * b2) / determinant;
+        }
+        double metersPerLongitude = stats[base + METERS_PER_LONGITUDE];
+        double referenceLatitude = stats[base + REFERENCE_LATITUDE];
+        double referenceLongitude = stats[base + REFERENCE_LONGITUDE];
+        return new Estimate(cids[cell], lacs[cell], counts[cell],
+                referenceLatitude + my / METERS_PER_DEGREE,
+                referenceLongitude + mx / metersPerLongitude,
+                radius,
+                referenceLatitude + fitY / METERS_PER_DEGREE,
+                referenceLongitude + fitX / metersPerLongitude);
+    }
+
+    private static int[] grow(int[] array, int length) {
+        int[] result = new int[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
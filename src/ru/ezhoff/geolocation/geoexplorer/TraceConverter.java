@@ -0,0 +1,61 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Converter of the binary trace to the text format of the log file.
+ * Usage: <code>TraceConverter explorer.trace explorer.log</code>, the trace may be a directory of segments
+ * or a compressed <code>.gxz</code> file.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TraceConverter {
+
+    /**
+     * Converts binary trace to text log.
+     * @param tracePath         path of the binary trace file, of the directory of segments or of the compressed file
+     * @param logPath           path of the text log, overwritten
+     * @return                  count of converted records
+     * @throws IOException      if reading or writing is failed
+     */
+    public static long convert(String tracePath, String logPath) throws IOException {
+        File trace = new File(tracePath);
+        RecordSource reader = trace.getName().endsWith(FileLogger.COMPRESSED_SUFFIX)
+                ? new CompressedLogReader(trace)
+                : new TraceReader(trace.isDirectory()
+                        ? new BufferedInputStream(new SegmentInputStream(trace))
+                        : new BufferedInputStream(new FileInputStream(trace)));
+        TextRecordWriter writer = new TextRecordWriter(new BufferedWriter(new FileWriter(logPath)));
+        long count = 0;
+        try {
+            while (reader.next()) {
+                Sample sample = reader.getSample();
+                if (sample != null) {
+                    writer.writeSample(sample);
+                } else {
+                    writer.writeMessage(reader.getTime(), reader.getLevel(), reader.getMessage());
+                }
+                count++;
+            }
+        } finally {
+            reader.close();
+            writer.close();
+        }
+        return count;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TraceConverter <trace file> <log file>");
+            System.exit(1);
+        }
+        long count = convert(args[0], args[1]);
+        System.out.println(String.format("Converted %s records.", count));
+    }
+}
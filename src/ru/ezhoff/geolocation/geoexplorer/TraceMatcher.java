@@ -0,0 +1,213 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline matcher of recordings to the roads of an OSM extract.
+ * Usage: <code>TraceMatcher [-threads N] [-provider NAME] roads.osm explorer.log|explorer.trace|explorer ...</code>
+ * <p>
+ * The road graph is loaded once and shared by the threads, every recording is matched by a {@link MapMatcher}
+ * of its own on a thread of the pool. The match samples are written next to the recording to the binary trace
+ * with the {@link #MATCHES_SUFFIX}, to be joined with the cell observations by time.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TraceMatcher {
+
+    /**
+     * The suffix of the trace of the match samples.
+     */
+    public static final String MATCHES_SUFFIX = ".matches";
+
+    /**
+     * The count of matcher threads.
+     */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The provider of matched fixes, or <code>null</code> for all providers.
+     */
+    private String provider = LocationFusion.FUSED;
+
+    /**
+     * The counts of fixes, of matches and of breaks of the last matching.
+     */
+    private long fixCount;
+    private long matchCount;
+    private long breakCount;
+
+    /**
+     * The time of the last matching, in nanoseconds.
+     */
+    private long elapsedTime;
+
+    /**
+     * Writer of match samples, keeps the first error since the matcher passes samples without exceptions.
+     */
+    private static final class MatchWriter implements SampleSink {
+        private final RecordWriter writer;
+        private IOException error;
+
+        MatchWriter(RecordWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void log(Sample sample) {
+            if (error == null) {
+                try {
+                    writer.writeSample(sample);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Matches recordings.
+     * @param graph             graph of the roads
+     * @param paths             paths of the recordings, as of {@link SessionExporter#open(File)}
+     * @return                  count of match samples
+     * @throws IOException      if reading or writing is failed
+     */
+    long match(final RoadGraph graph, List<String> paths) throws IOException {
+        long startTime = System.nanoTime();
+        fixCount = 0;
+        matchCount = 0;
+        breakCount = 0;
+        List<Future<MapMatcher>> results = new ArrayList<Future<MapMatcher>>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (final String path: paths) {
+                results.add(executor.submit(new Callable<MapMatcher>() {
+                    @Override
+                    public MapMatcher call() throws IOException {
+                        return match(graph, new File(path));
+                    }
+                }));
+            }
+            for (Future<MapMatcher> result: results) {
+                MapMatcher matcher = get(result);
+                fixCount += matcher.getFixCount();
+                matchCount += matcher.getMatchCount();
+                breakCount += matcher.getBreakCount();
+            }
+            return matchCount;
+        } finally {
+            executor.shutdownNow();
+            elapsedTime = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Prints counts of the last matching.
+     * @param out               destination
+     */
+    void print(PrintStream out) {
+        double seconds = elapsedTime / 1e9;
+        out.println(String.format("Fixes: %s, Matches: %s, Breaks: %s, Time: %.3f s, Throughput: %.0f fixes/s, Threads: %s",
+                fixCount, matchCount, breakCount, seconds, fixCount / seconds, threads));
+    }
+
+    /**
+     * Sets count of matcher threads and returns self object for easy init.
+     * @param threads           threads count
+     * @return                  self object
+     */
+    public TraceMatcher setThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Sets provider of matched fixes and returns self object for easy init.
+     * @param provider          provider name, or <code>null</code> for all providers
+     * @return                  self object
+     */
+    public TraceMatcher setProvider(String provider) {
+        this.provider = provider;
+        return this;
+    }
+
+    private MapMatcher match(RoadGraph graph, File recording) throws IOException {
+        RecordSource reader = SessionExporter.open(recording);
+        RecordWriter writer = null;
+        try {
+            writer = new BinaryTraceWriter(new BufferedOutputStream(
+                    new FileOutputStream(recording.getPath() + MATCHES_SUFFIX)));
+            MatchWriter matchWriter = new MatchWriter(writer);
+            MapMatcher matcher = new MapMatcher(graph).setProvider(provider).setSink(matchWriter);
+            while (reader.next() && matchWriter.error == null) {
+                Sample sample = reader.getSample();
+                if (sample != null) {
+                    matcher.log(sample);
+                }
+            }
+            matcher.flush();
+            if (matchWriter.error != null) {
+                throw matchWriter.error;
+            }
+            return matcher;
+        } finally {
+            reader.close();
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static MapMatcher get(Future<MapMatcher> result) throws IOException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Matching is interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        TraceMatcher matcher = new TraceMatcher();
+        String roadsPath = null;
+        List<String> paths = new ArrayList<String>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-threads".equals(args[i]) && i + 1 < args.length) {
+                matcher.setThreads(Integer.parseInt(args[++i]));
+            } else if ("-provider".equals(args[i]) && i + 1 < args.length) {
+                matcher.setProvider(args[++i]);
+            } else if (!new File(args[i]).exists()) {
+                System.err.println(String.format("Not a file: %s", args[i]));
+                System.exit(1);
+            } else if (roadsPath == null) {
+                roadsPath = args[i];
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.isEmpty()) {
+            System.err.println("Usage: TraceMatcher [-threads N] [-provider NAME] <OSM file> <recording> ...");
+            System.exit(1);
+        }
+        RoadGraph graph = RoadGraph.load(new File(roadsPath));
+        System.out.println(String.format("Roads: %s nodes, %s segments", graph.getNodeCount(), graph.getSegmentCount()));
+        matcher.match(graph, paths);
+        matcher.print(System.out);
+    }
+}
@@ -0,0 +1,151 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Sequential reader of the binary trace written by {@link BinaryTraceWriter}.
+ * Sample objects are reused between records, copy the values to keep them.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TraceReader implements RecordSource {
+
+    /**
+     * The source.
+     */
+    private final DataInputStream in;
+
+    /**
+     * The source names of the current session by id.
+     */
+    private final String[] sources = new String[256];
+
+    /**
+     * The reusable samples by record type.
+     */
+    private final Sample[] samples = new Sample[] {
+            null, null, null,
+            new LocationSample(),
+            new CellSample(CellSample.NEIGHBOR),
+            new CellSample(CellSample.NEIGHBOR_COUNT),
+            new CellSample(CellSample.GSM),
+            new CellSample(CellSample.CDMA),
+            new SignalSample(SignalSample.ASU),
+            new SignalSample(SignalSample.STRENGTHS),
+            new CellSample(CellSample.NEIGHBOR_LOST),
+            new SignalSummarySample(),
+            new MatchSample(),
+            new DwellSample(DwellSample.STARTED),
+            new DwellSample(DwellSample.ENDED)
+    };
+
+    /**
+     * The current sample, or <code>null</code> if the current record is a text message.
+     */
+    private Sample sample;
+
+    /**
+     * The time of the current record.
+     */
+    private long time;
+
+    /**
+     * The level of the current record.
+     */
+    private String level;
+
+    /**
+     * The message of the current text record.
+     */
+    private String message;
+
+    /**
+     * Creates reader.
+     * @param in                source, buffering is up to the caller
+     */
+    public TraceReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    @Override
+    public boolean next() throws IOException {
+        while (true) {
+            int type = in.read();
+            if (type < 0) {
+                return false;
+            }
+            try {
+                switch (type) {
+                    case BinaryTraceWriter.HEADER:
+                        readHeader();
+                        break;
+                    case BinaryTraceWriter.SOURCE:
+                        sources[in.readUnsignedByte()] = in.readUTF();
+                        break;
+                    case BinaryTraceWriter.MESSAGE:
+                        sample = null;
+                        time = in.readLong();
+                        level = FileLogger.LEVELS[in.readUnsignedByte()];
+                        message = in.readUTF();
+                        return true;
+                    default:
+                        if (type >= samples.length) {
+                            throw new IOException("Unknown record type: " + type);
+                        }
+                        sample = samples[type];
+                        sample.time = time = in.readLong();
+                        sample.source = sources[in.readUnsignedByte()];
+                        sample.readFields(in);
+                        level = FileLogger.INFO;
+                        message = null;
+                        return true;
+                }
+            } catch (EOFException e) {
+                // the last record is incomplete, the writer was interrupted
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public Sample getSample() {
+        return sample;
+    }
+
+    @Override
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String getLevel() {
+        return level;
+    }
+
+    @Override
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void readHeader() throws IOException {
+        if (in.readInt() != BinaryTraceWriter.MAGIC) {
+            throw new IOException("Not a trace file");
+        }
+        int version = in.readUnsignedShort();
+        if (version > BinaryTraceWriter.VERSION) {
+            throw new IOException("Unsupported trace version: " + version);
+        }
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = null;
+        }
+    }
+}
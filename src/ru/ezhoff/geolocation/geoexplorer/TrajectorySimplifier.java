@@ -0,0 +1,394 @@
+package ru.ezhoff.geolocation.geoexplorer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Simplifying stage of the fixes of the location monitors, with a guaranteed error bound.
+ * Stands between the monitors and their sink: a fix is passed on only if it is farther than the tolerance
+ * from the position which the consumers take by {@link DeadReckoning}, the last passed fix or on a move
+ * the one extrapolated from the last two, or its accuracy differs by more than the tolerance, other samples
+ * are passed on as they are. The consumers take the position from the passed fixes and dwells of all providers,
+ * so a fix of one provider is checked against the fixes of the others passed since, as well as against its own. So every dropped fix is within the tolerance of the position which
+ * a consumer takes at its time, and the trace shrinks with the turns and the changes of speed rather than
+ * with the time or the distance.
+ * <p>
+ * A stay within the tolerance of a passed fix for the dwell time is collapsed into a {@link DwellSample}:
+ * one is passed when the dwell is found, with the mean position of the stay, and one when a fix leaves the place
+ * or the provider gives no fixes for the longest gap. The fixes in between are only counted. A dwell holds
+ * the position for the consumers which trust a fix for a limited time, so the dwell time should not be longer
+ * than that time. A dwell is found by the last fix before the dwell time, as the next one is expected by
+ * the interval of the fixes, or by the time of any later sample, so the consumers take it before the held fix
+ * gets older than the dwell time.
+ * <p>
+ * Dwells are found and ended by the times of samples and by {@link #advance(long)} of the periodical checks,
+ * so a dwell of a silent provider is ended no later than the next check after the gap.
+ * Distances are taken in the local plane of the held fix, which is exact to millimeters at the scale
+ * of the tolerance. Every provider has a track of its own, nothing is allocated per fix.
+ *
+ * @author e.ezhov
+ * @version 1.0 17.10.26
+ */
+public class TrajectorySimplifier implements SampleSink {
+
+    /**
+     * The meters in a degree of latitude.
+     */
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The consumer of passed samples.
+     */
+    private SampleSink sink;
+
+    /**
+     * The largest distance of a dropped fix from the held one, in meters.
+     */
+    private float tolerance = 10;
+
+    /**
+     * The time of a stay at one place which is a dwell, in milliseconds.
+     */
+    private long dwellTime = 10 * 1000;
+
+    /**
+     * The longest time without fixes which does not end a dwell, in milliseconds.
+     */
+    private long maxGap = 10 * 1000;
+
+    /**
+     * The tracks by provider.
+     */
+    private final Map<String, Track> tracks = new HashMap<String, Track>();
+    private final List<Track> trackList = new ArrayList<Track>();
+
+    /**
+     * The counts of taken fixes, of passed fixes and of found dwells.
+     */
+    private long fixCount;
+    private long passedCount;
+    private long dwellCount;
+
+    /**
+     * The position which the consumers take from the passed fixes and dwells of all providers.
+     */
+    private final DeadReckoning reckoning = new DeadReckoning();
+
+    /**
+     * The held fix of a provider, the stay at it and the dwell.
+     */
+    private static final class Track {
+        final String provider;
+
+        /**
+         * The flag of a held fix.
+         */
+        boolean isHeld;
+
+        /**
+         * The time, the position and the accuracy of the held fix, and the meters in a degree of longitude at it.
+         */
+        long heldTime;
+        double latitude;
+        double longitude;
+        float accuracy;
+        double metersPerLongitude;
+
+        /**
+         * The time of the last fix within the tolerance of the held one and the count of them, itself included.
+         */
+        long lastTime;
+        int count;
+
+        /**
+         * The sums and the bounds of the offsets of the stay from the held fix, in meters.
+         */
+        double sumX;
+        double sumY;
+        double minX;
+        double maxX;
+        double minY;
+        double maxY;
+
+        /**
+         * The flag of a found dwell, and of its place left by the last fix.
+         */
+        boolean isDwelling;
+        boolean isLeft;
+
+        /**
+         * The start, the position and the accuracy of the dwell, the time of its last fix and the count of its fixes.
+         */
+        long dwellSince;
+        double dwellLatitude;
+        double dwellLongitude;
+        float dwellAccuracy;
+        long dwellLastTime;
+        int dwellFixes;
+
+        Track(String provider) {
+            this.provider = provider;
+        }
+    }
+
+    @Override
+    public synchronized void log(Sample sample) {
+        if (!(sample instanceof LocationSample)) {
+            advance(sample.time, null);
+            sink.log(sample);
+            return;
+        }
+        LocationSample fix = (LocationSample) sample;
+        Track track = track(fix.source);
+        advance(fix.time, track);
+        fixCount++;
+        if (track.isDwelling) {
+            if (isWithin(track, fix, track.dwellLatitude, track.dwellLongitude, track.dwellAccuracy)) {
+                track.dwellLastTime = Math.max(track.dwellLastTime, fix.time);
+                track.dwellFixes++;
+                if (track.isLeft || !isReckoned(track, fix)) {
+                    // the consumers hold the fix off the place or a fix of another provider, they take the dwell again
+                    track.isLeft = false;
+                    passDwell(track, DwellSample.STARTED);
+                }
+                return;
+            }
+            if (!track.isLeft) {
+                // a single fix off the place is likely an error, the dwell goes on if the next fix returns
+                track.isLeft = true;
+                pass(track, fix);
+                return;
+            }
+            endDwell(track);
+        }
+        // a fix after a gap is passed, the consumers may have given up the held one
+        if (track.isHeld && fix.time - track.lastTime <= maxGap && reckoning.isMoving()) {
+            // a move is not a stay, only the extrapolated position is kept within the tolerance
+            if (isReckoned(track, fix) && Math.abs(fix.accuracy - track.accuracy) <= tolerance) {
+                track.lastTime = Math.max(track.lastTime, fix.time);
+                return;
+            }
+        } else if (track.isHeld && fix.time - track.lastTime <= maxGap
+                && isWithin(track, fix, track.latitude, track.longitude, track.accuracy) && isReckoned(track, fix)) {
+            double y = (fix.latitude - track.latitude) * METERS_PER_DEGREE;
+            double x = (fix.longitude - track.longitude) * track.metersPerLongitude;
+            long interval = Math.max(0, fix.time - track.lastTime);
+            track.lastTime = Math.max(track.lastTime, fix.time);
+            track.count++;
+            track.sumX += x;
+            track.sumY += y;
+            track.minX = Math.min(track.minX, x);
+            track.maxX = Math.max(track.maxX, x);
+            track.minY = Math.min(track.minY, y);
+            track.maxY = Math.max(track.maxY, y);
+            // the dwell is found by the fix before the one expected after the dwell time,
+            // so the consumers take it before the held fix is older than the dwell time
+            if (track.lastTime + interval - track.heldTime >= dwellTime) {
+                startDwell(track);
+            }
+            return;
+        }
+        pass(track, fix);
+    }
+
+    /**
+     * Ends dwells of the providers without fixes for the longest gap by the given time, and finds dwells
+     * of the stays which last the dwell time by it, so a late fix does not delay them.
+     * @param time              time, in milliseconds
+     */
+    public synchronized void advance(long time) {
+        advance(time, null);
+    }
+
+    /**
+     * Ends all dwells and drops the held fixes, e.g. on stop of the monitors.
+     */
+    public synchronized void flush() {
+        for (Track track: trackList) {
+            endDwell(track);
+        }
+        tracks.clear();
+        trackList.clear();
+        reckoning.clear();
+    }
+
+    /**
+     * Returns count of taken fixes.
+     * @return                  count
+     */
+    public synchronized long getFixCount() {
+        return fixCount;
+    }
+
+    /**
+     * Returns count of passed fixes.
+     * @return                  count
+     */
+    public synchronized long getPassedCount() {
+        return passedCount;
+    }
+
+    /**
+     * Returns count of found dwells.
+     * @return                  count
+     */
+    public synchronized long getDwellCount() {
+        return dwellCount;
+    }
+
+    /**
+     * Sets consumer of passed samples and returns self object for easy init.
+     * @param sink              consumer
+     * @return                  self object
+     */
+    public synchronized TrajectorySimplifier setSink(SampleSink sink) {
+        this.sink = sink;
+        return this;
+    }
+
+    /**
+     * Sets error bound of the dropped fixes and returns self object for easy init.
+     * @param tolerance         largest distance from the held fix and difference of accuracy, in meters
+     * @return                  self object
+     */
+    public synchronized TrajectorySimplifier setTolerance(float tolerance) {
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        }
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Sets dwells and returns self object for easy init.
+     * @param dwellTime         time of a stay at one place which is a dwell, in milliseconds
+     * @param maxGap            longest time without fixes which does not end a dwell, in milliseconds
+     * @return                  self object
+     */
+    public synchronized TrajectorySimplifier setDwell(long dwellTime, long maxGap) {
+        if (dwellTime <= 0 || maxGap <= 0) {
+            throw new IllegalArgumentException("Dwell time and gap must be positive: " + dwellTime + ", " + maxGap);
+        }
+        this.dwellTime = dwellTime;
+        this.maxGap = maxGap;
+        return this;
+    }
+
+    /**
+     * Ends and finds dwells by the given time.
+     * @param time              time, in milliseconds
+     * @param fixTrack          track of the fix of the time, its dwell is found by the fix itself, as the fix
+     *                          may be off the place, or <code>null</code>
+     */
+    private void advance(long time, Track fixTrack) {
+        for (Track track: trackList) {
+            if (track.isDwelling) {
+                if (time - Math.max(track.dwellLastTime, track.lastTime) > maxGap) {
+                    endDwell(track);
+                    // the place is left for all the consumers know, the next fix is passed
+                    track.isHeld = false;
+                }
+            } else if (track != fixTrack && track.isHeld && track.count > 1 && time - track.heldTime >= dwellTime
+                    && time - track.lastTime <= maxGap) {
+                startDwell(track);
+            }
+        }
+    }
+
+    private Track track(String provider) {
+        Track track = tracks.get(provider);
+        if (track == null) {
+            track = new Track(provider);
+            tracks.put(provider, track);
+            trackList.add(track);
+        }
+        return track;
+    }
+
+    private boolean isWithin(Track track, LocationSample fix, double latitude, double longitude, float accuracy) {
+        double y = (fix.latitude - latitude) * METERS_PER_DEGREE;
+        double x = (fix.longitude - longitude) * track.metersPerLongitude;
+        return x * x + y * y <= (double) tolerance * tolerance && Math.abs(fix.accuracy - accuracy) <= tolerance;
+    }
+
+    /**
+     * Returns <code>true</code> if fix is within the tolerance of the position the consumers take at its time.
+     */
+    private boolean isReckoned(Track track, LocationSample fix) {
+        return isWithin(track, fix, reckoning.latitudeAt(fix.time), reckoning.longitudeAt(fix.time), fix.accuracy);
+    }
+
+    /**
+     * Passes fix and holds it, the stay starts at it.
+     */
+    private void pass(Track track, LocationSample fix) {
+        track.isHeld = true;
+        track.heldTime = fix.time;
+        track.latitude = fix.latitude;
+        track.longitude = fix.longitude;
+        track.accuracy = fix.accuracy;
+        track.metersPerLongitude = METERS_PER_DEGREE * Math.cos(Math.toRadians(fix.latitude));
+        track.lastTime = fix.time;
+        track.count = 1;
+        track.sumX = 0;
+        track.sumY = 0;
+        track.minX = 0;
+        track.maxX = 0;
+        track.minY = 0;
+        track.maxY = 0;
+        reckoning.fix(fix.time, fix.source, fix.latitude, fix.longitude, fix.accuracy);
+        passedCount++;
+        sink.log(fix);
+    }
+
+    /**
+     * Passes dwell at the mean of the fixes of the stay if all of them are within the tolerance of it,
+     * as they are if the farthest corner of their bounds is, otherwise at the held fix.
+     * The mean is closer to the true place than a single fix, so fewer fixes leave the dwell by their errors.
+     */
+    private void startDwell(Track track) {
+        double meanX = track.sumX / track.count;
+        double meanY = track.sumY / track.count;
+        double cornerX = Math.max(meanX - track.minX, track.maxX - meanX);
+        double cornerY = Math.max(meanY - track.minY, track.maxY - meanY);
+        track.dwellLatitude = track.latitude;
+        track.dwellLongitude = track.longitude;
+        if (cornerX * cornerX + cornerY * cornerY <= (double) tolerance * tolerance) {
+            track.dwellLatitude += meanY / METERS_PER_DEGREE;
+            track.dwellLongitude += meanX / track.metersPerLongitude;
+        }
+        track.dwellAccuracy = track.accuracy;
+        track.dwellSince = track.heldTime;
+        track.dwellLastTime = track.lastTime;
+        track.dwellFixes = track.count;
+        track.isDwelling = true;
+        track.isLeft = false;
+        dwellCount++;
+        passDwell(track, DwellSample.STARTED);
+    }
+
+    private void endDwell(Track track) {
+        if (track.isDwelling) {
+            track.isDwelling = false;
+            passDwell(track, DwellSample.ENDED);
+        }
+    }
+
+    private void passDwell(Track track, int kind) {
+        if (kind == DwellSample.STARTED) {
+            reckoning.hold(track.dwellLatitude, track.dwellLongitude);
+        }
+        DwellSample dwell = new DwellSample(kind);
+        dwell.time = kind == DwellSample.STARTED ? Math.max(track.dwellLastTime, track.lastTime) : track.dwellLastTime;
+        dwell.source = track.provider;
+        dwell.since = track.dwellSince;
+        dwell.latitude = track.dwellLatitude;
+        dwell.longitude = track.dwellLongitude;
+        dwell.accuracy = track.dwellAccuracy;
+        dwell.radius = tolerance;
+        dwell.count = track.dwellFixes;
+        sink.log(dwell);
+    }
+}